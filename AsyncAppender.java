@@ -0,0 +1,237 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ringpuffer für Log-Einträge mit eigenem Schreib-Thread
+ * - feste Anzahl vorab angelegter Einträge, Schreiber aus beliebigen Threads reservieren einen
+ *   Platz per compareAndSet (ohne Lock, ohne neue Objekte pro Eintrag)
+ * - Puffer voll > Eintrag fällt weg und wird gezählt, der Aufrufer wartet nie
+ * - der Schreib-Thread holt alle fertigen Einträge auf einmal, setzt die Platzhalter ein und
+ *   schreibt sie gesammelt (ERROR/WARN nach System.err, der Rest nach System.out)
+ * - schläft, solange nichts ansteht, und wird nur geweckt, wenn er wirklich schläft
+ */
+
+final class AsyncAppender {
+	private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+	/** ein Platz im Ring; seq sagt, ob er frei (= Position) oder belegt (= Position + 1) ist */
+	private static final class Entry {
+		volatile long seq;
+		long millis;
+		Log.Level level;
+		String tag;
+		String pattern;
+		Object a, b, c;
+		int argc;
+		Throwable thrown;
+
+		void clear() {
+			tag = null;
+			pattern = null;
+			a = b = c = null;
+			thrown = null;
+		}
+	}
+
+	private final Entry[] ring;
+	private final int mask;
+	private final AtomicLong tail = new AtomicLong();
+	// nur unter consumerLock (Schreib-Thread oder flush())
+	private long head = 0;
+	private final Object consumerLock = new Object();
+
+	private final AtomicLong dropped = new AtomicLong();
+	// schon als Hinweis ausgegeben (nur unter consumerLock)
+	private long droppedReported = 0;
+	private volatile boolean async = true;
+	private volatile boolean sleeping = false;
+	private final Thread writer;
+
+	private final StringBuilder line = new StringBuilder(256);
+	private final StringBuilder out = new StringBuilder(4096);
+	private final StringBuilder err = new StringBuilder(1024);
+
+	/** capacity wird auf eine Zweierpotenz aufgerundet */
+	AsyncAppender(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		ring = new Entry[size];
+		mask = size - 1;
+		for (int i = 0; i < size; i++) {
+			ring[i] = new Entry();
+			ring[i].seq = i;
+		}
+
+		writer = new Thread(this::writeLoop, "log-writer");
+		writer.setDaemon(true);
+		writer.setPriority(Thread.NORM_PRIORITY - 1);
+		writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "log-flush"));
+	}
+
+	void setAsync(boolean async) {
+		flush();
+		this.async = async;
+	}
+
+	long getDropped() {
+		return dropped.get();
+	}
+
+	/** reiht einen Eintrag ein (oder schreibt ihn direkt, wenn nicht async) */
+	void append(Log.Level level, String tag, String pattern, Object a, Object b, Object c, int argc, Throwable thrown) {
+		long millis = System.currentTimeMillis();
+
+		if (!async) {
+			synchronized (consumerLock) {
+				line.setLength(0);
+				format(line, millis, level, tag, pattern, a, b, c, argc, thrown);
+				streamFor(level).println(line);
+			}
+			return;
+		}
+
+		Entry e;
+		long pos = tail.get();
+		while (true) {
+			e = ring[(int) (pos & mask)];
+			long diff = e.seq - pos;
+			if (diff == 0) {
+				if (tail.compareAndSet(pos, pos + 1)) break;
+				pos = tail.get();
+			} else if (diff < 0) {
+				// Schreib-Thread ist eine Runde zurück > Puffer voll
+				dropped.incrementAndGet();
+				return;
+			} else {
+				pos = tail.get();
+			}
+		}
+
+		e.millis = millis;
+		e.level = level;
+		e.tag = tag;
+		e.pattern = pattern;
+		e.a = a;
+		e.b = b;
+		e.c = c;
+		e.argc = argc;
+		e.thrown = thrown;
+		e.seq = pos + 1; // freigeben für den Schreib-Thread
+
+		if (sleeping) LockSupport.unpark(writer);
+	}
+
+	/** schreibt alles, was bis jetzt eingereiht ist */
+	void flush() {
+		synchronized (consumerLock) {
+			drain();
+		}
+	}
+
+	private void writeLoop() {
+		while (true) {
+			boolean wrote;
+			synchronized (consumerLock) {
+				wrote = drain();
+			}
+			if (wrote) continue;
+
+			sleeping = true;
+			// erneut prüfen: ein Eintrag kann kurz vor sleeping = true gekommen sein
+			if (!hasReady()) LockSupport.parkNanos(this, IDLE_NANOS);
+			sleeping = false;
+		}
+	}
+
+	private boolean hasReady() {
+		Entry e = ring[(int) (head & mask)];
+		return e.seq == head + 1;
+	}
+
+	/** holt alle fertigen Einträge, true wenn mindestens einer geschrieben wurde */
+	private boolean drain() {
+		boolean any = false;
+		while (true) {
+			Entry e = ring[(int) (head & mask)];
+			if (e.seq != head + 1) break;
+
+			line.setLength(0);
+			try {
+				format(line, e.millis, e.level, e.tag, e.pattern, e.a, e.b, e.c, e.argc, e.thrown);
+			} catch (RuntimeException ex) {
+				// z.B. toString() eines Arguments wirft > Eintrag ohne Argumente, Thread läuft weiter
+				line.append(" [").append(e.tag).append("] ").append(e.pattern).append(" (").append(ex).append(')');
+			}
+			(e.level.ordinal() <= Log.Level.WARN.ordinal() ? err : out).append(line).append(System.lineSeparator());
+			e.clear();
+			e.seq = head + ring.length; // Platz für die nächste Runde frei
+			head++;
+			any = true;
+		}
+
+		long total = dropped.get();
+		long lost = total - droppedReported;
+		if (lost > 0) {
+			droppedReported = total;
+			err.append("[Log] ").append(lost).append(" Einträge verworfen (Puffer voll)").append(System.lineSeparator());
+		}
+		write(System.out, out);
+		write(System.err, err);
+		return any;
+	}
+
+	private static void write(PrintStream stream, StringBuilder sb) {
+		if (sb.length() == 0) return;
+		stream.print(sb);
+		stream.flush();
+		sb.setLength(0);
+		// nach einem großen Schub nicht den ganzen Speicher behalten
+		if (sb.capacity() > 1 << 16) sb.trimToSize();
+	}
+
+	private static PrintStream streamFor(Log.Level level) {
+		return level.ordinal() <= Log.Level.WARN.ordinal() ? System.err : System.out;
+	}
+
+	/** Zeit, Level, [Tag] und Nachricht mit eingesetzten Platzhaltern */
+	private static void format(StringBuilder sb, long millis, Log.Level level, String tag, String pattern,
+			Object a, Object b, Object c, int argc, Throwable thrown) {
+		TIME.formatTo(LocalTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()), sb);
+		sb.append(' ').append(level.name());
+		for (int i = level.name().length(); i < 5; i++) sb.append(' ');
+		sb.append(" [").append(tag).append("] ");
+
+		int arg = 0;
+		int from = 0;
+		String p = pattern != null ? pattern : "null";
+		while (arg < argc) {
+			int at = p.indexOf("{}", from);
+			if (at < 0) break;
+			sb.append(p, from, at).append(arg == 0 ? a : arg == 1 ? b : c);
+			from = at + 2;
+			arg++;
+		}
+		sb.append(p, from, p.length());
+
+		if (thrown == null) return;
+		if (level != Log.Level.ERROR) {
+			sb.append(" (").append(thrown).append(')');
+			return;
+		}
+		// bei Fehlern mit Stacktrace
+		StringWriter trace = new StringWriter();
+		thrown.printStackTrace(new PrintWriter(trace));
+		sb.append(System.lineSeparator()).append(trace.getBuffer(), 0, trace.getBuffer().length() - System.lineSeparator().length());
+	}
+}
@@ -0,0 +1,237 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * berechnet einfache Audio-Merkmale direkt aus dem MP3-Datenstrom (Layer III)
+ * - es gibt keinen PCM-Decoder im Projekt (SimpleMinim spielt nur ab), deshalb wird nur die
+ *   Side-Info jedes Granules gelesen, das reicht für grobe Merkmale und ist sehr schnell:
+ *   > global_gain: Quantisierungs-Schrittweite (1,5 dB pro Stufe) ~ Lautheit (RMS)
+ *   > big_values: höchste nennenswerte Frequenzlinie ~ Bandbreite/Helligkeit (statt Spectral Centroid)
+ *   > Lautheit + verbrauchte Bits pro Granule: Onset-Kurve > Tempo per Autokorrelation
+ * - Datei wird einmal komplett memory-mapped gelesen, pro Datei nur wenige KB Heap
+ */
+
+public final class AudioFeatureExtractor {
+	private static final Log LOG = Log.get("Features");
+
+	// Tempo-Suchbereich
+	private static final double MIN_BPM = 60;
+	private static final double MAX_BPM = 180;
+	// höchstens so viele Granules werden ausgewertet (~3,5 min bei 44,1 kHz) > begrenzter Speicher
+	private static final int MAX_GRANULES = 1 << 14;
+
+	private AudioFeatureExtractor() {}
+
+	/** Ergebnis der Analyse eines Tracks */
+	public static final class Features {
+		/** mittlere Lautheit in dB relativ zur Referenz-Schrittweite (typisch -60..0) */
+		public final float loudnessDb;
+		/** mittlere Bandbreite in Hz (Näherung für die Helligkeit des Klangs) */
+		public final float brightnessHz;
+		/** geschätztes Tempo in BPM, NaN wenn keine klare Periode */
+		public final float tempoBpm;
+		/** Anzahl ausgewerteter Granules */
+		public final int granules;
+
+		Features(float loudnessDb, float brightnessHz, float tempoBpm, int granules) {
+			this.loudnessDb = loudnessDb;
+			this.brightnessHz = brightnessHz;
+			this.tempoBpm = tempoBpm;
+			this.granules = granules;
+		}
+
+		/** Energy: vor allem Lautheit, dazu Tempo und Helligkeit (-1..1) */
+		public float energy() {
+			float loud = norm(loudnessDb, -30f, 15f);
+			float tempo = Float.isNaN(tempoBpm) ? 0f : norm(tempoBpm, 110f, 40f);
+			float bright = norm(brightnessHz, 12000f, 5000f);
+			return clamp(0.55f * loud + 0.3f * tempo + 0.15f * bright);
+		}
+
+		/** Valence: heller und schneller Klang wirkt fröhlicher (grobe Heuristik, -1..1) */
+		public float valence() {
+			float tempo = Float.isNaN(tempoBpm) ? 0f : norm(tempoBpm, 110f, 40f);
+			float bright = norm(brightnessHz, 12000f, 5000f);
+			float loud = norm(loudnessDb, -30f, 15f);
+			return clamp(0.5f * bright + 0.35f * tempo + 0.15f * loud);
+		}
+
+		/** nächstgelegene Mood, dazu die zweitnächste, wenn sie kaum weiter entfernt ist */
+		public Set<Mood> moods() {
+			float v = valence(), e = energy();
+			Mood first = Mood.closest(v, e);
+			Set<Mood> moods = EnumSet.of(first);
+
+			Mood second = null;
+			for (Mood m : Mood.values()) {
+				if (m != first && (second == null || m.distanceSq(v, e) < second.distanceSq(v, e))) second = m;
+			}
+			if (second != null && Math.sqrt(second.distanceSq(v, e)) - Math.sqrt(first.distanceSq(v, e)) < 0.1) {
+				moods.add(second);
+			}
+			return moods;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%.1f dB, %.0f Hz, %.0f BPM", loudnessDb, brightnessHz, tempoBpm);
+		}
+
+		private static float norm(float value, float center, float range) {
+			return clamp((value - center) / range);
+		}
+
+		private static float clamp(float v) {
+			return Math.max(-1f, Math.min(1f, v));
+		}
+	}
+
+	/** analysiert eine MP3-Datei, null wenn keine Layer-III-Frames gefunden werden */
+	public static Features extract(File mp3File) {
+		try (FileChannel ch = FileChannel.open(mp3File.toPath(), StandardOpenOption.READ)) {
+			long audioStart = Mp3DurationProber.skipId3v2(ch);
+			long audioEnd = ch.size() - (Mp3DurationProber.hasId3v1(ch) ? 128 : 0);
+			if (audioStart >= audioEnd) return null;
+
+			MappedByteBuffer audio = ch.map(FileChannel.MapMode.READ_ONLY, audioStart, audioEnd - audioStart);
+			return analyze(audio);
+
+		} catch (IOException e) {
+			LOG.warn("Fehler beim Lesen: {} - {}", mp3File, e.getMessage());
+			return null;
+		}
+	}
+
+	private static Features analyze(MappedByteBuffer audio) {
+		float[] gain = new float[1024];
+		float[] bits = new float[1024];
+		int count = 0;
+
+		double gainSum = 0;
+		double bandwidthSum = 0;
+		double granuleSeconds = 0;
+
+		int pos = Mp3DurationProber.findFirstFrame(audio);
+		if (pos < 0) return null;
+
+		while (pos + 4 <= audio.limit() && count < MAX_GRANULES) {
+			MpegFrameHeader h = MpegFrameHeader.parse(audio, pos);
+			if (h == null || h.frameLength <= 0 || h.layer != 3) {
+				pos++; // resync
+				continue;
+			}
+			if (pos + h.frameLength > audio.limit()) break;
+
+			int channels = h.mono ? 1 : 2;
+			int side = pos + 4 + (h.crc ? 2 : 0);
+
+			// Bits bis zum ersten Granule: main_data_begin + private_bits (+ scfsi bei MPEG 1)
+			int bit = h.mpeg1 ? 9 + (h.mono ? 5 : 3) + 4 * channels : 8 + (h.mono ? 1 : 2);
+			int perChannel = h.mpeg1 ? 59 : 63;
+			double nyquist = h.sampleRate / 2.0;
+			granuleSeconds = 576.0 / h.sampleRate;
+
+			for (int gr = 0; gr < h.granules() && count < MAX_GRANULES; gr++) {
+				float g = 0, b = 0, bw = 0;
+				for (int c = 0; c < channels; c++) {
+					int part23 = readBits(audio, side, bit, 12);
+					int bigValues = readBits(audio, side, bit + 12, 9);
+					int globalGain = readBits(audio, side, bit + 21, 8);
+					bit += perChannel;
+
+					g += globalGain;
+					b += part23;
+					bw += Math.min(576, bigValues * 2) / 576f * nyquist;
+				}
+				g /= channels;
+				bw /= channels;
+
+				if (count == gain.length) {
+					gain = Arrays.copyOf(gain, count * 2);
+					bits = Arrays.copyOf(bits, count * 2);
+				}
+				gain[count] = g;
+				bits[count] = b;
+				count++;
+
+				gainSum += g;
+				bandwidthSum += bw;
+			}
+
+			pos += h.frameLength;
+		}
+
+		if (count == 0) return null;
+
+		float meanGain = (float) (gainSum / count);
+		// Schrittweite 2^((gain - 210) / 4) > 1,5 dB pro Stufe
+		float loudnessDb = 1.5f * (meanGain - 210f);
+		float brightness = (float) (bandwidthSum / count);
+		float tempo = estimateTempo(gain, bits, count, granuleSeconds);
+
+		return new Features(loudnessDb, brightness, tempo, count);
+	}
+
+	/**
+	 * Tempo aus der Onset-Kurve
+	 * - Onset = positiver Anstieg von Lautheit + Bitverbrauch gegenüber dem vorherigen Granule
+	 * - die Periode mit der höchsten Autokorrelation im Bereich MIN_BPM..MAX_BPM gewinnt
+	 */
+	private static float estimateTempo(float[] gain, float[] bits, int count, double granuleSeconds) {
+		if (count < 64 || granuleSeconds <= 0) return Float.NaN;
+
+		float[] onset = new float[count];
+		double mean = 0;
+		float prev = level(gain[0], bits[0]);
+		for (int i = 1; i < count; i++) {
+			float cur = level(gain[i], bits[i]);
+			onset[i] = Math.max(0f, cur - prev);
+			prev = cur;
+			mean += onset[i];
+		}
+		mean /= count;
+		for (int i = 0; i < count; i++) onset[i] -= mean;
+
+		int minLag = (int) Math.floor(60.0 / MAX_BPM / granuleSeconds);
+		int maxLag = (int) Math.ceil(60.0 / MIN_BPM / granuleSeconds);
+		if (maxLag >= count / 2) return Float.NaN;
+
+		int bestLag = -1;
+		double best = 0;
+		for (int lag = Math.max(1, minLag); lag <= maxLag; lag++) {
+			double sum = 0;
+			for (int i = lag; i < count; i++) sum += onset[i] * onset[i - lag];
+			sum /= (count - lag);
+			if (sum > best) {
+				best = sum;
+				bestLag = lag;
+			}
+		}
+		if (bestLag < 0) return Float.NaN;
+		return (float) (60.0 / (bestLag * granuleSeconds));
+	}
+
+	/** Pegel eines Granules: Gain-Stufe + Bitverbrauch (log), beides steigt bei Anschlägen */
+	private static float level(float gain, float bits) {
+		return gain + 4f * (float) (Math.log(1 + bits) / Math.log(2));
+	}
+
+	/** liest n Bits (MSB zuerst) ab Bit bitPos hinter base */
+	private static int readBits(MappedByteBuffer buf, int base, int bitPos, int n) {
+		int v = 0;
+		for (int i = 0; i < n; i++) {
+			int p = bitPos + i;
+			int bit = (buf.get(base + (p >>> 3)) >>> (7 - (p & 7))) & 1;
+			v = (v << 1) | bit;
+		}
+		return v;
+	}
+}
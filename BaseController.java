@@ -1,7 +1,11 @@
 package de.hsrm.mi.enia.moodplayer.presentation.views;
 
+import de.hsrm.mi.enia.moodplayer.business.Log;
 import javafx.scene.layout.Pane;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+
 /**
  * Gemeinsame Basisklasse für alle Controller.
  * Speichert das Root-Node der View und erzwingt initialize().
@@ -17,4 +21,16 @@ public abstract class BaseController<T extends Pane> {
     public T getRoot() {
         return root;
     }
+
+    /**
+     * für die Futures von play/skip/playTrack (.exceptionally(BaseController::reportLoadError))
+     * > meldet Ladefehler, ein durch erneutes Klicken abgelöster Start ist kein Fehler
+     */
+    protected static <V> V reportLoadError(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (!(cause instanceof CancellationException)) {
+            Log.get("UI").warn("Track konnte nicht geladen werden: {}", cause.getMessage());
+        }
+        return null;
+    }
 }
\ No newline at end of file
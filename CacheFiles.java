@@ -0,0 +1,58 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Lesen/Schreiben der binären Cache-Dateien (TrackMetadataCache, SeekIndexCache)
+ * - Kopf: MAGIC + VERSION als int, passt einer nicht, gilt die Datei als leer
+ * - Laden mit einem einzigen Lesevorgang, danach nur noch im Speicher parsen
+ * - Schreiben erst in eine Temp-Datei, dann atomar ersetzen > nie halbe Cache-Datei
+ */
+
+final class CacheFiles {
+
+	/** schreibt den Inhalt hinter dem Kopf */
+	@FunctionalInterface
+	interface Body {
+		void writeTo(DataOutputStream out) throws IOException;
+	}
+
+	private CacheFiles() {}
+
+	/**
+	 * liest die Datei komplett ein und prüft den Kopf
+	 * - liefert den Inhalt hinter dem Kopf, null wenn es die Datei nicht gibt oder das Format
+	 *   nicht passt (wird dann über log gemeldet)
+	 */
+	static DataInputStream read(Path file, int magic, int version, Log log) throws IOException {
+		if (!Files.isRegularFile(file)) return null;
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)));
+		if (in.readInt() != magic || in.readInt() != version) {
+			log.info("Unbekanntes Format, Cache wird neu aufgebaut");
+			return null;
+		}
+		return in;
+	}
+
+	/** schreibt Kopf + body in eine Temp-Datei und ersetzt damit file atomar */
+	static void write(Path file, int magic, int version, Body body) throws IOException {
+		Path dir = file.toAbsolutePath().getParent();
+		if (dir != null) Files.createDirectories(dir);
+
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+			out.writeInt(magic);
+			out.writeInt(version);
+			body.writeTo(out);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -0,0 +1,367 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * komprimierte Menge von Track-IDs (Aufbau wie ein Roaring Bitmap)
+ * - IDs werden in Blöcke zu je 65536 aufgeteilt (obere 16 Bit = Schlüssel)
+ * - dünn besetzte Blöcke: sortiertes char-Array mit den unteren 16 Bit
+ * - dicht besetzte Blöcke (> ARRAY_MAX): Bitmap aus 1024 longs (8 KB)
+ * - and/or/andNot arbeiten blockweise und erzeugen neue Mengen, die Eingaben bleiben unverändert
+ * - nicht threadsicher (TagManager synchronisiert)
+ */
+
+public final class CompressedBitSet {
+	// ab hier ist die Bitmap kleiner als das Array (4096 * 2 Byte = 8 KB)
+	private static final int ARRAY_MAX = 4096;
+	private static final int BITMAP_WORDS = 1024;
+
+	private int[] keys = new int[4];
+	// char[] (exakte Länge) oder long[BITMAP_WORDS]
+	private Object[] containers = new Object[4];
+	private int size = 0;
+
+	public static CompressedBitSet of(int... ids) {
+		CompressedBitSet s = new CompressedBitSet();
+		for (int id : ids) s.add(id);
+		return s;
+	}
+
+	/** baut die Menge in einem Durchgang aus den ersten n IDs eines aufsteigend sortierten Arrays */
+	public static CompressedBitSet ofSorted(int[] sorted, int n) {
+		CompressedBitSet s = new CompressedBitSet();
+		int i = 0;
+		while (i < n) {
+			int key = sorted[i] >>> 16;
+			int end = i;
+			while (end < n && sorted[end] >>> 16 == key) end++;
+
+			char[] arr = new char[end - i];
+			int len = 0;
+			for (int j = i; j < end; j++) {
+				char low = (char) sorted[j];
+				if (len == 0 || arr[len - 1] != low) arr[len++] = low; // doppelte überspringen
+			}
+			arr = len == arr.length ? arr : Arrays.copyOf(arr, len);
+			s.append(key, len > ARRAY_MAX ? toBitmap(arr) : arr);
+			i = end;
+		}
+		return s;
+	}
+
+	public void add(int id) {
+		int key = id >>> 16;
+		char low = (char) id;
+		int i = indexOfKey(key);
+
+		if (i < 0) {
+			insertContainer(-i - 1, key, new char[] { low });
+			return;
+		}
+
+		Object c = containers[i];
+		if (c instanceof long[]) {
+			((long[]) c)[low >>> 6] |= 1L << low;
+			return;
+		}
+
+		char[] arr = (char[]) c;
+		int pos = Arrays.binarySearch(arr, low);
+		if (pos >= 0) return;
+		pos = -pos - 1;
+
+		if (arr.length >= ARRAY_MAX) {
+			long[] bm = toBitmap(arr);
+			bm[low >>> 6] |= 1L << low;
+			containers[i] = bm;
+			return;
+		}
+
+		char[] grown = new char[arr.length + 1];
+		System.arraycopy(arr, 0, grown, 0, pos);
+		grown[pos] = low;
+		System.arraycopy(arr, pos, grown, pos + 1, arr.length - pos);
+		containers[i] = grown;
+	}
+
+	public void remove(int id) {
+		int i = indexOfKey(id >>> 16);
+		if (i < 0) return;
+		char low = (char) id;
+
+		Object c = containers[i];
+		if (c instanceof long[]) {
+			((long[]) c)[low >>> 6] &= ~(1L << low);
+			return;
+		}
+
+		char[] arr = (char[]) c;
+		int pos = Arrays.binarySearch(arr, low);
+		if (pos < 0) return;
+		if (arr.length == 1) {
+			removeContainer(i);
+			return;
+		}
+
+		char[] shrunk = new char[arr.length - 1];
+		System.arraycopy(arr, 0, shrunk, 0, pos);
+		System.arraycopy(arr, pos + 1, shrunk, pos, arr.length - pos - 1);
+		containers[i] = shrunk;
+	}
+
+	public boolean contains(int id) {
+		int i = indexOfKey(id >>> 16);
+		return i >= 0 && containerContains(containers[i], (char) id);
+	}
+
+	public boolean isEmpty() {
+		return cardinality() == 0;
+	}
+
+	public int cardinality() {
+		int n = 0;
+		for (int i = 0; i < size; i++) n += containerCardinality(containers[i]);
+		return n;
+	}
+
+	/** Schnittmenge (AND) */
+	public CompressedBitSet and(CompressedBitSet other) {
+		CompressedBitSet r = new CompressedBitSet();
+		int i = 0, j = 0;
+		while (i < size && j < other.size) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			} else if (keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				r.append(keys[i], andContainer(containers[i], other.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return r;
+	}
+
+	/** Vereinigung (OR) */
+	public CompressedBitSet or(CompressedBitSet other) {
+		CompressedBitSet r = new CompressedBitSet();
+		int i = 0, j = 0;
+		while (i < size || j < other.size) {
+			if (j >= other.size || (i < size && keys[i] < other.keys[j])) {
+				r.append(keys[i], copyContainer(containers[i]));
+				i++;
+			} else if (i >= size || keys[i] > other.keys[j]) {
+				r.append(other.keys[j], copyContainer(other.containers[j]));
+				j++;
+			} else {
+				r.append(keys[i], orContainer(containers[i], other.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return r;
+	}
+
+	/** Differenz (AND NOT) */
+	public CompressedBitSet andNot(CompressedBitSet other) {
+		CompressedBitSet r = new CompressedBitSet();
+		int j = 0;
+		for (int i = 0; i < size; i++) {
+			while (j < other.size && other.keys[j] < keys[i]) j++;
+			if (j < other.size && other.keys[j] == keys[i]) {
+				r.append(keys[i], andNotContainer(containers[i], other.containers[j]));
+			} else {
+				r.append(keys[i], copyContainer(containers[i]));
+			}
+		}
+		return r;
+	}
+
+	public CompressedBitSet copy() {
+		CompressedBitSet r = new CompressedBitSet();
+		for (int i = 0; i < size; i++) r.append(keys[i], copyContainer(containers[i]));
+		return r;
+	}
+
+	/** ruft action für alle IDs in aufsteigender Reihenfolge auf */
+	public void forEach(IntConsumer action) {
+		for (int i = 0; i < size; i++) {
+			int base = keys[i] << 16;
+			Object c = containers[i];
+			if (c instanceof long[]) {
+				long[] bm = (long[]) c;
+				for (int w = 0; w < BITMAP_WORDS; w++) {
+					long word = bm[w];
+					while (word != 0) {
+						action.accept(base | (w << 6) | Long.numberOfTrailingZeros(word));
+						word &= word - 1;
+					}
+				}
+			} else {
+				for (char low : (char[]) c) action.accept(base | low);
+			}
+		}
+	}
+
+	public int[] toArray() {
+		int[] out = new int[cardinality()];
+		int[] n = { 0 };
+		forEach(id -> out[n[0]++] = id);
+		return out;
+	}
+
+	/** ungefährer Speicherbedarf in Bytes (für Statistik) */
+	public long sizeInBytes() {
+		long b = 16 + keys.length * 4L + containers.length * 4L;
+		for (int i = 0; i < size; i++) {
+			Object c = containers[i];
+			b += 16 + (c instanceof long[] ? BITMAP_WORDS * 8L : ((char[]) c).length * 2L);
+		}
+		return b;
+	}
+
+	@Override
+	public String toString() {
+		return "CompressedBitSet[" + cardinality() + " IDs, " + size + " Blöcke]";
+	}
+
+	// Block-Verwaltung
+	private int indexOfKey(int key) {
+		return Arrays.binarySearch(keys, 0, size, key);
+	}
+
+	private void insertContainer(int pos, int key, Object c) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			containers = Arrays.copyOf(containers, size * 2);
+		}
+		System.arraycopy(keys, pos, keys, pos + 1, size - pos);
+		System.arraycopy(containers, pos, containers, pos + 1, size - pos);
+		keys[pos] = key;
+		containers[pos] = c;
+		size++;
+	}
+
+	private void removeContainer(int pos) {
+		System.arraycopy(keys, pos + 1, keys, pos, size - pos - 1);
+		System.arraycopy(containers, pos + 1, containers, pos, size - pos - 1);
+		size--;
+		containers[size] = null;
+	}
+
+	/** hängt einen Block hinten an (Schlüssel kommen bei den Operationen sortiert), leere Blöcke entfallen */
+	private void append(int key, Object c) {
+		if (c == null) return;
+		insertContainer(size, key, c);
+	}
+
+	// Operationen auf einzelnen Blöcken (null = leer)
+	private static boolean containerContains(Object c, char low) {
+		if (c instanceof long[]) return (((long[]) c)[low >>> 6] & (1L << low)) != 0;
+		return Arrays.binarySearch((char[]) c, low) >= 0;
+	}
+
+	private static int containerCardinality(Object c) {
+		if (!(c instanceof long[])) return ((char[]) c).length;
+		int n = 0;
+		for (long w : (long[]) c) n += Long.bitCount(w);
+		return n;
+	}
+
+	private static Object copyContainer(Object c) {
+		return c instanceof long[] ? ((long[]) c).clone() : ((char[]) c).clone();
+	}
+
+	private static Object andContainer(Object a, Object b) {
+		if (a instanceof long[] && b instanceof long[]) {
+			long[] x = (long[]) a, y = (long[]) b;
+			long[] r = new long[BITMAP_WORDS];
+			for (int w = 0; w < BITMAP_WORDS; w++) r[w] = x[w] & y[w];
+			return normalize(r);
+		}
+		if (a instanceof long[]) return filter((char[]) b, a, true);
+		if (b instanceof long[]) return filter((char[]) a, b, true);
+
+		// beide sortiert > Merge
+		char[] x = (char[]) a, y = (char[]) b;
+		char[] r = new char[Math.min(x.length, y.length)];
+		int i = 0, j = 0, n = 0;
+		while (i < x.length && j < y.length) {
+			if (x[i] < y[j]) i++;
+			else if (x[i] > y[j]) j++;
+			else { r[n++] = x[i]; i++; j++; }
+		}
+		return n == 0 ? null : Arrays.copyOf(r, n);
+	}
+
+	private static Object orContainer(Object a, Object b) {
+		if (a instanceof long[] || b instanceof long[]) {
+			long[] r = a instanceof long[] ? ((long[]) a).clone() : toBitmap((char[]) a);
+			if (b instanceof long[]) {
+				long[] y = (long[]) b;
+				for (int w = 0; w < BITMAP_WORDS; w++) r[w] |= y[w];
+			} else {
+				for (char v : (char[]) b) r[v >>> 6] |= 1L << v;
+			}
+			return r;
+		}
+
+		char[] x = (char[]) a, y = (char[]) b;
+		char[] r = new char[x.length + y.length];
+		int i = 0, j = 0, n = 0;
+		while (i < x.length || j < y.length) {
+			if (j >= y.length || (i < x.length && x[i] < y[j])) r[n++] = x[i++];
+			else if (i >= x.length || x[i] > y[j]) r[n++] = y[j++];
+			else { r[n++] = x[i]; i++; j++; }
+		}
+		return n > ARRAY_MAX ? toBitmap(Arrays.copyOf(r, n)) : Arrays.copyOf(r, n);
+	}
+
+	private static Object andNotContainer(Object a, Object b) {
+		if (!(a instanceof long[])) return filter((char[]) a, b, false);
+
+		long[] r = ((long[]) a).clone();
+		if (b instanceof long[]) {
+			long[] y = (long[]) b;
+			for (int w = 0; w < BITMAP_WORDS; w++) r[w] &= ~y[w];
+		} else {
+			for (char v : (char[]) b) r[v >>> 6] &= ~(1L << v);
+		}
+		return normalize(r);
+	}
+
+	/** behält die Werte aus values, die in c enthalten (keep=true) bzw. nicht enthalten sind */
+	private static Object filter(char[] values, Object c, boolean keep) {
+		char[] r = new char[values.length];
+		int n = 0;
+		for (char v : values) {
+			if (containerContains(c, v) == keep) r[n++] = v;
+		}
+		return n == 0 ? null : Arrays.copyOf(r, n);
+	}
+
+	/** Bitmap nach einer Operation: leer > null, wenig Bits > wieder Array */
+	private static Object normalize(long[] bm) {
+		int card = containerCardinality(bm);
+		if (card == 0) return null;
+		if (card > ARRAY_MAX) return bm;
+
+		char[] arr = new char[card];
+		int n = 0;
+		for (int w = 0; w < BITMAP_WORDS; w++) {
+			long word = bm[w];
+			while (word != 0) {
+				arr[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+				word &= word - 1;
+			}
+		}
+		return arr;
+	}
+
+	private static long[] toBitmap(char[] arr) {
+		long[] bm = new long[BITMAP_WORDS];
+		for (char v : arr) bm[v >>> 6] |= 1L << v;
+		return bm;
+	}
+}
@@ -0,0 +1,186 @@
+package de.hsrm.mi.enia.moodplayer.presentation.views;
+
+import de.hsrm.mi.enia.moodplayer.business.CoverArtReader;
+import de.hsrm.mi.enia.moodplayer.business.Track;
+import javafx.scene.image.Image;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * lädt Cover im Hintergrund und hält sie in einem nach Bytes begrenzten LRU-Cache
+ * - Quelle: eingebettetes APIC-Bild oder Ordner-Cover (CoverArtReader), sonst Fallback-Ressource
+ * - dekodiert direkt in Anzeigegröße (size x size, Seitenverhältnis bleibt)
+ * - Ordner-Cover werden pro Datei nur einmal dekodiert und von allen Tracks des Ordners geteilt
+ * - load() blockiert nie, das Ergebnis kommt als CompletableFuture aus einem Decoder-Thread
+ * - threadsicher über den Monitor dieses Objekts
+ */
+
+public class CoverArtCache {
+	// so viele Track > Quelle-Zuordnungen werden gemerkt
+	private static final int MAX_TRACKS = 4096;
+
+	private final int size;
+	private final long maxBytes;
+
+	// Quelle > Bild, Zugriffsreihenfolge > ältester Eintrag zuerst
+	private final LinkedHashMap<String, Image> images = new LinkedHashMap<>(64, 0.75f, true);
+	private long bytes = 0;
+
+	// Track-Pfad > Quelle ("" = kein Cover)
+	private final Map<String, String> sourceOfTrack = new LinkedHashMap<String, String>(256, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > MAX_TRACKS;
+		}
+	};
+
+	// laufende Ladevorgänge pro Track-Pfad (mehrfache Anfragen teilen sich einen)
+	private final Map<String, CompletableFuture<Image>> loading = new HashMap<>();
+
+	private final ExecutorService decoder = Executors.newFixedThreadPool(2, r -> {
+		Thread t = new Thread(r, "cover-decoder");
+		t.setDaemon(true);
+		return t;
+	});
+
+	// Ressourcen-Pfad für Tracks ohne eigenes Cover (z.B. mitgelieferte Demo-Cover)
+	private Function<Track, String> fallback = t -> null;
+
+	public CoverArtCache(int size, long maxBytes) {
+		this.size = size;
+		this.maxBytes = maxBytes;
+	}
+
+	public void setFallback(Function<Track, String> fallback) {
+		this.fallback = fallback != null ? fallback : t -> null;
+	}
+
+	/** Cover aus dem Cache, null wenn (noch) nicht geladen oder keins vorhanden */
+	public synchronized Image getIfCached(Track track) {
+		String src = sourceOfTrack.get(track.getFilename());
+		return src != null && !src.isEmpty() ? images.get(src) : null;
+	}
+
+	/** true, wenn das Ergebnis ohne Laden feststeht (Bild im Cache oder bekannt ohne Cover) */
+	public synchronized boolean isResolved(Track track) {
+		String src = sourceOfTrack.get(track.getFilename());
+		return src != null && (src.isEmpty() || images.containsKey(src));
+	}
+
+	/** lädt das Cover eines Tracks, das Ergebnis (evtl. null) kommt im Decoder-Thread */
+	public CompletableFuture<Image> load(Track track) {
+		String path = track.getFilename();
+		synchronized (this) {
+			String src = sourceOfTrack.get(path);
+			if (src != null) {
+				if (src.isEmpty()) return CompletableFuture.completedFuture(null);
+				Image img = images.get(src);
+				if (img != null) return CompletableFuture.completedFuture(img);
+			}
+
+			CompletableFuture<Image> running = loading.get(path);
+			if (running != null) return running;
+
+			CompletableFuture<Image> f = CompletableFuture.supplyAsync(() -> decode(track, path), decoder);
+			loading.put(path, f);
+			// läuft frühestens, wenn dieser Block den Monitor freigibt
+			f.whenComplete((img, err) -> {
+				synchronized (CoverArtCache.this) {
+					loading.remove(path);
+				}
+			});
+			return f;
+		}
+	}
+
+	/** mitgeliefertes Bild (z.B. Platzhalter ohne Track), synchron dekodiert und wie ein Cover gecacht */
+	public Image getResource(String resource) {
+		Image img = resourceImage(resource);
+		if (img != null) putImage("resource:" + resource, img);
+		return img;
+	}
+
+	/** lädt das Cover vorab (z.B. für den nächsten Track) */
+	public void prefetch(Track track) {
+		if (track != null) load(track);
+	}
+
+	/** aktuell belegte Bytes der dekodierten Bilder */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	private Image decode(Track track, String path) {
+		String src = "";
+		Image img = null;
+
+		CoverArtReader.Cover cover = CoverArtReader.read(new File(path));
+		if (cover != null) {
+			src = cover.key;
+			img = cached(src);
+			if (img == null) img = checked(new Image(new ByteArrayInputStream(cover.data), size, size, true, true));
+		}
+
+		if (img == null) {
+			String resource = fallback.apply(track);
+			img = resource != null ? resourceImage(resource) : null;
+			if (img != null) src = "resource:" + resource;
+		}
+
+		if (img == null) src = "";
+		store(path, src, img);
+		return img;
+	}
+
+	/** Ressource aus dem Cache oder neu dekodiert, null wenn nicht vorhanden */
+	private Image resourceImage(String resource) {
+		URL url = getClass().getResource(resource);
+		if (url == null) return null;
+
+		Image img = cached("resource:" + resource);
+		// backgroundLoading=false > dekodiert im aufrufenden Thread
+		return img != null ? img : checked(new Image(url.toExternalForm(), size, size, true, true, false));
+	}
+
+	private synchronized Image cached(String src) {
+		return images.get(src);
+	}
+
+	private static Image checked(Image img) {
+		return img.isError() ? null : img;
+	}
+
+	private synchronized void store(String path, String src, Image img) {
+		sourceOfTrack.put(path, src);
+		if (img != null) putImage(src, img);
+	}
+
+	private synchronized void putImage(String src, Image img) {
+		if (images.containsKey(src)) return;
+
+		images.put(src, img);
+		bytes += bytesOf(img);
+
+		// älteste Bilder verwerfen, das neue bleibt in jedem Fall
+		Iterator<Map.Entry<String, Image>> it = images.entrySet().iterator();
+		while (bytes > maxBytes && images.size() > 1) {
+			Map.Entry<String, Image> eldest = it.next();
+			bytes -= bytesOf(eldest.getValue());
+			it.remove();
+		}
+	}
+
+	private static long bytesOf(Image img) {
+		return (long) img.getWidth() * (long) img.getHeight() * 4;
+	}
+}
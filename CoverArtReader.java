@@ -0,0 +1,102 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import com.mpatric.mp3agic.ID3v2;
+import com.mpatric.mp3agic.Mp3File;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * sucht das Cover eines Tracks und liefert die noch kodierten Bilddaten (JPEG/PNG)
+ * - zuerst eingebettetes ID3v2-APIC-Bild (mp3agic, nur Tags lesen)
+ * - sonst Bilddatei im Ordner des Tracks (folder.jpg, cover.jpg, front.jpg, ...)
+ * - dekodiert wird nicht hier, sondern in der Oberfläche in der gewünschten Größe
+ */
+
+public final class CoverArtReader {
+	private static final Log LOG = Log.get("Cover");
+
+	// Lesepuffer für mp3agic beim reinen Tag-Lesen
+	private static final int TAG_BUFFER_SIZE = 64 * 1024;
+	// Dateinamen (ohne Endung) für Ordner-Cover, in dieser Reihenfolge bevorzugt
+	private static final String[] FOLDER_NAMES = { "folder", "cover", "front", "albumart" };
+	private static final String[] EXTENSIONS = { ".jpg", ".jpeg", ".png" };
+
+	private CoverArtReader() {}
+
+	/** gefundenes Cover: Schlüssel der Quelle (gleich für alle Tracks eines Ordner-Covers) + Daten */
+	public static final class Cover {
+		public final String key;
+		public final byte[] data;
+
+		Cover(String key, byte[] data) {
+			this.key = key;
+			this.data = data;
+		}
+	}
+
+	/** Cover eines Tracks, null wenn weder eingebettet noch im Ordner eins liegt */
+	public static Cover read(File mp3File) {
+		byte[] embedded = readEmbedded(mp3File);
+		if (embedded != null) return new Cover(mp3File.getPath(), embedded);
+
+		Path folderImage = findFolderImage(mp3File);
+		if (folderImage == null) return null;
+		try {
+			return new Cover(folderImage.toString(), Files.readAllBytes(folderImage));
+		} catch (IOException e) {
+			LOG.warn("Fehler beim Lesen: {} - {}", folderImage, e.getMessage());
+			return null;
+		}
+	}
+
+	/** eingebettetes APIC-Bild, null wenn keins vorhanden */
+	public static byte[] readEmbedded(File mp3File) {
+		try {
+			// scanFile=false: mp3agic liest nur die Tags und sucht nicht alle Frames ab
+			Mp3File mp3 = new Mp3File(mp3File, TAG_BUFFER_SIZE, false);
+			if (!mp3.hasId3v2Tag()) return null;
+
+			ID3v2 id3v2 = mp3.getId3v2Tag();
+			byte[] image = id3v2.getAlbumImage();
+			return image != null && image.length > 0 ? image : null;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/** Cover-Datei im Ordner des Tracks (Groß-/Kleinschreibung egal), null wenn keine da ist */
+	public static Path findFolderImage(File mp3File) {
+		Path dir = mp3File.getAbsoluteFile().toPath().getParent();
+		if (dir == null) return null;
+
+		Path best = null;
+		int bestRank = Integer.MAX_VALUE;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+			for (Path p : files) {
+				int rank = rank(p.getFileName().toString().toLowerCase(Locale.ROOT));
+				if (rank < bestRank && Files.isRegularFile(p)) {
+					best = p;
+					bestRank = rank;
+				}
+			}
+		} catch (IOException e) {
+			return null;
+		}
+		return best;
+	}
+
+	/** kleiner = bevorzugt, MAX_VALUE = kein Cover-Name */
+	private static int rank(String name) {
+		for (int n = 0; n < FOLDER_NAMES.length; n++) {
+			for (int e = 0; e < EXTENSIONS.length; e++) {
+				if (name.equals(FOLDER_NAMES[n] + EXTENSIONS[e])) return n * EXTENSIONS.length + e;
+			}
+		}
+		return Integer.MAX_VALUE;
+	}
+}
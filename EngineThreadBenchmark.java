@@ -0,0 +1,99 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * prüft, dass die Engine auch bei Skip-Spam mit festen Threads auskommt
+ * - MoodPlayer mit den MP3s eines Ordners (ohne Ordner: nicht vorhandene Dateien > jedes
+ *   Laden schlägt fehl, Befehle und Threads werden trotzdem gemessen)
+ * - RATE Skips pro Sekunde über SECONDS Sekunden, im festen Takt
+ * - gemessen über die JVM (ThreadMXBean), nicht über Annahmen:
+ *   > lebende Threads vor dem Player, nach dem Start und höchstens während der Skips
+ *   > Threads, die während der Skips neu gestartet wurden (soll 0 sein)
+ *   > getThreadCount() der Engine (zählt ihre lebenden Threads)
+ * - Skip-Latenz: Dauer des Aufrufs (Mittel, 99 %, Maximum) und Zeit bis das letzte Future fertig ist
+ *
+ * starten: java ...EngineThreadBenchmark [Ordner] [Sekunden] [Skips pro Sekunde]
+ */
+
+public class EngineThreadBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		File dir = args.length > 0 && !args[0].isEmpty() ? new File(args[0]) : null;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int rate = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+		Playlist playlist = new Playlist("Benchmark");
+		File[] files = dir != null ? dir.listFiles((d, name) -> name.toLowerCase().endsWith(".mp3")) : null;
+		if (files != null && files.length > 0) {
+			Arrays.sort(files);
+			for (File f : files) playlist.addTrack(new Track(f.getPath(), f.getName(), "", "", 0));
+		} else {
+			for (int i = 0; i < 100; i++) playlist.addTrack(new Track("/benchmark/track" + i + ".mp3", "Titel " + i, "Artist", "Album", 180));
+		}
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		int before = threads.getThreadCount();
+
+		MoodPlayer player = new MoodPlayer();
+		player.setPlaylist(playlist);
+		player.repeat(true);
+		player.play().exceptionally(e -> null).get(30, TimeUnit.SECONDS);
+		// Log-Schreiber, Cover-Loader usw. laufen schon > ab hier darf nichts mehr dazukommen
+		Thread.sleep(200);
+
+		MP3PlayerEngine engine = player.getEngine();
+		int started = threads.getThreadCount();
+		long startedTotal = threads.getTotalStartedThreadCount();
+		threads.resetPeakThreadCount();
+
+		int skips = seconds * rate;
+		long interval = 1_000_000_000L / rate;
+		long[] calls = new long[skips];
+		int engineMax = 0;
+		CompletableFuture<Track> last = null;
+
+		long next = System.nanoTime();
+		for (int i = 0; i < skips; i++) {
+			LockSupport.parkNanos(next - System.nanoTime());
+			long t = System.nanoTime();
+			last = player.skip();
+			calls[i] = System.nanoTime() - t;
+			engineMax = Math.max(engineMax, engine.getThreadCount());
+			next += interval;
+		}
+
+		long waitStart = System.nanoTime();
+		try {
+			last.get(30, TimeUnit.SECONDS);
+		} catch (Exception e) {
+			// Laden fehlgeschlagen (z.B. ohne Ordner) zählt auch als fertig
+		}
+		double settleMillis = (System.nanoTime() - waitStart) / 1e6;
+
+		long newThreads = threads.getTotalStartedThreadCount() - startedTotal;
+		int peak = threads.getPeakThreadCount();
+
+		Arrays.sort(calls);
+		long sum = 0;
+		for (long c : calls) sum += c;
+
+		System.out.println(String.format("[Benchmark] %d Skips (%d/s über %d s)", skips, rate, seconds));
+		System.out.println(String.format("[Benchmark] JVM-Threads: vorher %d, nach Start %d, höchstens %d, während der Skips gestartet %d",
+				before, started, peak, newThreads));
+		System.out.println(String.format("[Benchmark] Engine-Threads: %d lebend, höchstens %d", engine.getThreadCount(), engineMax));
+		System.out.println(String.format("[Benchmark] Skip-Aufruf: Mittel %.3f ms, 99 %% %.3f ms, max %.3f ms; letztes Future nach %.1f ms, letzter Befehl %.3f ms in der Queue",
+				sum / (double) skips / 1e6, calls[Math.min(skips - 1, (int) (skips * 0.99))] / 1e6, calls[skips - 1] / 1e6,
+				settleMillis, engine.getLastCommandLatencyMillis()));
+		System.out.println(String.format("[Benchmark] Engine: %d gestartet, %d nie geladen, %d geladen und verworfen",
+				engine.getExecutedLoads(), engine.getCoalescedLoads(), engine.getSupersededLoads()));
+		player.stop();
+		System.exit(newThreads == 0 ? 0 : 1);
+	}
+}
@@ -0,0 +1,212 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Offline-Analyse: berechnet Audio-Merkmale für alle Tracks einer Playlist und leitet daraus
+ * Mood-Vektor (Valence/Energy/Tempo) und Mood-Tags ab
+ * - parallel auf einem ForkJoinPool, die ID-Liste wird rekursiv in kleine Blöcke geteilt
+ * - begrenzter Speicher: jeder Worker liest immer nur eine Datei (memory-mapped)
+ * - fortsetzbar: Tracks mit Vektor und unverändertem Fingerabdruck werden übersprungen,
+ *   alle CHECKPOINT_TRACKS analysierten Tracks werden die Änderungen an die Tag-Datei angehängt
+ * - meldet Fortschritt und Tracks/Sekunde
+ * - automatisch erkannte Moods ersetzen die bisherigen, außer sie wurden von Hand gesetzt
+ *
+ * offline starten: java ...FeatureExtractionPipeline <Musikordner> [Tag-Datei]
+ */
+
+public class FeatureExtractionPipeline {
+	private static final Log LOG = Log.get("Features");
+
+	// so viele Tracks verarbeitet ein Blatt-Task am Stück
+	private static final int LEAF_SIZE = 8;
+	// nach so vielen analysierten Tracks wird zwischengespeichert
+	private static final int CHECKPOINT_TRACKS = 250;
+
+	private final TagManager tagManager;
+	private final Path tagFile;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	private final AtomicInteger analyzed = new AtomicInteger();
+	private final AtomicInteger skipped = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private final AtomicBoolean checkpointRunning = new AtomicBoolean(false);
+	private volatile boolean cancelled = false;
+	private volatile long startNanos;
+
+	/** Zusammenfassung eines Laufs */
+	public static final class Report {
+		public final int analyzed;
+		public final int skipped;
+		public final int failed;
+		public final long millis;
+
+		Report(int analyzed, int skipped, int failed, long millis) {
+			this.analyzed = analyzed;
+			this.skipped = skipped;
+			this.failed = failed;
+			this.millis = millis;
+		}
+
+		/** analysierte Tracks pro Sekunde (übersprungene zählen nicht) */
+		public double tracksPerSecond() {
+			return millis > 0 ? analyzed * 1000.0 / millis : 0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d analysiert, %d übersprungen, %d Fehler in %.1f s (%.1f Tracks/s)",
+					analyzed, skipped, failed, millis / 1000.0, tracksPerSecond());
+		}
+	}
+
+	public FeatureExtractionPipeline(TagManager tagManager, Path tagFile) {
+		this.tagManager = tagManager;
+		this.tagFile = tagFile;
+	}
+
+	/** Anzahl paralleler Worker (Standard: Anzahl CPU-Kerne) */
+	public void setParallelism(int threads) {
+		this.parallelism = Math.max(1, threads);
+	}
+
+	/** bricht einen laufenden Durchlauf nach den aktuellen Dateien ab (Stand wird gespeichert) */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/** analysiert alle Tracks der Playlist, blockiert bis fertig oder abgebrochen */
+	public Report run(Playlist playlist) {
+		int[] ids = new int[playlist.size()];
+		for (int i = 0; i < ids.length; i++) ids[i] = playlist.getId(i);
+		TrackStore store = playlist.getStore();
+
+		analyzed.set(0);
+		skipped.set(0);
+		failed.set(0);
+		cancelled = false;
+		startNanos = System.nanoTime();
+		LOG.info("Analyse von {} Tracks mit {} Threads", ids.length, parallelism);
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new Batch(store, ids, 0, ids.length));
+		} finally {
+			pool.shutdown();
+		}
+
+		tagManager.append(tagFile);
+
+		Report report = new Report(analyzed.get(), skipped.get(), failed.get(),
+				(System.nanoTime() - startNanos) / 1_000_000);
+		LOG.info("fertig: {}", report);
+		return report;
+	}
+
+	/** teilt den ID-Bereich, bis er klein genug ist, und analysiert dann der Reihe nach */
+	private final class Batch extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final TrackStore store;
+		private final int[] ids;
+		private final int from;
+		private final int to;
+
+		Batch(TrackStore store, int[] ids, int from, int to) {
+			this.store = store;
+			this.ids = ids;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (cancelled) return;
+
+			if (to - from <= LEAF_SIZE) {
+				for (int i = from; i < to && !cancelled; i++) {
+					analyzeOne(store.get(ids[i]));
+				}
+				return;
+			}
+
+			int mid = (from + to) >>> 1;
+			invokeAll(new Batch(store, ids, from, mid), new Batch(store, ids, mid, to));
+		}
+	}
+
+	private void analyzeOne(Track track) {
+		File file = new File(track.getFilename());
+		long fingerprint = fingerprint(file);
+		if (fingerprint == 0) {
+			failed.incrementAndGet();
+			return;
+		}
+
+		// schon analysiert und Datei unverändert > überspringen
+		if (track.hasMoodVector() && tagManager.getFingerprint(track.getId()) == fingerprint) {
+			skipped.incrementAndGet();
+			return;
+		}
+
+		AudioFeatureExtractor.Features f = AudioFeatureExtractor.extract(file);
+		if (f == null) {
+			failed.incrementAndGet();
+			return;
+		}
+
+		track.setMoodVector(f.valence(), f.energy(), f.tempoBpm);
+		if (!tagManager.isManual(track.getId())) tagManager.setMoods(track.getId(), f.moods());
+		tagManager.setFingerprint(track.getId(), fingerprint);
+
+		int done = analyzed.incrementAndGet();
+		if (done % CHECKPOINT_TRACKS == 0) checkpoint(done);
+	}
+
+	/** Zwischenstand speichern + Durchsatz melden (nur ein Worker gleichzeitig) */
+	private void checkpoint(int done) {
+		if (!checkpointRunning.compareAndSet(false, true)) return;
+		try {
+			tagManager.append(tagFile);
+			double sec = (System.nanoTime() - startNanos) / 1e9;
+			LOG.info(() -> String.format("%d analysiert, %d übersprungen (%.1f Tracks/s)", done, skipped.get(), done / sec));
+		} finally {
+			checkpointRunning.set(false);
+		}
+	}
+
+	/** Größe und Änderungszeit in einem Wert, 0 wenn die Datei fehlt */
+	private static long fingerprint(File f) {
+		try {
+			BasicFileAttributes attrs = Files.readAttributes(f.toPath(), BasicFileAttributes.class);
+			long fp = attrs.size() * 31 + attrs.lastModifiedTime().toMillis();
+			return fp != 0 ? fp : 1;
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	/** Offline-Lauf über einen Musikordner */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("Aufruf: FeatureExtractionPipeline <Musikordner> [Tag-Datei]");
+			return;
+		}
+		Path tagFile = args.length > 1 ? Paths.get(args[1]) : TagManager.defaultFile();
+
+		TagManager tags = new TagManager();
+		tags.load(tagFile);
+
+		Playlist library = new PlaylistManager().getAllTracks(args[0], "Bibliothek");
+		new FeatureExtractionPipeline(tags, tagFile).run(library);
+	}
+}
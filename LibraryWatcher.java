@@ -0,0 +1,284 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * beobachtet die Ordner geladener Playlists mit dem WatchService und hält sie aktuell
+ * - gelöschte Dateien/Ordner werden entfernt, geänderte Dateien neu eingelesen
+ * - es kommen keine Dateien dazu (die Playlist legt fest, welche Tracks dazugehören)
+ * - Ereignis-Schübe (z.B. 500 kopierte Dateien) werden gesammelt und erst nach
+ *   DEBOUNCE_MILLIS Ruhe gemeinsam angewendet
+ * - Änderungen an den Playlists laufen über den updateExecutor (z.B. Platform::runLater)
+ *   und den playlistEditor (z.B. MoodPlayer::editPlaylist, damit der Abspiel-Index mitwandert)
+ */
+
+public class LibraryWatcher {
+	private static final Log LOG = Log.get("LibraryWatcher");
+
+	// Ruhezeit nach dem letzten Ereignis, bevor angewendet wird
+	private static final long DEBOUNCE_MILLIS = 500;
+	// spätestens nach dieser Zeit wird auch bei Dauerfeuer angewendet
+	private static final long MAX_DELAY_MILLIS = 5000;
+
+	private final PlaylistManager playlistManager;
+	private final WatchService watchService;
+	private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+	// dieselben Ordner als Menge > register() prüft ohne Durchlauf aller Keys
+	private final Set<Path> registeredDirs = ConcurrentHashMap.newKeySet();
+
+	private final List<Playlist> attached = new CopyOnWriteArrayList<>();
+
+	private Executor updateExecutor = Runnable::run;
+	private BiConsumer<Playlist, Runnable> playlistEditor = (playlist, edit) -> edit.run();
+	private Consumer<Playlist> onPlaylistChanged;
+
+	private Thread watchThread;
+	private volatile boolean running = false;
+
+	public LibraryWatcher(PlaylistManager playlistManager) throws IOException {
+		this.playlistManager = playlistManager;
+		this.watchService = FileSystems.getDefault().newWatchService();
+	}
+
+	/** legt fest, in welchem Thread Playlists verändert werden (Standard: Watch-Thread) */
+	public void setUpdateExecutor(Executor executor) {
+		this.updateExecutor = executor != null ? executor : Runnable::run;
+	}
+
+	/**
+	 * umschließt jede Änderung an einer Playlist (läuft im updateExecutor)
+	 * - z.B. MoodPlayer::editPlaylist > Index des laufenden Tracks wird danach neu aufgelöst
+	 */
+	public void setPlaylistEditor(BiConsumer<Playlist, Runnable> editor) {
+		this.playlistEditor = editor != null ? editor : (playlist, edit) -> edit.run();
+	}
+
+	/** Callback nach jeder angewendeten Änderung (läuft im updateExecutor) */
+	public void setOnPlaylistChanged(Consumer<Playlist> cb) {
+		this.onPlaylistChanged = cb;
+	}
+
+	/** beobachtet die Ordner aller Tracks einer geladenen Playlist (z.B. aus M3U) */
+	public void attach(Playlist playlist) {
+		if (playlist == null || attached.contains(playlist)) return;
+		attached.add(playlist);
+
+		Set<Path> dirs = new HashSet<>();
+		for (Track t : playlist.getTracks()) {
+			Path parent = normalize(t.getFilename()).getParent();
+			if (parent != null) dirs.add(parent);
+		}
+		for (Path dir : dirs) {
+			register(dir);
+		}
+		start();
+	}
+
+	/** beendet die Beobachtung */
+	public void close() {
+		running = false;
+		try {
+			watchService.close();
+		} catch (IOException ignored) {}
+	}
+
+	private synchronized void start() {
+		if (running) return;
+		running = true;
+
+		watchThread = new Thread(this::watchLoop, "library-watcher");
+		watchThread.setDaemon(true);
+		watchThread.start();
+	}
+
+	/** Hauptschleife: Ereignisse sammeln, nach Ruhephase gebündelt anwenden */
+	private void watchLoop() {
+		Set<Path> pending = new LinkedHashSet<>();
+		long firstPending = 0;
+
+		try {
+			while (running) {
+				WatchKey key;
+				if (pending.isEmpty()) {
+					key = watchService.take();
+				} else {
+					long waited = (System.nanoTime() - firstPending) / 1_000_000;
+					key = waited >= MAX_DELAY_MILLIS ? null
+							: watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+				}
+
+				if (key == null) {
+					applyChanges(pending);
+					pending = new LinkedHashSet<>();
+					continue;
+				}
+
+				if (pending.isEmpty()) firstPending = System.nanoTime();
+				collectEvents(key, pending);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			// close() wurde aufgerufen
+		}
+	}
+
+	/** übernimmt die Ereignisse eines WatchKeys in die Menge der betroffenen Pfade */
+	private void collectEvents(WatchKey key, Set<Path> pending) {
+		Path dir = watchedDirs.get(key);
+
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+				// Ereignisse verloren > alles Bekannte neu abgleichen
+				pending.addAll(knownPaths());
+				continue;
+			}
+
+			// Existenz wird erst beim Anwenden geprüft > Reihenfolge der Ereignisse egal
+			pending.add(dir.resolve((Path) event.context()));
+		}
+
+		if (!key.reset()) {
+			Path gone = watchedDirs.remove(key);
+			if (gone != null) registeredDirs.remove(gone);
+		}
+	}
+
+	/**
+	 * wendet gesammelte Änderungen an
+	 * - Dateien werden im Watch-Thread gelesen (über den Metadaten-Cache)
+	 * - die Playlists selbst werden im updateExecutor verändert
+	 */
+	private void applyChanges(Set<Path> paths) {
+		Map<Path, Track> upserts = new HashMap<>();
+		Set<Path> removed = new HashSet<>();
+
+		for (Path p : paths) {
+			File f = p.toFile();
+			if (f.isFile()) {
+				if (isMp3(p)) {
+					Track t = playlistManager.loadTrack(f);
+					if (t != null) upserts.put(p, t);
+				}
+			} else if (!f.exists()) {
+				// gelöschte Datei oder gelöschter Ordner
+				removed.add(p);
+				playlistManager.forgetTrack(f);
+			}
+		}
+		playlistManager.saveMetadataCache();
+
+		if (upserts.isEmpty() && removed.isEmpty()) return;
+		LOG.info("{} neu/geändert, {} entfernt", upserts.size(), removed.size());
+
+		updateExecutor.execute(() -> {
+			for (Playlist p : attached) {
+				if (edit(p, upserts, removed)) notifyChanged(p);
+			}
+		});
+	}
+
+	/** applyTo() über den playlistEditor */
+	private boolean edit(Playlist playlist, Map<Path, Track> upserts, Set<Path> removed) {
+		boolean[] changed = { false };
+		playlistEditor.accept(playlist, () -> changed[0] = applyTo(playlist, upserts, removed));
+		return changed[0];
+	}
+
+	/**
+	 * wendet Änderungen auf eine Playlist an
+	 * - unbekannte Dateien (nicht in der Playlist) werden ignoriert
+	 * - gibt true zurück, wenn sich die Playlist verändert hat
+	 */
+	private boolean applyTo(Playlist playlist, Map<Path, Track> upserts, Set<Path> removed) {
+		boolean changed = false;
+
+		// vorhandene Tracks nach normalisiertem Pfad
+		Map<Path, Track> byPath = new HashMap<>();
+		for (Track t : playlist.getTracks()) {
+			byPath.put(normalize(t.getFilename()), t);
+		}
+
+		// Entfernen (Datei oder kompletter Ordner)
+		List<Track> toRemove = new ArrayList<>();
+		for (Map.Entry<Path, Track> e : byPath.entrySet()) {
+			for (Path r : removed) {
+				if (e.getKey().startsWith(r)) {
+					toRemove.add(e.getValue());
+					break;
+				}
+			}
+		}
+		for (Track t : toRemove) {
+			playlist.removeTrack(t);
+			changed = true;
+		}
+
+		// geändert
+		for (Map.Entry<Path, Track> e : upserts.entrySet()) {
+			Track existing = byPath.get(e.getKey());
+			if (existing != null) {
+				playlist.replaceTrack(existing, e.getValue());
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	private void notifyChanged(Playlist p) {
+		if (onPlaylistChanged != null) onPlaylistChanged.accept(p);
+	}
+
+	/** alle Pfade der beobachteten Playlists (für Neuabgleich nach OVERFLOW) */
+	private Set<Path> knownPaths() {
+		Set<Path> all = new LinkedHashSet<>();
+		for (Playlist p : attached) {
+			for (Track t : p.getTracks()) all.add(normalize(t.getFilename()));
+		}
+		return all;
+	}
+
+	private void register(Path dir) {
+		if (!registeredDirs.add(dir)) return;
+		try {
+			WatchKey key = dir.register(watchService,
+					StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_DELETE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+			watchedDirs.put(key, dir);
+		} catch (IOException e) {
+			registeredDirs.remove(dir);
+			LOG.warn("Ordner nicht beobachtbar: {}", dir);
+		}
+	}
+
+	private static boolean isMp3(Path p) {
+		return p.getFileName().toString().toLowerCase().endsWith(".mp3");
+	}
+
+	private static Path normalize(String filename) {
+		return Paths.get(filename).toAbsolutePath().normalize();
+	}
+}
@@ -0,0 +1,173 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Logging für den MoodPlayer (statt System.out/err)
+ * - ein Logger pro Tag (Log.get("Engine") > Ausgabe "[Engine] ...")
+ * - Level ERROR, WARN, INFO, DEBUG, TRACE; Standard INFO
+ *   > -Dmoodplayer.log=debug für alle Tags, -Dmoodplayer.log.Engine=trace für einen Tag
+ * - abgeschaltete Level kosten nur einen Vergleich: Platzhalter ({}) werden erst im
+ *   Schreib-Thread eingesetzt, Supplier-Nachrichten nur bei eingeschaltetem Level gebaut
+ *   > Argumente sollten sich danach nicht mehr ändern (Zahlen, Strings, unveränderliche Objekte)
+ * - geschrieben wird über einen Ringpuffer (AsyncAppender) von einem eigenen Thread, FX-,
+ *   Audio- und Scheduler-Thread warten also nie auf die Konsole; ist der Puffer voll, fallen
+ *   Einträge weg und werden gezählt
+ */
+
+public final class Log {
+	public enum Level { ERROR, WARN, INFO, DEBUG, TRACE }
+
+	private static final String PROPERTY = "moodplayer.log";
+	private static final Map<String, Log> LOGGERS = new ConcurrentHashMap<>();
+
+	private static volatile Level defaultLevel = parse(System.getProperty(PROPERTY), Level.INFO);
+	private static final AsyncAppender APPENDER = new AsyncAppender(8192);
+
+	private final String tag;
+	// per System-Property festgelegt > setDefaultLevel() ändert das Level nicht
+	private final boolean pinned;
+	// höchstes eingeschaltetes Level (ordinal), im Hot-Path nur dieser Vergleich
+	private volatile int threshold;
+
+	private Log(String tag) {
+		this.tag = tag;
+		Level own = parse(System.getProperty(PROPERTY + "." + tag), null);
+		this.pinned = own != null;
+		this.threshold = (own != null ? own : defaultLevel).ordinal();
+	}
+
+	/** Logger für einen Tag, z.B. Log.get("Engine") */
+	public static Log get(String tag) {
+		return LOGGERS.computeIfAbsent(tag, Log::new);
+	}
+
+	/** Level für alle Tags, die nicht per System-Property festgelegt sind */
+	public static void setDefaultLevel(Level level) {
+		defaultLevel = level;
+		for (Log log : LOGGERS.values()) {
+			if (!log.pinned) log.threshold = level.ordinal();
+		}
+	}
+
+	/** false = jeder Eintrag wird sofort im aufrufenden Thread geschrieben (nur für Vergleiche) */
+	public static void setAsync(boolean async) {
+		APPENDER.setAsync(async);
+	}
+
+	/** schreibt alle gepufferten Einträge (z.B. vor dem Beenden) */
+	public static void flush() {
+		APPENDER.flush();
+	}
+
+	/** Anzahl Einträge, die wegen vollem Puffer weggefallen sind */
+	public static long getDropped() {
+		return APPENDER.getDropped();
+	}
+
+	public void setLevel(Level level) {
+		threshold = level.ordinal();
+	}
+
+	public boolean isEnabled(Level level) {
+		return level.ordinal() <= threshold;
+	}
+
+	public boolean isDebugEnabled() {
+		return Level.DEBUG.ordinal() <= threshold;
+	}
+
+	// ERROR
+	public void error(String msg) {
+		if (Level.ERROR.ordinal() <= threshold) APPENDER.append(Level.ERROR, tag, msg, null, null, null, 0, null);
+	}
+
+	public void error(String msg, Throwable thrown) {
+		if (Level.ERROR.ordinal() <= threshold) APPENDER.append(Level.ERROR, tag, msg, null, null, null, 0, thrown);
+	}
+
+	public void error(String pattern, Object a) {
+		if (Level.ERROR.ordinal() <= threshold) APPENDER.append(Level.ERROR, tag, pattern, a, null, null, 1, null);
+	}
+
+	public void error(String pattern, Object a, Object b) {
+		if (Level.ERROR.ordinal() <= threshold) APPENDER.append(Level.ERROR, tag, pattern, a, b, null, 2, null);
+	}
+
+	// WARN
+	public void warn(String msg) {
+		if (Level.WARN.ordinal() <= threshold) APPENDER.append(Level.WARN, tag, msg, null, null, null, 0, null);
+	}
+
+	public void warn(String pattern, Object a) {
+		if (Level.WARN.ordinal() <= threshold) APPENDER.append(Level.WARN, tag, pattern, a, null, null, 1, null);
+	}
+
+	public void warn(String pattern, Object a, Object b) {
+		if (Level.WARN.ordinal() <= threshold) APPENDER.append(Level.WARN, tag, pattern, a, b, null, 2, null);
+	}
+
+	// INFO
+	public void info(String msg) {
+		if (Level.INFO.ordinal() <= threshold) APPENDER.append(Level.INFO, tag, msg, null, null, null, 0, null);
+	}
+
+	public void info(String pattern, Object a) {
+		if (Level.INFO.ordinal() <= threshold) APPENDER.append(Level.INFO, tag, pattern, a, null, null, 1, null);
+	}
+
+	public void info(String pattern, Object a, Object b) {
+		if (Level.INFO.ordinal() <= threshold) APPENDER.append(Level.INFO, tag, pattern, a, b, null, 2, null);
+	}
+
+	public void info(String pattern, Object a, Object b, Object c) {
+		if (Level.INFO.ordinal() <= threshold) APPENDER.append(Level.INFO, tag, pattern, a, b, c, 3, null);
+	}
+
+	public void info(Supplier<String> msg) {
+		if (Level.INFO.ordinal() <= threshold) APPENDER.append(Level.INFO, tag, msg.get(), null, null, null, 0, null);
+	}
+
+	// DEBUG
+	public void debug(String msg) {
+		if (Level.DEBUG.ordinal() <= threshold) APPENDER.append(Level.DEBUG, tag, msg, null, null, null, 0, null);
+	}
+
+	public void debug(String pattern, Object a) {
+		if (Level.DEBUG.ordinal() <= threshold) APPENDER.append(Level.DEBUG, tag, pattern, a, null, null, 1, null);
+	}
+
+	public void debug(String pattern, Object a, Object b) {
+		if (Level.DEBUG.ordinal() <= threshold) APPENDER.append(Level.DEBUG, tag, pattern, a, b, null, 2, null);
+	}
+
+	public void debug(String pattern, Object a, Object b, Object c) {
+		if (Level.DEBUG.ordinal() <= threshold) APPENDER.append(Level.DEBUG, tag, pattern, a, b, c, 3, null);
+	}
+
+	public void debug(Supplier<String> msg) {
+		if (Level.DEBUG.ordinal() <= threshold) APPENDER.append(Level.DEBUG, tag, msg.get(), null, null, null, 0, null);
+	}
+
+	// TRACE
+	public void trace(String pattern, Object a) {
+		if (Level.TRACE.ordinal() <= threshold) APPENDER.append(Level.TRACE, tag, pattern, a, null, null, 1, null);
+	}
+
+	public void trace(Supplier<String> msg) {
+		if (Level.TRACE.ordinal() <= threshold) APPENDER.append(Level.TRACE, tag, msg.get(), null, null, null, 0, null);
+	}
+
+	private static Level parse(String value, Level fallback) {
+		if (value == null || value.isBlank()) return fallback;
+		try {
+			return Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			System.err.println("[Log] unbekanntes Level: " + value);
+			return fallback;
+		}
+	}
+}
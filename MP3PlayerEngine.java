@@ -1,15 +1,1034 @@
 package de.hsrm.mi.enia.moodplayer.business;
 
-//(optional) 1:1 eure alte MP3Player-Playback-Logik ausgelagert
-/**
- * MP3PlayerEngine (optional, aber empfehlenswert)
+import de.hsrm.mi.eibo.simpleplayer.SimpleAudioPlayer;
+import de.hsrm.mi.eibo.simpleplayer.SimpleMinim;
 
-Wenn ihr nicht wollt, dass MoodPlayer 500 Zeilen bekommt:
-	•	ihr kopiert eure aktuelle Audio-Logik (SimpleMinim, Threads, setGain/seek/time)
-	•	MoodPlayer ruft nur noch engine.play(track), engine.pause(), engine.volume(x) etc.
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.function.ObjLongConsumer;
 
-➡️ Wenn ihr’s simpel halten wollt: erstmal weglassen und MoodPlayer direkt wie euren MP3Player bauen.
+/**
+ * Audio-Engine für den MoodPlayer
+ * - was gespielt wird, ist ein Ziel (Target: Datei, playToken, pausiert) mit Versionsnummer
+ *   > setTarget() behält immer das Ziel mit der höchsten Version, egal in welcher Reihenfolge
+ *     verschiedene Threads es setzen, der Scheduler gleicht den Ist-Zustand daran an
+ * - seek/volume/preload landen als Befehle in einer Queue
+ * - Lautstärke: der Slider setzt nur den Soll-Wert (höchstens ein VOLUME-Befehl wartet), der
+ *   Scheduler führt den Gain in kleinen Schritten nach (ein setGain pro Audio-Puffer-Dauer)
+ *   > kein Knacksen/"Zipper" beim Ziehen, keine Flut von setGain-Aufrufen
+ * - ein langlebiger Scheduler-Thread arbeitet die Queue ab
+ * - Laden und Öffnen des Decoders läuft auf einem eigenen Lade-Thread, das Ergebnis kommt als
+ *   Befehl zurück > Seek, Volume, Pause bleiben auch bei langsamen (Netz-)Dateien sofort wirksam
+ * - ein langlebiger Audio-Thread führt das blockierende SimpleAudioPlayer.play() aus
+ * - bei Skip-Spam wird nur das letzte Ziel wirklich geladen, es entstehen keine neuen Threads;
+ *   ein Laden, das schon läuft, wird nach dem Ende verworfen, wenn inzwischen ein neueres Ziel gilt
+ * - optional wird der nächste Track auf einem eigenen Thread vorgeladen (Gapless)
+ * - Crossfade (0..12 s): liegt der nächste Track vorgeladen bereit, meldet der Scheduler das
+ *   Track-Ende schon CROSSFADE vor Schluss; der alte Track spielt auf dem zweiten Audio-Thread
+ *   weiter und wird ausgeblendet, der neue eingeblendet (gleiche Leistung, sin/cos)
+ *   > höchstens zwei Player spielen gleichzeitig, Schritte im Takt der Gain-Rampe, CPU-Zeit und
+ *     Heap-Differenz jeder Überblendung werden gemessen (getLastCrossfade...)
+ * - Seek über cue() des Players; die Seek-Tabelle (MappedMp3Source) wird hier nicht benutzt,
+ *   weil SimpleAudioPlayer nur Dateinamen lädt und keinen Byte-Offset annimmt
+ *
+ * MoodPlayer entscheidet, WAS gespielt wird (Playlist, Shuffle, Repeat),
+ * die Engine nur, WIE.
  */
 public class MP3PlayerEngine {
+	private static final Log LOG = Log.get("Engine");
+	private static final Log GAPLESS_LOG = Log.get("Gapless");
+	private static final Log VOLUME_LOG = Log.get("Volume");
+
+	// Intervall für Positions-Updates während der Wiedergabe
+	private static final long TICK_MILLIS = 500;
+
+	// Gain-Rampe: ein Schritt pro Audio-Puffer (1024 Frames bei 44,1 kHz ~ 23 ms),
+	// pro Schritt die Hälfte des Rests, höchstens MAX_STEP_DB, unter SNAP_DB direkt auf den Soll-Wert
+	private static final long RAMP_STEP_NANOS = 23_000_000L;
+	private static final double RAMP_FACTOR = 0.5;
+	private static final double MAX_STEP_DB = 6.0;
+	private static final double SNAP_DB = 0.25;
+	// 0 % entspricht MIN_GAIN_DB (praktisch stumm), 100 % = 0 dB
+	private static final double MIN_GAIN_DB = -60.0;
+
+	// Crossfade: Obergrenze, Prüfabstand für den Start (höchstens), kürzeste sinnvolle Überblendung
+	public static final int MAX_CROSSFADE_MILLIS = 12_000;
+	private static final long FADE_CHECK_MAX_MILLIS = 1000;
+	private static final long FADE_RETRY_MILLIS = 100;
+	private static final int MIN_FADE_MILLIS = 1000;
+	private static final int AUDIO_THREADS = 2;
+
+	// setVolume(float) gibt es nicht bei jeder SimpleAudioPlayer-Version > einmal pro Klasse
+	// nachsehen, danach ohne Reflection aufrufen (null = nicht vorhanden)
+	private static final ClassValue<MethodHandle> VOLUME_SETTER = new ClassValue<>() {
+		@Override
+		protected MethodHandle computeValue(Class<?> type) {
+			try {
+				return MethodHandles.publicLookup().findVirtual(type, "setVolume", MethodType.methodType(void.class, float.class));
+			} catch (NoSuchMethodException | IllegalAccessException e) {
+				return null;
+			}
+		}
+	};
+
+	private enum CommandType { TARGET, LOADED, SEEK, VOLUME, PRELOAD, TICKING, CROSSFADE }
+
+	/** Rückmeldung nach dem Laden eines Tracks */
+	@FunctionalInterface
+	public interface LoadedListener {
+		void loaded(long token, String filename, int lengthMillis);
+	}
+
+	/** Soll-Zustand: filename null = gestoppt */
+	static final class Target {
+		final long version;
+		final long token;
+		final String filename;
+		final boolean paused;
+
+		Target(long version, long token, String filename, boolean paused) {
+			this.version = version;
+			this.token = token;
+			this.filename = filename;
+			this.paused = paused;
+		}
+
+		/** das neuere von zwei Zielen */
+		static Target newer(Target a, Target b) {
+			return b.version > a.version ? b : a;
+		}
+	}
+
+	/** Ergebnis des Lade-Threads: player oder error ist gesetzt */
+	private static final class LoadResult {
+		final long token;
+		final String filename;
+		final SimpleAudioPlayer player;
+		final Exception error;
+		final long startNanos;
+
+		LoadResult(long token, String filename, SimpleAudioPlayer player, Exception error, long startNanos) {
+			this.token = token;
+			this.filename = filename;
+			this.player = player;
+			this.error = error;
+			this.startNanos = startNanos;
+		}
+	}
+
+	/** ein Eintrag in der Befehls-Queue */
+	private static final class Command {
+		final CommandType type;
+		final String filename;
+		final double value;
+		final LoadResult result;
+		final long enqueuedNanos = System.nanoTime();
+
+		Command(CommandType type, String filename, double value) {
+			this(type, filename, value, null);
+		}
+
+		Command(LoadResult result) {
+			this(CommandType.LOADED, result.filename, 0, result);
+		}
+
+		private Command(CommandType type, String filename, double value, LoadResult result) {
+			this.type = type;
+			this.filename = filename;
+			this.value = value;
+			this.result = result;
+		}
+	}
+
+	/** ein geladener Track, der vom Audio-Thread abgespielt wird */
+	private static final class Session {
+		final String filename;
+		final long token;
+		final SimpleAudioPlayer player;
+		volatile boolean paused = false;
+		volatile boolean ended = false;
+		// nur Scheduler: zuletzt gesetzter Gain und was der Player kann
+		double gainDb = Double.NaN;
+		boolean gainSupported = true;
+		boolean volumeSupported = true;
+		// nur Scheduler: Ende schon für einen Crossfade gemeldet / wird gerade eingeblendet /
+		// kein Crossfade mehr versuchen (nichts vorgeladen)
+		boolean fadeOut = false;
+		int fadeMillis = 0;
+		boolean fadingIn = false;
+		boolean fadeGivenUp = false;
+
+		Session(String filename, long token, SimpleAudioPlayer player) {
+			this.filename = filename;
+			this.token = token;
+			this.player = player;
+		}
+	}
+
+	private final SimpleMinim minim = new SimpleMinim(false); // false = Threading macht die Engine
+
+	private final BlockingQueue<Command> commands = new LinkedBlockingQueue<>();
+	private final BlockingQueue<Session> toAudioThread = new LinkedBlockingQueue<>();
+	// alle Threads, die diese Engine gestartet hat (für getThreadCount)
+	private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+	private final Thread schedulerThread;
+	private final Thread[] audioThreads = new Thread[AUDIO_THREADS];
+	private final ExecutorService loadExecutor = Executors.newSingleThreadExecutor(r -> newThread(r, "track-loader"));
+	private final ExecutorService preloadExecutor = Executors.newSingleThreadExecutor(r -> newThread(r, "track-preload"));
+
+	// Soll-Zustand (höchste Version gewinnt)
+	private final AtomicReference<Target> target = new AtomicReference<>(new Target(0, 0, null, false));
+	// nur Scheduler: playToken, für den zuletzt ein Laden gestartet wurde, und der gerade ladende (0 = keiner)
+	private long loadedToken = 0;
+	private long loadingToken = 0;
+
+	// aktuell gespielte Session (nur der Scheduler setzt sie)
+	private volatile Session current;
+	// Soll-Lautstärke (jeder Thread), der Gain der Session läuft ihr per Rampe nach (nur Scheduler)
+	private volatile double volumePercent = 80.0;
+	private final AtomicBoolean volumePending = new AtomicBoolean();
+	private long nextRampNanos = 0; // 0 = Rampe steht
+	// Crossfade-Länge (jeder Thread), ausblendende Session und laufende Überblendung (nur Scheduler)
+	private volatile int crossfadeMillis = 0;
+	private Session fading;
+	private long fadeStartNanos;
+	private long fadeNanos;
+	private long fadeCpuStart;
+	private long fadeHeapStart;
+	private long nextFadeNanos = 0; // nächster Überblend-Schritt bzw. nächste Prüfung, 0 = nichts zu tun
+	// Positions-Updates nur, wenn jemand zuschaut (z.B. eine sichtbare View)
+	private boolean tickingEnabled = false;
+
+	// vorgeladener Track (Gapless)
+	private final Object preloadLock = new Object();
+	private int preloadGeneration = 0;
+	private String preloadedFile;
+	private SimpleAudioPlayer preloadedPlayer;
+
+	// Callbacks an den MoodPlayer
+	private volatile LongConsumer onTrackEnded;
+	private volatile IntConsumer onPosition;
+	private volatile LoadedListener onLoaded;
+	private volatile ObjLongConsumer<Exception> onLoadFailed;
+
+	// Messwerte
+	private volatile long lastEndedNanos = 0;
+	private volatile long lastTransitionNanos = -1;
+	private volatile long lastCommandLatencyNanos = -1;
+	private volatile long coalescedLoads = 0;
+	private volatile long supersededLoads = 0;
+	private volatile long executedLoads = 0;
+	private volatile long lastLoadNanos = -1;
+	private volatile long crossfades = 0;
+	private volatile long lastCrossfadeNanos = -1;
+	private volatile double lastCrossfadeCpuPercent = -1;
+	private volatile long lastCrossfadeHeapBytes = 0;
+	private final AtomicLong volumeRequests = new AtomicLong();
+	private volatile long gainApplications = 0;
+
+	public MP3PlayerEngine() {
+		schedulerThread = newThread(this::schedulerLoop, "audio-scheduler");
+		schedulerThread.start();
+
+		// zwei Audio-Threads: beim Crossfade spielt der alte Track auf dem einen zu Ende,
+		// während der andere schon den neuen spielt
+		for (int i = 0; i < AUDIO_THREADS; i++) {
+			audioThreads[i] = newThread(this::audioLoop, "audio-playback-" + (i + 1));
+			audioThreads[i].start();
+		}
+	}
+
+	// Befehle (nicht blockierend, von jedem Thread aus aufrufbar)
+	/**
+	 * setzt den Soll-Zustand, ein Ziel mit kleinerer Version als das bekannte wird ignoriert
+	 * - neuer token = Datei (neu) laden, auch wenn es dieselbe ist
+	 * - filename null = stoppen
+	 */
+	public void setTarget(long version, long token, String filename, boolean paused) {
+		Target t = new Target(version, token, filename, paused);
+		Target before = target.getAndAccumulate(t, Target::newer);
+		if (t.version > before.version) {
+			commands.add(new Command(CommandType.TARGET, null, 0));
+		}
+	}
+
+	/** zuletzt übernommenes Ziel (höchste Version) */
+	Target getTarget() {
+		return target.get();
+	}
+
+	/** springt auf eine absolute Position in Millisekunden */
+	public void seek(int millis) {
+		commands.add(new Command(CommandType.SEEK, null, millis));
+	}
+
+	/**
+	 * Lautstärke 0-100, gilt auch für später geladene Tracks
+	 * > setzt nur den Soll-Wert, schnelle Folgen (Slider ziehen) ergeben einen einzigen Befehl
+	 */
+	public void volume(double percent) {
+		volumePercent = percent;
+		volumeRequests.incrementAndGet();
+		if (volumePending.compareAndSet(false, true)) {
+			commands.add(new Command(CommandType.VOLUME, null, 0));
+		}
+	}
+
+	/** lädt eine Datei im Hintergrund vor, damit ein folgendes play() sofort startet */
+	public void preload(String filename) {
+		commands.add(new Command(CommandType.PRELOAD, filename, 0));
+	}
+
+	/** Überblendlänge in ms (0 = aus, höchstens MAX_CROSSFADE_MILLIS); braucht einen vorgeladenen Track */
+	public void setCrossfadeMillis(int millis) {
+		crossfadeMillis = Math.max(0, Math.min(MAX_CROSSFADE_MILLIS, millis));
+		commands.add(new Command(CommandType.CROSSFADE, null, 0));
+	}
+
+	public int getCrossfadeMillis() {
+		return crossfadeMillis;
+	}
+
+	/** schaltet die periodischen Positions-Updates an/aus (aus = Scheduler schläft ganz) */
+	public void setPositionTicking(boolean enabled) {
+		commands.add(new Command(CommandType.TICKING, null, enabled ? 1 : 0));
+	}
+
+	// Callbacks
+	/**
+	 * wird mit dem playToken aufgerufen, wenn ein Track regulär zu Ende ist (Audio-Thread)
+	 * bzw. beim Crossfade schon zu Beginn der Überblendung (Scheduler-Thread)
+	 */
+	public void setOnTrackEnded(LongConsumer cb) {
+		this.onTrackEnded = cb;
+	}
+
+	/** liefert während der Wiedergabe regelmäßig die Position in Sekunden (Scheduler-Thread) */
+	public void setOnPosition(IntConsumer cb) {
+		this.onPosition = cb;
+	}
+
+	/** liefert nach dem Laden playToken, Dateiname + Länge in Millisekunden (Scheduler-Thread) */
+	public void setOnLoaded(LoadedListener cb) {
+		this.onLoaded = cb;
+	}
+
+	/** meldet einen Track (Fehler, playToken), der nicht geladen werden konnte (Scheduler-Thread) */
+	public void setOnLoadFailed(ObjLongConsumer<Exception> cb) {
+		this.onLoadFailed = cb;
+	}
+
+	// Abfragen
+	public boolean hasTrack() {
+		return current != null;
+	}
+
+	public int positionMillis() {
+		Session s = current;
+		if (s == null) return 0;
+		try {
+			return s.player.position();
+		} catch (Exception e) {
+			return 0;
+		}
+	}
+
+	public int lengthMillis() {
+		Session s = current;
+		if (s == null) return 0;
+		try {
+			return s.player.length();
+		} catch (Exception e) {
+			return 0;
+		}
+	}
+
+	/** Dauer des letzten Trackwechsels am Track-Ende in ms (-1 = noch keiner) */
+	public double getLastTransitionMillis() {
+		long n = lastTransitionNanos;
+		return n < 0 ? -1 : n / 1_000_000.0;
+	}
+
+	/** Zeit vom Einreihen bis zum Ausführen des letzten Befehls in ms */
+	public double getLastCommandLatencyMillis() {
+		long n = lastCommandLatencyNanos;
+		return n < 0 ? -1 : n / 1_000_000.0;
+	}
+
+	/** Anzahl Ziele mit neuem Track, die wegen eines neueren Ziels gar nicht geladen wurden */
+	public long getCoalescedLoads() {
+		return coalescedLoads;
+	}
+
+	/** Anzahl Tracks, die fertig geladen, wegen eines neueren Ziels aber nie gespielt wurden */
+	public long getSupersededLoads() {
+		return supersededLoads;
+	}
+
+	/** Anzahl tatsächlich geladener (und gestarteter) Tracks */
+	public long getExecutedLoads() {
+		return executedLoads;
+	}
+
+	/** Dauer des letzten Ladens (Datei öffnen + Decoder) in ms (-1 = noch keins) */
+	public double getLastLoadMillis() {
+		long n = lastLoadNanos;
+		return n < 0 ? -1 : n / 1_000_000.0;
+	}
+
+	/** Anzahl Aufrufe von volume() */
+	public long getVolumeRequests() {
+		return volumeRequests.get();
+	}
+
+	/** Anzahl tatsächlich gesetzter Gain-Werte (Rampenschritte und Track-Start) */
+	public long getGainApplications() {
+		return gainApplications;
+	}
+
+	/** Anzahl Überblendungen (auch durch Skip/Pause/Seek vorzeitig beendete) */
+	public long getCrossfades() {
+		return crossfades;
+	}
+
+	/** Dauer der letzten Überblendung in ms (-1 = noch keine) */
+	public double getLastCrossfadeMillis() {
+		long n = lastCrossfadeNanos;
+		return n < 0 ? -1 : n / 1_000_000.0;
+	}
+
+	/** CPU-Last des Prozesses während der letzten Überblendung in % eines Kerns (-1 = unbekannt) */
+	public double getLastCrossfadeCpuPercent() {
+		return lastCrossfadeCpuPercent;
+	}
+
+	/** Änderung des belegten Heaps während der letzten Überblendung in Bytes (ungenau wegen GC) */
+	public long getLastCrossfadeHeapBytes() {
+		return lastCrossfadeHeapBytes;
+	}
+
+	/**
+	 * Anzahl gerade lebender Threads der Engine (gezählt, nicht angenommen)
+	 * - höchstens Scheduler, 2 Audio-Threads (Crossfade), Laden, Preload; die beiden
+	 *   Executor-Threads entstehen erst beim ersten Auftrag
+	 * - bleibt unabhängig von der Anzahl Befehle, siehe EngineThreadBenchmark
+	 */
+	public int getThreadCount() {
+		int alive = 0;
+		for (Thread t : threads) {
+			if (t.isAlive()) alive++;
+		}
+		return alive;
+	}
+
+	/** Daemon-Thread, der für getThreadCount mitgezählt wird */
+	private Thread newThread(Runnable r, String name) {
+		Thread t = new Thread(r, name);
+		t.setDaemon(true);
+		threads.add(t);
+		return t;
+	}
+
+	// Scheduler-Thread
+	/**
+	 * arbeitet Befehle ab; Positions-Ticks nur, solange ein Track wirklich läuft
+	 * und Ticks gewünscht sind > sonst blockiert der Thread ohne Timeout (0 % CPU)
+	 */
+	private void schedulerLoop() {
+		long nextTick = System.nanoTime() + TICK_MILLIS * 1_000_000L;
+		List<Command> batch = new ArrayList<>();
+
+		while (true) {
+			try {
+				Command first;
+				long deadline = isTicking() ? nextTick : Long.MAX_VALUE;
+				if (nextRampNanos != 0) deadline = Math.min(deadline, nextRampNanos);
+				if (nextFadeNanos != 0) deadline = Math.min(deadline, nextFadeNanos);
+
+				if (deadline != Long.MAX_VALUE) {
+					long waitNanos = Math.max(0, deadline - System.nanoTime());
+					first = commands.poll(waitNanos, TimeUnit.NANOSECONDS);
+				} else {
+					first = commands.take();
+					nextTick = System.nanoTime() + TICK_MILLIS * 1_000_000L;
+				}
+
+				if (first != null) {
+					batch.clear();
+					batch.add(first);
+					commands.drainTo(batch);
+					executeBatch(batch);
+				}
+
+				if (nextRampNanos != 0 && System.nanoTime() >= nextRampNanos) {
+					rampStep();
+				}
+
+				if (nextFadeNanos != 0 && System.nanoTime() >= nextFadeNanos) {
+					fadeStep();
+				}
+
+				if (isTicking() && System.nanoTime() >= nextTick) {
+					tick();
+					nextTick = System.nanoTime() + TICK_MILLIS * 1_000_000L;
+				}
+			} catch (InterruptedException e) {
+				return;
+			} catch (Exception e) {
+				LOG.error("Fehler im Scheduler", e);
+			}
+		}
+	}
+
+	private boolean isTicking() {
+		Session s = current;
+		return tickingEnabled && s != null && !s.paused && !s.ended;
+	}
+
+	/** führt einen Schub Befehle aus; TARGET/PRELOAD, die danach noch einmal kommen, entfallen */
+	private void executeBatch(List<Command> batch) {
+		for (int i = 0; i < batch.size(); i++) {
+			Command c = batch.get(i);
+
+			if ((c.type == CommandType.TARGET || c.type == CommandType.PRELOAD) && isSuperseded(batch, i)) {
+				continue;
+			}
+
+			execute(c);
+			lastCommandLatencyNanos = System.nanoTime() - c.enqueuedNanos;
+		}
+	}
+
+	/** true, wenn nach Position i noch ein Befehl derselben Art kommt */
+	private static boolean isSuperseded(List<Command> batch, int i) {
+		CommandType type = batch.get(i).type;
+		for (int j = i + 1; j < batch.size(); j++) {
+			if (batch.get(j).type == type) return true;
+		}
+		return false;
+	}
+
+	private void execute(Command c) {
+		switch (c.type) {
+			case TARGET:
+				reconcile();
+				break;
+			case LOADED:
+				loadFinished(c.result);
+				break;
+			case SEEK:
+				doSeek((int) c.value);
+				break;
+			case VOLUME:
+				volumePending.set(false);
+				VOLUME_LOG.debug("Slider={} -> gainDb={}", volumePercent, targetGainDb());
+				// erster Schritt sofort, die weiteren im Takt der Rampe
+				if (nextRampNanos == 0) rampStep();
+				break;
+			case PRELOAD:
+				doPreload(c.filename);
+				break;
+			case TICKING:
+				tickingEnabled = c.value != 0;
+				if (tickingEnabled) tick(); // sofort aktuellen Stand liefern
+				break;
+			case CROSSFADE:
+				if (crossfadeMillis == 0) finishFade();
+				scheduleFadeCheck();
+				break;
+		}
+	}
+
+	/**
+	 * gleicht den Ist-Zustand an das neueste Ziel an
+	 * - neuer playToken > alter Track verstummt sofort, der neue wird im Lade-Thread geladen
+	 * - lädt dort gerade noch ein anderer Track, wird nach dessen Ende erneut abgeglichen
+	 */
+	private void reconcile() {
+		Target t = target.get();
+
+		if (t.filename == null) {
+			if (current != null) doStop();
+			return;
+		}
+
+		if (t.token != loadedToken) {
+			releaseCurrent();
+			if (loadingToken != 0) return;
+			// dazwischen gesetzte Tracks wurden nie geladen
+			if (t.token > loadedToken + 1) coalescedLoads += t.token - loadedToken - 1;
+			loadedToken = t.token;
+
+			// vorgeladen (Gapless) > ohne Umweg über den Lade-Thread starten; die Übernahme läuft
+			// hier, damit ein danach eingereihtes PRELOAD den nächsten Track nicht verliert
+			SimpleAudioPlayer preloaded = takePreloaded(t.filename);
+			if (preloaded != null) {
+				startSession(t.filename, t.token, preloaded, t.paused);
+			} else {
+				startLoad(t.filename, t.token);
+			}
+			return;
+		}
+
+		// lädt noch oder Laden fehlgeschlagen
+		if (current == null) return;
+
+		if (t.paused) doPause();
+		else doResume();
+	}
+
+	/** lädt im Lade-Thread, das Ergebnis kommt als LOADED-Befehl zurück */
+	private void startLoad(String filename, long token) {
+		loadingToken = token;
+		long start = System.nanoTime();
+
+		loadExecutor.execute(() -> {
+			SimpleAudioPlayer player = null;
+			Exception error = null;
+			try {
+				player = minim.loadMP3File(filename);
+				if (player == null) error = new IOException("nicht lesbar: " + filename);
+			} catch (Exception e) {
+				error = e;
+			}
+			commands.add(new Command(new LoadResult(token, filename, player, error, start)));
+		});
+	}
+
+	/** Laden ist fertig: starten, wenn das Ziel noch gilt, sonst verwerfen und neu abgleichen */
+	private void loadFinished(LoadResult r) {
+		loadingToken = 0;
+		Target t = target.get();
+		boolean wanted = t.filename != null && t.token == r.token;
+
+		if (r.error != null) {
+			LOG.warn("Laden fehlgeschlagen: {} ({})", r.filename, r.error);
+			ObjLongConsumer<Exception> failed = onLoadFailed;
+			if (wanted && failed != null) failed.accept(r.error, r.token);
+		} else if (!wanted) {
+			supersededLoads++;
+			try { r.player.pause(); } catch (Exception ignored) {}
+		} else {
+			lastLoadNanos = System.nanoTime() - r.startNanos;
+			startSession(r.filename, r.token, r.player, t.paused);
+		}
+
+		// neueres Ziel laden bzw. Pause/Fortsetzen übernehmen
+		reconcile();
+	}
+
+	private void startSession(String filename, long token, SimpleAudioPlayer player, boolean paused) {
+		executedLoads++;
+
+		Session s = new Session(filename, token, player);
+		s.paused = paused;
+		// neuer Track startet direkt mit dem Soll-Gain, ohne Rampe; beim Crossfade stumm, fadeStep blendet ein
+		s.fadingIn = fading != null;
+		s.gainDb = s.fadingIn ? MIN_GAIN_DB : targetGainDb();
+		applyGain(s);
+		current = s;
+
+		LoadedListener loaded = onLoaded;
+		if (loaded != null) {
+			int len = 0;
+			try { len = player.length(); } catch (Exception ignored) {}
+			loaded.loaded(token, filename, len);
+		}
+
+		toAudioThread.add(s);
+		scheduleFadeCheck();
+		tick();
+	}
+
+	private void doPause() {
+		Session s = current;
+		if (s == null || s.paused) return;
+		finishFade();
+		s.paused = true;
+		s.player.pause(); // lässt das blockierende play() im Audio-Thread zurückkehren
+		tick();
+	}
+
+	private void doResume() {
+		Session s = current;
+		if (s == null || !s.paused) return;
+		s.paused = false;
+		toAudioThread.add(s); // play() setzt an der aktuellen Position fort
+		scheduleFadeCheck();
+	}
+
+	private void doStop() {
+		releaseCurrent();
+		dropFading();
+		discardPreload();
+		IntConsumer pos = onPosition;
+		if (pos != null) pos.accept(0);
+	}
+
+	private void doSeek(int millis) {
+		Session s = current;
+		if (s == null) return;
+		if (millis < 0) millis = 0;
+		finishFade();
+
+		try {
+			// absolute Position setzen (wie Minim AudioPlayer)
+			s.player.cue(millis);
+		} catch (Exception e) {
+			// fallback, falls cue() nicht verfügbar ist
+			int diff = millis - s.player.position();
+			LOG.debug("Seek (Fallback) zu {} ms, diff={} ms", millis, diff);
+			s.player.skip(diff);
+		}
+		// nach einem Seek zurück kann wieder überblendet werden
+		s.fadeGivenUp = false;
+		scheduleFadeCheck();
+		tick();
+	}
+
+	/** gibt den aktuellen Track ab: beim Crossfade spielt er ausblendend weiter, sonst Pause */
+	private void releaseCurrent() {
+		Session s = current;
+		current = null;
+		if (s == null) return;
+
+		if (s.fadeOut && !s.paused && !s.ended && crossfadeMillis > 0) {
+			beginFade(s);
+			return;
+		}
+		dropFading();
+		try {
+			s.player.pause();
+		} catch (Exception ignored) {}
+	}
+
+	// Crossfade (nur Scheduler)
+	/** nächste Prüfung bzw. nächster Schritt sofort */
+	private void scheduleFadeCheck() {
+		nextFadeNanos = crossfadeMillis > 0 || fading != null ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Überblend-Schritt bzw. Prüfung, ob überblendet werden soll
+	 * - während einer Überblendung: Gain beider Player nach Fortschritt setzen, am Ende abschließen
+	 * - sonst: Restzeit des aktuellen Tracks <= Crossfade und nächster Track vorgeladen
+	 *   > Track-Ende melden, MoodPlayer wählt den nächsten (Shuffle/Repeat) und setzt das Ziel
+	 */
+	private void fadeStep() {
+		long now = System.nanoTime();
+		if (fading != null) {
+			double p = Math.min(1.0, (now - fadeStartNanos) / (double) fadeNanos);
+			double target = targetGainDb();
+			fading.gainDb = fadeGainDb(target, Math.cos(p * Math.PI / 2));
+			applyGain(fading);
+			Session in = current;
+			if (in != null && in.fadingIn) {
+				in.gainDb = fadeGainDb(target, Math.sin(p * Math.PI / 2));
+				applyGain(in);
+			}
+			if (p >= 1.0) {
+				finishFade();
+				scheduleFadeCheck();
+			} else {
+				nextFadeNanos = now + RAMP_STEP_NANOS;
+			}
+			return;
+		}
+
+		Session s = current;
+		int fade = crossfadeMillis;
+		if (fade == 0 || s == null || s.paused || s.ended || s.fadeOut || s.fadeGivenUp) {
+			nextFadeNanos = 0; // Resume, Seek, neuer Track oder neue Länge planen neu
+			return;
+		}
+
+		int remaining;
+		try {
+			int len = s.player.length();
+			if (len <= 0) {
+				nextFadeNanos = 0;
+				return;
+			}
+			remaining = len - s.player.position();
+		} catch (Exception e) {
+			nextFadeNanos = 0;
+			return;
+		}
+
+		if (remaining > fade) {
+			long wait = Math.max(RAMP_STEP_NANOS / 1_000_000, Math.min(FADE_CHECK_MAX_MILLIS, remaining - fade));
+			nextFadeNanos = now + wait * 1_000_000L;
+			return;
+		}
+		if (!hasPreloaded()) {
+			// Vorladen läuft evtl. noch; zu kurz vor Schluss lieber normal (gapless) wechseln
+			if (remaining > MIN_FADE_MILLIS) {
+				nextFadeNanos = now + FADE_RETRY_MILLIS * 1_000_000L;
+			} else {
+				s.fadeGivenUp = true;
+				nextFadeNanos = 0;
+			}
+			return;
+		}
+
+		s.fadeOut = true;
+		s.fadeMillis = Math.max(1, remaining);
+		nextFadeNanos = 0;
+		LOG.debug("Crossfade: {} ms vor Ende von {}", remaining, s.filename);
+		LongConsumer cb = onTrackEnded;
+		if (cb != null) cb.accept(s.token);
+	}
+
+	/** s blendet ab jetzt aus (spielt auf seinem Audio-Thread weiter) */
+	private void beginFade(Session s) {
+		dropFading();
+		fading = s;
+		fadeStartNanos = System.nanoTime();
+		fadeNanos = s.fadeMillis * 1_000_000L;
+		fadeCpuStart = processCpuNanos();
+		Runtime rt = Runtime.getRuntime();
+		fadeHeapStart = rt.totalMemory() - rt.freeMemory();
+		nextFadeNanos = fadeStartNanos;
+	}
+
+	/** Überblendung sofort beenden: alter Track aus, neuer auf Soll-Gain */
+	private void finishFade() {
+		if (fading == null) return;
+		dropFading();
+		Session s = current;
+		if (s != null && s.fadingIn) {
+			s.fadingIn = false;
+			s.gainDb = targetGainDb();
+			applyGain(s);
+		}
+	}
+
+	/** hält den ausblendenden Track an und misst die Überblendung */
+	private void dropFading() {
+		Session f = fading;
+		if (f == null) return;
+		fading = null;
+		try {
+			f.player.pause(); // play() auf dem zweiten Audio-Thread kehrt zurück
+		} catch (Exception ignored) {}
+
+		long wall = System.nanoTime() - fadeStartNanos;
+		long cpu = processCpuNanos();
+		Runtime rt = Runtime.getRuntime();
+		crossfades++;
+		lastCrossfadeNanos = wall;
+		lastCrossfadeCpuPercent = cpu < 0 || fadeCpuStart < 0 || wall <= 0 ? -1 : (cpu - fadeCpuStart) * 100.0 / wall;
+		lastCrossfadeHeapBytes = rt.totalMemory() - rt.freeMemory() - fadeHeapStart;
+		LOG.info("Crossfade {} ms: CPU {} %, Heap {} KB", wall / 1_000_000,
+				Math.round(lastCrossfadeCpuPercent), lastCrossfadeHeapBytes / 1024);
+	}
+
+	/** Gain für einen Überblend-Faktor (0..1) relativ zur Soll-Lautstärke */
+	private static double fadeGainDb(double targetDb, double factor) {
+		if (factor <= 0) return MIN_GAIN_DB;
+		return Math.max(MIN_GAIN_DB, targetDb + 20 * Math.log10(factor));
+	}
+
+	/** CPU-Zeit des ganzen Prozesses in ns, -1 wenn die JVM sie nicht liefert */
+	private static long processCpuNanos() {
+		OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		if (os instanceof com.sun.management.OperatingSystemMXBean) {
+			return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+		}
+		return -1;
+	}
+
+	private boolean hasPreloaded() {
+		synchronized (preloadLock) {
+			return preloadedPlayer != null;
+		}
+	}
+
+	/** meldet die aktuelle Position, solange gespielt wird */
+	private void tick() {
+		Session s = current;
+		IntConsumer pos = onPosition;
+		if (s == null || pos == null) return;
+		try {
+			pos.accept(Math.max(0, s.player.position() / 1000));
+		} catch (Exception ignored) {}
+	}
+
+	/** Gain zur Soll-Lautstärke: 0 % > MIN_GAIN_DB (sehr leise/stumm), 100 % > 0 dB */
+	private double targetGainDb() {
+		return MIN_GAIN_DB + volumePercent * (-MIN_GAIN_DB / 100.0);
+	}
+
+	/** ein Rampenschritt Richtung Soll-Gain, plant den nächsten, solange er nicht erreicht ist */
+	private void rampStep() {
+		Session s = current;
+		double target = targetGainDb();
+		// beim Einblenden setzt fadeStep den Gain (folgt dabei auch der Soll-Lautstärke)
+		if (s == null || s.fadingIn || s.gainDb == target) {
+			nextRampNanos = 0;
+			return;
+		}
+
+		double diff = target - s.gainDb;
+		if (Double.isNaN(diff) || Math.abs(diff) <= SNAP_DB) {
+			s.gainDb = target;
+		} else {
+			double step = Math.max(-MAX_STEP_DB, Math.min(MAX_STEP_DB, diff * RAMP_FACTOR));
+			s.gainDb += step;
+		}
+		applyGain(s);
+		nextRampNanos = s.gainDb == target ? 0 : System.nanoTime() + RAMP_STEP_NANOS;
+	}
+
+	/**
+	 * setzt s.gainDb am Player
+	 * - was der Player kann, wird beim ersten Aufruf festgestellt: setGain, sonst setVolume
+	 *   (linear 0..1), sonst nichts > danach keine Exceptions und keine Suche mehr
+	 */
+	private void applyGain(Session s) {
+		gainApplications++;
+
+		if (s.gainSupported) {
+			try {
+				s.player.setGain((float) s.gainDb);
+				return;
+			} catch (Exception e) {
+				s.gainSupported = false;
+				VOLUME_LOG.warn("setGain nicht unterstützt ({}), versuche setVolume", e.getMessage());
+			}
+		}
+
+		if (!s.volumeSupported) return;
+		MethodHandle setVolume = VOLUME_SETTER.get(s.player.getClass());
+		if (setVolume == null) {
+			s.volumeSupported = false;
+			VOLUME_LOG.warn("Lautstärke für {} nicht einstellbar", s.filename);
+			return;
+		}
+		try {
+			setVolume.invoke(s.player, (float) ((s.gainDb - MIN_GAIN_DB) / -MIN_GAIN_DB));
+		} catch (Throwable t) {
+			s.volumeSupported = false;
+			VOLUME_LOG.warn("setVolume fehlgeschlagen: {}", t.toString());
+		}
+	}
+
+	// Preload
+	private void doPreload(String filename) {
+		final int generation;
+		synchronized (preloadLock) {
+			if (filename.equals(preloadedFile) && preloadedPlayer != null) return;
+			discardPreloadLocked();
+			generation = preloadGeneration;
+		}
+
+		preloadExecutor.execute(() -> {
+			SimpleAudioPlayer p;
+			try {
+				p = minim.loadMP3File(filename);
+			} catch (Exception e) {
+				GAPLESS_LOG.warn("Vorladen fehlgeschlagen: {}", filename);
+				return;
+			}
+			synchronized (preloadLock) {
+				if (generation != preloadGeneration) {
+					// inzwischen überholt (Skip/Stop/Moduswechsel)
+					try { p.pause(); } catch (Exception ignored) {}
+					return;
+				}
+				preloadedFile = filename;
+				preloadedPlayer = p;
+			}
+			GAPLESS_LOG.debug("vorgeladen: {}", filename);
+		});
+	}
+
+	/** liefert den vorgeladenen Player, wenn er zur Datei passt */
+	private SimpleAudioPlayer takePreloaded(String filename) {
+		synchronized (preloadLock) {
+			SimpleAudioPlayer p = null;
+			if (preloadedPlayer != null && filename.equals(preloadedFile)) {
+				p = preloadedPlayer;
+				preloadedPlayer = null;
+				preloadedFile = null;
+			}
+			discardPreloadLocked();
+			return p;
+		}
+	}
+
+	/** verwirft einen vorgeladenen oder gerade ladenden Track */
+	public void discardPreload() {
+		synchronized (preloadLock) {
+			discardPreloadLocked();
+		}
+	}
+
+	private void discardPreloadLocked() {
+		preloadGeneration++;
+		if (preloadedPlayer != null) {
+			try { preloadedPlayer.pause(); } catch (Exception ignored) {}
+		}
+		preloadedPlayer = null;
+		preloadedFile = null;
+	}
+
+	// Audio-Thread
+	private void audioLoop() {
+		while (true) {
+			Session s;
+			try {
+				s = toAudioThread.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (s != current || s.paused) continue; // inzwischen ersetzt
+
+			// Übergangszeit messen (nur wenn der vorige Track regulär endete)
+			long ended = lastEndedNanos;
+			if (ended != 0) {
+				lastTransitionNanos = System.nanoTime() - ended;
+				lastEndedNanos = 0;
+				GAPLESS_LOG.debug("Übergang: {} ms", getLastTransitionMillis());
+			}
+
+			// nie zwei Threads im play() desselben Players (Fortsetzen, während der andere
+			// Audio-Thread das pause() gerade erst verarbeitet)
+			synchronized (s) {
+				if (s != current || s.paused) continue;
+				try {
+					s.player.play(); // blockiert bis Ende oder pause()
+				} catch (Exception e) {
+					LOG.error("Fehler beim Abspielen", e);
+				}
+			}
 
+			// nur ein reguläres Ende führt zu Auto-Play
+			if (s == current && !s.paused) {
+				s.ended = true;
+				LOG.debug("Song zu Ende: {}", s.filename);
+				lastEndedNanos = System.nanoTime();
+				LongConsumer cb = onTrackEnded;
+				if (cb != null) cb.accept(s.token);
+			}
+		}
+	}
 }
@@ -0,0 +1,100 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MP3-Datei als Eingabequelle über Memory-Mapping
+ * - der Audiobereich (ohne ID3v2 vorne und ID3v1 hinten) wird einmal gemappt, gelesen wird
+ *   direkt aus dem Page-Cache, ohne Kopie in den Heap
+ * - Seek-Tabelle (Mp3SeekTable) kommt aus dem SeekIndexCache oder wird einmal gebaut und dort
+ *   abgelegt > ein Frame-Scan bei VBR passiert nur einmal pro Track, auch über Neustarts hinweg
+ * - locate() liefert den Frame-Beginn zu einer Zeit, baut die Tabelle notfalls
+ * - die Wiedergabe nutzt das noch nicht: SimpleAudioPlayer lädt nur über einen Dateinamen und
+ *   nimmt weder Byte-Offset noch Stream an, gesucht wird dort weiter mit cue()
+ * - Dateien über 2 GB werden nicht gemappt (IOException)
+ */
+
+public final class MappedMp3Source {
+	private static final Log LOG = Log.get("Seek");
+
+	private final String path;
+	private final long size;
+	private final long lastModified;
+	private final ByteBuffer audio;
+	private volatile Mp3SeekTable table;
+
+	private MappedMp3Source(String path, long size, long lastModified, ByteBuffer audio) {
+		this.path = path;
+		this.size = size;
+		this.lastModified = lastModified;
+		this.audio = audio;
+	}
+
+	/** mappt den Audiobereich der Datei (schnell, liest noch nichts) */
+	public static MappedMp3Source open(File file) throws IOException {
+		try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = ch.size();
+			long start = Mp3DurationProber.skipId3v2(ch);
+			long end = size - (Mp3DurationProber.hasId3v1(ch) ? 128 : 0);
+			if (end <= start) throw new IOException("keine Audiodaten: " + file);
+			if (end - start > Integer.MAX_VALUE) throw new IOException("zu groß zum Mappen: " + file);
+
+			// das Mapping bleibt nach dem Schließen des Channels gültig
+			ByteBuffer audio = ch.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+			return new MappedMp3Source(file.getAbsolutePath(), size, file.lastModified(), audio);
+		}
+	}
+
+	/** Seek-Tabelle aus dem Cache oder einmal gebaut (VBR per Frame-Scan), null ohne MPEG-Audio */
+	public Mp3SeekTable seekTable() {
+		Mp3SeekTable t = cachedTable();
+		if (t != null) return t;
+
+		long start = System.nanoTime();
+		t = Mp3SeekTable.build(audio.duplicate(), true);
+		if (t == null) return null;
+		if (LOG.isDebugEnabled()) {
+			Mp3SeekTable built = t;
+			LOG.debug(() -> "Seek-Tabelle " + path + " (" + built.kind + ", " + built.size() + " Einträge) in "
+					+ (System.nanoTime() - start) / 1_000_000 + " ms");
+		}
+
+		SeekIndexCache.getDefault().put(path, size, lastModified, t);
+		return table = t;
+	}
+
+	/** Tabelle aus dem Speicher oder dem SeekIndexCache, null wenn noch keine gebaut wurde */
+	private Mp3SeekTable cachedTable() {
+		Mp3SeekTable t = table;
+		if (t != null) return t;
+		t = SeekIndexCache.getDefault().lookup(path, size, lastModified);
+		if (t != null) table = t;
+		return t;
+	}
+
+	/** Dauer laut Seek-Tabelle, 0 wenn unbekannt */
+	public long durationMillis() {
+		Mp3SeekTable t = seekTable();
+		return t != null ? t.durationMillis() : 0;
+	}
+
+	/** Frame, in dem millis liegt; ohne Tabelle der Anfang */
+	public Mp3SeekTable.Position locate(long millis) {
+		Mp3SeekTable t = seekTable();
+		if (t == null) return new Mp3SeekTable.Position(0, 0);
+		return t.locate(audio.duplicate(), millis);
+	}
+
+	/** der ganze gemappte Audiobereich (eigene Position/Limit), Offsets der Seek-Tabelle beziehen sich darauf */
+	ByteBuffer audio() {
+		return audio.duplicate();
+	}
+
+	public String getPath() {
+		return path;
+	}
+}
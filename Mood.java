@@ -1,7 +1,51 @@
 package de.hsrm.mi.enia.moodplayer.business;
 
-//Enum (CALM, ENERGETIC, HAPPY, SLEEP, …)
+/**
+ * Mood-Kategorien, denen Tracks zugeordnet werden können
+ * - gleiche Namen wie im MoodWheel > Umwandlung per Mood.valueOf(name)
+ * - jede Mood hat einen Punkt im Valence/Energy-Raum (-1..1), damit lassen sich
+ *   berechnete Vektoren einer Mood zuordnen
+ */
 
-public class Mood {
+public enum Mood {
+	JOYFUL(0.8f, 0.5f),
+	CALM(0.3f, -0.7f),
+	ENERGETIC(0.5f, 0.9f),
+	SAD(-0.7f, -0.5f),
+	ANGRY(-0.7f, 0.7f),
+	PEACEFUL(0.7f, -0.5f),
+	STRESSED(-0.4f, 0.5f),
+	FOCUSED(0.1f, 0.1f);
 
+	private final float valence;
+	private final float energy;
+
+	Mood(float valence, float energy) {
+		this.valence = valence;
+		this.energy = energy;
+	}
+
+	public float getValence() {
+		return valence;
+	}
+
+	public float getEnergy() {
+		return energy;
+	}
+
+	/** quadrierter Abstand zu einem Punkt im Valence/Energy-Raum */
+	public float distanceSq(float valence, float energy) {
+		float dv = this.valence - valence;
+		float de = this.energy - energy;
+		return dv * dv + de * de;
+	}
+
+	/** Mood, deren Punkt am nächsten liegt */
+	public static Mood closest(float valence, float energy) {
+		Mood best = null;
+		for (Mood m : values()) {
+			if (best == null || m.distanceSq(valence, energy) < best.distanceSq(valence, energy)) best = m;
+		}
+		return best;
+	}
 }
@@ -1,7 +1,175 @@
 package de.hsrm.mi.enia.moodplayer.business;
 
-//filtert Tracks anhand MoodProfile
+import java.util.Arrays;
+
+/**
+ * filtert Tracks anhand MoodProfile
+ * - wertet das Profil als Bitmengen-Operationen auf dem TagManager-Index aus:
+ *   (AND über allOf) ∩ (OR über anyOf) \ (OR über noneOf)
+ * - kein Durchlauf über alle Tracks, Kosten hängen nur von der Größe der Mood-Mengen ab
+ * - update() passt eine erzeugte Playlist an ein geändertes Profil an, statt sie neu zu bauen
+ */
 
 public class MoodFilter {
+	private static final Log LOG = Log.get("MoodFilter");
+
+	private final TagManager tagManager;
+
+	public MoodFilter(TagManager tagManager) {
+		this.tagManager = tagManager;
+	}
+
+	/**
+	 * Track-IDs, die zum Profil passen
+	 * - null, wenn das Profil keine positive Bedingung hat (nur NOT oder leer):
+	 *   dann passt jeder Track außer excluded(profile)
+	 */
+	public CompressedBitSet matching(MoodProfile profile) {
+		if (profile == null) return null;
+
+		synchronized (tagManager) {
+			CompressedBitSet result = null;
+
+			for (Mood m : profile.getAllOf()) {
+				CompressedBitSet ids = tagManager.indexFor(m);
+				result = result == null ? ids.copy() : result.and(ids);
+			}
+
+			if (!profile.getAnyOf().isEmpty()) {
+				CompressedBitSet any = new CompressedBitSet();
+				for (Mood m : profile.getAnyOf()) {
+					any = any.or(tagManager.indexFor(m));
+				}
+				result = result == null ? any : result.and(any);
+			}
+
+			if (result != null && !profile.getNoneOf().isEmpty()) {
+				result = result.andNot(excludedLocked(profile));
+			}
+			return result;
+		}
+	}
+
+	/** Track-IDs, die wegen noneOf ausgeschlossen sind */
+	public CompressedBitSet excluded(MoodProfile profile) {
+		synchronized (tagManager) {
+			return excludedLocked(profile);
+		}
+	}
+
+	/**
+	 * erzeugt eine Mood-Playlist aus den Tracks von source
+	 * - Reihenfolge wie in source (Voraussetzung für update())
+	 */
+	public Playlist filter(Playlist source, MoodProfile profile) {
+		long start = System.nanoTime();
+		Playlist result = new Playlist(nameFor(source, profile), source.getStore());
+
+		CompressedBitSet hits = matching(profile);
+		if (hits != null) {
+			// Positionen der Treffer in source, sortiert > Reihenfolge von source
+			int[] pos = new int[hits.cardinality()];
+			int n = 0;
+			for (int id : hits.toArray()) {
+				int p = source.indexOfId(id);
+				if (p >= 0) pos[n++] = p;
+			}
+			Arrays.sort(pos, 0, n);
+			for (int k = 0; k < n; k++) {
+				result.addId(source.getId(pos[k]));
+			}
+		} else {
+			CompressedBitSet excluded = profile != null ? excluded(profile) : new CompressedBitSet();
+			for (int i = 0; i < source.size(); i++) {
+				int id = source.getId(i);
+				if (!excluded.contains(id)) result.addId(id);
+			}
+		}
+
+		long us = (System.nanoTime() - start) / 1000;
+		LOG.info("{}: {} Tracks in {} µs", profile, result.size(), us);
+		return result;
+	}
+
+	/**
+	 * passt eine mit filter() erzeugte Playlist an ein geändertes Profil an (an Ort und Stelle)
+	 * - members: IDs, die gerade in target stehen
+	 * - entfernt nur Tracks, die nicht mehr passen, und fügt nur neu passende an ihrer Position
+	 *   aus source ein > Kosten hängen von den Mood-Mengen und der Zahl der Änderungen ab
+	 *   (nur NOT im Profil: ein Durchlauf über source)
+	 * - keepId (z.B. laufender Track) bleibt auf jeden Fall stehen, -1 = keiner
+	 * - gibt die neuen IDs von target zurück, null wenn danach kein Track mehr passen würde
+	 *   (target bleibt dann unverändert)
+	 */
+	public CompressedBitSet update(Playlist target, CompressedBitSet members, Playlist source, MoodProfile profile, int keepId) {
+		long start = System.nanoTime();
+
+		CompressedBitSet hits = matching(profile);
+		CompressedBitSet removed;
+		int[] added;
+		int nAdded = 0;
+		boolean keepMatches;
+
+		if (hits != null) {
+			removed = members.andNot(hits);
+			CompressedBitSet candidates = hits.andNot(members);
+			added = new int[candidates.cardinality()];
+			for (int id : candidates.toArray()) {
+				if (source.indexOfId(id) >= 0) added[nAdded++] = id;
+			}
+			sortByPosition(added, nAdded, source);
+			keepMatches = hits.contains(keepId);
+		} else {
+			CompressedBitSet excluded = profile != null ? excluded(profile) : new CompressedBitSet();
+			removed = members.and(excluded);
+			added = new int[source.size()];
+			for (int i = 0; i < source.size(); i++) {
+				int id = source.getId(i);
+				if (!excluded.contains(id) && !members.contains(id)) added[nAdded++] = id;
+			}
+			keepMatches = !excluded.contains(keepId);
+		}
+
+		boolean keep = keepId >= 0 && members.contains(keepId);
+		if (keep) removed.remove(keepId);
+
+		// passt außer dem festgehaltenen Track nichts mehr > nichts ändern
+		int remaining = members.cardinality() - removed.cardinality() + nAdded;
+		if (remaining - (keep && !keepMatches ? 1 : 0) <= 0) return null;
+
+		int nRemoved = target.removeIds(removed);
+		target.insertSorted(added, nAdded, source::indexOfId);
+
+		int[] addedIds = Arrays.copyOf(added, nAdded);
+		Arrays.sort(addedIds);
+		CompressedBitSet result = members.andNot(removed).or(CompressedBitSet.ofSorted(addedIds, nAdded));
+
+		target.setName(nameFor(source, profile));
+
+		long us = (System.nanoTime() - start) / 1000;
+		if (LOG.isEnabled(Log.Level.INFO)) {
+			LOG.info(profile + ": -" + nRemoved + " +" + nAdded + " > " + target.size() + " Tracks in " + us + " µs");
+		}
+		return result;
+	}
+
+	private static String nameFor(Playlist source, MoodProfile profile) {
+		return source.getName() + " – " + profile;
+	}
+
+	/** sortiert ids[0..n) nach ihrer Position in source */
+	private static void sortByPosition(int[] ids, int n, Playlist source) {
+		long[] keyed = new long[n];
+		for (int k = 0; k < n; k++) keyed[k] = (long) source.indexOfId(ids[k]) << 32 | ids[k];
+		Arrays.sort(keyed);
+		for (int k = 0; k < n; k++) ids[k] = (int) keyed[k];
+	}
 
+	private CompressedBitSet excludedLocked(MoodProfile profile) {
+		CompressedBitSet none = new CompressedBitSet();
+		for (Mood m : profile.getNoneOf()) {
+			none = none.or(tagManager.indexFor(m));
+		}
+		return none;
+	}
 }
@@ -0,0 +1,91 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * misst MoodFilter-Abfragen auf einer großen, zufällig getaggten Bibliothek
+ * - eigener TrackStore mit TRACKS Tracks, jeder Track bekommt 1–3 zufällige Moods
+ *   (ungleich verteilt, damit die Mood-Mengen unterschiedlich groß sind)
+ * - Profile mit AND, OR, NOT, gemischt und nur NOT (Sonderfall: Durchlauf über die Playlist)
+ * - pro Profil: Aufwärmen (JIT), dann Mittel und 99 % für
+ *   > matching(): nur die Bitmengen-Operationen
+ *   > filter(): Abfrage + Mood-Playlist in Bibliotheks-Reihenfolge bauen
+ *
+ * starten: java ...MoodFilterBenchmark [Tracks] [Durchläufe]
+ */
+
+public class MoodFilterBenchmark {
+	private static final int WARMUP = 200;
+
+	public static void main(String[] args) {
+		int tracks = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		int runs = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+
+		// filter() meldet jeden Aufruf auf INFO
+		Log.get("MoodFilter").setLevel(Log.Level.WARN);
+
+		TrackStore store = new TrackStore();
+		Playlist library = new Playlist("Benchmark", store);
+		TagManager tags = new TagManager(store);
+		Random random = new Random(42);
+		Mood[] moods = Mood.values();
+
+		long start = System.nanoTime();
+		for (int i = 0; i < tracks; i++) {
+			int id = store.add(new Track("/benchmark/" + (i / 100) + "/track" + i + ".mp3", "Titel " + i, "Artist " + (i % 500), "Album " + (i % 2000), 180));
+			library.addId(id);
+			int n = 1 + random.nextInt(3);
+			for (int k = 0; k < n; k++) {
+				// quadratisch verteilt > vordere Moods deutlich häufiger
+				double r = random.nextDouble();
+				tags.tag(id, moods[(int) (r * r * moods.length)]);
+			}
+		}
+		System.out.println(String.format("[Benchmark] %d Tracks getaggt in %.0f ms, Index %d KB",
+				tracks, (System.nanoTime() - start) / 1e6, tags.sizeInBytes() / 1024));
+
+		MoodFilter filter = new MoodFilter(tags);
+		MoodProfile[] profiles = {
+				MoodProfile.allOf(Mood.JOYFUL, Mood.CALM),
+				MoodProfile.of(Mood.ENERGETIC, Mood.SAD, Mood.FOCUSED),
+				MoodProfile.of(Mood.JOYFUL, Mood.CALM).not(Mood.SAD),
+				MoodProfile.allOf(Mood.JOYFUL).or(Mood.ENERGETIC).or(Mood.PEACEFUL).not(Mood.ANGRY).not(Mood.STRESSED),
+				MoodProfile.of().not(Mood.JOYFUL),
+		};
+
+		for (MoodProfile profile : profiles) {
+			int hits = filter.filter(library, profile).size();
+			long[] query = measure(runs, () -> filter.matching(profile));
+			long[] build = measure(runs, () -> filter.filter(library, profile));
+
+			System.out.println(String.format("[Benchmark] %-38s %6d Treffer | matching Mittel %7.1f µs, 99 %% %7.1f µs | filter Mittel %7.1f µs, 99 %% %7.1f µs",
+					profile, hits, mean(query) / 1e3, p99(query) / 1e3, mean(build) / 1e3, p99(build) / 1e3));
+		}
+		System.exit(0);
+	}
+
+	/** WARMUP Aufrufe zum Aufwärmen, dann runs Aufrufe einzeln messen (sortiert zurück) */
+	private static long[] measure(int runs, Runnable call) {
+		for (int i = 0; i < WARMUP; i++) call.run();
+
+		long[] times = new long[runs];
+		for (int i = 0; i < runs; i++) {
+			long t = System.nanoTime();
+			call.run();
+			times[i] = System.nanoTime() - t;
+		}
+		Arrays.sort(times);
+		return times;
+	}
+
+	private static double mean(long[] sorted) {
+		long sum = 0;
+		for (long t : sorted) sum += t;
+		return sum / (double) sorted.length;
+	}
+
+	private static long p99(long[] sorted) {
+		return sorted[Math.min(sorted.length - 1, (int) (sorted.length * 0.99))];
+	}
+}
@@ -1,83 +1,194 @@
 package de.hsrm.mi.enia.moodplayer.business;
 
-import de.hsrm.mi.eibo.simpleplayer.SimpleAudioPlayer;
-import de.hsrm.mi.eibo.simpleplayer.SimpleMinim;
 import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
 /**
  * Das ist euer „MP3Player 2.0“:
 	•	hält intern eine Playlist + aktuellen Trackindex
 	•	steuert Wiedergabe (play/pause/resume/stop/skip/seek/volume) wie bisher
 	•	zusätzlich: hält MoodProfile selectedMood
 	•	kann eine Mood-Playlist erzeugen (getMoodPlaylist()), indem er filtert
+ *
+ * die eigentliche Audio-Ausgabe (Laden, Threads, Gain, Seek) macht die MP3PlayerEngine
+ *
+ * Wiedergabe-Zustand:
+ * - ein unveränderliches PlaybackState-Objekt (Phase, Playlist, Index, playToken) in einer
+ *   AtomicReference, jeder Übergang ist ein compareAndSet
+ * - FX-Thread (Play/Skip/Pause), Audio-Thread (Auto-Play) und Scheduler (Laden) können
+ *   gleichzeitig umschalten, ohne Locks und ohne dass zwei Tracks gestartet werden:
+ *   Auto-Play gilt nur für den playToken, der gerade zu Ende ging
+ *
+ * play/skip/playTrack kehren sofort zurück (der FX-Thread wartet nie auf Datei oder Decoder):
+ * - Ergebnis ist ein CompletableFuture, das mit dem Track erfüllt wird, sobald die Engine ihn
+ *   geladen hat (im Scheduler-Thread > für die GUI mit thenAcceptAsync(.., Platform::runLater))
+ * - ein neuerer Start (erneuter Skip) oder Stop bricht das Future ab (cancelled)
+ * - ließ sich die Datei nicht laden, endet es mit dem Fehler und die Wiedergabe stoppt
+ * - null als Ergebnis = es wurde nichts gestartet (z.B. leere Playlist, Ende erreicht)
  */
 
 public class MoodPlayer {
-	// Library-Objekte für Audio
-    private SimpleMinim minim;
-    private SimpleAudioPlayer audioPlayer;
-    
-    // Playlist-Zustand
-    private Playlist currentPlaylist;
-    private int currentIndex = 0;
-    
-    // Modi
-    private boolean shuffle = false;
-    private boolean repeat = false;
-    
-    private Mood selectedMood;
+    private static final Log LOG = Log.get("Player");
+    private static final Log MOOD_LOG = Log.get("Mood");
+
+    /** Future eines gestarteten Tracks, wird nach dem Laden erfüllt */
+    private static final class PendingPlay {
+        final long token;
+        final Track track;
+        final CompletableFuture<Track> future = new CompletableFuture<>();
+
+        PendingPlay(long token, Track track) {
+            this.token = token;
+            this.track = track;
+        }
+    }
+
+    /** Rückmeldung der Engine zu einem playToken, error null = geladen */
+    private static final class LoadOutcome {
+        final long token;
+        final Exception error;
+
+        LoadOutcome(long token, Exception error) {
+            this.token = token;
+            this.error = error;
+        }
+    }
+
+	// Audio-Engine mit festem Scheduler- und Audio-Thread
+    private final MP3PlayerEngine engine;
+
+    // Wiedergabe-Zustand (Playlist, Index, Phase), nur per transition() ändern
+    private final AtomicReference<PlaybackState> state = new AtomicReference<>(PlaybackState.INITIAL);
+
+    // Modi (setzt der FX-Thread, liest auch der Audio-Thread beim Auto-Play)
+    private volatile boolean shuffle = false;
+    private volatile boolean repeat = false;
+    private volatile boolean gapless = true;
 
-    // Thread-Flags
-    private PlayThread playThread;
-    private volatile boolean wasStopped = false;
-    private volatile boolean isPaused = false;
-    private volatile int playToken = 0; // damit nicht zwei Wiedergaben gleichzeitig
-    private volatile boolean playing = false; 
+    // Start mit dem höchsten playToken, auf dessen Laden gewartet wird
+    private final AtomicReference<PendingPlay> pendingPlay = new AtomicReference<>();
+    // letzte Rückmeldung der Engine (falls sie schneller ist als das Anlegen des Futures)
+    private volatile LoadOutcome lastOutcome;
+    // Dauer der Aufrufe play/skip/playTrack = so lange stand der aufrufende (FX-)Thread
+    private volatile long lastCallNanos = -1;
+    private volatile long maxCallNanos = 0;
+
+    // Mood-Auswahl: Index Track -> Mood, Filter und die Bibliothek, aus der gefiltert wird
+    private final TagManager tagManager = new TagManager();
+    private final MoodFilter moodFilter = new MoodFilter(tagManager);
+    private Mood selectedMood;
+    private MoodProfile moodProfile;
+    private Playlist libraryPlaylist;
+    // zuletzt gefilterte Playlist + ihre IDs, wird bei Profiländerungen nur angepasst
+    private Playlist moodPlaylist;
+    private CompressedBitSet moodMembers;
+    // Nächste-Nachbarn-Suche über Valence/Energy, Länge der daraus erzeugten Playlist
+    private MoodSpaceIndex moodSpace;
+    private static final int MOOD_PLAYLIST_SIZE = 50;
 
     // aktuelle Zeit in Sekunden (für TimePane)
     private final IntegerProperty currentTime = new SimpleIntegerProperty(0);
     // damit volume als Property gilt > für Slider-Binding
     private final DoubleProperty volumeValue = new SimpleDoubleProperty(80.0); // 0..100
-    private Thread timeThread;
 
-    /** SimpleMinim mit blockierendem play() */
+    // beobachtbarer Wiedergabe-Zustand > Views hören zu statt zu pollen
+    private final ReadOnlyObjectWrapper<Track> currentTrackValue = new ReadOnlyObjectWrapper<>();
+    private final ReadOnlyObjectWrapper<Playlist> currentPlaylistValue = new ReadOnlyObjectWrapper<>();
+    private final ReadOnlyBooleanWrapper playingValue = new ReadOnlyBooleanWrapper(false);
+    private final ReadOnlyBooleanWrapper shuffleValue = new ReadOnlyBooleanWrapper(false);
+    private final ReadOnlyIntegerWrapper trackLengthValue = new ReadOnlyIntegerWrapper(0);
+
+    // in welchem Thread Property-Änderungen ankommen (GUI setzt Platform::runLater)
+    private volatile Executor eventExecutor = Runnable::run;
+    // wer gerade Positions-Updates braucht (z.B. sichtbare Views)
+    private final Set<Object> positionObservers = ConcurrentHashMap.newKeySet();
+    // sieht jeden gewonnenen Übergang (alt, neu) im gewinnenden Thread, nur für PlaybackStateStress
+    private volatile BiConsumer<PlaybackState, PlaybackState> transitionObserver;
+
     public MoodPlayer() {
-        minim = new SimpleMinim(false);  // false = man steuert Threading selbst
-        
+        engine = new MP3PlayerEngine();
+        engine.setOnTrackEnded(this::onTrackEnded);
+        engine.setOnPosition(this::setCurrentTime);
+        engine.setOnLoaded(this::onTrackLoaded);
+        engine.setOnLoadFailed(this::onLoadFailed);
+
+        // Moods/Vektoren aus der Offline-Analyse (FeatureExtractionPipeline)
+        tagManager.load(TagManager.defaultFile());
+
         // sobald sich der volume-Wert ändert > direkt am AudioPlayer anwenden
         volumeValue.addListener((obs, oldV, newV) -> applyVolumeToAudioPlayer());
+        applyVolumeToAudioPlayer();
     }
 
-    /** gibt den aktuellen Player frei, pausiert und setzt audioPlayer auf null */
-    private void releasePlayer() {
-        if (audioPlayer != null) {
-            try {
-                audioPlayer.pause();
-            } catch (Exception ignored) {}
-            audioPlayer = null;
+    // Playlist
+    public Playlist getCurrentPlaylist () {
+    	return state.get().playlist;
+    }
+
+    /** aktueller Wiedergabe-Zustand (unveränderlicher Schnappschuss) */
+    public PlaybackState getState() {
+        return state.get();
+    }
+
+    /**
+     * tauscht den Zustand per compareAndSet aus, fn wird bei einem Konflikt auf den neuen
+     * Stand erneut angewendet (fn darf daher keine Seiteneffekte haben)
+     * - liefert den neuen Zustand, null wenn fn nichts geändert hat
+     * - jeder gewonnene Zustand geht sofort an die Engine, sie übernimmt immer die höchste Version
+     */
+    private PlaybackState transition(UnaryOperator<PlaybackState> fn) {
+        while (true) {
+            PlaybackState cur = state.get();
+            PlaybackState next = fn.apply(cur);
+            if (next == cur) return null;
+            if (state.compareAndSet(cur, next)) {
+                BiConsumer<PlaybackState, PlaybackState> observer = transitionObserver;
+                if (observer != null) observer.accept(cur, next);
+                engine.setTarget(next.version, next.playToken, next.filename, next.phase == PlaybackState.Phase.PAUSED);
+                return next;
+            }
         }
     }
 
-    // Playlist
-    public Playlist getCurrentPlaylist () {
-    	return currentPlaylist;
+    /** meldet jeden gewonnenen Übergang, bevor er an die Engine geht (Stresstest) */
+    void setTransitionObserver(BiConsumer<PlaybackState, PlaybackState> observer) {
+        this.transitionObserver = observer;
     }
-    
-    /** setzt eine neue Playlist */
+
+    /** setzt eine neue Playlist (= Grundlage für Mood-Playlists) */
     public void setPlaylist(Playlist playlist) {
         if (playlist == null) return;
+        this.libraryPlaylist = playlist;
+        switchPlaylist(playlist);
+    }
 
-        // wenn es dieselbe Playlist ist: nicht currentIndex resetten
-        if (this.currentPlaylist == playlist) {
+    /** wechselt die abgespielte Playlist, ohne die Bibliothek zu ändern */
+    private void switchPlaylist(Playlist playlist) {
+        // wenn es dieselbe Playlist ist: Index nicht zurücksetzen
+        if (transition(s -> s.withPlaylist(playlist)) == null) {
             return;
         }
 
-        this.currentPlaylist = playlist;
-        this.currentIndex = 0;
-        System.out.println("Playlist gesetzt: " + playlist.getName());
+        engine.discardPreload();
+        publishState();
+        eventExecutor.execute(() -> currentPlaylistValue.set(playlist));
+        LOG.info("Playlist gesetzt: {}", playlist.getName());
     }
 
     // Time Property
@@ -90,9 +201,66 @@ public class MoodPlayer {
     }
 
     private void setCurrentTime(int seconds) {
-        this.currentTime.set(seconds);
+        eventExecutor.execute(() -> currentTime.set(seconds));
+    }
+
+    // Zustand als Properties
+    /** abgespielte Playlist (Bibliothek oder Mood-Playlist) */
+    public ReadOnlyObjectProperty<Playlist> currentPlaylistProperty() {
+        return currentPlaylistValue.getReadOnlyProperty();
+    }
+
+    /** aktuell gewählter Track (ändert sich bei Play/Skip/Auto-Play) */
+    public ReadOnlyObjectProperty<Track> currentTrackProperty() {
+        return currentTrackValue.getReadOnlyProperty();
+    }
+
+    /** true, solange wirklich abgespielt wird */
+    public ReadOnlyBooleanProperty playingProperty() {
+        return playingValue.getReadOnlyProperty();
+    }
+
+    public ReadOnlyBooleanProperty shuffleProperty() {
+        return shuffleValue.getReadOnlyProperty();
+    }
+
+    /** Länge des aktuellen Tracks in Sekunden (wird nach dem Laden ggf. korrigiert) */
+    public ReadOnlyIntegerProperty trackLengthProperty() {
+        return trackLengthValue.getReadOnlyProperty();
     }
-    
+
+    /** legt fest, in welchem Thread die Properties aktualisiert werden (z.B. Platform::runLater) */
+    public void setEventExecutor(Executor executor) {
+        this.eventExecutor = executor != null ? executor : Runnable::run;
+    }
+
+    /**
+     * meldet Interesse an Positions-Updates an/ab (z.B. View sichtbar/unsichtbar)
+     * > ohne Beobachter und ohne laufenden Track erzeugt die Engine keine Ticks
+     */
+    public void setPositionObserved(Object observer, boolean observed) {
+        boolean changed = observed ? positionObservers.add(observer) : positionObservers.remove(observer);
+        if (changed) {
+            engine.setPositionTicking(!positionObservers.isEmpty());
+        }
+    }
+
+    /**
+     * überträgt den Zustand in die Properties
+     * - gelesen wird erst im eventExecutor > auch wenn Aufrufe verschiedener Threads sich
+     *   überholen, landet immer der neueste Zustand in den Properties
+     */
+    private void publishState() {
+        eventExecutor.execute(() -> {
+            PlaybackState s = state.get();
+            Track track = s.track();
+            currentTrackValue.set(track);
+            playingValue.set(s.isActive());
+            shuffleValue.set(shuffle);
+            trackLengthValue.set(track != null ? track.getLengthSec() : 0);
+        });
+    }
+
     // Volume Property
     /** Property für Lautstärke (0-100) damit beide Views senselben Wert binden können */
     public DoubleProperty volumePercentProperty() {
@@ -109,457 +277,556 @@ public class MoodPlayer {
         if (v > 100) v = 100;
         volumeValue.set(v);
     }
-    
+
     /** Lautstärke einstellen > wird von Controllern aufgerufen */
     public void volume(double value) {
         setVolumePercent(value); // triggert applyVolumeToAudioPlayer() automatisch
     }
-    
-    /** 
-     * apply-Methode für db Lautstärke > private Hilfsmethode für volume() 
-     * > wendet den aktuellen Volume-Wert auf AudioPlayer an
+
+    /**
+     * apply-Methode für db Lautstärke > private Hilfsmethode für volume()
+     * > gibt den aktuellen Volume-Wert an die Engine weiter (gilt auch für später geladene Tracks)
      */
     private void applyVolumeToAudioPlayer() {
-        double v = getVolumePercent(); // 0..100
+        engine.volume(getVolumePercent());
+    }
 
-        if (audioPlayer == null) {
-            System.out.println("[VOLUME] audioPlayer=null, gespeicherter Wert=" + v);
-            return;
+
+    // Playback
+    /** aktuellen Song abspielen > Engine lädt den Track im Hintergrund */
+    public CompletableFuture<Track> play() {
+        long start = System.nanoTime();
+        PlaybackState s = transition(PlaybackState::play);
+        if (s == null) {
+            LOG.info("Keine Playlist oder leer!");
+            return timed(start, CompletableFuture.completedFuture(null));
         }
+        return timed(start, started(s));
+    }
 
-        // 0 -> -60 dB (sehr leise/stumm), 100 -> 0 dB (normal)
-        double gainDb = -60.0 + (v * 0.60);
+    /** spielt eine einzelne Datei direkt ab > ohne Playlist, das Future liefert dann null */
+    public CompletableFuture<Track> play(String filename) {
+        long start = System.nanoTime();
+        PlaybackState s = transition(st -> st.playFile(filename));
+        CompletableFuture<Track> loaded = awaitLoad(s.playToken, null);
+        engine.discardPreload();
+        setCurrentTime(0);
+        publishState();
+        return timed(start, loaded);
+    }
 
-        System.out.println("[VOLUME] Slider=" + v + " -> gainDb=" + gainDb);
+    /** pausiert die Wiedergabe */
+    public void pause() {
+        // Zeit wird nicht zurückgesetzt
+        if (transition(PlaybackState::pause) != null) publishState();
+    }
 
-        try {
-            audioPlayer.setGain((float) gainDb);
-            System.out.println("[VOLUME] setGain OK");
-        } catch (Exception e) {
-            System.out.println("[VOLUME] setGain FEHLER: " + e.getMessage());
-        }
+    /** setzt die Wiedergabe nach Pause fort, ohne neu zu laden */
+    public void resume() {
+        // nur aus PAUSED, Audio-Thread spielt ab aktueller Position weiter
+        if (transition(PlaybackState::resume) != null) publishState();
+    }
 
-        // optionaler Fallback 
-        try {
-            float lin = (float) (v / 100.0);
-            // falls es setVolume nicht gibt > catch macht nichts kaputt
-            audioPlayer.getClass().getMethod("setVolume", float.class).invoke(audioPlayer, lin);
-            System.out.println("[VOLUME] setVolume OK (Fallback), lin=" + lin);
-        } catch (Exception ignored) {
-            // ignorieren, wenn es die Methode nicht gibt
+    /** Konfort-Methode - Controller müssen nicht raten */
+    public CompletableFuture<Track> playOrResume() {
+        // Fortsetzen und Neustart schließen sich im selben CAS aus
+        PlaybackState s = transition(PlaybackState::resume);
+        if (s != null) {
+            publishState();
+            return CompletableFuture.completedFuture(s.track());
         }
+        return play(); // normaler Start
     }
 
-    
-    // Playback
-    /** aktuellen Song abspielen, lädt den TRack neu, startet Zeit-Thread & Play-Thread */
-    public void play() {
-        if (currentPlaylist == null || currentPlaylist.size() == 0) {
-            System.out.println("Keine Playlist oder leer!");
-            return;
+    /** stoppt die Wiedergabe komplett und setzt Zeit zurück */
+    public void stop() {
+        cancelPending(transition(PlaybackState::stop));
+        engine.discardPreload();
+
+        setCurrentTime(0); // Zeit auf 0 zurücksetzen
+        publishState();
+        LOG.info("Gestoppt - Auto-Play unterbrochen");
+    }
+
+    // Navigation
+    /** nächster Song */
+    public CompletableFuture<Track> skip() {
+        long start = System.nanoTime();
+        PlaybackState s = transition(st -> st.skip(shuffle, repeat));
+        if (s == null) return timed(start, CompletableFuture.completedFuture(null));
+
+        if (s.phase == PlaybackState.Phase.STOPPED) {
+            LOG.info("Ende der Playlist erreicht.");
+            cancelPending(s);
+            engine.discardPreload();
+            setCurrentTime(0);
+            publishState();
+            return timed(start, CompletableFuture.completedFuture(null));
         }
+        return timed(start, started(s));
+    }
 
-        // Index absichern
-        if (currentIndex < 0) currentIndex = 0;
-        if (currentIndex >= currentPlaylist.size()) currentIndex = 0;
+    /** vorheriger Song */
+    public CompletableFuture<Track> skipBack() {
+        long start = System.nanoTime();
+        PlaybackState s = transition(st -> st.skipBack(repeat));
+        return timed(start, s != null ? started(s) : CompletableFuture.completedFuture(null));
+    }
 
-        // neuer Token > alte Threads sollen ignoriert werden
-        int myToken = ++playToken; 
+    /** nach einem gewonnenen Übergang nach LOADING: Anzeige + Vorladen, Future für das Laden */
+    private CompletableFuture<Track> started(PlaybackState s) {
+        LOG.info("Spiele: {}", s.track());
+        CompletableFuture<Track> loaded = awaitLoad(s.playToken, s.track());
+        setCurrentTime(0);
+        publishState();
 
-        Track track = currentPlaylist.getTracks().get(currentIndex);
-        System.out.println("Spiele: " + track);
+        // während der Track läuft, den nächsten schon laden
+        preloadNext(s);
+        return loaded;
+    }
 
-        // vorherigen Player freigeben
-        if (audioPlayer != null) {
-            releasePlayer();
+    /**
+     * Future für das Laden von playToken token
+     * - ersetzt (und bricht ab) das Future eines älteren Starts
+     * - kommt schon ein neuerer Start von einem anderen Thread, ist es sofort abgebrochen
+     */
+    private CompletableFuture<Track> awaitLoad(long token, Track track) {
+        PendingPlay p = new PendingPlay(token, track);
+        PendingPlay before = pendingPlay.getAndAccumulate(p, (a, b) -> a == null || b.token > a.token ? b : a);
+        if (before != null && before.token > token) {
+            p.future.cancel(false);
+            return p.future;
         }
-        
-        audioPlayer = minim.loadMP3File(track.getFilename()); // Track laden
-        applyVolumeToAudioPlayer(); // direkt Volume auf den neu geladenen Player anwenden
- 
-        // wenn möglich Track-Länge bestimmen
-        int lenSec = 0;
-        try {
-            lenSec = Math.max(0, audioPlayer.length() / 1000);
-        } catch (Exception ignored) {}
-
-        track.setLengthSec(lenSec);
-        System.out.println("Track-Länge: " + lenSec + "s für " + track);
-
-        // Status setzen
-        wasStopped = false;
-        isPaused = false;
-        playing = true;
-        setCurrentTime(0);
+        if (before != null) before.future.cancel(false);
 
-        startTimeThread(track.getLengthSec());
+        // Engine war schneller
+        LoadOutcome o = lastOutcome;
+        if (o != null && o.token == token) complete(p, o);
+        return p.future;
+    }
 
-        // Thread bekommt den Token
-        playThread = new PlayThread(myToken);
-        playThread.start();
+    /** Rückmeldung der Engine an das wartende Future weitergeben */
+    private void resolveLoad(LoadOutcome o) {
+        lastOutcome = o;
+        PendingPlay p = pendingPlay.get();
+        if (p != null && p.token == o.token) complete(p, o);
     }
 
-    /** spielt eine einzelne Datei direkt ab > ohne Playlist */
-    public void play(String filename) {
-        if (audioPlayer != null) {
-            releasePlayer();
-        }
-        audioPlayer = minim.loadMP3File(filename);
-        applyVolumeToAudioPlayer();
+    private static void complete(PendingPlay p, LoadOutcome o) {
+        if (o.error != null) p.future.completeExceptionally(o.error);
+        else p.future.complete(p.track);
+    }
 
-        wasStopped = false;
-        isPaused = false;
-        playing = true;
-        setCurrentTime(0);
+    /** nach einem Übergang nach STOPPED: der wartende Start wird nicht mehr geladen */
+    private void cancelPending(PlaybackState stopped) {
+        if (stopped == null) return;
+        PendingPlay p = pendingPlay.get();
+        if (p != null && p.token <= stopped.playToken) p.future.cancel(false);
+    }
 
-        int myToken = ++playToken; // neuen Token erzeugen
-        
-        startTimeThread(0); // 0 = unbekannt, Timer zählt hier nicht sinnvoll mit
-  
-        playThread = new PlayThread(myToken);
-        playThread.start();
+    /** merkt die Dauer eines Aufrufs und gibt result durch */
+    private <T> T timed(long startNanos, T result) {
+        long n = System.nanoTime() - startNanos;
+        lastCallNanos = n;
+        if (n > maxCallNanos) maxCallNanos = n;
+        return result;
     }
 
-    /** pausiert die Wiedergabe */
-    public void pause() {
-        isPaused = true;
-        playing = false;
-        
-        playToken++; // damit nicht doppelte Wiedergabe > alte Threads weg
+    /** Dauer des letzten play/skip/playTrack-Aufrufs in ms (-1 = noch keiner) */
+    public double getLastCallMillis() {
+        long n = lastCallNanos;
+        return n < 0 ? -1 : n / 1_000_000.0;
+    }
 
-        if (audioPlayer != null) {
-            audioPlayer.pause();
-        }
+    /** längster play/skip/playTrack-Aufruf bisher in ms */
+    public double getMaxCallMillis() {
+        return maxCallNanos / 1_000_000.0;
+    }
 
-        stopTimeThread(false); // Zeit-Thread stoppen, Zeit aber nicht resetten
+    // Modi
+    /** Shuffle-Modus an/aus */
+    public void shuffle(boolean on) {
+        if (this.shuffle == on) return;
+        this.shuffle = on;
+        LOG.info("Shuffle: {}", on ? "aktiv" : "aus");
+        replanPreload();
+        publishState();
     }
-    
-    /** setzt die Wiedergabe nach Pause fort, ohne neu zu laden */
-    public void resume() {
-        // nur wenn wir pausiert und Player existiert
-        if (!isPaused || audioPlayer == null) {
-            return;
-        }
 
-        // neuer Token, damit alter Thread veraltet ist
-        int myToken = ++playToken;
+    public boolean isShuffleOn() {
+    	return shuffle;
+    }
 
-        wasStopped = false;
-        isPaused = false;
-        playing = true;
+    /** Repeat-Modus an/aus */
+    public void repeat(boolean on) {
+        if (this.repeat == on) return;
+        this.repeat = on;
+        LOG.info("Repeat: {}", on ? "aktiv" : "aus");
+        replanPreload();
+    }
 
-        // Timer ab aktueller Position weiterlaufen lassen
-        startTimeThread(getCurrentTrackLengthSeconds());
+    /** Gapless-Modus an/aus: nächster Track wird vorab geladen */
+    public void gapless(boolean on) {
+        if (this.gapless == on) return;
+        this.gapless = on;
+        LOG.info("Gapless: {}", on ? "aktiv" : "aus");
+        replanPreload();
+    }
 
-        // neuen PlayThread starten (audioPlayer.play() läuft ab aktueller Position weiter)
-        playThread = new PlayThread(myToken);
-        playThread.start();
+    public boolean isGaplessOn() {
+        return gapless;
     }
-    
-    /** Konfort-Methode - Controller müssen nicht raten */
-    public void playOrResume() {
-        if (isPaused && audioPlayer != null) {
-            resume();
-        } else {
-            play(); // normaler Start 
-        }
+
+    /**
+     * Crossfade in Sekunden (0 = aus, höchstens 12)
+     * - der nächste Track wird dafür immer vorgeladen (auch ohne Gapless) und in der Reihenfolge
+     *   von Shuffle/Repeat gewählt wie beim normalen Auto-Play
+     * - ohne nächsten Track (Ende der Playlist ohne Repeat) läuft der letzte normal aus
+     */
+    public void crossfade(int seconds) {
+        int millis = Math.max(0, Math.min(MP3PlayerEngine.MAX_CROSSFADE_MILLIS / 1000, seconds)) * 1000;
+        if (engine.getCrossfadeMillis() == millis) return;
+        engine.setCrossfadeMillis(millis);
+        LOG.info("Crossfade: {}", millis > 0 ? millis / 1000 + " s" : "aus");
+        replanPreload();
     }
 
-    /** stoppt die Wiedergabe komplett und setzt Zeit zurück */
-    public void stop() {
-        wasStopped = true;
-        isPaused = false;
-        playing = false;
-        playToken++; // damit nicht doppelte Wiedergabe
+    public int getCrossfadeSeconds() {
+        return engine.getCrossfadeMillis() / 1000;
+    }
 
-        if (audioPlayer != null) {
-            releasePlayer();
-        }
+    /** true, wenn der nächste Track vorab gewählt und geladen wird (Gapless oder Crossfade) */
+    private boolean preloading() {
+        return gapless || engine.getCrossfadeMillis() > 0;
+    }
 
-        stopTimeThread(true); // Timer stoppen und auf 0 zurücksetzen
-        System.out.println("Gestoppt - Auto-Play unterbrochen");
+    /** Dauer des letzten automatischen Trackwechsels in ms (-1 = noch keiner) */
+    public double getLastTransitionMillis() {
+        return engine.getLastTransitionMillis();
     }
 
-    // Navigation
-    /** nächster Song */
-    public void skip() {
-        if (currentPlaylist == null) return;
+    /** Zugriff auf die Engine, z.B. für Messwerte (Befehlslatenz, zusammengefasste Loads) */
+    public MP3PlayerEngine getEngine() {
+        return engine;
+    }
 
-        if (shuffle) {
-            currentIndex = (int) (Math.random() * currentPlaylist.size());
-        } else {
-            currentIndex++;
-            if (currentIndex >= currentPlaylist.size()) {
-                if (repeat) {
-                    currentIndex = 0;
-                } else {
-                    System.out.println("Ende der Playlist erreicht.");
-                    stop(); // sicherheitshalber
-                    return;
-                }
-            }
-        }
+    // Gapless / Preload
+    /** plant den nächsten Track und lässt ihn von der Engine im Hintergrund laden */
+    private void preloadNext(PlaybackState s) {
+        if (!preloading()) return;
 
-        wasStopped = false;
-        isPaused = false;
-        play();
+        int next = s.nextIndex(shuffle, repeat);
+        transition(st -> st.planned(s, next));
+        // inzwischen läuft schon ein anderer Track (oder eine andere Playlist) > der plant selbst
+        PlaybackState now = state.get();
+        if (now.playToken != s.playToken || now.playlist != s.playlist) return;
+
+        Track t = s.trackAt(next);
+        if (t == null) {
+            engine.discardPreload();
+            return;
+        }
+        engine.preload(t.getFilename());
     }
 
-    /** vorheriger Song */
-    public void skipBack() {
-        if (currentPlaylist == null) return;
-
-        currentIndex--;
-        if (currentIndex < 0) {
-            if (repeat) {
-                currentIndex = currentPlaylist.size() - 1;
-            } else {
-                currentIndex = 0;
-            }
+    /** Modus hat sich geändert > neu planen, falls gerade gespielt wird */
+    private void replanPreload() {
+        PlaybackState s = state.get();
+        if (s.isActive()) {
+            preloadNext(s);
+        } else {
+            discardPreload();
         }
+    }
 
-        wasStopped = false;
-        isPaused = false;
-        play();
+    private void discardPreload() {
+        transition(st -> st.planned(st, -1));
+        engine.discardPreload();
     }
 
-    // Modi
-    /** Shuffle-Modus an/aus */
-    public void shuffle(boolean on) {
-        this.shuffle = on;
-        System.out.println("Shuffle: " + (on ? "aktiv" : "aus"));
+    /**
+     * Engine meldet reguläres Track-Ende (Audio-Thread; beim Crossfade schon zu Beginn der
+     *   Überblendung aus dem Scheduler-Thread)
+     * > Auto-Play nur, wenn genau dieser Track (playToken) noch läuft, also kein Stop, keine
+     *   Pause und kein Skip dazwischenkam; gleichzeitige Skips verlieren oder gewinnen das CAS
+     * - wie onTrackLoaded/onLoadFailed package-private, damit PlaybackStateStress verspätete
+     *   und doppelte Engine-Meldungen einspielen kann
+     */
+    void onTrackEnded(long token) {
+        boolean plannedNow = preloading();
+        PlaybackState s = transition(st -> {
+            if (st.playToken != token || !st.isActive()) return st;
+            // nächsten Index bestimmen (bei Gapless/Crossfade schon beim Vorladen gewählt)
+            int next = plannedNow && st.plannedNext >= 0 ? st.plannedNext : st.nextIndex(shuffle, repeat);
+            return st.ended(token, next);
+        });
+
+        if (s == null) {
+            LOG.debug("Auto-Play ignoriert (Track gewechselt, pausiert oder gestoppt)");
+            return;
+        }
+        if (s.phase == PlaybackState.Phase.STOPPED) {
+            cancelPending(s);
+            publishState();
+            return;
+        }
+        started(s);
     }
-    
-    public boolean isShuffleOn() {
-    	return shuffle;
+
+    /** Engine hat einen Track geladen > LOADING wird PLAYING, Länge am Track-Objekt nachtragen */
+    void onTrackLoaded(long token, String filename, int lengthMillis) {
+        transition(st -> st.playToken == token ? st.loaded(filename) : st);
+
+        PlaybackState s = state.get();
+        Track current = s.track();
+        if (s.playToken == token && current != null && lengthMillis > 0 && current.getFilename().equals(filename)) {
+            int sec = lengthMillis / 1000;
+            current.setLengthSec(sec);
+            eventExecutor.execute(() -> trackLengthValue.set(sec));
+            LOG.debug("Track-Länge: {}s für {}", sec, current);
+        }
+        resolveLoad(new LoadOutcome(token, null));
     }
 
-    /** Repeat-Modus an/aus */
-    public void repeat(boolean on) {
-        this.repeat = on;
-        System.out.println("Repeat: " + (on ? "aktiv" : "aus"));
+    /** Engine konnte den Track nicht laden > Stop, das Future endet mit dem Fehler */
+    void onLoadFailed(Exception error, long token) {
+        if (transition(st -> st.failed(token)) != null) {
+            engine.discardPreload();
+            setCurrentTime(0);
+            publishState();
+        }
+        resolveLoad(new LoadOutcome(token, error));
     }
 
     // Track/Seek/Time
     /** aktuellen Track für GUI */
     public Track getCurrentTrack() {
-        if (currentPlaylist != null && currentIndex >= 0 && currentIndex < currentPlaylist.size()) {
-            return currentPlaylist.getTracks().get(currentIndex);
-        }
-        return null;
+        return state.get().track();
     }
-    
+
+    /**
+     * Track, der voraussichtlich als nächster kommt (z.B. zum Vorladen des Covers)
+     * - bei Gapless der schon geplante, sonst der nächste in der Reihenfolge
+     * - null bei Shuffle ohne Planung oder am Ende der Playlist
+     */
+    public Track peekNextTrack() {
+        PlaybackState s = state.get();
+        int next = s.plannedNext;
+        if (next < 0 && !shuffle) next = s.nextIndex(false, repeat);
+        return s.trackAt(next);
+    }
+
     /** um die Mood in PlayerView anzeigen zu können */
     public Mood getSelectedMood() {
     	return selectedMood;
     }
-    
+
     /** wird von MoodViewController benutzt */
     public void setSelectedMood (Mood mood) {
         this.selectedMood = mood;
-
-        // später: Playlist neu berechnen
+        setMoodProfile(mood != null ? MoodProfile.of(mood) : null);
     }
-  
-    
-    /** springt im Track auf eine bestimmte Sekunde > für den Zeit-Slider */
-    public void seekToSeconds(int seconds) {
-        if (audioPlayer == null) return;
-
-        // clamp
-        if (seconds < 0) seconds = 0;
 
-        int targetMillis = seconds * 1000;
+    public MoodProfile getMoodProfile() {
+    	return moodProfile;
+    }
 
-        try {
-            // absolute Position setzen (wie Minim AudioPlayer)
-            audioPlayer.cue(targetMillis);
+    /**
+     * setzt eine Mood-Auswahl (auch mehrere Moods mit AND/OR/NOT) und berechnet die Playlist neu
+     * - leeres Profil > zurück zur Bibliothek
+     * - keine passenden Tracks > aktuelle Playlist bleibt
+     * - läuft gerade die Mood-Playlist, wird sie nur um die Änderungen angepasst:
+     *   laufender Track und sein Index bleiben, die View bekommt nur die geänderten Bereiche
+     */
+    public void setMoodProfile(MoodProfile profile) {
+        this.moodProfile = profile;
+        if (libraryPlaylist == null) return;
 
-            // Time-Property sofort synchron
-            setCurrentTime(seconds);
+        if (profile == null || profile.isEmpty()) {
+            switchPlaylist(libraryPlaylist);
             return;
+        }
 
-        } catch (Exception e) {
-            // fallback, falls cue() nicht verfügbar ist
+        if (moodPlaylist != null && state.get().playlist == moodPlaylist) {
+            updateMoodPlaylist(profile);
+            return;
         }
 
-        int currentMillis = audioPlayer.position();
-        int diff = targetMillis - currentMillis;
+        Playlist filtered = getMoodPlaylist();
+        if (filtered.size() == 0) {
+            MOOD_LOG.info("keine Tracks für {}, Playlist bleibt", profile);
+            return;
+        }
+        moodPlaylist = filtered;
+        moodMembers = filtered.idSet();
+        switchPlaylist(filtered);
+    }
 
-        System.out.println("Seek (fallback) zu " + seconds + "s (" + targetMillis
-                + " ms), aktuell " + currentMillis + " ms, diff=" + diff + " ms");
+    /** wendet ein geändertes Profil als Differenz auf die laufende Mood-Playlist an */
+    private void updateMoodPlaylist(MoodProfile profile) {
+        Playlist pl = moodPlaylist;
+        PlaybackState before = state.get();
+        int currentId = idAt(pl, before.index);
+        int plannedId = idAt(pl, before.plannedNext);
 
-        audioPlayer.skip(diff);
-        setCurrentTime(seconds);
+        CompressedBitSet members = moodFilter.update(pl, moodMembers, libraryPlaylist, profile, currentId);
+        if (members == null) {
+            MOOD_LOG.info("keine Tracks für {}, Playlist bleibt", profile);
+            return;
+        }
+        moodMembers = members;
+        remap(pl, before, currentId, plannedId);
     }
 
-    /** Timer-Thread für currentTime */
-    private void startTimeThread(int lengthSec) {
-        stopTimeThread(false);
+    /**
+     * verändert eine Playlist an Ort und Stelle (z.B. LibraryWatcher) und hält den Zustand dabei gültig
+     * - läuft sie gerade, werden laufender und geplanter Track danach über ihre IDs wiedergefunden
+     * - ist der laufende Track entfernt worden, bleibt der Index an seiner Stelle (auf die neue Länge begrenzt)
+     * - im selben Thread aufrufen, in dem die Playlist sonst verändert wird
+     */
+    public void editPlaylist(Playlist pl, Runnable edit) {
+        PlaybackState before = state.get();
+        if (before.playlist != pl) {
+            edit.run();
+            return;
+        }
+        int currentId = idAt(pl, before.index);
+        int plannedId = idAt(pl, before.plannedNext);
+        edit.run();
+        remap(pl, before, currentId, plannedId);
+    }
 
-        timeThread = new Thread(() -> {
-            // Timer startet ab aktueller Audio-Position
-            int t = 0;
-            if (audioPlayer != null) {
-                try {
-                    t = Math.max(0, audioPlayer.position() / 1000);
-                } catch (Exception ignored) {}
-            }
+    private static int idAt(Playlist pl, int index) {
+        return index >= 0 && index < pl.size() ? pl.getId(index) : -1;
+    }
 
-            while (!Thread.currentThread().isInterrupted()
-                    && playing
-                    && !wasStopped
-                    && !isPaused
-                    && (lengthSec <= 0 || t <= lengthSec)) {
+    /** Positionen haben sich verschoben > Indizes über die IDs wiederfinden */
+    private void remap(Playlist pl, PlaybackState before, int currentId, int plannedId) {
+        int newIndex = currentId >= 0 ? pl.indexOfId(currentId) : -1;
+        if (newIndex < 0) newIndex = Math.max(0, Math.min(before.index, pl.size() - 1));
+        int plannedNow = plannedId >= 0 ? pl.indexOfId(plannedId) : -1;
+        boolean stillNext = plannedNow >= 0 && (shuffle || plannedNow == newIndex + 1);
 
-                setCurrentTime(t);
-                try { Thread.sleep(1000); } catch (InterruptedException e) { break; }
-                t++;
-            }
-        });
+        // nur, wenn inzwischen niemand weitergeschaltet hat (sonst gilt dessen Index schon)
+        int remappedIndex = newIndex;
+        int remappedPlanned = stillNext ? plannedNow : -1;
+        transition(st -> st.playlist == pl && st.playToken == before.playToken && st.index == before.index
+                ? st.remapped(remappedIndex, remappedPlanned) : st);
 
-        timeThread.setDaemon(true);
-        timeThread.start();
+        if (plannedId >= 0 && !stillNext) replanPreload();
     }
 
-    private void stopTimeThread(boolean resetTime) {
-        if (timeThread != null && timeThread.isAlive()) {
-            timeThread.interrupt();
-        }
-        timeThread = null;
-        if (resetTime) {
-            setCurrentTime(0);
+    /**
+     * erzeugt eine nach Abstand sortierte Playlist aus den Tracks, deren Mood-Vektor
+     * dem Punkt (valence, energy) am nächsten liegt, und spielt sie ab
+     * - false, wenn kein Track der Bibliothek einen Vektor hat (Playlist bleibt)
+     */
+    public boolean setMoodPoint(double valence, double energy) {
+        Playlist lib = libraryPlaylist;
+        if (lib == null) return false;
+
+        if (moodSpace == null || moodSpace.getStore() != lib.getStore()) {
+            moodSpace = new MoodSpaceIndex(lib.getStore());
         }
-    }
 
-    /** 
-     * Thread, der blockierendes audioPlayer.play() ausführt
-     * danach wird Auto-Play gemacht (nächster Track), solange nicht Stop/Pause dazwischenkam
-     */
-    private class PlayThread extends Thread {
-        private final int token;
+        long start = System.nanoTime();
+        int[] ids = moodSpace.nearest(valence, energy, MOOD_PLAYLIST_SIZE, id -> lib.indexOfId(id) >= 0);
+        long us = (System.nanoTime() - start) / 1000;
 
-        public PlayThread(int token) {
-            this.token = token;
+        if (ids.length == 0) {
+            MOOD_LOG.info("keine Tracks mit Valence/Energy, Playlist bleibt");
+            return false;
         }
 
-        @Override
-        public void run() {
-            if (audioPlayer != null) {
-                audioPlayer.play(); // blockiert bis Ende
-
-                System.out.println("Song zu Ende: " + getCurrentTrack());
-
-                // wenn inzwischen eine neue Wiedergabe gestartet wurde > ignorieren
-                if (token != playToken) {
-                    System.out.println("→ Thread ignoriert (Token veraltet)");
-                    return;
-                }
-
-                if (wasStopped) {
-                    System.out.println("→ Auto-Play NICHT gestartet (Stop)");
-                    return;
-                }
-                if (isPaused) {
-                    System.out.println("→ Auto-Play NICHT gestartet (Pause)");
-                    return;
-                }
-
-                // Auto-Play: nächsten Index bestimmen
-                int nextIndex;
-                if (shuffle) {
-                    nextIndex = (int) (Math.random() * currentPlaylist.size());
-                } else {
-                    nextIndex = currentIndex + 1;
-                    if (nextIndex >= currentPlaylist.size()) {
-                        if (repeat) nextIndex = 0;
-                        else return;
-                    }
-                }
-
-                currentIndex = nextIndex;
-
-                // nur weitermachen (Auto-Play) wenn Token aktuell
-                if (token == playToken) {
-                    play();
-                }
-            }
+        Playlist ranked = new Playlist(String.format("Mood %.2f / %.2f", valence, energy), lib.getStore());
+        for (int id : ids) {
+            ranked.addId(id);
         }
+        MOOD_LOG.info(() -> ids.length + " nächste Tracks zu (" + valence + ", " + energy + ") in " + us + " µs");
+        switchPlaylist(ranked);
+        return true;
+    }
+
+    /** filtert die Bibliothek nach dem aktuellen Mood-Profil */
+    public Playlist getMoodPlaylist() {
+        if (libraryPlaylist == null) return null;
+        return moodFilter.filter(libraryPlaylist, moodProfile);
     }
-    
+
+    /** Zuordnung Track -> Mood */
+    public TagManager getTagManager() {
+    	return tagManager;
+    }
+
+
+    /** springt im Track auf eine bestimmte Sekunde > für den Zeit-Slider */
+    public void seekToSeconds(int seconds) {
+        if (!engine.hasTrack()) return;
+
+        // clamp
+        if (seconds < 0) seconds = 0;
+
+        engine.seek(seconds * 1000);
+
+        // Time-Property sofort synchron
+        setCurrentTime(seconds);
+    }
+
     /** gibt die aktuelle Position des Players in Sekunden zurück */
     public int getCurrentPositionSeconds() {
-        if (audioPlayer != null) {
-            return audioPlayer.position() / 1000; // position() ist in Millisekunden
-        }
-        return 0;
+        return engine.positionMillis() / 1000; // position() ist in Millisekunden
     }
 
     /** Länge des aktuellen Tracks in Sekunden (für Slider-Max) */
     public int getCurrentTrackLengthSeconds() {
-        if (audioPlayer != null) {
-            return audioPlayer.length() / 1000;
+        int ms = engine.lengthMillis();
+        if (ms > 0) {
+            return ms / 1000;
         }
         // fallback: aus Track-Objekten
-        if (currentPlaylist != null && currentIndex >= 0 && currentIndex < currentPlaylist.size()) {
-            int len = currentPlaylist.getTracks().get(currentIndex).getLengthSec();
-            if (len > 0) return len;
+        Track t = getCurrentTrack();
+        if (t != null && t.getLengthSec() > 0) {
+            return t.getLengthSec();
         }
         return 0;
     }
-    
+
+    /** true, solange gespielt wird oder der Track dafür gerade lädt */
     public boolean isPlaying() {
-        return playing && !isPaused && !wasStopped;
+        return state.get().isActive();
     }
-    
+
     /** bestimmten Track aus der aktuellen Playlist abspielen, z.B. durch Klick */
-    public void playTrack(Track track) {
-        if (currentPlaylist == null || track == null) {
-            System.out.println("Keine Playlist oder Track ist null");
-            return;
+    public CompletableFuture<Track> playTrack(Track track) {
+        if (track == null) {
+            LOG.info("Keine Playlist oder Track ist null");
+            return CompletableFuture.completedFuture(null);
         }
 
-        int index = currentPlaylist.getTracks().indexOf(track);
-        if (index < 0) {
-            System.out.println("Track nicht in aktueller Playlist gefunden");
-            return;
+        long start = System.nanoTime();
+        PlaybackState s = transition(st -> {
+            int index = st.playlist != null ? st.playlist.indexOf(track) : -1;
+            return index >= 0 ? st.load(index) : st;
+        });
+        if (s == null) {
+            LOG.info("Track nicht in aktueller Playlist gefunden");
+            return timed(start, CompletableFuture.completedFuture(null));
         }
-
-        // aktuellen Index setzen
-        currentIndex = index;
-
-        // Flags für Auto-Play richtig setzen
-        wasStopped = false;
-        isPaused = false;
-
-        System.out.println("Spiele Track aus Playlist: " + track);
-
-        // normalen Play-Mechanismus benutzen
-        play();
+        return timed(start, started(s));
     }
-    
+
     /**
-     * wenn neues Lied gewählt wird > immer erst stop()
-     * currentIndex wird auf geklickten Eintrag gesetzt
-     * danach startet genau ein PlayThread + AudioPlayer
+     * spielt den Eintrag an index der aktuellen Playlist
+     * > ersetzt die laufende Wiedergabe in einem einzigen Übergang, die Engine lädt genau einen Track
      */
-    public void playTrackAtIndex(int index) {
-        if (currentPlaylist == null || currentPlaylist.size() == 0) {
-            System.out.println("Keine Playlist gesetzt.");
-            return;
-        }
-
-        if (index < 0 || index >= currentPlaylist.size()) {
-            System.out.println("Index außerhalb der Playlist: " + index);
-            return;
+    public CompletableFuture<Track> playTrackAtIndex(int index) {
+        long start = System.nanoTime();
+        PlaybackState s = transition(st -> st.load(index));
+        if (s == null) {
+            LOG.info("Keine Playlist oder Index außerhalb: {}", index);
+            return timed(start, CompletableFuture.completedFuture(null));
         }
-
-        // beendet laufende Wiedergabe 
-        stop();  // setzt wasStopped=true, pausiert aktuellen Player
-
-        currentIndex = index;
-        play();  // nutzt deine bestehende play()-Logik mit Auto-Play
+        return timed(start, started(s));
     }
-    
+
 }
-    
@@ -1,6 +1,7 @@
 package de.hsrm.mi.enia.moodplayer.presentation;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 import javafx.scene.layout.Pane;
@@ -8,8 +9,10 @@ import javafx.scene.layout.Pane;
 import java.util.HashMap;
 import java.util.Map;
 
+import de.hsrm.mi.enia.moodplayer.business.Log;
 import de.hsrm.mi.enia.moodplayer.business.MoodPlayer;
 import de.hsrm.mi.enia.moodplayer.business.Playlist;
+import de.hsrm.mi.enia.moodplayer.business.SeekIndexCache;
 import de.hsrm.mi.enia.moodplayer.presentation.views.PlayerViewController;
 import de.hsrm.mi.enia.moodplayer.presentation.views.PlaylistViewController;
 import de.hsrm.mi.enia.moodplayer.presentation.views.MoodViewController;
@@ -25,6 +28,7 @@ import de.hsrm.mi.enia.moodplayer.presentation.views.StartViewController;
  */
 
 public class MoodPlayerGUI extends Application {
+    private static final Log LOG = Log.get("App");
     
     // View-Switching System
     private static Stage stage;
@@ -45,19 +49,21 @@ public class MoodPlayerGUI extends Application {
     /** wird vor start() aufgerufen & initialisiert Business-Logik und View-Map */
     @Override
     public void init() {
-        System.out.println("[App] Initialisierung...");
+        LOG.info("Initialisierung...");
         
         // View-Map initialisieren
         views = new HashMap<>();
 
         // Business-Logik initialisieren
         player = new MoodPlayer();
+        // Zustands-Properties immer im FX-Thread aktualisieren
+        player.setEventExecutor(Platform::runLater);
         playlist = new Playlist("Meine Playlist");
         
         // Playlist an Player übergeben
         player.setPlaylist(playlist);
         
-        System.out.println("[App] Business-Logik initialisiert");
+        LOG.info("Business-Logik initialisiert");
     }
     
     /** Startpunkt der JavaFX-GUI > baut Scene, Views & Stage zusammen */
@@ -65,7 +71,7 @@ public class MoodPlayerGUI extends Application {
     public void start(Stage primaryStage) throws Exception {
         stage = primaryStage;
         
-        System.out.println("[App] Starte GUI...");
+        LOG.info("Starte GUI...");
         
         // StartView erstellen
         startViewController = new StartViewController();
@@ -83,7 +89,7 @@ public class MoodPlayerGUI extends Application {
         views.put("playlistView", playlistView);
         
         // MoodView erstellen
-        moodViewController = new MoodViewController();
+        moodViewController = new MoodViewController(player);
         Pane moodView = moodViewController.getRoot();
         views.put("moodView", moodView);
         
@@ -94,9 +100,9 @@ public class MoodPlayerGUI extends Application {
         var cssUrl = getClass().getResource("/style.css");
         if (cssUrl != null) {
             scene.getStylesheets().add(cssUrl.toExternalForm());
-            System.out.println("[App] CSS geladen: " + cssUrl);
+            LOG.info("CSS geladen: {}", cssUrl);
         } else {
-            System.out.println("[App] CSS NICHT gefunden!");
+            LOG.warn("CSS NICHT gefunden!");
         }
 
         // Stage konfigurieren
@@ -110,13 +116,13 @@ public class MoodPlayerGUI extends Application {
         
         primaryStage.show();
         
-        System.out.println("[App] GUI gestartet - Zeige Player-View");
+        LOG.info("GUI gestartet - Zeige Player-View");
     }
     
     /** stoppt Anwednung */
     @Override
     public void stop() {
-        System.out.println("[App] Anwendung wird beendet...");
+        LOG.info("Anwendung wird beendet...");
         cleanup();
     }
     
@@ -124,9 +130,12 @@ public class MoodPlayerGUI extends Application {
     private void cleanup() {
         if (player != null) {
             player.stop();
-            System.out.println("[App] Player gestoppt");
+            LOG.info("Player gestoppt");
         }
-        System.out.println("[App] Ressourcen freigegeben");
+        // geänderte Seek-Tabellen (z.B. entfernte Einträge) für den nächsten Start behalten
+        SeekIndexCache.getDefault().save();
+        LOG.info("Ressourcen freigegeben");
+        Log.flush();
     }
 
     /** ermöglicht das Umschalten zwischen Views > wird von Controllern genutzt */
@@ -136,9 +145,9 @@ public class MoodPlayerGUI extends Application {
         
         if (nextRoot != null) {
             scene.setRoot(nextRoot);
-            System.out.println("[App] View gewechselt zu: " + viewName);
+            LOG.debug("View gewechselt zu: {}", viewName);
         } else {
-            System.err.println("[App] View nicht gefunden: " + viewName);
+            LOG.warn("View nicht gefunden: {}", viewName);
         }
     }
     
@@ -1,7 +1,106 @@
 package de.hsrm.mi.enia.moodplayer.business;
 
-//speichert aktuelle Auswahl (eine/mehrere Moods)
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 
-public class MoodProfile {
+/**
+ * speichert aktuelle Auswahl (eine/mehrere Moods)
+ * - allOf: Track muss jede dieser Moods haben (AND)
+ * - anyOf: Track muss mindestens eine dieser Moods haben (OR)
+ * - noneOf: Track darf keine dieser Moods haben (NOT)
+ * - unveränderlich, and/or/not liefern ein neues Profil
+ */
 
+public final class MoodProfile {
+	private final Set<Mood> allOf;
+	private final Set<Mood> anyOf;
+	private final Set<Mood> noneOf;
+
+	private MoodProfile(Set<Mood> allOf, Set<Mood> anyOf, Set<Mood> noneOf) {
+		this.allOf = allOf;
+		this.anyOf = anyOf;
+		this.noneOf = noneOf;
+	}
+
+	/** eine oder mehrere Moods, von denen mindestens eine passen muss */
+	public static MoodProfile of(Mood... moods) {
+		return new MoodProfile(EnumSet.noneOf(Mood.class), setOf(moods), EnumSet.noneOf(Mood.class));
+	}
+
+	/** Moods, die alle passen müssen */
+	public static MoodProfile allOf(Mood... moods) {
+		return new MoodProfile(setOf(moods), EnumSet.noneOf(Mood.class), EnumSet.noneOf(Mood.class));
+	}
+
+	public MoodProfile and(Mood mood) {
+		Set<Mood> all = copy(allOf);
+		all.add(mood);
+		return new MoodProfile(all, copy(anyOf), copy(noneOf));
+	}
+
+	public MoodProfile or(Mood mood) {
+		Set<Mood> any = copy(anyOf);
+		any.add(mood);
+		return new MoodProfile(copy(allOf), any, copy(noneOf));
+	}
+
+	public MoodProfile not(Mood mood) {
+		Set<Mood> none = copy(noneOf);
+		none.add(mood);
+		return new MoodProfile(copy(allOf), copy(anyOf), none);
+	}
+
+	public Set<Mood> getAllOf() {
+		return Collections.unmodifiableSet(allOf);
+	}
+
+	public Set<Mood> getAnyOf() {
+		return Collections.unmodifiableSet(anyOf);
+	}
+
+	public Set<Mood> getNoneOf() {
+		return Collections.unmodifiableSet(noneOf);
+	}
+
+	/** true, wenn das Profil nichts einschränkt */
+	public boolean isEmpty() {
+		return allOf.isEmpty() && anyOf.isEmpty() && noneOf.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		if (!allOf.isEmpty()) sb.append(join(allOf, " + "));
+		if (!anyOf.isEmpty()) {
+			if (sb.length() > 0) sb.append(" + ");
+			sb.append(anyOf.size() > 1 ? "(" + join(anyOf, " | ") + ")" : join(anyOf, ""));
+		}
+		for (Mood m : noneOf) {
+			if (sb.length() > 0) sb.append(' ');
+			sb.append("ohne ").append(m);
+		}
+		return sb.length() > 0 ? sb.toString() : "alle";
+	}
+
+	private static String join(Set<Mood> moods, String sep) {
+		StringBuilder sb = new StringBuilder();
+		for (Mood m : moods) {
+			if (sb.length() > 0) sb.append(sep);
+			sb.append(m);
+		}
+		return sb.toString();
+	}
+
+	private static Set<Mood> setOf(Mood... moods) {
+		Set<Mood> s = EnumSet.noneOf(Mood.class);
+		for (Mood m : moods) {
+			if (m != null) s.add(m);
+		}
+		return s;
+	}
+
+	private static Set<Mood> copy(Set<Mood> s) {
+		return s.isEmpty() ? EnumSet.noneOf(Mood.class) : EnumSet.copyOf(s);
+	}
 }
@@ -0,0 +1,206 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * räumlicher Index über die Mood-Vektoren (Valence/Energy) eines TrackStores
+ * - gleichmäßiges Gitter GRID x GRID über [-1, 1]², Punkte zellenweise sortiert in flachen Arrays
+ * - nearest() durchsucht Zellen ringförmig um den Anfragepunkt und bricht ab, sobald kein
+ *   weiter entfernter Ring mehr etwas Näheres enthalten kann
+ * - wird automatisch neu aufgebaut, wenn sich Vektoren im Store geändert haben
+ * - Tracks ohne Vektor (NaN) sind nicht im Index
+ */
+
+public class MoodSpaceIndex {
+	private static final Log LOG = Log.get("MoodSpace");
+
+	private static final int GRID = 64;
+
+	private final TrackStore store;
+	private int builtVersion = -1;
+	private int builtSize = -1;
+
+	// cellStart[c] .. cellStart[c + 1] = Punkte in Zelle c
+	private int[] cellStart = new int[GRID * GRID + 1];
+	private int[] ids = new int[0];
+	private float[] xs = new float[0];
+	private float[] ys = new float[0];
+
+	public MoodSpaceIndex(TrackStore store) {
+		this.store = store;
+	}
+
+	public TrackStore getStore() {
+		return store;
+	}
+
+	/** Anzahl Tracks mit Vektor */
+	public synchronized int size() {
+		ensureBuilt();
+		return ids.length;
+	}
+
+	/**
+	 * die n Tracks, die dem Punkt (valence, energy) am nächsten liegen, aufsteigend nach Abstand
+	 * - accept filtert Kandidaten (z.B. nur Tracks der aktuellen Bibliothek), null = alle
+	 */
+	public synchronized int[] nearest(double valence, double energy, int n, IntPredicate accept) {
+		ensureBuilt();
+		if (n <= 0 || ids.length == 0) return new int[0];
+
+		// Max-Heap der bisher besten Treffer (Wurzel = schlechtester)
+		float[] heapDist = new float[n];
+		int[] heapId = new int[n];
+		int count = 0;
+
+		int qx = cell(valence);
+		int qy = cell(energy);
+
+		for (int r = 0; r < GRID; r++) {
+			int x0 = qx - r, x1 = qx + r, y0 = qy - r, y1 = qy + r;
+
+			for (int cy = Math.max(0, y0); cy <= Math.min(GRID - 1, y1); cy++) {
+				boolean edgeRow = cy == y0 || cy == y1;
+				int step = edgeRow ? 1 : Math.max(1, x1 - x0);
+				for (int cx = x0; cx <= x1; cx += step) {
+					if (cx < 0 || cx >= GRID) continue;
+
+					int c = cy * GRID + cx;
+					for (int p = cellStart[c]; p < cellStart[c + 1]; p++) {
+						int id = ids[p];
+						if (accept != null && !accept.test(id)) continue;
+
+						float dx = (float) (xs[p] - valence);
+						float dy = (float) (ys[p] - energy);
+						float d = dx * dx + dy * dy;
+
+						if (count < n) {
+							heapId[count] = id;
+							heapDist[count] = d;
+							siftUp(heapDist, heapId, count++);
+						} else if (d < heapDist[0]) {
+							heapId[0] = id;
+							heapDist[0] = d;
+							siftDown(heapDist, heapId, count);
+						}
+					}
+				}
+			}
+
+			// Abbruch: nächster Ring liegt mindestens "reach" vom Punkt entfernt
+			if (count == n) {
+				double reach = reachOutside(valence, energy, x0, x1, y0, y1);
+				if (reach * reach >= heapDist[0]) break;
+			}
+		}
+
+		// Heap aufsteigend sortiert ausgeben
+		int[] result = new int[count];
+		for (int i = count - 1; i >= 0; i--) {
+			result[i] = heapId[0];
+			heapId[0] = heapId[i];
+			heapDist[0] = heapDist[i];
+			siftDown(heapDist, heapId, i);
+		}
+		return result;
+	}
+
+	/** baut den Index neu auf, falls der Store seit dem letzten Aufbau neue Vektoren hat */
+	private void ensureBuilt() {
+		int version = store.getVectorVersion();
+		int size = store.size();
+		if (version == builtVersion && size == builtSize) return;
+
+		long start = System.nanoTime();
+		float[][] cols = store.copyVectors();
+		float[] v = cols[0], e = cols[1];
+
+		int[] cellOf = new int[v.length];
+		int[] counts = new int[GRID * GRID + 1];
+		int total = 0;
+		for (int id = 0; id < v.length; id++) {
+			if (Float.isNaN(v[id]) || Float.isNaN(e[id])) {
+				cellOf[id] = -1;
+				continue;
+			}
+			int c = cell(e[id]) * GRID + cell(v[id]);
+			cellOf[id] = c;
+			counts[c + 1]++;
+			total++;
+		}
+		for (int c = 0; c < GRID * GRID; c++) counts[c + 1] += counts[c];
+
+		int[] nextSlot = Arrays.copyOf(counts, counts.length);
+		int[] newIds = new int[total];
+		float[] newXs = new float[total];
+		float[] newYs = new float[total];
+		for (int id = 0; id < v.length; id++) {
+			int c = cellOf[id];
+			if (c < 0) continue;
+			int slot = nextSlot[c]++;
+			newIds[slot] = id;
+			newXs[slot] = v[id];
+			newYs[slot] = e[id];
+		}
+
+		cellStart = counts;
+		ids = newIds;
+		xs = newXs;
+		ys = newYs;
+		builtVersion = version;
+		builtSize = size;
+
+		long ms = (System.nanoTime() - start) / 1_000_000;
+		LOG.info("Index aufgebaut: {} Tracks mit Vektor in {} ms", total, ms);
+	}
+
+	private static int cell(double value) {
+		int c = (int) ((value + 1.0) * 0.5 * GRID);
+		return Math.max(0, Math.min(GRID - 1, c));
+	}
+
+	/**
+	 * kleinster Abstand vom Punkt zu allem außerhalb des Zellblocks [x0..x1] x [y0..y1]
+	 * - Seiten am Gitterrand zählen nicht, liegt der Block überall am Rand > unendlich
+	 */
+	private static double reachOutside(double px, double py, int x0, int x1, int y0, int y1) {
+		double cellSize = 2.0 / GRID;
+		double reach = Double.POSITIVE_INFINITY;
+		if (x0 > 0) reach = Math.min(reach, px - (-1.0 + x0 * cellSize));
+		if (x1 < GRID - 1) reach = Math.min(reach, (-1.0 + (x1 + 1) * cellSize) - px);
+		if (y0 > 0) reach = Math.min(reach, py - (-1.0 + y0 * cellSize));
+		if (y1 < GRID - 1) reach = Math.min(reach, (-1.0 + (y1 + 1) * cellSize) - py);
+		return Math.max(0, reach);
+	}
+
+	private static void siftUp(float[] dist, int[] id, int i) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (dist[parent] >= dist[i]) return;
+			swap(dist, id, parent, i);
+			i = parent;
+		}
+	}
+
+	private static void siftDown(float[] dist, int[] id, int size) {
+		int i = 0;
+		while (true) {
+			int l = 2 * i + 1, r = l + 1, max = i;
+			if (l < size && dist[l] > dist[max]) max = l;
+			if (r < size && dist[r] > dist[max]) max = r;
+			if (max == i) return;
+			swap(dist, id, i, max);
+			i = max;
+		}
+	}
+
+	private static void swap(float[] dist, int[] id, int a, int b) {
+		float d = dist[a];
+		dist[a] = dist[b];
+		dist[b] = d;
+		int t = id[a];
+		id[a] = id[b];
+		id[b] = t;
+	}
+}
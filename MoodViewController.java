@@ -1,10 +1,17 @@
 package de.hsrm.mi.enia.moodplayer.presentation.views;
 
+import de.hsrm.mi.enia.moodplayer.business.Log;
+import de.hsrm.mi.enia.moodplayer.business.Mood;
+import de.hsrm.mi.enia.moodplayer.business.MoodPlayer;
 import de.hsrm.mi.enia.moodplayer.presentation.MoodPlayerGUI;
 
 public class MoodViewController extends BaseController<MoodView> {
+    private static final Log LOG = Log.get("Mood");
 
-    public MoodViewController() {
+    private final MoodPlayer player;
+
+    public MoodViewController(MoodPlayer player) {
+        this.player = player;
         root = new MoodView();
         initialize();
     }
@@ -22,12 +29,16 @@ public class MoodViewController extends BaseController<MoodView> {
 
 	    root.confirmMoodButton.setOnAction(e -> {
 	    	var selected = root.moodWheel.getSelectedMood();
-	    	System.out.println("[Mood] bestätigt: " + selected);
+	    	LOG.info("bestätigt: {}", selected);
+	    	// Klickpunkt > nächstgelegene Tracks, ohne Vektoren: Wheel-Mood > Business-Mood (gleiche Namen)
+	    	boolean ranked = root.moodWheel.hasSelectedPoint()
+	    			&& player.setMoodPoint(root.moodWheel.getSelectedValence(), root.moodWheel.getSelectedEnergy());
+	    	if (!ranked) {
+	    		player.setSelectedMood(selected == null ? null : Mood.valueOf(selected.name()));
+	    	}
 	    	MoodPlayerGUI.switchRoot("playerView");
 	    });
 
-        // später: player.setMood(selected) / filter setzen
-        // fürs erste: z.B. zurück zum Player
     	root.toPlayerButton.setOnAction(e -> MoodPlayerGUI.switchRoot("playerView"));
         root.toPlaylistButton.setOnAction(e -> MoodPlayerGUI.switchRoot("playlistView"));
         root.toStartButton.setOnAction(e -> MoodPlayerGUI.switchRoot("startView"));
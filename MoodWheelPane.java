@@ -10,11 +10,14 @@ import javafx.scene.text.Text;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 /**
  * eigenes JavaFX-UI-Element
  * zeigt vereinfachtes Mood Wheel und wertet Maus-Interaktion aus
+ * - Klickpunkt wird zusätzlich als Koordinate gemeldet:
+ *   Valence = horizontal (-1 links .. 1 rechts), Energy = vertikal (-1 unten .. 1 oben)
  */
 
 public class MoodWheelPane extends Pane {
@@ -37,6 +40,10 @@ public class MoodWheelPane extends Pane {
 
     private Consumer<Mood> onHoverChanged; // Callback, der aufgerufen wird, wenn sich Hover-Mood ändert
     private Consumer<Mood> onSelectedChanged; // Callback, der aufgerufen wird, wenn sich Auswahl ändert
+    private BiConsumer<Double, Double> onPointSelected; // Callback mit (Valence, Energy) des Klickpunkts
+
+    private double selectedValence = Double.NaN; // Koordinate des letzten Klicks im Wheel
+    private double selectedEnergy = Double.NaN;
 
     // Wheel Geometrie: Mittelpunkt (cx, cy) und Radius
     private double cx = 200;
@@ -71,7 +78,10 @@ public class MoodWheelPane extends Pane {
         addEventHandler(MouseEvent.MOUSE_EXITED, e -> setHovered(null)); // Hover löschen
         addEventHandler(MouseEvent.MOUSE_CLICKED, e -> {
         	// Klick übernimmt die zuletzt gehoverte Mood als feste Auswahl
-            if (hoveredMood != null) setSelected(hoveredMood);
+            if (hoveredMood != null) {
+            	setSelectedPoint(e.getX(), e.getY());
+            	setSelected(hoveredMood);
+            }
         });
     }
 
@@ -162,6 +172,21 @@ public class MoodWheelPane extends Pane {
         if (onSelectedChanged != null) onSelectedChanged.accept(selectedMood);
     }
 
+    /** rechnet den Klickpunkt in (Valence, Energy) um, beide im Bereich -1..1 */
+    private void setSelectedPoint(double mx, double my) {
+        double v = (mx - cx) / radius;
+        double en = (cy - my) / radius; // Bildschirm-y zeigt nach unten
+        double len = Math.sqrt(v * v + en * en);
+        if (len > 1) {
+            v /= len;
+            en /= len;
+        }
+        selectedValence = v;
+        selectedEnergy = en;
+
+        if (onPointSelected != null) onPointSelected.accept(v, en);
+    }
+
     /** aktualisiert die Optik aller Segmente abhängig von Hover/Selektion */
     private void updateStyles() {
         // Reset
@@ -205,4 +230,22 @@ public class MoodWheelPane extends Pane {
     public void setOnSelectedChanged(Consumer<Mood> cb) {
         this.onSelectedChanged = cb;
     }
+
+    /** registriert Callback mit der Klick-Koordinate (Valence, Energy) */
+    public void setOnPointSelected(BiConsumer<Double, Double> cb) {
+        this.onPointSelected = cb;
+    }
+
+    /** true, wenn schon eine Koordinate gewählt wurde */
+    public boolean hasSelectedPoint() {
+        return !Double.isNaN(selectedValence);
+    }
+
+    public double getSelectedValence() {
+        return selectedValence;
+    }
+
+    public double getSelectedEnergy() {
+        return selectedEnergy;
+    }
 }
\ No newline at end of file
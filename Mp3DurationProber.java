@@ -0,0 +1,166 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * bestimmt die Länge einer MP3-Datei nur aus den Headern, ohne Decoder
+ * - überspringt ID3v2, sucht den ersten Frame in einem kleinen memory-mapped Ausschnitt
+ * - nutzt Xing/Info (LAME) bzw. VBRI-Header, sonst CBR-Schätzung über Dateigröße
+ * - nur wenn die ersten Frames unterschiedliche Bitraten haben (VBR ohne Header),
+ *   werden alle Frames gezählt
+ */
+
+public final class Mp3DurationProber {
+
+	// so viel wird ab Audiobeginn gemappt, um Sync + Xing/VBRI zu finden
+	private static final int PROBE_WINDOW = 64 * 1024;
+	// so viele Frames werden auf gleichbleibende Bitrate geprüft
+	private static final int CBR_CHECK_FRAMES = 8;
+
+	private Mp3DurationProber() {}
+
+	/** Länge in Sekunden (gerundet), 0 wenn nicht bestimmbar */
+	public static int probeSeconds(File mp3File) {
+		long ms = probeMillis(mp3File);
+		return ms > 0 ? (int) Math.round(ms / 1000.0) : 0;
+	}
+
+	/** Länge in Millisekunden, -1 wenn nicht bestimmbar */
+	public static long probeMillis(File mp3File) {
+		try (FileChannel ch = FileChannel.open(mp3File.toPath(), StandardOpenOption.READ)) {
+			long fileSize = ch.size();
+			long audioStart = skipId3v2(ch);
+			long audioEnd = fileSize - (hasId3v1(ch) ? 128 : 0);
+			if (audioStart >= audioEnd) return -1;
+
+			int window = (int) Math.min(PROBE_WINDOW, audioEnd - audioStart);
+			MappedByteBuffer head = ch.map(FileChannel.MapMode.READ_ONLY, audioStart, window);
+
+			int first = findFirstFrame(head);
+			if (first < 0) return -1;
+			MpegFrameHeader h = MpegFrameHeader.parse(head, first);
+
+			// 1) Xing / Info (LAME)
+			long frames = readXingFrames(head, first, h);
+			// 2) VBRI (Fraunhofer)
+			if (frames <= 0) frames = readVbriFrames(head, first);
+			if (frames > 0) {
+				return Math.round(frames * h.frameMillis());
+			}
+
+			long audioBytes = audioEnd - (audioStart + first);
+
+			// 3) CBR-Schätzung, falls die ersten Frames dieselbe Bitrate haben
+			if (looksConstantBitrate(head, first, h)) {
+				return audioBytes * 8 / h.bitrateKbps;
+			}
+
+			// 4) VBR ohne Header > Frames zählen
+			return scanFrames(ch, audioStart + first, audioEnd);
+
+		} catch (IOException | RuntimeException e) {
+			return -1;
+		}
+	}
+
+	/** liefert die Position hinter einem evtl. vorhandenen ID3v2-Tag (sonst 0) */
+	public static long skipId3v2(FileChannel ch) throws IOException {
+		ByteBuffer hdr = ByteBuffer.allocate(10);
+		ch.read(hdr, 0);
+		if (hdr.position() < 10) return 0;
+
+		if (hdr.get(0) != 'I' || hdr.get(1) != 'D' || hdr.get(2) != '3') return 0;
+
+		// Größe ist "syncsafe" (7 Bit pro Byte)
+		int size = ((hdr.get(6) & 0x7F) << 21) | ((hdr.get(7) & 0x7F) << 14)
+				| ((hdr.get(8) & 0x7F) << 7) | (hdr.get(9) & 0x7F);
+		boolean footer = (hdr.get(5) & 0x10) != 0;
+		return 10L + size + (footer ? 10 : 0);
+	}
+
+	/** prüft, ob am Dateiende ein 128-Byte ID3v1-Tag steht */
+	public static boolean hasId3v1(FileChannel ch) throws IOException {
+		if (ch.size() < 128) return false;
+		ByteBuffer tag = ByteBuffer.allocate(3);
+		ch.read(tag, ch.size() - 128);
+		return tag.position() == 3 && tag.get(0) == 'T' && tag.get(1) == 'A' && tag.get(2) == 'G';
+	}
+
+	/**
+	 * sucht den ersten Frame, dessen Nachfolger ebenfalls ein gültiger Header ist
+	 * (schützt vor zufälligen 0xFFE-Bytefolgen in Restdaten)
+	 */
+	public static int findFirstFrame(ByteBuffer buf) {
+		for (int pos = 0; pos + 4 <= buf.limit(); pos++) {
+			MpegFrameHeader h = MpegFrameHeader.parse(buf, pos);
+			if (h == null) continue;
+
+			int next = pos + h.frameLength;
+			if (next + 4 > buf.limit() || MpegFrameHeader.parse(buf, next) != null) {
+				return pos;
+			}
+		}
+		return -1;
+	}
+
+	/** Frameanzahl aus Xing/Info-Header, -1 wenn nicht vorhanden */
+	private static long readXingFrames(ByteBuffer buf, int frame, MpegFrameHeader h) {
+		int off = frame + h.xingOffset();
+		if (off + 12 > buf.limit()) return -1;
+
+		boolean xing = buf.get(off) == 'X' && buf.get(off + 1) == 'i' && buf.get(off + 2) == 'n' && buf.get(off + 3) == 'g';
+		boolean info = buf.get(off) == 'I' && buf.get(off + 1) == 'n' && buf.get(off + 2) == 'f' && buf.get(off + 3) == 'o';
+		if (!xing && !info) return -1;
+
+		int flags = buf.getInt(off + 4);
+		if ((flags & 0x1) == 0) return -1; // keine Frameanzahl
+
+		return buf.getInt(off + 8) & 0xFFFFFFFFL;
+	}
+
+	/** Frameanzahl aus VBRI-Header (steht immer 32 Bytes nach dem Frameheader) */
+	private static long readVbriFrames(ByteBuffer buf, int frame) {
+		int off = frame + 4 + 32;
+		if (off + 18 > buf.limit()) return -1;
+
+		if (buf.get(off) != 'V' || buf.get(off + 1) != 'B' || buf.get(off + 2) != 'R' || buf.get(off + 3) != 'I') {
+			return -1;
+		}
+		return buf.getInt(off + 14) & 0xFFFFFFFFL;
+	}
+
+	/** true, wenn die ersten Frames im Fenster alle dieselbe Bitrate haben */
+	static boolean looksConstantBitrate(ByteBuffer buf, int first, MpegFrameHeader h) {
+		int pos = first;
+		for (int i = 0; i < CBR_CHECK_FRAMES; i++) {
+			MpegFrameHeader f = MpegFrameHeader.parse(buf, pos);
+			if (f == null) break; // Fensterende oder Müll > mit dem bisherigen zufrieden
+			if (f.bitrateKbps != h.bitrateKbps) return false;
+			pos += f.frameLength;
+		}
+		return true;
+	}
+
+	/** zählt alle Frames im Audiobereich und summiert ihre Dauer */
+	private static long scanFrames(FileChannel ch, long start, long end) throws IOException {
+		MappedByteBuffer audio = ch.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+
+		double ms = 0;
+		int pos = 0;
+		while (pos + 4 <= audio.limit()) {
+			MpegFrameHeader f = MpegFrameHeader.parse(audio, pos);
+			if (f == null || f.frameLength <= 0) {
+				pos++; // resync
+				continue;
+			}
+			ms += f.frameMillis();
+			pos += f.frameLength;
+		}
+		return Math.round(ms);
+	}
+}
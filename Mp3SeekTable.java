@@ -0,0 +1,298 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Seek-Tabelle einer MP3-Datei: Zeit > Byte-Offset des passenden Frames, ohne zu dekodieren
+ * - TOC: VBR mit Xing-Header > 100 Stützstellen (Prozent der Dauer > Prozent der Bytes)
+ * - CBR: gleichbleibende Bitrate (auch LAME-"Info"-Header) > Offset direkt ausrechnen
+ * - SCAN: VBR > einmal alle Frame-Header lesen, pro Sekunde der Offset des ersten Frames ab
+ *   dieser Sekunde, der Rest bis zum Ziel-Frame wird ab dort abgezählt
+ *   > framegenau, wird in SeekIndexCache gespeichert (writeTo/readFrom, Offsets als Differenzen)
+ * - Offsets beziehen sich auf den Audio-Puffer von MappedMp3Source (Beginn hinter ID3v2)
+ * - bei TOC und CBR wird der Offset auf den nächsten gültigen Frame-Header gelegt
+ */
+
+public final class Mp3SeekTable {
+	public enum Kind { TOC, CBR, SCAN }
+
+	/** Abstand der Einträge bei SCAN */
+	public static final int INDEX_MILLIS = 1000;
+
+	/** Ergebnis einer Suche: Frame-Beginn im Audio-Puffer und seine Startzeit */
+	public static final class Position {
+		public final int offset;
+		public final long millis;
+
+		Position(int offset, long millis) {
+			this.offset = offset;
+			this.millis = millis;
+		}
+	}
+
+	public final Kind kind;
+	/** Offset des ersten Frames mit Audiodaten (hinter einem evtl. Xing/Info-Frame) */
+	final int firstFrame;
+	/** Ende der Audiodaten im Puffer */
+	final int audioEnd;
+	final double frameMillis;
+	final long frameCount;
+
+	// TOC: 100 Werte 0..255 (Anteil an tocBytes), CBR: mittlere Bytes pro Frame
+	private final int[] toc;
+	private final long tocBytes;
+	private final double bytesPerFrame;
+	// SCAN: pro INDEX_MILLIS Offset des ersten Frames ab dieser Zeit (Frame-Nummer: firstFrameAt)
+	final int[] indexOffsets;
+
+	Mp3SeekTable(Kind kind, int firstFrame, int audioEnd, double frameMillis, long frameCount,
+			int[] toc, long tocBytes, double bytesPerFrame, int[] indexOffsets) {
+		this.kind = kind;
+		this.firstFrame = firstFrame;
+		this.audioEnd = audioEnd;
+		this.frameMillis = frameMillis;
+		this.frameCount = frameCount;
+		this.toc = toc;
+		this.tocBytes = tocBytes;
+		this.bytesPerFrame = bytesPerFrame;
+		this.indexOffsets = indexOffsets;
+	}
+
+	public long durationMillis() {
+		return Math.round(frameCount * frameMillis);
+	}
+
+	/** Anzahl Einträge (SCAN) bzw. Stützstellen (TOC), 0 bei CBR */
+	public int size() {
+		return kind == Kind.SCAN ? indexOffsets.length : kind == Kind.TOC ? toc.length : 0;
+	}
+
+	/** true, wenn locate() den Frame exakt trifft (nicht bei TOC) */
+	public boolean isExact() {
+		return kind != Kind.TOC;
+	}
+
+	/** Nummer des ersten Frames, der bei oder nach Sekunde second beginnt */
+	static long firstFrameAt(int second, double frameMillis) {
+		return (long) Math.ceil((double) second * INDEX_MILLIS / frameMillis);
+	}
+
+	/**
+	 * Frame, in dem millis liegt (auf die Dauer begrenzt)
+	 * - SCAN: exakt, höchstens INDEX_MILLIS an Frame-Headern werden gelesen
+	 * - CBR: exakt bis auf Padding-Bytes, TOC: auf ~1 % der Dauer genau
+	 */
+	public Position locate(ByteBuffer audio, long millis) {
+		long t = Math.max(0, Math.min(millis, durationMillis()));
+
+		switch (kind) {
+			case SCAN: {
+				int i = (int) Math.min(t / INDEX_MILLIS, indexOffsets.length - 1);
+				long frame = firstFrameAt(i, frameMillis);
+				int pos = indexOffsets[i];
+				while ((frame + 1) * frameMillis <= t) {
+					MpegFrameHeader h = MpegFrameHeader.parse(audio, pos);
+					if (h == null || pos + h.frameLength >= audioEnd) break;
+					pos += h.frameLength;
+					frame++;
+				}
+				return new Position(pos, Math.round(frame * frameMillis));
+			}
+			case CBR: {
+				long frame = (long) (t / frameMillis);
+				int pos = resync(audio, firstFrame + (int) Math.round(frame * bytesPerFrame));
+				return new Position(pos, Math.round(frame * frameMillis));
+			}
+			default: {
+				// zwischen zwei Stützstellen linear interpolieren
+				double percent = t * 100.0 / Math.max(1, durationMillis());
+				int p = (int) Math.min(99, percent);
+				double a = toc[p];
+				double b = p < 99 ? toc[p + 1] : 256;
+				double fraction = (a + (b - a) * (percent - p)) / 256.0;
+				int pos = resync(audio, firstFrame + (int) (fraction * tocBytes));
+				return new Position(pos, t);
+			}
+		}
+	}
+
+	/** nächster Frame-Header ab pos, dessen Nachfolger auch ein gültiger Header ist */
+	private int resync(ByteBuffer audio, int pos) {
+		int p = Math.max(firstFrame, Math.min(pos, audioEnd - 4));
+		for (; p + 4 <= audioEnd; p++) {
+			MpegFrameHeader h = MpegFrameHeader.parse(audio, p);
+			if (h == null) continue;
+			int next = p + h.frameLength;
+			if (next + 4 > audioEnd || MpegFrameHeader.parse(audio, next) != null) return p;
+		}
+		return firstFrame;
+	}
+
+	/**
+	 * baut die Tabelle für den Audio-Puffer einer Datei
+	 * - scan = true: VBR immer per Frame-Scan (framegenau, liest einmal alle Header)
+	 * - scan = false: nur was ohne Scan geht (CBR, Xing-TOC), sonst null
+	 * - null auch, wenn kein MPEG-Frame gefunden wird
+	 */
+	public static Mp3SeekTable build(ByteBuffer audio, boolean scan) {
+		int end = audio.limit();
+		int first = Mp3DurationProber.findFirstFrame(audio);
+		if (first < 0) return null;
+		MpegFrameHeader h = MpegFrameHeader.parse(audio, first);
+
+		// Xing (VBR) / Info (CBR, LAME) im ersten Frame
+		int off = first + h.xingOffset();
+		boolean xing = false;
+		if (h.layer == 3 && off + 8 <= end) {
+			xing = audio.get(off) == 'X' && audio.get(off + 1) == 'i' && audio.get(off + 2) == 'n' && audio.get(off + 3) == 'g';
+			boolean info = audio.get(off) == 'I' && audio.get(off + 1) == 'n' && audio.get(off + 2) == 'f' && audio.get(off + 3) == 'o';
+			if (xing || info) {
+				int flags = audio.getInt(off + 4);
+				int p = off + 8;
+				long frames = -1;
+				long bytes = -1;
+				int[] toc = null;
+				if ((flags & 0x1) != 0 && p + 4 <= end) { frames = audio.getInt(p) & 0xFFFFFFFFL; p += 4; }
+				if ((flags & 0x2) != 0 && p + 4 <= end) { bytes = audio.getInt(p) & 0xFFFFFFFFL; p += 4; }
+				if ((flags & 0x4) != 0 && p + 100 <= end) {
+					toc = new int[100];
+					for (int i = 0; i < 100; i++) toc[i] = audio.get(p + i) & 0xFF;
+				}
+
+				// der Xing-Frame selbst enthält keine Audiodaten
+				int audioFirst = first + h.frameLength;
+				if (bytes <= 0 || bytes > end - first) bytes = end - first;
+				if (xing && !scan && frames > 0 && toc != null) {
+					return new Mp3SeekTable(Kind.TOC, audioFirst, end, h.frameMillis(), frames, toc, bytes, 0, null);
+				}
+				if (info && frames > 0) {
+					return cbr(audioFirst, end, h, frames);
+				}
+				first = audioFirst;
+			}
+		}
+
+		// ein Xing-Header heißt VBR, auch wenn die ersten Frames gleich aussehen
+		if (!xing && Mp3DurationProber.looksConstantBitrate(audio, first, h)) {
+			double bytesPerFrame = h.bitrateKbps * 1000 / 8.0 * h.frameMillis() / 1000.0;
+			return cbr(first, end, h, (long) ((end - first) / bytesPerFrame));
+		}
+		return scan ? scan(audio, first, end, h) : null;
+	}
+
+	private static Mp3SeekTable cbr(int first, int end, MpegFrameHeader h, long frames) {
+		double bytesPerFrame = (end - first) / (double) Math.max(1, frames);
+		return new Mp3SeekTable(Kind.CBR, first, end, h.frameMillis(), frames, null, 0, bytesPerFrame, null);
+	}
+
+	/** liest alle Frame-Header einmal, ein Eintrag pro INDEX_MILLIS */
+	private static Mp3SeekTable scan(ByteBuffer audio, int first, int end, MpegFrameHeader h) {
+		double frameMillis = h.frameMillis();
+		int capacity = (int) Math.max(16, (end - first) / Math.max(1, h.frameLength) * frameMillis / INDEX_MILLIS + 2);
+		int[] offsets = new int[capacity];
+		int n = 0;
+		long next = 0; // Frame-Nummer des nächsten Eintrags
+
+		long frame = 0;
+		int pos = first;
+		while (pos + 4 <= end) {
+			MpegFrameHeader f = MpegFrameHeader.parse(audio, pos);
+			if (f == null || f.frameLength <= 0) {
+				pos++; // resync
+				continue;
+			}
+			// erster Frame ab der nächsten vollen Sekunde
+			if (frame == next) {
+				if (n == offsets.length) offsets = Arrays.copyOf(offsets, n * 2);
+				offsets[n++] = pos;
+				next = firstFrameAt(n, frameMillis);
+			}
+			pos += f.frameLength;
+			frame++;
+		}
+
+		if (n == 0) offsets[n++] = first;
+		return new Mp3SeekTable(Kind.SCAN, first, end, frameMillis, frame, null, 0, 0, Arrays.copyOf(offsets, n));
+	}
+
+	/** schreibt die Tabelle kompakt (SCAN: Offsets als Differenzen, meist 2-3 Bytes pro Sekunde) */
+	void writeTo(DataOutputStream out) throws IOException {
+		out.writeByte(kind.ordinal());
+		out.writeInt(firstFrame);
+		out.writeInt(audioEnd);
+		out.writeDouble(frameMillis);
+		out.writeLong(frameCount);
+
+		switch (kind) {
+			case TOC:
+				out.writeLong(tocBytes);
+				for (int v : toc) out.writeByte(v);
+				break;
+			case CBR:
+				out.writeDouble(bytesPerFrame);
+				break;
+			default:
+				writeVarint(out, indexOffsets.length);
+				int prev = firstFrame;
+				for (int offset : indexOffsets) {
+					writeVarint(out, offset - prev);
+					prev = offset;
+				}
+		}
+	}
+
+	/** Gegenstück zu writeTo() */
+	static Mp3SeekTable readFrom(DataInputStream in) throws IOException {
+		int k = in.readUnsignedByte();
+		if (k >= Kind.values().length) throw new IOException("unbekannte Seek-Tabelle: " + k);
+		Kind kind = Kind.values()[k];
+		int firstFrame = in.readInt();
+		int audioEnd = in.readInt();
+		double frameMillis = in.readDouble();
+		long frameCount = in.readLong();
+
+		switch (kind) {
+			case TOC: {
+				long tocBytes = in.readLong();
+				int[] toc = new int[100];
+				for (int i = 0; i < toc.length; i++) toc[i] = in.readUnsignedByte();
+				return new Mp3SeekTable(kind, firstFrame, audioEnd, frameMillis, frameCount, toc, tocBytes, 0, null);
+			}
+			case CBR:
+				return new Mp3SeekTable(kind, firstFrame, audioEnd, frameMillis, frameCount, null, 0, in.readDouble(), null);
+			default: {
+				int n = readVarint(in);
+				int[] offsets = new int[n];
+				int prev = firstFrame;
+				for (int i = 0; i < n; i++) {
+					prev += readVarint(in);
+					offsets[i] = prev;
+				}
+				return new Mp3SeekTable(kind, firstFrame, audioEnd, frameMillis, frameCount, null, 0, 0, offsets);
+			}
+		}
+	}
+
+	// 7 Bit pro Byte, höchstes Bit = es folgt noch ein Byte
+	private static void writeVarint(DataOutputStream out, int v) throws IOException {
+		while ((v & ~0x7F) != 0) {
+			out.writeByte((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+
+	private static int readVarint(DataInputStream in) throws IOException {
+		int v = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			v |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return v;
+		}
+		throw new IOException("Varint zu lang");
+	}
+}
@@ -0,0 +1,118 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Zerlegt einen 4-Byte MPEG-Audio-Frameheader (MPEG 1/2/2.5, Layer I-III)
+ * - liefert Bitrate, Samplerate, Samples pro Frame und Framelänge in Bytes
+ * - wird für Längenbestimmung und Seek-Tabellen genutzt, ohne zu dekodieren
+ */
+
+public final class MpegFrameHeader {
+
+	private static final int[][] BITRATES_V1 = {
+			{ 0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448 }, // Layer I
+			{ 0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384 },    // Layer II
+			{ 0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320 }      // Layer III
+	};
+	private static final int[][] BITRATES_V2 = {
+			{ 0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256 },    // Layer I
+			{ 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 },         // Layer II
+			{ 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 }          // Layer III
+	};
+	private static final int[] SAMPLE_RATES_V1 = { 44100, 48000, 32000 };
+
+	/** true = MPEG 1, false = MPEG 2 / 2.5 */
+	public final boolean mpeg1;
+	/** 1, 2 oder 3 */
+	public final int layer;
+	/** in kbit/s */
+	public final int bitrateKbps;
+	public final int sampleRate;
+	public final int samplesPerFrame;
+	public final int frameLength;
+	public final boolean mono;
+	/** true = nach dem Header folgen 2 Byte CRC */
+	public final boolean crc;
+
+	private MpegFrameHeader(boolean mpeg1, int layer, int bitrateKbps, int sampleRate,
+			int samplesPerFrame, int frameLength, boolean mono, boolean crc) {
+		this.mpeg1 = mpeg1;
+		this.layer = layer;
+		this.bitrateKbps = bitrateKbps;
+		this.sampleRate = sampleRate;
+		this.samplesPerFrame = samplesPerFrame;
+		this.frameLength = frameLength;
+		this.mono = mono;
+		this.crc = crc;
+	}
+
+	/**
+	 * liest den Header an Position pos (absolut im Buffer)
+	 * > null, wenn dort kein gültiger Frameheader steht (oder Free-Format)
+	 */
+	public static MpegFrameHeader parse(ByteBuffer buf, int pos) {
+		if (pos < 0 || pos + 4 > buf.limit()) return null;
+
+		int b0 = buf.get(pos) & 0xFF;
+		int b1 = buf.get(pos + 1) & 0xFF;
+		int b2 = buf.get(pos + 2) & 0xFF;
+		int b3 = buf.get(pos + 3) & 0xFF;
+
+		// 11 Bit Frame-Sync
+		if (b0 != 0xFF || (b1 & 0xE0) != 0xE0) return null;
+
+		int versionBits = (b1 >> 3) & 0x3; // 0 = 2.5, 1 = reserviert, 2 = MPEG2, 3 = MPEG1
+		int layerBits = (b1 >> 1) & 0x3;   // 1 = III, 2 = II, 3 = I
+		boolean crc = (b1 & 0x1) == 0;     // Protection-Bit 0 = CRC vorhanden
+		int bitrateIdx = (b2 >> 4) & 0xF;
+		int rateIdx = (b2 >> 2) & 0x3;
+		int padding = (b2 >> 1) & 0x1;
+		int channelMode = (b3 >> 6) & 0x3;
+
+		if (versionBits == 1 || layerBits == 0 || bitrateIdx == 0 || bitrateIdx == 15 || rateIdx == 3) {
+			return null;
+		}
+
+		boolean mpeg1 = versionBits == 3;
+		int layer = 4 - layerBits;
+		int bitrate = (mpeg1 ? BITRATES_V1 : BITRATES_V2)[layer - 1][bitrateIdx];
+
+		int sampleRate = SAMPLE_RATES_V1[rateIdx];
+		if (versionBits == 2) sampleRate /= 2;
+		else if (versionBits == 0) sampleRate /= 4;
+
+		int samples;
+		int frameLength;
+		if (layer == 1) {
+			samples = 384;
+			frameLength = (12 * bitrate * 1000 / sampleRate + padding) * 4;
+		} else {
+			samples = (layer == 3 && !mpeg1) ? 576 : 1152;
+			frameLength = (samples / 8) * bitrate * 1000 / sampleRate + padding;
+		}
+
+		return new MpegFrameHeader(mpeg1, layer, bitrate, sampleRate, samples, frameLength, channelMode == 3, crc);
+	}
+
+	/** Offset des Xing/Info-Headers relativ zum Framebeginn (nach Header, evtl. CRC und Side-Info) */
+	public int xingOffset() {
+		return 4 + (crc ? 2 : 0) + sideInfoLength();
+	}
+
+	/** Länge der Layer-III-Side-Info in Bytes */
+	public int sideInfoLength() {
+		if (mpeg1) return mono ? 17 : 32;
+		return mono ? 9 : 17;
+	}
+
+	/** Layer III: Granules pro Frame (MPEG 1: 2, MPEG 2/2.5: 1) */
+	public int granules() {
+		return mpeg1 ? 2 : 1;
+	}
+
+	/** Dauer eines Frames in Millisekunden */
+	public double frameMillis() {
+		return samplesPerFrame * 1000.0 / sampleRate;
+	}
+}
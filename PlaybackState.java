@@ -0,0 +1,169 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * unveränderlicher Wiedergabe-Zustand des MoodPlayers
+ * - Phase, Playlist, Index, geplanter nächster Index, Datei für die Engine
+ * - playToken wird bei jedem Laden erhöht > Ereignisse eines älteren Tracks (Ende, Laden)
+ *   lassen sich eindeutig als veraltet erkennen
+ * - version wird bei jedem Übergang erhöht > die Engine übernimmt immer den neuesten Stand,
+ *   egal in welcher Reihenfolge die Threads ihn weitergeben
+ * - Übergänge sind reine Funktionen (neues Objekt oder this = keine Änderung), der MoodPlayer
+ *   tauscht den Zustand per compareAndSet aus
+ */
+
+public final class PlaybackState {
+	public enum Phase { IDLE, LOADING, PLAYING, PAUSED, STOPPED }
+
+	public static final PlaybackState INITIAL = new PlaybackState(Phase.IDLE, null, 0, -1, null, 0, 0);
+
+	public final Phase phase;
+	public final Playlist playlist;
+	public final int index;
+	/** schon gewählter nächster Index (Gapless, wichtig bei Shuffle), -1 = keiner */
+	public final int plannedNext;
+	/** Datei, die die Engine spielen soll, null = nichts geladen */
+	public final String filename;
+	public final long playToken;
+	public final long version;
+
+	private PlaybackState(Phase phase, Playlist playlist, int index, int plannedNext, String filename, long playToken, long version) {
+		this.phase = phase;
+		this.playlist = playlist;
+		this.index = index;
+		this.plannedNext = plannedNext;
+		this.filename = filename;
+		this.playToken = playToken;
+		this.version = version;
+	}
+
+	private PlaybackState with(Phase phase, Playlist playlist, int index, int plannedNext, String filename, long playToken) {
+		return new PlaybackState(phase, playlist, index, plannedNext, filename, playToken, version + 1);
+	}
+
+	/** true, solange gespielt wird oder ein Track dafür lädt */
+	public boolean isActive() {
+		return phase == Phase.LOADING || phase == Phase.PLAYING;
+	}
+
+	/** Track am aktuellen Index, null ohne Playlist */
+	public Track track() {
+		return trackAt(index);
+	}
+
+	public Track trackAt(int i) {
+		Playlist pl = playlist;
+		return pl != null && i >= 0 && i < pl.size() ? pl.getTracks().get(i) : null;
+	}
+
+	// Übergänge
+	/** lädt den Track an Index i (neuer playToken) */
+	public PlaybackState load(int i) {
+		Track t = trackAt(i);
+		if (t == null) return this;
+		return with(Phase.LOADING, playlist, i, -1, t.getFilename(), playToken + 1);
+	}
+
+	/** aktuellen Track (neu) starten, Index wird in die Playlist gelegt */
+	public PlaybackState play() {
+		if (playlist == null || playlist.size() == 0) return this;
+		return load(index >= 0 && index < playlist.size() ? index : 0);
+	}
+
+	/** spielt eine einzelne Datei ohne Playlist-Bezug */
+	public PlaybackState playFile(String file) {
+		return with(Phase.LOADING, playlist, index, -1, file, playToken + 1);
+	}
+
+	/** Engine hat die Datei geladen */
+	public PlaybackState loaded(String file) {
+		if (phase != Phase.LOADING || !file.equals(filename)) return this;
+		return with(Phase.PLAYING, playlist, index, plannedNext, filename, playToken);
+	}
+
+	public PlaybackState pause() {
+		if (!isActive()) return this;
+		return with(Phase.PAUSED, playlist, index, plannedNext, filename, playToken);
+	}
+
+	public PlaybackState resume() {
+		if (phase != Phase.PAUSED) return this;
+		return with(Phase.PLAYING, playlist, index, plannedNext, filename, playToken);
+	}
+
+	public PlaybackState stop() {
+		if (phase == Phase.STOPPED && filename == null) return this;
+		return with(Phase.STOPPED, playlist, index, -1, null, playToken);
+	}
+
+	/** Track mit playToken token ließ sich nicht laden > Stop (gilt nur, solange er noch gewollt ist) */
+	public PlaybackState failed(long token) {
+		if (token != playToken || filename == null) return this;
+		return stop();
+	}
+
+	/** nächster Track, am Ende ohne Repeat > Stop */
+	public PlaybackState skip(boolean shuffle, boolean repeat) {
+		if (playlist == null || playlist.size() == 0) return this;
+		if (shuffle) return load(ThreadLocalRandom.current().nextInt(playlist.size()));
+
+		int next = index + 1;
+		if (next >= playlist.size()) {
+			if (!repeat) return stop();
+			next = 0;
+		}
+		return load(next);
+	}
+
+	public PlaybackState skipBack(boolean repeat) {
+		if (playlist == null || playlist.size() == 0) return this;
+		int prev = index - 1;
+		if (prev < 0) prev = repeat ? playlist.size() - 1 : 0;
+		return load(prev);
+	}
+
+	/**
+	 * Track mit playToken token ist regulär zu Ende > Auto-Play
+	 * - nur, wenn genau dieser Track noch läuft (kein Skip/Pause/Stop dazwischen)
+	 * - next < 0 = Ende der Playlist
+	 */
+	public PlaybackState ended(long token, int next) {
+		if (token != playToken || !isActive()) return this;
+		if (next < 0) return stop();
+		return load(next);
+	}
+
+	/** Index, der nach dem aktuellen Track automatisch folgt (-1 = Ende der Playlist) */
+	public int nextIndex(boolean shuffle, boolean repeat) {
+		if (playlist == null || playlist.size() == 0) return -1;
+		if (shuffle) return ThreadLocalRandom.current().nextInt(playlist.size());
+
+		int next = index + 1;
+		if (next >= playlist.size()) return repeat ? 0 : -1;
+		return next;
+	}
+
+	/** merkt den geplanten nächsten Index, solange derselbe Track in derselben Playlist läuft wie in basis */
+	public PlaybackState planned(PlaybackState basis, int next) {
+		if (basis.playToken != playToken || basis.playlist != playlist || plannedNext == next) return this;
+		return with(phase, playlist, index, next, filename, playToken);
+	}
+
+	/** andere Playlist, laufender Track spielt weiter */
+	public PlaybackState withPlaylist(Playlist pl) {
+		if (pl == playlist) return this;
+		return with(phase, pl, 0, -1, filename, playToken);
+	}
+
+	/** neue Positionen nach einer Änderung der Playlist an Ort und Stelle */
+	public PlaybackState remapped(int newIndex, int newPlannedNext) {
+		if (newIndex == index && newPlannedNext == plannedNext) return this;
+		return with(phase, playlist, newIndex, newPlannedNext, filename, playToken);
+	}
+
+	@Override
+	public String toString() {
+		return phase + " #" + index + " v" + version + " t" + playToken + (filename != null ? " " + filename : "");
+	}
+}
@@ -0,0 +1,170 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stresstest für die Zustandsübergänge des MoodPlayers
+ * - ein echter MoodPlayer (mit seiner Engine) wird von vielen Threads gleichzeitig bedient:
+ *   play, pause, resume, stop, skip, skipBack, Track wählen, Shuffle/Repeat/Gapless, Playlist-Wechsel
+ * - dazu spielen die Threads Engine-Meldungen ein (Track-Ende, geladen, Laden fehlgeschlagen),
+ *   auch verspätet für schon ersetzte Tracks und doppelt, wie sie vom Audio-/Scheduler-Thread kommen
+ * - die Tracks gibt es nicht: je nach Player-Bibliothek schlägt das Laden fehl oder wird simuliert,
+ *   beides sind gültige Wege durch den Zustandsautomaten
+ * - jeder gewonnene Übergang wird im gewinnenden Thread geprüft (MoodPlayer.setTransitionObserver):
+ *   > keine verlorenen Übergänge (Version steigt um genau 1, Anzahl = Endversion)
+ *   > jeder playToken wird genau einmal erzeugt (kein doppelter Start)
+ *   > ein Track-Ende löst höchstens einmal Auto-Play aus, und nur für den laufenden Track
+ *   > jeder Zustand ist in sich stimmig (Datei passt zur Phase, Index in der Playlist)
+ * - am Ende (nach stop()) muss das Engine-Ziel dem letzten Zustand entsprechen
+ *
+ * starten: java ...PlaybackStateStress [Threads] [Sekunden]
+ */
+
+public class PlaybackStateStress {
+	private static final int TRACKS = 50;
+
+	private final MoodPlayer player = new MoodPlayer();
+	private final Playlist[] playlists = new Playlist[2];
+
+	private final AtomicLong transitions = new AtomicLong();
+	private final Set<Long> startedTokens = ConcurrentHashMap.newKeySet();
+	private final Set<Long> autoPlayedTokens = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger errors = new AtomicInteger();
+	private final long initialVersion;
+	// playToken, dessen Track-Ende dieser Thread gerade meldet (null = keins)
+	private final ThreadLocal<Long> endingToken = new ThreadLocal<>();
+
+	public static void main(String[] args) throws InterruptedException {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		// pro Übergang eine Info-Zeile wäre zu viel
+		Log.setDefaultLevel(Log.Level.ERROR);
+		boolean ok = new PlaybackStateStress().run(threads, seconds);
+		System.exit(ok ? 0 : 1);
+	}
+
+	PlaybackStateStress() {
+		for (int p = 0; p < playlists.length; p++) {
+			playlists[p] = new Playlist("Stress " + p);
+			for (int i = 0; i < TRACKS; i++) {
+				playlists[p].addTrack(new Track("/stress/" + p + "/track" + i + ".mp3", "Titel " + i, "Artist", "Album", 180));
+			}
+		}
+		initialVersion = player.getState().version;
+		player.setTransitionObserver(this::observe);
+		player.setPlaylist(playlists[0]);
+	}
+
+	boolean run(int threadCount, int seconds) throws InterruptedException {
+		long end = System.nanoTime() + seconds * 1_000_000_000L;
+		Thread[] threads = new Thread[threadCount];
+		for (int t = 0; t < threadCount; t++) {
+			threads[t] = new Thread(() -> {
+				while (System.nanoTime() < end && errors.get() == 0) step();
+			}, "stress-" + t);
+			threads[t].start();
+		}
+		for (Thread t : threads) t.join();
+
+		// späte Lade-Ergebnisse der Engine dürfen nach stop() nichts mehr ändern
+		player.stop();
+		Thread.sleep(300);
+
+		PlaybackState last = player.getState();
+		MP3PlayerEngine.Target target = player.getEngine().getTarget();
+		check(last.version - initialVersion == transitions.get(), "verlorene Übergänge: Version " + last.version + ", gewonnen " + transitions.get());
+		check(last.playToken == startedTokens.size(), "playToken " + last.playToken + ", gestartet " + startedTokens.size());
+		check(last.phase == PlaybackState.Phase.STOPPED, "nach stop(): " + last);
+		check(target.version == last.version, "Engine-Ziel v" + target.version + " statt v" + last.version);
+		check(target.token == last.playToken && same(target.filename, last.filename)
+				&& target.paused == (last.phase == PlaybackState.Phase.PAUSED), "Engine-Ziel passt nicht zu " + last);
+
+		System.out.println(String.format("[Stress] %d Threads, %d s: %d Übergänge, %d Tracks gestartet, %d Auto-Plays, Endzustand %s",
+				threadCount, seconds, transitions.get(), startedTokens.size(), autoPlayedTokens.size(), last));
+		System.out.println(errors.get() == 0 ? "[Stress] OK" : "[Stress] FEHLER: " + errors.get());
+		return errors.get() == 0;
+	}
+
+	/** ein zufälliger Aufruf, so wie ihn FX-, Audio- oder Scheduler-Thread auslösen */
+	private void step() {
+		ThreadLocalRandom rnd = ThreadLocalRandom.current();
+		PlaybackState seen = player.getState();
+
+		switch (rnd.nextInt(14)) {
+			case 0: player.play(); break;
+			case 1: player.pause(); break;
+			case 2: player.resume(); break;
+			case 3: player.stop(); break;
+			case 4: player.skip(); break;
+			case 5: player.skipBack(); break;
+			case 6: player.playTrackAtIndex(rnd.nextInt(TRACKS)); break;
+			case 7:
+			case 8: {
+				// Track-Ende, manchmal für einen schon ersetzten Track (verspätetes Ereignis)
+				long token = rnd.nextInt(4) == 0 ? Math.max(0, seen.playToken - 1) : seen.playToken;
+				endingToken.set(token);
+				try {
+					player.onTrackEnded(token);
+				} finally {
+					endingToken.remove();
+				}
+				break;
+			}
+			case 9:
+				if (seen.filename != null) player.onTrackLoaded(seen.playToken, seen.filename, 180_000);
+				break;
+			case 10:
+				if (rnd.nextInt(4) == 0) player.onLoadFailed(new IOException("Stresstest"), seen.playToken);
+				break;
+			case 11:
+				player.gapless(rnd.nextBoolean());
+				break;
+			default:
+				if (rnd.nextInt(20) == 0) player.setPlaylist(playlists[rnd.nextInt(playlists.length)]);
+				else if (rnd.nextBoolean()) player.shuffle(!player.isShuffleOn());
+				else player.repeat(rnd.nextBoolean());
+		}
+	}
+
+	/** jeder gewonnene Übergang, im Thread, der das CAS gewonnen hat */
+	private void observe(PlaybackState cur, PlaybackState next) {
+		transitions.incrementAndGet();
+		check(next.version == cur.version + 1, "Version springt: " + cur + " > " + next);
+		checkConsistent(next);
+
+		if (next.playToken == cur.playToken) return;
+		check(next.playToken > cur.playToken, "playToken rückwärts: " + cur + " > " + next);
+		if (next.phase == PlaybackState.Phase.LOADING) {
+			check(startedTokens.add(next.playToken), "playToken " + next.playToken + " zweimal gestartet");
+		}
+
+		Long ending = endingToken.get();
+		if (ending != null) {
+			check(cur.playToken == ending, "Auto-Play für " + ending + ", lief aber " + cur);
+			check(autoPlayedTokens.add(ending), "Auto-Play zweimal für playToken " + ending);
+		}
+	}
+
+	private void checkConsistent(PlaybackState s) {
+		boolean hasFile = s.phase == PlaybackState.Phase.LOADING || s.phase == PlaybackState.Phase.PLAYING
+				|| s.phase == PlaybackState.Phase.PAUSED;
+		check(hasFile == (s.filename != null), "Datei passt nicht zur Phase: " + s);
+		check(s.playlist == null || (s.index >= 0 && s.index < s.playlist.size()), "Index außerhalb: " + s);
+		check(s.plannedNext < (s.playlist != null ? s.playlist.size() : 1), "geplanter Index außerhalb: " + s);
+	}
+
+	private void check(boolean condition, String message) {
+		if (!condition && errors.incrementAndGet() <= 10) {
+			System.err.println("[Stress] " + message);
+		}
+	}
+
+	private static boolean same(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
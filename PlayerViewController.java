@@ -5,19 +5,15 @@ import de.hsrm.mi.enia.moodplayer.business.MoodPlayer;
 import de.hsrm.mi.enia.moodplayer.business.Track;
 import de.hsrm.mi.enia.moodplayer.presentation.MoodPlayerGUI;
 import de.hsrm.mi.enia.moodplayer.presentation.uicomponents.TimePane;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.scene.control.Button;
 import javafx.scene.control.Slider;
 import javafx.scene.control.ToggleButton;
 import javafx.scene.control.Label;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
-import javafx.util.Duration;
-
-import java.net.URL;
+import javafx.stage.Screen;
 
 /**
  * Controller für die PlayerView
@@ -26,6 +22,7 @@ import java.net.URL;
  * - Buttons (Play/Pause, Skip, Shuffle)
  * - TimePane (Anzeige + Seek)
  * - Volume-Slider
+ * - Cover: werden im Hintergrund geladen (CoverArtCache), das des nächsten Tracks vorab
  *
  * synchronisiert UI-Zustand mit dem MP3Player
  */
@@ -46,15 +43,17 @@ public class PlayerViewController extends BaseController<PlayerView> {
 
     private final MoodPlayer player;
 
-    private Timeline timeUpdater;
-    private Track lastShownTrack = null;
-    
+    // dekodierte Cover in Anzeigegröße, höchstens COVER_CACHE_BYTES
+    private static final long COVER_CACHE_BYTES = 32L * 1024 * 1024;
+    private final CoverArtCache covers;
+    private static final String DEFAULT_COVER = "/assets/covers/cover_default.png";
+
 
     /** einfacher EventHandler als Member-Klasse (für Skip) */
     public class SkipHandler implements EventHandler<ActionEvent> {
         @Override
         public void handle(ActionEvent event) {
-            player.skip();
+            player.skip().exceptionally(BaseController::reportLoadError);
 
             // UI sofort auf neuen Track umstellen
             timePane.reset();
@@ -79,6 +78,12 @@ public class PlayerViewController extends BaseController<PlayerView> {
         coverImageView = root.coverImageView;
 
         this.player = player;
+
+        // in Pixeln des Bildschirms dekodieren (HiDPI)
+        int coverSize = (int) Math.ceil(coverImageView.getFitWidth() * Screen.getPrimary().getOutputScaleX());
+        covers = new CoverArtCache(coverSize, COVER_CACHE_BYTES);
+        covers.setFallback(this::bundledCoverPath);
+
         initialize();
     }
 
@@ -101,18 +106,17 @@ public class PlayerViewController extends BaseController<PlayerView> {
         // Play/Pause
         playButton.addEventHandler(ActionEvent.ACTION, event -> {
             if (!player.isPlaying()) {
-                player.playOrResume();
+                player.playOrResume().exceptionally(BaseController::reportLoadError);
                 updateTrackInfo(); // setzt maxTime passend
             } else {
                 player.pause();
             }
             syncPlayPauseIcon();
-            // Timeline läuft immer > nichts mehr starten/stoppen
         });
 
         // SkipBack
         skipBackButton.addEventHandler(ActionEvent.ACTION, event -> {
-            player.skipBack();
+            player.skipBack().exceptionally(BaseController::reportLoadError);
 
             timePane.reset();
             updateTrackInfo();
@@ -129,32 +133,27 @@ public class PlayerViewController extends BaseController<PlayerView> {
         // Startwert + Sync (beidseitig)
         volumeSlider.valueProperty().bindBidirectional(player.volumePercentProperty());
 
-        // Timeline (Zeit + Trackwechsel) > läuft immer
-        timeUpdater = new Timeline(
-            new KeyFrame(Duration.millis(250), e -> {
-
-                 // Trackwechsel erkennen
-            	 syncPlayPauseIcon();
-                 applyShuffleStyle(player.isShuffleOn(), shuffleButton);
+        // Player-Zustand beobachten statt pollen
+        player.currentTrackProperty().addListener((obs, oldTrack, newTrack) -> {
+            timePane.reset();
+            updateTrackInfo();
+        });
+        player.playingProperty().addListener((obs, wasPlaying, isPlaying) -> syncPlayPauseIcon());
 
-                 Track current = player.getCurrentTrack();
-                 if (current != lastShownTrack) {
-                     lastShownTrack = current;
-                     timePane.reset();
-                     updateTrackInfo();
-                 }
+        // Shuffle-Icon konsistent halten (falls in anderer View geändert)
+        player.shuffleProperty().addListener((obs, oldValue, newValue) -> applyShuffleStyle(newValue, shuffleButton));
 
-                // nur wenn gespielt wird: Zeit fortschreiben
-                if (player.isPlaying() && !timePane.getSlider().isValueChanging()) {
-                    timePane.setCurrentTime(player.getCurrentPositionSeconds());
-                }
+        // Länge kann nach dem Laden noch korrigiert werden
+        player.trackLengthProperty().addListener((obs, oldLen, newLen) -> {
+            if (newLen.intValue() > 0) timePane.setMaxTime(newLen.intValue());
+        });
 
-                // Shuffle-Icon konsistent halten (falls in anderer View geändert)
-                applyShuffleStyle(player.isShuffleOn(), shuffleButton);
-            })
-        );
-        timeUpdater.setCycleCount(Timeline.INDEFINITE);
-        timeUpdater.play();
+        // Zeit fortschreiben (Ticks kommen nur, solange gespielt wird und die View sichtbar ist)
+        player.currentTimeProperty().addListener((obs, oldTime, newTime) -> {
+            if (!timePane.getSlider().isValueChanging()) {
+                timePane.setCurrentTime(newTime.intValue());
+            }
+        });
 
         // initiales UI
         updateTrackInfo();
@@ -171,6 +170,9 @@ public class PlayerViewController extends BaseController<PlayerView> {
         });
         
         root.sceneProperty().addListener((obs, oldScene, newScene) -> {
+            // Positions-Updates nur anfordern, solange die View angezeigt wird
+            player.setPositionObserved(this, newScene != null);
+
             if (newScene != null) {
                 syncPlayPauseIcon();
                 applyShuffleStyle(player.isShuffleOn(), shuffleButton);
@@ -197,7 +199,7 @@ public class PlayerViewController extends BaseController<PlayerView> {
             trackTitleLabel.setText("Kein Titel");
             trackArtistLabel.setText("");
             trackAlbumLabel.setText("");
-            coverImageView.setImage(null);
+            coverImageView.setImage(covers.getResource(DEFAULT_COVER));
             timePane.reset();
             timePane.setMaxTime(0);
             return;
@@ -217,8 +219,7 @@ public class PlayerViewController extends BaseController<PlayerView> {
         if (len <= 0) len = player.getCurrentTrackLengthSeconds();
         timePane.setMaxTime(Math.max(0, len));
 
-        Image cover = chooseCoverForTrack(t);
-        coverImageView.setImage(cover);
+        showCover(t);
 
         timePane.setCurrentTime(player.getCurrentPositionSeconds());
     }
@@ -230,34 +231,33 @@ public class PlayerViewController extends BaseController<PlayerView> {
         playButton.getStyleClass().add(playingNow ? "pause" : "play");
     }
 
-    /** wählt das passende Coverbild für einen Track */
-    private Image chooseCoverForTrack(Track t) {
-        if (t == null) return loadImageOrNull("/assets/covers/cover_default.png");
-
-        String title = t.getTitle() != null ? t.getTitle().toLowerCase() : "";
-        String path = null;
-
-        if (title.contains("bring mich nach hause")) path = "/assets/covers/cover_01.jpg";
-        else if (title.contains("drei worte")) path = "/assets/covers/cover_02.jpg";
-        else if (title.contains("love will be with you")) path = "/assets/covers/cover_03.jpg";
-        else if (title.contains("last membrane")) path = "/assets/covers/cover_04.jpg";
-
-        return loadImageOrNull(path);
-    }
-
     /**
-     * lädt ein Bild aus den Ressourcen (classpath) und gibt es als Image zurück
-     * > falls die Ressource nicht existiert oder nicht geladen werden kann, gibt null zurück &
+     * zeigt das Cover eines Tracks
+     * - im Cache > sofort, sonst bleibt das alte Bild stehen, bis das neue dekodiert ist
+     * - danach wird das Cover des nächsten Tracks schon vorab geladen
      */
-    private Image loadImageOrNull(String resourcePath) {
-        try {
-            if (resourcePath == null) return null;
-            URL url = getClass().getResource(resourcePath);
-            if (url != null) return new Image(url.toExternalForm());
-            System.out.println("Cover-Ressource nicht gefunden: " + resourcePath);
-        } catch (Exception e) {
-            System.out.println("Fehler beim Laden von " + resourcePath + ": " + e.getMessage());
+    private void showCover(Track t) {
+        if (covers.isResolved(t)) {
+            coverImageView.setImage(covers.getIfCached(t));
+        } else {
+            String path = t.getFilename();
+            covers.load(t).thenAccept(img -> Platform.runLater(() -> {
+                // inzwischen anderer Track > Ergebnis nur im Cache behalten
+                Track now = player.getCurrentTrack();
+                if (now != null && now.getFilename().equals(path)) coverImageView.setImage(img);
+            }));
         }
+        covers.prefetch(player.peekNextTrack());
+    }
+
+    /** mitgeliefertes Cover für die Demo-Songs (Fallback, wenn der Track kein eigenes hat) */
+    private String bundledCoverPath(Track t) {
+        String title = t.getTitle() != null ? t.getTitle().toLowerCase() : "";
+
+        if (title.contains("bring mich nach hause")) return "/assets/covers/cover_01.jpg";
+        if (title.contains("drei worte")) return "/assets/covers/cover_02.jpg";
+        if (title.contains("love will be with you")) return "/assets/covers/cover_03.jpg";
+        if (title.contains("last membrane")) return "/assets/covers/cover_04.jpg";
         return null;
     }
 }
@@ -1,39 +1,257 @@
 package de.hsrm.mi.enia.moodplayer.business;
 
-import java.io.File;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntUnaryOperator;
 
 /**
  * Datenklasse für eine Playlist
- * - speichert Name und eine Liste von Tracks
+ * - speichert Name und die IDs ihrer Tracks im TrackStore (int-Array statt Track-Objekten)
+ * - getTracks() liefert eine schreibgeschützte Sicht, Tracks werden beim Zugriff erzeugt
+ * - indexOf nutzt einen Positions-Index (ID > Position), der erst bei Bedarf aufgebaut wird
+ * - removeIds/insertSorted ändern die Playlist an Ort und Stelle und melden nur die
+ *   betroffenen Bereiche an ChangeListener (z.B. ObservableList der View)
  */
 
 public class Playlist {
 	private String name;
-    private List<Track> playlist = new ArrayList<>();
+	private final TrackStore store;
+    private int[] ids = new int[16];
+    private int size = 0;
 
-    public Playlist(String name) { 
+    // ID > Position + 1 (0 = nicht enthalten), null = muss neu aufgebaut werden
+    private int[] positions;
+
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // mehr Bereiche als das > ein einziges reset() (jedes Einzelereignis verschiebt die ganze Liste)
+    private static final int MAX_RANGE_EVENTS = 64;
+
+    /**
+     * Beobachter für Änderungen durch removeIds/insertSorted
+     * - Bereiche werden aufsteigend gemeldet, Positionen gelten nach den vorher gemeldeten Bereichen
+     *   > nacheinander auf eine Kopie angewendet, ergibt sich der neue Stand
+     * - bei sehr vielen verstreuten Bereichen kommt stattdessen reset() (Liste komplett neu lesen)
+     */
+    public interface ChangeListener {
+    	void removed(int from, int count);
+    	void inserted(int from, int count);
+    	void reset();
+    }
+
+    private final List<Track> view = new AbstractList<Track>() {
+    	@Override public Track get(int index) {
+    		if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+    		return store.get(ids[index]);
+    	}
+    	@Override public int size() {
+    		return size;
+    	}
+    	@Override public int indexOf(Object o) {
+    		return o instanceof Track ? Playlist.this.indexOf((Track) o) : -1;
+    	}
+    	@Override public boolean contains(Object o) {
+    		return indexOf(o) >= 0;
+    	}
+    };
+
+    public Playlist(String name) {
+    	this(name, TrackStore.getDefault());
+    }
+    public Playlist(String name, TrackStore store) {
     	this.name = name;
+    	this.store = store;
+    }
+    public void addTrack(Track t) {
+    	if (t == null) return;
+    	addId(store.add(t));
+    }
+    /** hängt einen Track anhand seiner Store-ID an */
+    public void addId(int id) {
+    	if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+    	ids[size++] = id;
+    	if (positions != null) {
+    		if (id >= positions.length) positions = null;
+    		else if (positions[id] == 0) positions[id] = size;
+    	}
+    }
+    public void removeTrack(Track t) {
+    	int idx = indexOf(t);
+    	if (idx < 0) return;
+    	System.arraycopy(ids, idx + 1, ids, idx, size - idx - 1);
+    	size--;
+    	positions = null;
+    }
+    /** ersetzt einen Track an derselben Position (z.B. nach geänderten Tags) */
+    public void replaceTrack(Track oldTrack, Track newTrack) {
+    	int idx = indexOf(oldTrack);
+    	if (idx < 0 || newTrack == null) return;
+    	// gleicher Pfad > gleiche ID, die Zeile im Store wird nur aktualisiert
+    	int newId = store.add(newTrack);
+    	if (newId != ids[idx]) {
+    		ids[idx] = newId;
+    		positions = null;
+    	}
     }
-    public void addTrack(Track t) { 
-    	if (t != null) playlist.add(t); 
+    /** Position eines Tracks, -1 wenn nicht enthalten (eigenständige Tracks werden über den Pfad gefunden) */
+    public int indexOf(Track t) {
+    	if (t == null) return -1;
+    	int id = t.getStore() == store ? t.getId() : store.idOf(t.getFilename());
+    	return indexOfId(id);
     }
-    public void removeTrack(Track t) { 
-    	playlist.remove(t); 
+    public int indexOfId(int id) {
+    	if (id < 0) return -1;
+    	if (positions == null) rebuildPositions();
+    	return id < positions.length ? positions[id] - 1 : -1;
     }
-    public List<Track> getTracks() { 
-    	return Collections.unmodifiableList(playlist);
+    public int getId(int index) {
+    	if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+    	return ids[index];
+    }
+    public List<Track> getTracks() {
+    	return view;
+    }
+    public TrackStore getStore() {
+    	return store;
     }
     public String getName() {
-    	return name; 
+    	return name;
     }
     public int size() {
-    	return playlist.size(); 
+    	return size;
     }
-    
+
     public void clear() {
-        playlist.clear();
+        size = 0;
+        positions = null;
+    }
+
+    /** alle IDs der Playlist als Menge */
+    public CompressedBitSet idSet() {
+    	int[] sorted = Arrays.copyOf(ids, size);
+    	Arrays.sort(sorted);
+    	return CompressedBitSet.ofSorted(sorted, size);
+    }
+
+    public void setName(String name) {
+    	this.name = name;
+    }
+
+    public void addChangeListener(ChangeListener l) {
+    	listeners.add(l);
+    }
+    public void removeChangeListener(ChangeListener l) {
+    	listeners.remove(l);
+    }
+
+    /**
+     * entfernt die Einträge dieser IDs in einem Durchgang
+     * - Kosten: Anzahl IDs + Verschieben der Einträge hinter der ersten entfernten Position
+     * - gibt die Anzahl entfernter Einträge zurück
+     */
+    public int removeIds(CompressedBitSet remove) {
+    	int[] pos = new int[remove.cardinality()];
+    	int n = 0;
+    	for (int id : remove.toArray()) {
+    		int p = indexOfId(id);
+    		if (p >= 0) pos[n++] = p;
+    	}
+    	if (n == 0) return 0;
+    	Arrays.sort(pos, 0, n);
+
+    	// Lücken von vorne nach hinten zusammenschieben
+    	int write = pos[0];
+    	for (int k = 0; k < n; k++) {
+    		int next = k + 1 < n ? pos[k + 1] : size;
+    		int len = next - pos[k] - 1;
+    		System.arraycopy(ids, pos[k] + 1, ids, write, len);
+    		write += len;
+    	}
+    	size -= n;
+    	positions = null;
+
+    	if (countRuns(pos, n) > MAX_RANGE_EVENTS) {
+    		for (ChangeListener l : listeners) l.reset();
+    		return n;
+    	}
+
+    	// zusammenhängende Bereiche melden, Positionen um bereits gemeldete verschoben
+    	int shift = 0;
+    	for (int k = 0; k < n; ) {
+    		int start = k;
+    		while (k + 1 < n && pos[k + 1] == pos[k] + 1) k++;
+    		k++;
+    		int count = k - start;
+    		for (ChangeListener l : listeners) l.removed(pos[start] - shift, count);
+    		shift += count;
+    	}
+    	return n;
+    }
+
+    /**
+     * fügt IDs so ein, dass die Playlist nach rank sortiert bleibt
+     * - Voraussetzung: Playlist und add[0..n) sind bereits aufsteigend nach rank sortiert
+     * - Einfügestelle per Binärsuche, Einträge werden von hinten nach vorne nur einmal verschoben
+     */
+    public void insertSorted(int[] add, int n, IntUnaryOperator rank) {
+    	if (n == 0) return;
+    	if (size + n > ids.length) ids = Arrays.copyOf(ids, Math.max(size + n, ids.length * 2));
+
+    	// Position jedes neuen Eintrags im Ergebnis
+    	int[] at = new int[n];
+    	for (int k = 0; k < n; k++) {
+    		at[k] = lowerBound(rank, rank.applyAsInt(add[k])) + k;
+    	}
+
+    	int end = size;
+    	for (int k = n - 1; k >= 0; k--) {
+    		int from = at[k] - k; // erster alter Eintrag hinter dem neuen
+    		System.arraycopy(ids, from, ids, from + k + 1, end - from);
+    		ids[at[k]] = add[k];
+    		end = from;
+    	}
+    	size += n;
+    	positions = null;
+
+    	if (countRuns(at, n) > MAX_RANGE_EVENTS) {
+    		for (ChangeListener l : listeners) l.reset();
+    		return;
+    	}
+    	for (int k = 0; k < n; ) {
+    		int start = k;
+    		while (k + 1 < n && at[k + 1] == at[k] + 1) k++;
+    		k++;
+    		for (ChangeListener l : listeners) l.inserted(at[start], k - start);
+    	}
+    }
+
+    /** Anzahl zusammenhängender Bereiche in aufsteigenden Positionen */
+    private static int countRuns(int[] pos, int n) {
+    	int runs = n > 0 ? 1 : 0;
+    	for (int k = 1; k < n; k++) {
+    		if (pos[k] != pos[k - 1] + 1) runs++;
+    	}
+    	return runs;
+    }
+
+    /** erste Position (vor dem Einfügen), deren Rang >= r ist */
+    private int lowerBound(IntUnaryOperator rank, int r) {
+    	int lo = 0, hi = size;
+    	while (lo < hi) {
+    		int mid = (lo + hi) >>> 1;
+    		if (rank.applyAsInt(ids[mid]) < r) lo = mid + 1;
+    		else hi = mid;
+    	}
+    	return lo;
+    }
+
+    /** baut den Positions-Index neu auf (erste Position gewinnt, wie bei List.indexOf) */
+    private void rebuildPositions() {
+    	int max = -1;
+    	for (int i = 0; i < size; i++) max = Math.max(max, ids[i]);
+    	int[] pos = new int[max + 1];
+    	for (int i = size - 1; i >= 0; i--) pos[ids[i]] = i + 1;
+    	positions = pos;
     }
 }
@@ -3,15 +3,27 @@ package de.hsrm.mi.enia.moodplayer.business;
 import com.mpatric.mp3agic.ID3v1;
 import com.mpatric.mp3agic.ID3v2;
 import com.mpatric.mp3agic.Mp3File;
-import de.hsrm.mi.eibo.simpleplayer.SimpleAudioPlayer;
-import de.hsrm.mi.eibo.simpleplayer.SimpleMinim;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
 
 /**
  * - lädt und verwaltet Playlists aus Dateien (z.B. M3U)
@@ -19,19 +31,56 @@ import java.util.List;
  */
 
 public class PlaylistManager {
-	private final SimpleMinim minim = new SimpleMinim(false); // blockierend ok für Zeitanzeige
+	private static final Log LOG = Log.get("PlaylistManager");
+
+	// Blockgröße/-dauer für das streamende Laden von M3U-Dateien
+	private static final int STREAM_BATCH_SIZE = 50;
+	private static final long STREAM_BATCH_MILLIS = 100;
+
+	// Lesepuffer für mp3agic beim reinen Tag-Lesen
+	private static final int TAG_BUFFER_SIZE = 64 * 1024;
+
+	// Anzahl Worker-Threads für den Bibliotheks-Scan
+	private int scanParallelism = Runtime.getRuntime().availableProcessors();
+
+	// Metadaten-Cache > beim Warmstart kein mp3agic/SimpleMinim für unveränderte Dateien
+	private final TrackMetadataCache metadataCache;
+	// Seek-Tabellen werden hier nie gebaut; nur Einträge gelöschter Dateien verwerfen und
+	// Änderungen zusammen mit dem Metadaten-Cache speichern
+	private final SeekIndexCache seekIndex = SeekIndexCache.getDefault();
+
+	/** Cache liegt standardmäßig unter ~/.moodplayer/trackcache.bin */
+	public PlaylistManager() {
+		this(Paths.get(System.getProperty("user.home"), ".moodplayer", "trackcache.bin"));
+	}
+
+	public PlaylistManager(Path cacheFile) {
+		metadataCache = new TrackMetadataCache(cacheFile);
+		metadataCache.load();
+	}
 	
     /**
      * Lädt eine Playlist aus einer M3U-Datei.
      * - unterstützt #EXTINF Zeilen & relative Pfade zur M3U-Datei
      */
 	public Playlist loadM3U(String m3uFilePath) {
-	    System.out.println("[PlaylistManager] Lade M3U: " + m3uFilePath);
+	    return loadM3U(m3uFilePath, null);
+	}
+
+    /**
+     * streamende Variante von loadM3U
+     * - onBatch bekommt die Tracks blockweise, sobald sie gelesen sind (Aufruf im Lade-Thread)
+     * - ein Block wird abgegeben, wenn STREAM_BATCH_SIZE Tracks gesammelt sind oder
+     *   STREAM_BATCH_MILLIS vergangen sind > die ersten Tracks sind sofort verfügbar
+     * - die komplette Playlist wird am Ende trotzdem zurückgegeben
+     */
+	public Playlist loadM3U(String m3uFilePath, Consumer<List<Track>> onBatch) {
+	    LOG.info("Lade M3U: {}", m3uFilePath);
 
 	    File m3uFile = new File(m3uFilePath);
 
 	    if (!m3uFile.exists()) {
-	        System.err.println("[PlaylistManager] M3U-Datei nicht gefunden: " + m3uFilePath);
+	        LOG.warn("M3U-Datei nicht gefunden: {}", m3uFilePath);
 	        return null;
 	    }
 
@@ -42,6 +91,8 @@ public class PlaylistManager {
 	    }
 
 	    Playlist playlist = new Playlist(playlistName);
+	    List<Track> batch = new ArrayList<>();
+	    long batchStart = System.nanoTime();
 
 	    try (BufferedReader reader = new BufferedReader(new FileReader(m3uFile))) {
 	        String line;
@@ -77,12 +128,27 @@ public class PlaylistManager {
 	            Track track = createTrackFromMP3(mp3File, extinfLine);
 
 	            if (track != null) {
-	                // Länge zuverlässig aus Audio-Library bestimmen
-	                int lenSec = readLengthSeconds(mp3File);
-	                track.setLengthSec(lenSec);
+	                // Länge zuverlässig aus Audio-Library bestimmen (nur wenn nicht schon im Cache)
+	                int lenSec = track.getLengthSec();
+	                if (lenSec <= 0) {
+	                    lenSec = readLengthSeconds(mp3File);
+	                    track.setLengthSec(lenSec);
+	                    metadataCache.updateLength(mp3File, lenSec);
+	                }
 
 	                playlist.addTrack(track);
-	                System.out.println("[PlaylistManager] Track hinzugefügt: " + track + " (" + lenSec + "s)");
+	                LOG.debug("Track hinzugefügt: {} ({}s)", track, lenSec);
+
+	                if (onBatch != null) {
+	                    // Sicht auf den Store weitergeben > gleiche ID in allen Playlists
+	                    batch.add(playlist.getTracks().get(playlist.size() - 1));
+	                    if (batch.size() >= STREAM_BATCH_SIZE
+	                            || System.nanoTime() - batchStart >= STREAM_BATCH_MILLIS * 1_000_000L) {
+	                        onBatch.accept(batch);
+	                        batch = new ArrayList<>();
+	                        batchStart = System.nanoTime();
+	                    }
+	                }
 	            }
 
 	            // EXTINF nur für genau die nächste Datei
@@ -90,36 +156,60 @@ public class PlaylistManager {
 	        }
 
 	    } catch (IOException e) {
-	        System.err.println("[PlaylistManager] Fehler beim Lesen der M3U-Datei: " + e.getMessage());
-	        e.printStackTrace();
+	        LOG.error("Fehler beim Lesen der M3U-Datei", e);
+	    }
+
+	    // Rest-Block abgeben
+	    if (onBatch != null && !batch.isEmpty()) {
+	        onBatch.accept(batch);
 	    }
 
-	    System.out.println("[PlaylistManager] Playlist geladen: " + playlist.size() + " Tracks");
+	    metadataCache.save();
+	    seekIndex.save();
+
+	    LOG.info("Playlist geladen: {} Tracks", playlist.size());
 	    return playlist;
 	}
     
 	/**
      * erzeugt ein Track-Objekt aus MP3-Datei und liest ID3-Tags (Title/Artist/Album)
+     * - unveränderte Dateien kommen direkt aus dem Metadaten-Cache
      * falls ID3 fehlt, wird #EXTINF als Fallback genutzt
      */
 	private Track createTrackFromMP3(File mp3File, String extinfLine) {
 
 	    if (!mp3File.exists()) {
-	        System.err.println("[PlaylistManager] MP3 nicht gefunden: " + mp3File.getAbsolutePath());
+	        LOG.warn("MP3 nicht gefunden: {}", mp3File.getAbsolutePath());
 	        return null;
 	    }
 
+	    Track tagged = metadataCache.lookup(mp3File);
+	    if (tagged == null) {
+	        tagged = readTrackFromMP3(mp3File);
+	        metadataCache.put(mp3File, tagged);
+	    }
+
+	    if (extinfLine == null) {
+	        return tagged;
+	    }
+	    return applyExtinfFallback(tagged, mp3File, extinfLine);
+	}
+
+	/** liest die ID3-Tags einer MP3-Datei (ohne #EXTINF-Fallback) */
+	private Track readTrackFromMP3(File mp3File) {
 	    String filename = mp3File.getPath(); // statt getAbsolutePath()
 	    String title = mp3File.getName(); // Fallback
 	    String artist = "Unbekannt";
 	    String album = "Unbekannt";
 	    int lengthSec = 0;
 
-	    try {
-	        Mp3File mp3 = new Mp3File(mp3File);
+	    // Länge aus den Frameheadern (kein Decoder, kein kompletter Frame-Scan)
+	    int sec = Mp3DurationProber.probeSeconds(mp3File);
+	    if (sec > 0) lengthSec = sec;
 
-	        int sec = (int) mp3.getLengthInSeconds();
-	        if (sec > 0) lengthSec = sec;         
+	    try {
+	        // scanFile=false: mp3agic liest nur die Tags und sucht nicht alle Frames ab
+	        Mp3File mp3 = new Mp3File(mp3File, TAG_BUFFER_SIZE, false);
 
 	        if (mp3.hasId3v2Tag()) {
 	            ID3v2 id3v2 = mp3.getId3v2Tag();
@@ -149,11 +239,18 @@ public class PlaylistManager {
 	        }
 
 	    } catch (Exception e) {
-	        System.err.println("[PlaylistManager] Fehler beim Lesen der ID3-Tags: " + mp3File.getName());
+	        LOG.warn("Fehler beim Lesen der ID3-Tags: {}", mp3File.getName());
 	    }
 
-	    // Fallback: #EXTINF parsen
-	    if (extinfLine != null && (title.equals(mp3File.getName()) || artist.equals("Unbekannt"))) {
+	    return new Track(filename, title, artist, album, lengthSec);
+	}
+
+	/** Fallback: fehlenden Titel/Artist aus der #EXTINF-Zeile übernehmen */
+	private Track applyExtinfFallback(Track tagged, File mp3File, String extinfLine) {
+	    String title = tagged.getTitle();
+	    String artist = tagged.getArtist();
+
+	    if (title.equals(mp3File.getName()) || artist.equals("Unbekannt")) {
 	        try {
 	            String info = extinfLine.substring(extinfLine.indexOf(',') + 1).trim();
 
@@ -173,60 +270,156 @@ public class PlaylistManager {
 	        } catch (Exception ignored) {}
 	    }
 
-	    return new Track(filename, title, artist, album, lengthSec);
+	    return new Track(tagged.getFilename(), title, artist, tagged.getAlbum(), tagged.getLengthSec());
 	}
     
-	/**
-     * liest Länge einer MP3-Datei über SimpleAudioPlayer (ms -> Sekunden)
+    /**
+     * scannt einen Ordner rekursiv nach MP3-Dateien und erzeugt daraus eine Playlist
+     * - Ordner-Durchlauf (NIO walkFileTree) und Tag-Parsing laufen getrennt
+     * - das Parsing läuft parallel auf einem Worker-Pool (siehe setScanParallelism)
+     * - fertige Tracks landen sofort in der Playlist (Reihenfolge = Fertigstellung)
+     * - wird der aufrufende Thread unterbrochen, endet der Scan mit den bis dahin gelesenen
+     *   Tracks (Interrupt-Flag bleibt gesetzt)
      */
     public Playlist getAllTracks(String folderPath, String playlistName) {
-        System.out.println("[PlaylistManager] Scanne Ordner: " + folderPath);
+        LOG.info("Scanne Ordner: {} (Threads: {})", folderPath, scanParallelism);
+        long start = System.nanoTime();
         
         Playlist playlist = new Playlist(playlistName);
-        File folder = new File(folderPath);
+        Path folder = Paths.get(folderPath);
         
-        if (!folder.exists() || !folder.isDirectory()) {
-            System.err.println("[PlaylistManager] Ordner nicht gefunden: " + folderPath);
+        if (!Files.isDirectory(folder)) {
+            LOG.warn("Ordner nicht gefunden: {}", folderPath);
             return playlist;
         }
         
-        // rekursiv alle MP3s finden
-        scanFolder(folder, playlist);
+        ExecutorService workers = Executors.newFixedThreadPool(scanParallelism, r -> {
+            Thread t = new Thread(r, "library-scan");
+            t.setDaemon(true);
+            return t;
+        });
+        CompletionService<Track> results = new ExecutorCompletionService<>(workers);
+        // begrenzt die Anzahl Dateien "in Arbeit" > Speicher bleibt bei großen Bibliotheken konstant
+        Semaphore inFlight = new Semaphore(scanParallelism * 4);
+        int[] pending = {0};
+
+        try {
+            // Discovery: Ordnerbaum ablaufen, jede MP3 als Parse-Job abgeben
+            Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && file.getFileName().toString().toLowerCase().endsWith(".mp3")) {
+                        try {
+                            inFlight.acquire();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return FileVisitResult.TERMINATE;
+                        }
+                        results.submit(() -> {
+                            try {
+                                return createTrackFromMP3(file.toFile(), null);
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                        pending[0]++;
+
+                        // zwischendurch fertige Tracks einsammeln
+                        pending[0] -= drainFinished(results, playlist, false);
+                    }
+                    return Thread.currentThread().isInterrupted() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    LOG.warn("Nicht lesbar: {}", file);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+
+            // restliche Jobs abwarten (bei Interrupt abbrechen, shutdownNow() stoppt die Worker)
+            while (pending[0] > 0 && !Thread.currentThread().isInterrupted()) {
+                pending[0] -= drainFinished(results, playlist, true);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                LOG.warn("Scan abgebrochen, {} Tracks bis dahin eingelesen", playlist.size());
+            }
+
+        } catch (IOException e) {
+            LOG.warn("Fehler beim Scannen: {}", e.getMessage());
+        } finally {
+            workers.shutdownNow();
+        }
+
+        metadataCache.save();
+        seekIndex.save();
         
-        System.out.println("[PlaylistManager] Scan abgeschlossen: " + playlist.size() + " Tracks");
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        LOG.info("Scan abgeschlossen: {} Tracks in {} ms", playlist.size(), ms);
+        LOG.debug(() -> playlist.getStore().memoryReport());
         return playlist;
     }
-    
-    /** rekursive Hilfsmethode zum Scannen von Ordnern */
-    private void scanFolder(File folder, Playlist playlist) {
-        File[] files = folder.listFiles();
-        
-        if (files == null) return;
-        
-        for (File file : files) {
-            if (file.isDirectory()) {
-                // rekursiv in Unterordner gehen
-                scanFolder(file, playlist);
-            } else if (file.getName().toLowerCase().endsWith(".mp3")) {
-                // MP3-Datei gefunden
-                Track track = createTrackFromMP3(file, null);
-                if (track != null) {
-                    playlist.addTrack(track);
+
+    /**
+     * übernimmt fertige Parse-Ergebnisse in die Playlist
+     * - block=true wartet auf mindestens ein Ergebnis
+     * - gibt die Anzahl eingesammelter Jobs zurück; bei Interrupt bleibt das Flag gesetzt
+     */
+    private int drainFinished(CompletionService<Track> results, Playlist playlist, boolean block) {
+        int drained = 0;
+        try {
+            Future<Track> done = block ? results.take() : results.poll();
+            while (done != null) {
+                drained++;
+                try {
+                    Track track = done.get();
+                    if (track != null) {
+                        playlist.addTrack(track);
+                    }
+                } catch (ExecutionException e) {
+                    LOG.warn("Fehler beim Parsen: {}", e.getCause());
                 }
+                done = results.poll();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        return drained;
+    }
+
+    /** liest einen einzelnen Track (z.B. für den LibraryWatcher), null wenn nicht lesbar */
+    public Track loadTrack(File mp3File) {
+        return createTrackFromMP3(mp3File, null);
+    }
+
+    /** verwirft die Cache-Einträge einer gelöschten Datei */
+    public void forgetTrack(File mp3File) {
+        metadataCache.remove(mp3File);
+        seekIndex.remove(mp3File);
+    }
+
+    /** schreibt geänderte Cache-Einträge (Metadaten, Seek-Tabellen) auf die Platte */
+    public void saveMetadataCache() {
+        metadataCache.save();
+        seekIndex.save();
+    }
+
+    /** Anzahl paralleler Worker für getAllTracks (Standard: Anzahl CPU-Kerne) */
+    public int getScanParallelism() {
+        return scanParallelism;
+    }
+
+    /** setzt die Anzahl paralleler Worker für getAllTracks (mind. 1) */
+    public void setScanParallelism(int threads) {
+        this.scanParallelism = Math.max(1, threads);
     }
     
-    /** Hilfsmethode, um Länge von Track zu lesen */
+    /** Hilfsmethode, um Länge von Track zu lesen > nur Header, kein SimpleAudioPlayer */
     private int readLengthSeconds(File mp3File) {
-        try {
-            SimpleAudioPlayer p = minim.loadMP3File(mp3File.getPath());
-            int ms = p.length(); // Millisekunden
-            p.pause(); // sicherheitshalber Pause
-            return Math.max(0, ms / 1000);
-        } catch (Exception e) {
-            System.out.println("[PlaylistManager] Länge nicht lesbar: " + mp3File.getPath());
-            return 0;
+        int sec = Mp3DurationProber.probeSeconds(mp3File);
+        if (sec <= 0) {
+            LOG.warn("Länge nicht lesbar: {}", mp3File.getPath());
         }
+        return sec;
     }
 }
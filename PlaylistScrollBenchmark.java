@@ -0,0 +1,140 @@
+package de.hsrm.mi.enia.moodplayer.presentation.views;
+
+import de.hsrm.mi.enia.moodplayer.business.Playlist;
+import de.hsrm.mi.enia.moodplayer.business.ThumbnailPack;
+import de.hsrm.mi.enia.moodplayer.business.Track;
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.scene.Scene;
+import javafx.scene.control.ListView;
+import javafx.scene.control.skin.VirtualFlow;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+
+/**
+ * Scroll-Benchmark für die Playlist-Liste
+ * - füllt eine ListView mit TrackCells und synthetischen Tracks und scrollt sie gleichmäßig
+ *   von oben nach unten (SCROLL_PIXELS pro Frame)
+ * - misst pro Lauf: Frames/s, längsten Frame, Layout-Durchläufe der Szene und der Zellen,
+ *   erzeugte Zellen, updateItem-Aufrufe, neu berechnete Anzeige-Texte und allokierte Bytes
+ *   im FX-Thread
+ * - Zellen mit Vorschaubildern (eigene, temporäre Pack-Datei), am Ende wird die Zahl noch
+ *   wartender Vorschaubild-Anfragen ausgegeben
+ *
+ * starten: java ...PlaylistScrollBenchmark [Anzahl Tracks] [Sekunden]
+ */
+
+public class PlaylistScrollBenchmark extends Application {
+	private static final double SCROLL_PIXELS = 40;
+
+	private static int trackCount = 50_000;
+	private static int seconds = 10;
+
+	public static void main(String[] args) {
+		if (args.length > 0) trackCount = Integer.parseInt(args[0]);
+		if (args.length > 1) seconds = Integer.parseInt(args[1]);
+		launch(args);
+	}
+
+	@Override
+	public void start(Stage stage) throws IOException {
+		ThumbnailPack pack = new ThumbnailPack(Files.createTempFile("benchmark", ".pack"), ThumbnailLoader.THUMB_PIXELS);
+		pack.open();
+		ThumbnailLoader thumbnails = new ThumbnailLoader(pack);
+
+		Playlist playlist = new Playlist("Benchmark");
+		for (int i = 0; i < trackCount; i++) {
+			// jeder 10. Track ohne Tags > Ersatztexte
+			boolean tagged = i % 10 != 0;
+			playlist.addTrack(new Track("/benchmark/track" + i + ".mp3",
+					tagged ? "Titel " + i : "", tagged ? "Artist " + (i % 500) : "",
+					tagged ? "Album " + (i % 2000) : "", 120 + i % 300));
+		}
+
+		ListView<Track> list = new ListView<>(FXCollections.observableArrayList(playlist.getTracks()));
+		list.setFixedCellSize(TrackCell.HEIGHT);
+		list.setCellFactory(view -> new TrackCell(thumbnails));
+
+		Scene scene = new Scene(list, 800, 600);
+		var cssUrl = PlaylistScrollBenchmark.class.getResource("/style.css");
+		if (cssUrl != null) scene.getStylesheets().add(cssUrl.toExternalForm());
+
+		int[] scenePulses = new int[1];
+		scene.addPostLayoutPulseListener(() -> scenePulses[0]++);
+
+		stage.setScene(scene);
+		stage.setTitle("Scroll-Benchmark");
+		stage.show();
+
+		new AnimationTimer() {
+			private long start = -1;
+			private long last;
+			private long worstFrame;
+			private int frames;
+			private int pulsesAtStart, cellsAtStart, updatesAtStart, drawsAtStart, layoutsAtStart, textsAtStart;
+			private long bytesAtStart;
+
+			@Override
+			public void handle(long now) {
+				VirtualFlow<?> flow = (VirtualFlow<?>) list.lookup(".virtual-flow");
+				if (flow == null) return;
+
+				if (start < 0) {
+					// Zustand nach dem ersten Anzeigen als Nullpunkt
+					start = now;
+					last = now;
+					pulsesAtStart = scenePulses[0];
+					cellsAtStart = TrackCell.getCreatedCount();
+					updatesAtStart = TrackCell.getUpdateCount();
+					drawsAtStart = TrackCell.getDrawCount();
+					layoutsAtStart = TrackCell.getLayoutCount();
+					textsAtStart = TrackDisplayCache.getDefault().getComputedCount();
+					bytesAtStart = allocatedBytes();
+					return;
+				}
+
+				worstFrame = Math.max(worstFrame, now - last);
+				last = now;
+				frames++;
+				flow.scrollPixels(SCROLL_PIXELS);
+
+				if (now - start >= seconds * 1_000_000_000L || list.getItems().isEmpty()) {
+					stop();
+					double sec = (now - start) / 1e9;
+					System.out.println(String.format("[Benchmark] %d Tracks, %.1f s, %d Frames (%.1f fps), längster Frame %.1f ms",
+							trackCount, sec, frames, frames / sec, worstFrame / 1e6));
+					System.out.println("[Benchmark] Layout-Durchläufe Szene: " + (scenePulses[0] - pulsesAtStart)
+							+ ", Zellen: " + (TrackCell.getLayoutCount() - layoutsAtStart));
+					System.out.println("[Benchmark] neue Zellen: " + (TrackCell.getCreatedCount() - cellsAtStart)
+							+ " (gesamt " + TrackCell.getCreatedCount() + "), updateItem: " + (TrackCell.getUpdateCount() - updatesAtStart)
+							+ ", gezeichnet: " + (TrackCell.getDrawCount() - drawsAtStart)
+							+ ", neue Anzeige-Texte: " + (TrackDisplayCache.getDefault().getComputedCount() - textsAtStart)
+							+ ", wartende Vorschaubilder: " + thumbnails.getPending());
+					long bytes = allocatedBytes() - bytesAtStart;
+					if (bytesAtStart >= 0) {
+						System.out.println(String.format("[Benchmark] allokiert im FX-Thread: %.1f MB (%.1f KB pro Frame)",
+								bytes / 1e6, bytes / 1e3 / Math.max(1, frames)));
+					}
+					Platform.exit();
+				}
+			}
+		}.start();
+	}
+
+	/** allokierte Bytes des aktuellen Threads, -1 wenn die JVM das nicht misst */
+	private static long allocatedBytes() {
+		var bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+			if (sunBean.isThreadAllocatedMemorySupported()) {
+				return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+}
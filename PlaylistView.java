@@ -10,6 +10,7 @@ import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
 import javafx.scene.control.ProgressIndicator;
+import javafx.scene.control.TextField;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
@@ -19,6 +20,7 @@ import javafx.scene.layout.VBox;
  * UI-Klasse für die Playlist-Ansicht
  *
  * enthält:
+ * - Suchfeld (Titel, Artist, Album)
  * - ListView mit Tracks
  * - Mini-Trackinfo
  * - ControlPane
@@ -32,6 +34,7 @@ public class PlaylistView extends BorderPane {
     public Button toStartButton;
 
     // UI-Elemente für Playlist 
+    public TextField searchField;
     public ListView<Track> playlistListView; 
     public ProgressIndicator loadingIndicator;
     public Label statusLabel;
@@ -69,6 +72,10 @@ public class PlaylistView extends BorderPane {
         header.getChildren().addAll(headerText, toPlayerButton, toMoodButton, toStartButton);
 
         // Center
+        searchField = new TextField();
+        searchField.setId("searchField");
+        searchField.setPromptText("Suchen (Titel, Artist, Album)");
+
         playlistListView = new ListView<>();
         playlistListView.setPlaceholder(new Label("Keine Songs geladen"));
 
@@ -82,7 +89,7 @@ public class PlaylistView extends BorderPane {
         centerStack.getChildren().addAll(playlistListView, loadingIndicator);
 
         VBox centerBox = new VBox(10);
-        centerBox.getChildren().addAll(centerStack, statusLabel);
+        centerBox.getChildren().addAll(searchField, centerStack, statusLabel);
         centerBox.setPadding(new Insets(10));
         centerBox.setFillWidth(true);
 
@@ -1,14 +1,17 @@
 package de.hsrm.mi.enia.moodplayer.presentation.views;
 
+import de.hsrm.mi.enia.moodplayer.business.LibraryWatcher;
+import de.hsrm.mi.enia.moodplayer.business.Log;
 import de.hsrm.mi.enia.moodplayer.business.MoodPlayer;
 
 import de.hsrm.mi.enia.moodplayer.business.Playlist;
 import de.hsrm.mi.enia.moodplayer.business.PlaylistManager;
+import de.hsrm.mi.enia.moodplayer.business.SearchIndex;
+import de.hsrm.mi.enia.moodplayer.business.ThumbnailPack;
 import de.hsrm.mi.enia.moodplayer.business.Track;
 import de.hsrm.mi.enia.moodplayer.presentation.MoodPlayerGUI;
 import de.hsrm.mi.enia.moodplayer.presentation.uicomponents.TimePane;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
@@ -20,25 +23,39 @@ import javafx.scene.control.ListView;
 import javafx.scene.control.Slider;
 import javafx.scene.control.ToggleButton;
 import javafx.util.Callback;
-import javafx.util.Duration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Controller für die PlaylistView
  *
  * Aufgaben:
- * - Playlist asynchron laden
+ * - Playlist asynchron und blockweise laden
  * - Doppelklick auf Track → Abspielen
  * - Synchronisation mit PlayerView
+ * - zeigt die Playlist, die der Player gerade abspielt (Bibliothek oder Mood-Playlist),
+ *   Änderungen an der Mood-Playlist kommen als einzelne Bereiche in der ObservableList an
  * - Lautstärke & Play/Pause synchron halten
+ * - Suche über Titel/Artist/Album: SearchIndex im Hintergrund, veraltete Ergebnisse werden
+ *   verworfen, die Liste zeigt dann nur die Treffer der angezeigten Playlist
  */
 
 public class PlaylistViewController extends BaseController<PlaylistView> {
+    private static final Log LOG = Log.get("PlaylistView");
+    private static final Log SEARCH_LOG = Log.get("Search");
 
     private ListView<Track> playlistView;
 
-    // Playlist-Referenz
+    // Playlist-Referenz (Bibliothek, in die geladen wird) und die gerade angezeigte Playlist
     private Playlist playlist;
+    private Playlist shown;
     private PlaylistManager playlistManager;
+    private LibraryWatcher libraryWatcher;
     private MoodPlayer player;
 
     // Buttons aus dem ControlPane
@@ -48,15 +65,43 @@ public class PlaylistViewController extends BaseController<PlaylistView> {
     private ToggleButton shuffleButton;
     private Slider volumeSlider;
 
-    private Timeline playStateUpdater;
-
     private TimePane timePane;
-    private Timeline timeUpdater;
-    private Track lastShownTrack = null;
+
+    // Cover-Vorschaubilder der Zellen, null wenn die Pack-Datei nicht nutzbar ist
+    private ThumbnailLoader thumbnails;
+
+    // Suche: Index über alle geladenen Tracks, Treffer der letzten Anfrage (null = keine Suche)
+    private SearchIndex searchIndex;
+    private BitSet searchHits;
 
     // UI-Model für die ListView
     private ObservableList<Track> items;
 
+    // überträgt Bereichsänderungen der angezeigten Playlist auf items (FX-Thread)
+    private final Playlist.ChangeListener shownListener = new Playlist.ChangeListener() {
+        @Override
+        public void removed(int from, int count) {
+            // gefilterte Liste hat andere Positionen > neu filtern
+            if (searchHits != null) refilter();
+            else items.remove(from, from + count);
+        }
+
+        @Override
+        public void inserted(int from, int count) {
+            if (searchHits != null) refilter();
+            else items.addAll(from, new ArrayList<>(shown.getTracks().subList(from, from + count)));
+        }
+
+        @Override
+        public void reset() {
+            refilter();
+        }
+    };
+
+    // Tracks, die der Lade-Thread geliefert hat, aber noch nicht in der ListView sind
+    private final ConcurrentLinkedQueue<Track> pendingTracks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
     public PlaylistViewController(MoodPlayer player) {
         root = new PlaylistView();
 
@@ -80,24 +125,26 @@ public class PlaylistViewController extends BaseController<PlaylistView> {
     /** intitialisiert den Controller */
     @Override
     public void initialize() {
-        // ListView Setup (TrackCell)
-        playlistView.setCellFactory(new Callback<ListView<Track>, ListCell<Track>>() {
-            private int counter = -1;
+        thumbnails = openThumbnails();
+        searchIndex = new SearchIndex(playlist.getStore());
 
+        // ListView Setup (TrackCell), feste Zeilenhöhe > Zellen müssen nicht vermessen werden
+        playlistView.setFixedCellSize(TrackCell.HEIGHT);
+        playlistView.setCellFactory(new Callback<ListView<Track>, ListCell<Track>>() {
             @Override
             public ListCell<Track> call(ListView<Track> view) {
-                counter++;
-                return new TrackCell(counter);
+                return new TrackCell(thumbnails);
             }
         });
 
-        // ObservableList einmal setzen (wird später per setAll aktualisiert)
+        // ObservableList einmal setzen (wird beim Laden blockweise per addAll ergänzt)
         items = FXCollections.observableArrayList();
-        if (playlist != null) {
-            items.setAll(playlist.getTracks());
-        }
+        showPlaylist(playlist);
         playlistView.setItems(items);
 
+        // Player wechselt die Playlist (z.B. Mood-Auswahl) > diese anzeigen
+        player.currentPlaylistProperty().addListener((obs, oldList, newList) -> showPlaylist(newList));
+
         // Selection Listener > Mini-Info aktualisieren
         playlistView.getSelectionModel().selectedItemProperty().addListener(new ChangeListener<Track>() {
             @Override
@@ -108,6 +155,9 @@ public class PlaylistViewController extends BaseController<PlaylistView> {
             }
         });
 
+        // Suche bei jeder Eingabe, Ergebnis kommt asynchron
+        root.searchField.textProperty().addListener((obs, oldText, newText) -> search(newText));
+
         // Switch-Buttons zu anderen Views
         root.toPlayerButton.setOnAction(e -> MoodPlayerGUI.switchRoot("playerView"));
         root.toMoodButton.setOnAction(e -> MoodPlayerGUI.switchRoot("moodView"));
@@ -119,8 +169,7 @@ public class PlaylistViewController extends BaseController<PlaylistView> {
             if (event.getClickCount() == 2) {
                 Track selected = playlistView.getSelectionModel().getSelectedItem();
                 if (selected != null) {
-                    player.setPlaylist(playlist);
-                    player.playTrack(selected);
+                    playShown(selected);
 
                     // TimePane sofort passend setzen
                     updateTimePaneForCurrentTrack();
@@ -137,21 +186,20 @@ public class PlaylistViewController extends BaseController<PlaylistView> {
 
             // wenn ein Track existiert (Pause/Resume-Fall) > einfach weiter
             if (player.getCurrentTrack() != null) {
-                player.playOrResume();
+                player.playOrResume().exceptionally(BaseController::reportLoadError);
                 updateTimePaneForCurrentTrack();
                 return;
             }
 
             // sonst: Track starten (selected oder erster)
             Track selected = playlistView.getSelectionModel().getSelectedItem();
-            if (selected == null && playlist != null && !playlist.getTracks().isEmpty()) {
-                selected = playlist.getTracks().get(0);
+            if (selected == null && !items.isEmpty()) {
+                selected = items.get(0);
                 playlistView.getSelectionModel().select(0);
             }
 
             if (selected != null) {
-                player.setPlaylist(playlist);
-                player.playTrack(selected);
+                playShown(selected);
 
                 updateTimePaneForCurrentTrack();
             }
@@ -159,12 +207,12 @@ public class PlaylistViewController extends BaseController<PlaylistView> {
 
         // Skip / SkipBack
         skipButton.setOnAction(event -> {
-            player.skip();
+            player.skip().exceptionally(BaseController::reportLoadError);
             updateTimePaneForCurrentTrack();
         });
 
         skipBackButton.setOnAction(event -> {
-            player.skipBack();
+            player.skipBack().exceptionally(BaseController::reportLoadError);
             updateTimePaneForCurrentTrack();
         });
 
@@ -185,11 +233,13 @@ public class PlaylistViewController extends BaseController<PlaylistView> {
         // Async load
         loadPlaylistAsync();
 
-        // Updater starten
-        startPlayStateUpdater(); // Icon + Auswahl folgt Player
-        startTimeUpdater(); // Slider + Zeit folgt Player
+        // Icon, Auswahl, Slider + Zeit folgen dem Player
+        bindPlayerState();
         
         root.sceneProperty().addListener((obs, oldScene, newScene) -> {
+            // Positions-Updates nur anfordern, solange die View angezeigt wird
+            player.setPositionObserved(this, newScene != null);
+
             if (newScene != null) {
                 // View wurde wirklich angezeigt > sofort alles syncen
                 setPlayIcon(player.isPlaying());
@@ -201,92 +251,142 @@ public class PlaylistViewController extends BaseController<PlaylistView> {
 
     }
 
-    /** setzt das visuelle Shuffle-Icon abhängig vom aktuellen Shuffle-Zustand */
-    private void applyShuffleStyle(boolean shuffleIsOn, ToggleButton btn) {
-        btn.getStyleClass().removeAll("shuffle", "shuffle-disabled");
-        btn.getStyleClass().add(shuffleIsOn ? "shuffle-disabled" : "shuffle");
-        btn.setSelected(shuffleIsOn);
+    /** öffnet die Pack-Datei der Vorschaubilder, null = Zellen ohne Vorschaubild */
+    private ThumbnailLoader openThumbnails() {
+        ThumbnailPack pack = new ThumbnailPack(ThumbnailPack.defaultFile(), ThumbnailLoader.THUMB_PIXELS);
+        try {
+            pack.open();
+            return new ThumbnailLoader(pack);
+        } catch (IOException e) {
+            LOG.warn("Vorschaubilder nicht verfügbar: {}", e.getMessage());
+            return null;
+        }
     }
 
-    private Track lastHighlighted = null;
+    /** zeigt eine Playlist an und hört auf ihre Bereichsänderungen */
+    private void showPlaylist(Playlist pl) {
+        if (pl == shown) return;
+        if (shown != null) shown.removeChangeListener(shownListener);
+
+        shown = pl;
+        if (pl == null) {
+            items.clear();
+            return;
+        }
+        refilter();
+        pl.addChangeListener(shownListener);
+    }
 
     /**
-     * Startet einen periodischen Updater (Timeline), der:
-     * - das Play/Pause-Icon aktuell hält
-     * - den aktuell spielenden Track in der Playlist markiert
-     * - Shuffle-Status synchron hält (z. B. wenn er in der PlayerView geändert wurde)
-     * läuft dauerhaft im Hintergrund, solange die View existiert
+     * startet eine Suche, eine noch laufende wird dabei abgebrochen
+     * - leeres Suchfeld > sofort wieder alles anzeigen
      */
-    private void startPlayStateUpdater() {
-        playStateUpdater = new Timeline(
-            new KeyFrame(Duration.millis(200), e -> {
+    private void search(String query) {
+        if (query == null || query.isBlank()) {
+            searchHits = null;
+            refilter();
+        }
+        searchIndex.search(query != null ? query : "")
+                .thenAcceptAsync(this::applySearchResult, Platform::runLater);
+    }
 
-                // Play/Pause Icon
-                setPlayIcon(player.isPlaying());
+    /** übernimmt ein Suchergebnis, falls das Suchfeld noch denselben Text enthält (FX-Thread) */
+    private void applySearchResult(SearchIndex.Result result) {
+        if (!result.query.equals(root.searchField.getText())) return;
+        if (result.ids == null && searchHits == null) return;
 
-                // Track in Liste markieren, wenn Track wechselt
-                Track current = player.getCurrentTrack();
-                if (current != null && current != lastHighlighted) {
-                    lastHighlighted = current;
-                    syncSelectionToCurrentTrack(); // markiert + scrollt + mini info
-                }
+        searchHits = result.ids;
+        refilter();
+        if (searchHits != null) {
+            SEARCH_LOG.debug(() -> String.format("\"%s\": %d Treffer in %.2f ms",
+                    result.query, items.size(), result.nanos / 1e6));
+        }
+    }
 
-                // Shuffle-Icon konsistent halten (falls in anderer View geändert)
-                applyShuffleStyle(player.isShuffleOn(), shuffleButton);
-            })
-        );
-        playStateUpdater.setCycleCount(Timeline.INDEFINITE);
-        playStateUpdater.play();
+    /** nach neuen/geänderten Tracks die laufende Suche wiederholen */
+    private void refreshSearch() {
+        if (searchHits != null) search(root.searchField.getText());
     }
 
-    /**
-     * startet den Zeit-Updater für das TimePane
+    /** übernimmt die angezeigte Playlist in items, bei aktiver Suche nur die Treffer */
+    private void refilter() {
+        if (shown == null) return;
 
-     * - erkennt Trackwechsel und passt Maximalzeit an
-     * - aktualisiert regelmäßig die aktuelle Abspielzeit
-     * - verhindert Konflikte, wenn der Nutzer den Slider selbst bewegt
-     * Timeline läuft dauerhaft und liest den Zustand aus dem MP3Player
-     */
-    private void startTimeUpdater() {
+        if (searchHits == null) {
+            items.setAll(shown.getTracks());
+        } else {
+            List<Track> hits = new ArrayList<>();
+            for (int i = 0; i < shown.size(); i++) {
+                if (searchHits.get(shown.getId(i))) hits.add(shown.getTracks().get(i));
+            }
+            items.setAll(hits);
+        }
+        syncSelectionToCurrentTrack();
+    }
 
+    /** spielt einen Track der angezeigten Playlist (die Bibliothek wird dabei wieder Grundlage) */
+    private void playShown(Track selected) {
+        if (shown == playlist) player.setPlaylist(playlist);
+        player.playTrack(selected).exceptionally(BaseController::reportLoadError);
+    }
+
+    /** setzt das visuelle Shuffle-Icon abhängig vom aktuellen Shuffle-Zustand */
+    private void applyShuffleStyle(boolean shuffleIsOn, ToggleButton btn) {
+        btn.getStyleClass().removeAll("shuffle", "shuffle-disabled");
+        btn.getStyleClass().add(shuffleIsOn ? "shuffle-disabled" : "shuffle");
+        btn.setSelected(shuffleIsOn);
+    }
+
+    /**
+     * verbindet die View mit den Zustands-Properties des Players:
+     * - Play/Pause-Icon folgt playingProperty
+     * - Trackwechsel markiert den Track in der Liste und setzt das TimePane neu
+     * - Shuffle-Status bleibt synchron (z. B. wenn er in der PlayerView geändert wurde)
+     * - Zeit-Ticks kommen nur, solange gespielt wird und die View sichtbar ist
+     */
+    private void bindPlayerState() {
         updateTimePaneForCurrentTrack();
 
-        timeUpdater = new Timeline(
-            new KeyFrame(Duration.millis(250), e -> {
+        player.playingProperty().addListener((obs, wasPlaying, isPlaying) -> setPlayIcon(isPlaying));
 
-                Track current = player.getCurrentTrack();
+        player.currentTrackProperty().addListener((obs, oldTrack, newTrack) -> {
+            if (newTrack != null) {
+                syncSelectionToCurrentTrack(); // markiert + scrollt + mini info
+            }
+            updateTimePaneForCurrentTrack();
+        });
 
-                // Trackwechsel > MaxTime + aktuelle Zeit neu setzen
-                if (current != lastShownTrack) {
-                    lastShownTrack = current;
-                    updateTimePaneForCurrentTrack();
-                }
+        player.shuffleProperty().addListener((obs, oldValue, newValue) -> applyShuffleStyle(newValue, shuffleButton));
 
-                // nur wenn gespielt wird: Zeit fortschreiben
-                if (player.isPlaying() && !timePane.getSlider().isValueChanging()) {
-                    timePane.setCurrentTime(player.getCurrentPositionSeconds());
-                }
-            })
-        );
+        player.trackLengthProperty().addListener((obs, oldLen, newLen) -> {
+            if (newLen.intValue() > 0) timePane.setMaxTime(newLen.intValue());
+        });
 
-        timeUpdater.setCycleCount(Timeline.INDEFINITE);
-        timeUpdater.play(); // wichtig immer laufen lassen
+        player.currentTimeProperty().addListener((obs, oldTime, newTime) -> {
+            if (!timePane.getSlider().isValueChanging()) {
+                timePane.setCurrentTime(newTime.intValue());
+            }
+        });
     }
 
-    /** lädt Playlist asynchron aus einer M3U-Datei */
+    /**
+     * lädt Playlist asynchron aus einer M3U-Datei
+     * - Tracks kommen blockweise aus dem PlaylistManager und werden sofort angehängt
+     * - die Liste ist schon während des Ladens bedienbar
+     */
     private void loadPlaylistAsync() {
         Task<Void> loadTask = new Task<Void>() {
+            private int loaded = 0;
+
             @Override
             protected Void call() throws Exception {
                 updateMessage("Lade Playlist...");
 
-                Playlist loadedPlaylist = playlistManager.loadM3U("Playliste/MeineErstePlaylist.m3u");
-
-                if (loadedPlaylist != null) {
-                    for (Track track : loadedPlaylist.getTracks()) {
-                        playlist.addTrack(track);
-                    }
-                }
+                playlistManager.loadM3U("Playliste/MeineErstePlaylist.m3u", batch -> {
+                    loaded += batch.size();
+                    updateMessage("Lade Playlist... (" + loaded + " Songs)");
+                    enqueueLoadedTracks(batch);
+                });
 
                 updateMessage("Fertig");
                 return null;
@@ -295,33 +395,32 @@ public class PlaylistViewController extends BaseController<PlaylistView> {
 
         loadTask.setOnRunning(event -> {
             root.loadingIndicator.setVisible(true);
-            playlistView.setDisable(true);
         });
 
         loadTask.setOnSucceeded(event -> {
+            // evtl. noch wartende Tracks übernehmen
+            flushLoadedTracks();
             root.loadingIndicator.setVisible(false);
-            playlistView.setDisable(false);
 
             root.statusLabel.textProperty().unbind();
             root.statusLabel.setText(playlist.size() + " Songs geladen");
 
-            // Items aktualisieren (keine neue Liste erzeugen)
-            items.setAll(playlist.getTracks());
-            playlistView.refresh();
-
             // Mini-Info / Auswahl ggf. syncen
             syncSelectionToCurrentTrack();
 
             // TimePane ggf. aktualisieren
             updateTimePaneForCurrentTrack();
+
+            // ab jetzt Dateiänderungen live übernehmen
+            startLibraryWatcher();
         });
 
         loadTask.setOnFailed(event -> {
+            flushLoadedTracks();
             root.loadingIndicator.setVisible(false);
-            playlistView.setDisable(false);
             root.statusLabel.textProperty().unbind();
             root.statusLabel.setText("Fehler beim Laden!");
-            if (loadTask.getException() != null) loadTask.getException().printStackTrace();
+            if (loadTask.getException() != null) LOG.error("Laden fehlgeschlagen", loadTask.getException());
         });
 
         root.statusLabel.textProperty().bind(loadTask.messageProperty());
@@ -331,6 +430,74 @@ public class PlaylistViewController extends BaseController<PlaylistView> {
         loadThread.start();
     }
 
+    /**
+     * nimmt einen Block geladener Tracks aus dem Lade-Thread entgegen
+     * - mehrere Blöcke werden zu einem einzigen Platform.runLater zusammengefasst
+     */
+    private void enqueueLoadedTracks(List<Track> batch) {
+        pendingTracks.addAll(batch);
+        if (flushScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::flushLoadedTracks);
+        }
+    }
+
+    /** hängt alle wartenden Tracks an Playlist + ListView an (nur FX-Thread) */
+    private void flushLoadedTracks() {
+        flushScheduled.set(false);
+
+        List<Track> batch = new ArrayList<>();
+        Track t;
+        while ((t = pendingTracks.poll()) != null) {
+            batch.add(t);
+        }
+        if (batch.isEmpty()) return;
+
+        int[] ids = new int[batch.size()];
+        int from = playlist.size();
+        for (Track track : batch) {
+            playlist.addTrack(track);
+        }
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = playlist.getId(from + i);
+        }
+        searchIndex.update(ids, ids.length);
+
+        if (searchHits != null) refreshSearch();
+        else if (shown == playlist) items.addAll(batch);
+
+        // sobald die ersten Songs da sind: Spinner weg, Liste bedienbar
+        root.loadingIndicator.setVisible(false);
+    }
+
+    /**
+     * beobachtet die Ordner der geladenen Playlist
+     * - gelöschte Dateien verschwinden, geänderte Tags werden übernommen
+     */
+    private void startLibraryWatcher() {
+        try {
+            if (libraryWatcher == null) {
+                libraryWatcher = new LibraryWatcher(playlistManager);
+                libraryWatcher.setUpdateExecutor(Platform::runLater);
+                // laufender/geplanter Track behalten ihre Position auch nach Entfernen/Einfügen
+                libraryWatcher.setPlaylistEditor(player::editPlaylist);
+                libraryWatcher.setOnPlaylistChanged(changed -> {
+                    if (changed != playlist) return;
+                    // geänderte Tags > neu indizieren (es werden nur geänderte Wörter eingetragen)
+                    int[] ids = new int[playlist.size()];
+                    for (int i = 0; i < ids.length; i++) ids[i] = playlist.getId(i);
+                    searchIndex.update(ids, ids.length);
+                    refreshSearch();
+                    if (shown == playlist && searchHits == null) items.setAll(playlist.getTracks());
+                    root.statusLabel.setText(playlist.size() + " Songs geladen");
+                    syncSelectionToCurrentTrack();
+                });
+            }
+            libraryWatcher.attach(playlist);
+        } catch (IOException e) {
+            LOG.warn("Dateiüberwachung nicht möglich: {}", e.getMessage());
+        }
+    }
+
     /** aktualisiert Mini-Track-Infos unterhalb der Playlist */
     private void updateMiniTrackInfo(Track t) {
         if (t == null) {
@@ -339,19 +506,18 @@ public class PlaylistViewController extends BaseController<PlaylistView> {
             return;
         }
 
-        String title = (t.getTitle() != null && !t.getTitle().isBlank()) ? t.getTitle() : "Unbekannter Titel";
-        String artist = (t.getArtist() != null && !t.getArtist().isBlank()) ? t.getArtist() : "Unbekannter Artist";
-
-        root.miniTitleLabel.setText(title);
-        root.miniArtistLabel.setText(artist);
+        TrackDisplayCache.Entry e = TrackDisplayCache.getDefault().get(t);
+        root.miniTitleLabel.setText(e.title);
+        root.miniArtistLabel.setText(e.artist);
     }
 
     /** synchronisiert die Auswahl der Playlist mit dem aktuell spielenden Track */
     private void syncSelectionToCurrentTrack() {
         Track current = player.getCurrentTrack();
-        if (current == null || playlist == null) return;
+        if (current == null || shown == null) return;
 
-        int idx = playlist.getTracks().indexOf(current);
+        // gefiltert stimmen die Positionen der Playlist nicht mit der Liste überein
+        int idx = searchHits != null ? items.indexOf(current) : shown.indexOf(current);
         if (idx >= 0) {
             playlistView.getSelectionModel().select(idx);
             playlistView.scrollTo(idx);
@@ -0,0 +1,292 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * Suchindex über Titel, Artist und Album der Tracks eines TrackStores
+ * - Texte werden normalisiert: Kleinbuchstaben, Umlaute als ae/oe/ue (zusätzlich ohne
+ *   Punkte, "Mötley" findet man also mit "moe" und mit "mot"), ß > ss, Akzente entfernt
+ * - Wörterbuch (sortiert) mit Posting-Listen (Track-IDs) pro Wort
+ *   > Präfixsuche über einen Bereich des Wörterbuchs
+ *   > Suche mitten im Wort (ab 3 Zeichen) über Trigramme der Wörter
+ * - Anfrage: alle Suchbegriffe müssen auf ein Wort des Tracks passen (UND)
+ * - Index pflegen und Anfragen laufen auf einem eigenen Thread > kein Locking nötig
+ * - eine neue Anfrage bricht die vorherige ab (sie wird nicht mehr oder nur noch bis zum
+ *   nächsten Suchbegriff ausgeführt)
+ */
+
+public class SearchIndex {
+	// Suche mitten im Wort erst ab so vielen Zeichen
+	private static final int NGRAM = 3;
+	private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+	/** Ergebnis einer Anfrage */
+	public static final class Result {
+		public final String query;
+		/** passende Track-IDs, null = leere Anfrage (alles passt) */
+		public final BitSet ids;
+		public final long nanos;
+
+		Result(String query, BitSet ids, long nanos) {
+			this.query = query;
+			this.ids = ids;
+			this.nanos = nanos;
+		}
+	}
+
+	/** ein normalisiertes Wort mit den IDs der Tracks, in denen es vorkommt */
+	private static final class Word {
+		final String text;
+		int[] ids = new int[2];
+		int count = 0;
+
+		Word(String text) {
+			this.text = text;
+		}
+
+		void add(int id) {
+			if (count == ids.length) ids = Arrays.copyOf(ids, count * 2);
+			ids[count++] = id;
+		}
+
+		void remove(int id) {
+			for (int i = 0; i < count; i++) {
+				if (ids[i] == id) {
+					ids[i] = ids[--count];
+					return;
+				}
+			}
+		}
+
+		void addTo(BitSet bits) {
+			for (int i = 0; i < count; i++) bits.set(ids[i]);
+		}
+	}
+
+	private static final Word[] NO_WORDS = new Word[0];
+
+	private final TrackStore store;
+
+	// nur im Index-Thread benutzt
+	private final TreeMap<String, Word> words = new TreeMap<>();
+	private final Map<Long, List<Word>> trigrams = new HashMap<>();
+	private Word[][] wordsOf = new Word[1024][];
+
+	private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "search-index");
+		t.setDaemon(true);
+		return t;
+	});
+
+	// zuletzt gestellte, noch nicht beantwortete Anfrage
+	private final AtomicReference<CompletableFuture<Result>> pending = new AtomicReference<>();
+
+	public SearchIndex(TrackStore store) {
+		this.store = store;
+	}
+
+	/** (neu) indizieren, z.B. nach dem Laden eines Blocks oder geänderten Tags */
+	public void update(int[] ids, int n) {
+		int[] copy = Arrays.copyOf(ids, n);
+		worker.execute(() -> {
+			for (int id : copy) index(id);
+		});
+	}
+
+	/** entfernt Tracks aus dem Index */
+	public void remove(int[] ids, int n) {
+		int[] copy = Arrays.copyOf(ids, n);
+		worker.execute(() -> {
+			for (int id : copy) unindex(id);
+		});
+	}
+
+	/**
+	 * sucht im Hintergrund
+	 * - eine noch laufende frühere Anfrage wird abgebrochen (ihr Future ist dann cancelled)
+	 * - Ergebnis kommt im Index-Thread, weiterreichen z.B. mit thenAcceptAsync(.., Platform::runLater)
+	 */
+	public CompletableFuture<Result> search(String query) {
+		CompletableFuture<Result> f = new CompletableFuture<>();
+		CompletableFuture<Result> previous = pending.getAndSet(f);
+		if (previous != null) previous.cancel(false);
+
+		worker.execute(() -> {
+			if (f.isDone()) return;
+			try {
+				Result r = query(query, f);
+				if (r != null) f.complete(r);
+			} catch (RuntimeException e) {
+				f.completeExceptionally(e);
+			}
+			pending.compareAndSet(f, null);
+		});
+		return f;
+	}
+
+	/** Anfrage im Index-Thread, null wenn sie unterwegs abgebrochen wurde */
+	private Result query(String query, CompletableFuture<Result> f) {
+		long start = System.nanoTime();
+		List<String> terms = new ArrayList<>(tokens(normalize(query, true)));
+		if (terms.isEmpty()) return new Result(query, null, System.nanoTime() - start);
+
+		// längere Begriffe zuerst, sie passen meist auf weniger Tracks
+		terms.sort((a, b) -> b.length() - a.length());
+
+		BitSet result = null;
+		for (String term : terms) {
+			if (f.isCancelled()) return null;
+			BitSet matches = match(term);
+			if (result == null) result = matches;
+			else result.and(matches);
+			if (result.isEmpty()) break;
+		}
+		return new Result(query, result, System.nanoTime() - start);
+	}
+
+	/** alle Tracks mit einem Wort, das mit term beginnt oder (ab NGRAM Zeichen) term enthält */
+	private BitSet match(String term) {
+		BitSet bits = new BitSet(store.size());
+
+		for (Word w : words.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+			w.addTo(bits);
+		}
+
+		if (term.length() >= NGRAM) {
+			// kleinste Trigramm-Liste als Kandidaten, fehlt eins > kein Wort enthält term
+			List<Word> candidates = null;
+			for (int i = 0; i + NGRAM <= term.length(); i++) {
+				List<Word> list = trigrams.get(trigramKey(term, i));
+				if (list == null) return bits;
+				if (candidates == null || list.size() < candidates.size()) candidates = list;
+			}
+			for (Word w : candidates) {
+				if (!w.text.startsWith(term) && w.text.contains(term)) w.addTo(bits);
+			}
+		}
+		return bits;
+	}
+
+	private void index(int id) {
+		Set<String> tokens = new LinkedHashSet<>();
+		for (String field : new String[] { store.title(id), store.artist(id), store.album(id) }) {
+			if (field == null || field.isEmpty()) continue;
+			String ae = normalize(field, true);
+			tokens.addAll(tokens(ae));
+			String plain = normalize(field, false);
+			if (!plain.equals(ae)) tokens.addAll(tokens(plain));
+		}
+
+		Word[] list = new Word[tokens.size()];
+		int i = 0;
+		for (String token : tokens) {
+			Word w = words.get(token);
+			list[i++] = w != null ? w : newWord(token);
+		}
+
+		if (id >= wordsOf.length) wordsOf = Arrays.copyOf(wordsOf, Math.max(id + 1, wordsOf.length * 2));
+		Word[] old = wordsOf[id] != null ? wordsOf[id] : NO_WORDS;
+
+		// nur die Unterschiede eintragen: Entfernen ist linear in der Posting-Liste und
+		// häufige Wörter (gleicher Artist, gleiches Album) bleiben bei neuen Tags meist gleich
+		for (Word w : old) {
+			if (!contains(list, w)) w.remove(id);
+		}
+		for (Word w : list) {
+			if (!contains(old, w)) w.add(id);
+		}
+		wordsOf[id] = list;
+	}
+
+	private static boolean contains(Word[] list, Word w) {
+		for (Word x : list) {
+			if (x == w) return true;
+		}
+		return false;
+	}
+
+	private void unindex(int id) {
+		if (id >= wordsOf.length || wordsOf[id] == null) return;
+		for (Word w : wordsOf[id]) w.remove(id);
+		// Wörter ohne Tracks bleiben im Wörterbuch, sie liefern nur keine Treffer mehr
+		wordsOf[id] = NO_WORDS;
+	}
+
+	private Word newWord(String token) {
+		Word w = new Word(token);
+		words.put(token, w);
+		for (int i = 0; i + NGRAM <= token.length(); i++) {
+			List<Word> list = trigrams.computeIfAbsent(trigramKey(token, i), k -> new ArrayList<>(4));
+			// gleiches Trigramm mehrfach im Wort > nur einmal eintragen
+			if (list.isEmpty() || list.get(list.size() - 1) != w) list.add(w);
+		}
+		return w;
+	}
+
+	private static long trigramKey(String s, int i) {
+		return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+	}
+
+	/**
+	 * normalisiert einen Text für Index und Anfrage
+	 * - umlautsAsE: ä > ae (sonst ä > a)
+	 */
+	static String normalize(String s, boolean umlautsAsE) {
+		String lower = s.toLowerCase(Locale.ROOT);
+
+		boolean ascii = true;
+		for (int i = 0; i < lower.length() && ascii; i++) {
+			ascii = lower.charAt(i) < 0x80;
+		}
+		if (ascii) return lower;
+
+		StringBuilder sb = new StringBuilder(lower.length() + 4);
+		boolean accents = false;
+		for (int i = 0; i < lower.length(); i++) {
+			char c = lower.charAt(i);
+			switch (c) {
+				case 'ä': sb.append(umlautsAsE ? "ae" : "a"); break;
+				case 'ö': sb.append(umlautsAsE ? "oe" : "o"); break;
+				case 'ü': sb.append(umlautsAsE ? "ue" : "u"); break;
+				case 'ß': sb.append("ss"); break;
+				default:
+					sb.append(c);
+					accents |= c >= 0x80;
+			}
+		}
+		if (!accents) return sb.toString();
+		// übrige Akzente (é, ñ, ...) abtrennen und entfernen
+		return MARKS.matcher(Normalizer.normalize(sb, Normalizer.Form.NFD)).replaceAll("");
+	}
+
+	/** zerlegt einen normalisierten Text in Wörter (Buchstaben/Ziffern), ohne Duplikate */
+	static Set<String> tokens(String normalized) {
+		Set<String> out = new LinkedHashSet<>();
+		int start = -1;
+		for (int i = 0; i <= normalized.length(); i++) {
+			boolean letter = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+			if (letter && start < 0) {
+				start = i;
+			} else if (!letter && start >= 0) {
+				out.add(normalized.substring(start, i));
+				start = -1;
+			}
+		}
+		return out;
+	}
+}
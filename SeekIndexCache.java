@@ -0,0 +1,174 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * persistenter Cache für Seek-Tabellen (Mp3SeekTable), ein Eintrag pro Track
+ * - Schlüssel: absoluter Pfad, gültig nur solange Dateigröße + Änderungszeit gleich bleiben
+ * - VBR: ein Offset pro Sekunde, als Differenzen gespeichert (60 Minuten ~ 10 KB), CBR: ein paar Zahlen
+ * - im Speicher bleiben die Einträge kodiert, erst lookup() packt eine Tabelle aus
+ * - Einträge entstehen nur, wenn jemand MappedMp3Source.seekTable() aufruft; weder
+ *   Bibliotheks-Scan noch Engine bauen Tabellen (ein VBR-Frame-Scan liest die ganze Datei,
+ *   und die Wiedergabe kann mit Byte-Offsets nichts anfangen)
+ * - wird beim ersten Zugriff mit einem einzigen Lesevorgang geladen, save() schreibt nur nach Änderungen
+ * - threadsicher
+ */
+
+public class SeekIndexCache {
+	private static final Log LOG = Log.get("SeekIndex");
+
+	private static final int MAGIC = 0x4D50_5349; // "MPSI"
+	private static final int VERSION = 1;
+
+	/** gemeinsamer Cache unter ~/.moodplayer/seekindex.bin, beim ersten Zugriff geladen */
+	private static final class Holder {
+		static final SeekIndexCache DEFAULT = create();
+
+		private static SeekIndexCache create() {
+			SeekIndexCache c = new SeekIndexCache(Paths.get(System.getProperty("user.home"), ".moodplayer", "seekindex.bin"));
+			c.load();
+			return c;
+		}
+	}
+
+	private final Path cacheFile;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private volatile boolean dirty = false;
+
+	/** Stat-Infos + kodierte Tabelle */
+	private static final class Entry {
+		final long size;
+		final long mtime;
+		final byte[] data;
+
+		Entry(long size, long mtime, byte[] data) {
+			this.size = size;
+			this.mtime = mtime;
+			this.data = data;
+		}
+	}
+
+	public SeekIndexCache(Path cacheFile) {
+		this.cacheFile = cacheFile;
+	}
+
+	public static SeekIndexCache getDefault() {
+		return Holder.DEFAULT;
+	}
+
+	/** lädt die Cache-Datei komplett in den Speicher (fehlende/kaputte Datei = leerer Cache) */
+	public void load() {
+		entries.clear();
+
+		try {
+			DataInputStream in = CacheFiles.read(cacheFile, MAGIC, VERSION, LOG);
+			if (in == null) return;
+
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String path = in.readUTF();
+				long size = in.readLong();
+				long mtime = in.readLong();
+				byte[] table = new byte[in.readInt()];
+				in.readFully(table);
+				entries.put(path, new Entry(size, mtime, table));
+			}
+			LOG.info("{} Seek-Tabellen geladen", entries.size());
+
+		} catch (IOException e) {
+			LOG.warn("Cache nicht lesbar, wird neu aufgebaut: {}", e.getMessage());
+			entries.clear();
+		}
+	}
+
+	/** schreibt den Cache, falls sich seit dem Laden etwas geändert hat */
+	public void save() {
+		if (!dirty) return;
+		dirty = false;
+
+		try {
+			Map<String, Entry> snapshot = Map.copyOf(entries);
+			CacheFiles.write(cacheFile, MAGIC, VERSION, out -> {
+				out.writeInt(snapshot.size());
+				for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+					Entry en = e.getValue();
+					out.writeUTF(e.getKey());
+					out.writeLong(en.size);
+					out.writeLong(en.mtime);
+					out.writeInt(en.data.length);
+					out.write(en.data);
+				}
+			});
+
+		} catch (IOException e) {
+			dirty = true;
+			LOG.warn("Fehler beim Speichern: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * liefert die Tabelle, wenn Größe und Änderungszeit noch passen
+	 * - veraltete oder kaputte Einträge werden dabei entfernt
+	 * - null = nicht (mehr) im Cache
+	 */
+	public Mp3SeekTable lookup(String absolutePath, long size, long mtime) {
+		Entry en = entries.get(absolutePath);
+		if (en == null) return null;
+
+		if (en.size != size || en.mtime != mtime) {
+			remove(absolutePath);
+			return null;
+		}
+		try {
+			return Mp3SeekTable.readFrom(new DataInputStream(new ByteArrayInputStream(en.data)));
+		} catch (IOException e) {
+			LOG.debug("Eintrag nicht lesbar: {} ({})", absolutePath, e.getMessage());
+			remove(absolutePath);
+			return null;
+		}
+	}
+
+	/** speichert (oder ersetzt) die Tabelle eines Tracks zum angegebenen Dateistand */
+	public void put(String absolutePath, long size, long mtime, Mp3SeekTable table) {
+		if (table == null) return;
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + table.size() * 3);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			table.writeTo(out);
+		} catch (IOException e) {
+			return; // kommt bei ByteArrayOutputStream nicht vor
+		}
+		entries.put(absolutePath, new Entry(size, mtime, bytes.toByteArray()));
+		dirty = true;
+	}
+
+	/** true, wenn für den aktuellen Stand der Datei eine Tabelle vorliegt */
+	public boolean contains(File mp3File) {
+		Entry en = entries.get(mp3File.getAbsolutePath());
+		return en != null && en.size == mp3File.length() && en.mtime == mp3File.lastModified();
+	}
+
+	/** entfernt einen Eintrag, z.B. wenn die Datei gelöscht wurde */
+	public void remove(File mp3File) {
+		remove(mp3File.getAbsolutePath());
+	}
+
+	private void remove(String absolutePath) {
+		if (entries.remove(absolutePath) != null) {
+			dirty = true;
+		}
+	}
+
+	public int size() {
+		return entries.size();
+	}
+}
@@ -0,0 +1,114 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * misst Aufbau und Nutzung der Seek-Tabelle (MappedMp3Source / Mp3SeekTable)
+ * - ohne Datei: erzeugt einen 60-Minuten-VBR-Mix ohne Xing-Header (nur Frame-Header, Bitrate
+ *   wechselt zufällig) > schlechtester Fall, die Tabelle entsteht per Frame-Scan
+ * - misst: Mappen, Tabelle bauen, zweiter Zugriff (Cache), Frame-Suche bei 59:59
+ * - speichert die Tabelle in einem eigenen SeekIndexCache (Temp-Datei), lädt ihn wie beim
+ *   nächsten Start neu und sucht mit der geladenen Tabelle noch einmal
+ * - prüft beide Suchen gegen ein einfaches Abzählen aller Frames bis zur Zielzeit
+ *
+ * starten: java ...SeekTableBenchmark [mp3-Datei]
+ */
+
+public class SeekTableBenchmark {
+	// MPEG1 Layer III, 44,1 kHz, Stereo; Bitrate-Index 9..14 = 128..320 kbit/s
+	private static final int[] KBPS = { 128, 160, 192, 224, 256, 320 };
+	private static final int MINUTES = 60;
+
+	public static void main(String[] args) throws IOException {
+		File file;
+		if (args.length > 0) {
+			file = new File(args[0]);
+		} else {
+			file = File.createTempFile("seek-benchmark", ".mp3");
+			file.deleteOnExit();
+			writeVbrMix(file, MINUTES);
+		}
+
+		long t0 = System.nanoTime();
+		MappedMp3Source src = MappedMp3Source.open(file);
+		long t1 = System.nanoTime();
+		Mp3SeekTable table = src.seekTable();
+		long t2 = System.nanoTime();
+		MappedMp3Source.open(file).seekTable();
+		long t3 = System.nanoTime();
+		if (table == null) {
+			System.out.println("[Benchmark] keine MPEG-Frames in " + file);
+			return;
+		}
+
+		long target = table.durationMillis() - 1000;
+		for (int i = 0; i < 10_000; i++) src.locate((target + i) % table.durationMillis()); // JIT
+		long t4 = System.nanoTime();
+		Mp3SeekTable.Position pos = src.locate(target);
+		long t5 = System.nanoTime();
+
+		Mp3SeekTable.Position expected = walk(src, table, target);
+
+		// wie nach einem Neustart: Tabelle aus der gespeicherten Cache-Datei
+		File cacheFile = File.createTempFile("seek-benchmark", ".bin");
+		cacheFile.deleteOnExit();
+		SeekIndexCache stored = new SeekIndexCache(cacheFile.toPath());
+		stored.put(file.getAbsolutePath(), file.length(), file.lastModified(), table);
+		stored.save();
+		long t6 = System.nanoTime();
+		SeekIndexCache reloaded = new SeekIndexCache(cacheFile.toPath());
+		reloaded.load();
+		Mp3SeekTable restored = reloaded.lookup(file.getAbsolutePath(), file.length(), file.lastModified());
+		long t7 = System.nanoTime();
+		Mp3SeekTable.Position again = restored.locate(src.audio(), target);
+
+		System.out.println(String.format("[Benchmark] %s: %.1f MB, %s, Dauer %s, %d Einträge",
+				file.getName(), file.length() / 1e6, table.kind, table.durationMillis() / 1000 + " s", table.size()));
+		System.out.println(String.format("[Benchmark] mappen %.2f ms, Tabelle bauen %.1f ms, aus dem Cache %.2f ms",
+				(t1 - t0) / 1e6, (t2 - t1) / 1e6, (t3 - t2) / 1e6));
+		System.out.println(String.format("[Benchmark] Suche %d ms > Offset %d, Frame-Beginn %d ms in %.3f ms (Abzählen: Offset %d, %d ms)",
+				target, pos.offset, pos.millis, (t5 - t4) / 1e6, expected.offset, expected.millis));
+		System.out.println(String.format("[Benchmark] Cache-Datei %d Bytes, laden + auspacken %.2f ms, Suche danach > Offset %d",
+				cacheFile.length(), (t7 - t6) / 1e6, again.offset));
+		boolean exact = table.kind != Mp3SeekTable.Kind.SCAN || (pos.offset == expected.offset && again.offset == pos.offset);
+		System.exit(exact ? 0 : 1);
+	}
+
+	/** zählt alle Frames bis zur Zielzeit ab (so teuer wie ein lineares Vorspulen ohne Dekodieren) */
+	private static Mp3SeekTable.Position walk(MappedMp3Source src, Mp3SeekTable table, long millis) {
+		ByteBuffer audio = src.audio();
+		int pos = table.firstFrame;
+		long frame = 0;
+		while ((frame + 1) * table.frameMillis <= millis) {
+			MpegFrameHeader h = MpegFrameHeader.parse(audio, pos);
+			if (h == null) break;
+			pos += h.frameLength;
+			frame++;
+		}
+		return new Mp3SeekTable.Position(pos, Math.round(frame * table.frameMillis));
+	}
+
+	/** schreibt Frames mit gültigen Headern und leerem Inhalt */
+	private static void writeVbrMix(File file, int minutes) throws IOException {
+		Random random = new Random(42);
+		long frames = (long) (minutes * 60_000 / (1152 * 1000.0 / 44100));
+		byte[] frame = new byte[1441];
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file.toPath()), 1 << 16)) {
+			for (long i = 0; i < frames; i++) {
+				int idx = random.nextInt(KBPS.length);
+				int len = 144 * KBPS[idx] * 1000 / 44100;
+				frame[0] = (byte) 0xFF;
+				frame[1] = (byte) 0xFB;
+				frame[2] = (byte) ((9 + idx) << 4);
+				frame[3] = 0x00;
+				out.write(frame, 0, len);
+			}
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * misst, wie lange ein Klick auf Skip den aufrufenden (FX-)Thread blockiert
+ * - MoodPlayer mit den MP3s eines Ordners (ohne Ordner: nicht vorhandene Dateien > jedes
+ *   Laden schlägt fehl, die Aufrufe selbst werden trotzdem gemessen)
+ * - CLICKS Skips im Abstand von INTERVAL ms wie bei schnellem Weiterklicken, danach wird auf
+ *   das Future des letzten Skips gewartet
+ * - Ausgabe: Dauer der Aufrufe (Mittel, 99 %, Maximum), Zustand der Futures (geladen,
+ *   abgelöst, fehlgeschlagen), geladene/zusammengefasste/verworfene Tracks der Engine
+ *
+ * starten: java ...SkipLatencyBenchmark [Ordner] [Klicks] [Abstand ms]
+ */
+
+public class SkipLatencyBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		File dir = args.length > 0 ? new File(args[0]) : null;
+		int clicks = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		long interval = args.length > 2 ? Long.parseLong(args[2]) : 5;
+
+		Playlist playlist = new Playlist("Benchmark");
+		File[] files = dir != null ? dir.listFiles((d, name) -> name.toLowerCase().endsWith(".mp3")) : null;
+		if (files != null && files.length > 0) {
+			Arrays.sort(files);
+			for (File f : files) playlist.addTrack(new Track(f.getPath(), f.getName(), "", "", 0));
+		} else {
+			for (int i = 0; i < 100; i++) playlist.addTrack(new Track("/benchmark/track" + i + ".mp3", "Titel " + i, "Artist", "Album", 180));
+		}
+
+		MoodPlayer player = new MoodPlayer();
+		player.setPlaylist(playlist);
+		player.repeat(true);
+		player.play().exceptionally(e -> null).get(30, TimeUnit.SECONDS);
+
+		long[] calls = new long[clicks];
+		List<CompletableFuture<Track>> futures = new ArrayList<>(clicks);
+		for (int i = 0; i < clicks; i++) {
+			long start = System.nanoTime();
+			futures.add(player.skip());
+			calls[i] = System.nanoTime() - start;
+			Thread.sleep(interval);
+		}
+
+		CompletableFuture<Track> last = futures.get(futures.size() - 1);
+		try {
+			last.get(30, TimeUnit.SECONDS);
+		} catch (Exception e) {
+			System.out.println("[Benchmark] letzter Skip: " + e.getCause());
+		}
+
+		int loaded = 0, cancelled = 0, failed = 0, open = 0;
+		for (CompletableFuture<Track> f : futures) {
+			if (f.isCancelled()) cancelled++;
+			else if (f.isCompletedExceptionally()) failed++;
+			else if (f.isDone()) loaded++;
+			else open++;
+		}
+
+		Arrays.sort(calls);
+		long sum = 0;
+		for (long c : calls) sum += c;
+		MP3PlayerEngine engine = player.getEngine();
+
+		System.out.println(String.format("[Benchmark] %d Skips alle %d ms: Aufruf Mittel %.3f ms, 99 %% %.3f ms, max %.3f ms",
+				clicks, interval, sum / (double) clicks / 1e6, calls[Math.min(clicks - 1, (int) (clicks * 0.99))] / 1e6,
+				calls[clicks - 1] / 1e6));
+		System.out.println(String.format("[Benchmark] Futures: %d geladen, %d abgelöst, %d fehlgeschlagen, %d offen",
+				loaded, cancelled, failed, open));
+		System.out.println(String.format("[Benchmark] Engine: %d gestartet, %d nie geladen, %d geladen und verworfen, letztes Laden %.1f ms",
+				engine.getExecutedLoads(), engine.getCoalescedLoads(), engine.getSupersededLoads(), engine.getLastLoadMillis()));
+		player.stop();
+		System.exit(open == 0 ? 0 : 1);
+	}
+}
@@ -0,0 +1,313 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * binäres Dateiformat für TagManager (Version 2)
+ * - Dateikopf: MAGIC, VERSION, RECORD_SIZE, reserviert (je 4 Byte)
+ * - danach beliebig viele Segmente, jedes besteht aus:
+ *   > SEGMENT_MAGIC, Anzahl Strings, Bytes der Strings, Anzahl Datensätze
+ *   > String-Tabelle: Endoffsets (int je String) + UTF-8-Block, String-IDs zählen über alle Segmente weiter
+ *   > Datensätze fester Breite: String-ID, Fingerabdruck, Mood-Maske, Valence, Energy, Tempo
+ * - ein späterer Datensatz zur selben String-ID ersetzt frühere > Änderungen werden als
+ *   neues Segment angehängt, ohne den Rest der Datei neu zu schreiben
+ * - Lesen per memory-mapping, Pfade werden nur für den jeweils letzten Datensatz dekodiert
+ * - unvollständiges letztes Segment (Absturz beim Anhängen) wird ignoriert und beim nächsten
+ *   Anhängen überschrieben
+ */
+
+final class TagFile {
+	private static final int MAGIC = 0x4D50_5447; // "MPTG"
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 16;
+	private static final int SEGMENT_MAGIC = 0x5345_4730; // "SEG0"
+	private static final int SEGMENT_HEADER_SIZE = 16;
+	// String-ID, Fingerabdruck, Maske, Valence, Energy, Tempo
+	static final int RECORD_SIZE = 4 + 8 + 4 + 4 + 4 + 4;
+
+	// erst kompaktieren, wenn mindestens so viele Datensätze ersetzt sind
+	private static final int MIN_SUPERSEDED_FOR_COMPACTION = 1000;
+
+	private final Path path;
+
+	// String-ID + 1 pro Track-ID des Stores, 0 = Pfad steht noch nicht in der Datei
+	private int[] stringIdOfTrack = new int[0];
+	private int stringCount = 0;
+	private int recordCount = 0;
+	// Ende des letzten vollständigen Segments
+	private long validEnd = 0;
+
+	TagFile(Path path) {
+		this.path = path;
+	}
+
+	Path getPath() {
+		return path;
+	}
+
+	/** Anzahl Datensätze, die durch spätere ersetzt wurden */
+	int getSuperseded() {
+		return recordCount - stringCount;
+	}
+
+	boolean needsCompaction() {
+		int superseded = getSuperseded();
+		return superseded >= MIN_SUPERSEDED_FOR_COMPACTION && superseded > stringCount;
+	}
+
+	/** true, wenn die Datei im Format dieser Klasse vorliegt */
+	static boolean isTagFile(Path path) throws IOException {
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (ch.size() < HEADER_SIZE) return false;
+			ByteBuffer head = ByteBuffer.allocate(8);
+			ch.read(head, 0);
+			return head.getInt(0) == MAGIC && head.getInt(4) == VERSION;
+		}
+	}
+
+	/** liest alle Segmente und übergibt den jeweils letzten Datensatz pro Pfad an den TagManager */
+	int read(TagManager tags) throws IOException {
+		TrackStore store = tags.getStore();
+
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = ch.size();
+			MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION || buf.getInt(8) != RECORD_SIZE) {
+				throw new IOException("kein Tag-File Version " + VERSION);
+			}
+
+			// 1) Segmente ablaufen: Position der String-Tabellen und des letzten Datensatzes je String
+			long[] segStringTable = new long[8];
+			int[] segFirstString = new int[8];
+			int[] segStringCount = new int[8];
+			int segments = 0;
+
+			int[] latest = new int[1024]; // Position des letzten Datensatzes + 1 pro String-ID
+			int strings = 0;
+			int records = 0;
+
+			long pos = HEADER_SIZE;
+			validEnd = pos;
+			while (pos + SEGMENT_HEADER_SIZE <= size) {
+				if (buf.getInt((int) pos) != SEGMENT_MAGIC) break;
+				int nStrings = buf.getInt((int) pos + 4);
+				int stringBytes = buf.getInt((int) pos + 8);
+				int nRecords = buf.getInt((int) pos + 12);
+
+				long tableStart = pos + SEGMENT_HEADER_SIZE;
+				long recordStart = tableStart + nStrings * 4L + stringBytes;
+				long end = recordStart + (long) nRecords * RECORD_SIZE;
+				if (nStrings < 0 || stringBytes < 0 || nRecords < 0 || end > size) break; // abgeschnitten
+
+				if (segments == segStringTable.length) {
+					segStringTable = Arrays.copyOf(segStringTable, segments * 2);
+					segFirstString = Arrays.copyOf(segFirstString, segments * 2);
+					segStringCount = Arrays.copyOf(segStringCount, segments * 2);
+				}
+				segStringTable[segments] = tableStart;
+				segFirstString[segments] = strings;
+				segStringCount[segments] = nStrings;
+				segments++;
+				strings += nStrings;
+
+				if (strings > latest.length) latest = Arrays.copyOf(latest, Math.max(strings, latest.length * 2));
+				for (int r = 0; r < nRecords; r++) {
+					int recPos = (int) (recordStart + (long) r * RECORD_SIZE);
+					int sid = buf.getInt(recPos);
+					if (sid >= 0 && sid < strings) latest[sid] = recPos + 1;
+				}
+				records += nRecords;
+
+				pos = end;
+				validEnd = end;
+			}
+
+			// 2) Strings dekodieren, letzte Datensätze sammeln und gesammelt übernehmen
+			stringIdOfTrack = new int[Math.max(16, store.size() + strings)];
+			int[] trackIds = new int[strings];
+			int[] masks = new int[strings];
+			long[] fps = new long[strings];
+			float[] valences = new float[strings];
+			float[] energies = new float[strings];
+			float[] tempos = new float[strings];
+			int applied = 0;
+			for (int s = 0; s < segments; s++) {
+				long tableStart = segStringTable[s];
+				int n = segStringCount[s];
+				long blobStart = tableStart + n * 4L;
+
+				int blobLength = n > 0 ? buf.getInt((int) (tableStart + (n - 1) * 4L)) : 0;
+				byte[] blob = new byte[blobLength];
+				buf.get((int) blobStart, blob);
+
+				int from = 0;
+				for (int i = 0; i < n; i++) {
+					int to = buf.getInt((int) (tableStart + i * 4L));
+					int sid = segFirstString[s] + i;
+					int recPos = latest[sid] - 1;
+					if (recPos >= 0) {
+						String p = new String(blob, from, to - from, StandardCharsets.UTF_8);
+						int id = store.intern(p);
+						rememberString(id, sid);
+						trackIds[applied] = id;
+						fps[applied] = buf.getLong(recPos + 4);
+						masks[applied] = buf.getInt(recPos + 12);
+						valences[applied] = buf.getFloat(recPos + 16);
+						energies[applied] = buf.getFloat(recPos + 20);
+						tempos[applied] = buf.getFloat(recPos + 24);
+						applied++;
+					}
+					from = to;
+				}
+			}
+
+			tags.applyRecords(applied, trackIds, masks, fps, valences, energies, tempos);
+
+			stringCount = strings;
+			recordCount = records;
+			return applied;
+		}
+	}
+
+	/** schreibt alle Tracks mit Daten als ein einziges Segment neu (= kompaktieren) */
+	void writeAll(TagManager tags) throws IOException {
+		TrackStore store = tags.getStore();
+		int[] ids = tags.taggedIds();
+
+		Path dir = path.toAbsolutePath().getParent();
+		if (dir != null) Files.createDirectories(dir);
+		Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+
+		// leere Datensätze (alles entfernt) werden dabei weggelassen
+		int[] live = new int[ids.length];
+		int n = 0;
+		for (int id : ids) {
+			if (tags.maskOf(id) != 0 || tags.getFingerprint(id) != 0 || !Float.isNaN(store.valence(id))) live[n++] = id;
+		}
+		live = Arrays.copyOf(live, n);
+
+		long size;
+		try (OutputStream os = Files.newOutputStream(tmp)) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(RECORD_SIZE);
+			out.writeInt(0);
+			int[] sids = new int[n];
+			for (int i = 0; i < n; i++) sids[i] = i;
+			writeSegment(out, tags, live, live, sids);
+			out.flush();
+			size = out.size();
+		}
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		stringIdOfTrack = new int[Math.max(16, store.size())];
+		for (int i = 0; i < live.length; i++) rememberString(live[i], i);
+		stringCount = live.length;
+		recordCount = live.length;
+		validEnd = size;
+	}
+
+	/** hängt die Datensätze der angegebenen Tracks als neues Segment an */
+	void append(TagManager tags, CompressedBitSet changed) throws IOException {
+		int[] ids = changed.toArray();
+		if (ids.length == 0) return;
+
+		// Pfade, die noch keine String-ID in der Datei haben, bekommen die nächsten freien
+		// (erst nach erfolgreichem Schreiben in stringIdOfTrack übernommen)
+		int[] newStrings = new int[ids.length];
+		int[] sids = new int[ids.length];
+		int n = 0;
+		for (int i = 0; i < ids.length; i++) {
+			int sid = stringIdOf(ids[i]);
+			if (sid < 0) {
+				sid = stringCount + n;
+				newStrings[n++] = ids[i];
+			}
+			sids[i] = sid;
+		}
+		newStrings = Arrays.copyOf(newStrings, n);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(ids.length * (RECORD_SIZE + 64));
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeSegment(out, tags, newStrings, ids, sids);
+		out.flush();
+
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			// evtl. abgeschnittenes Segment eines früheren Absturzes überschreiben
+			ch.truncate(validEnd);
+			ch.write(ByteBuffer.wrap(bytes.toByteArray()), validEnd);
+			ch.force(false);
+		}
+
+		// Segment liegt vollständig auf der Platte > jetzt erst gelten die neuen String-IDs
+		for (int i = 0; i < newStrings.length; i++) rememberString(newStrings[i], stringCount + i);
+		validEnd += bytes.size();
+		stringCount += newStrings.length;
+		recordCount += ids.length;
+	}
+
+	/**
+	 * schreibt ein Segment
+	 * - stringIds: Tracks, deren Pfade neu in die String-Tabelle kommen
+	 * - recordIds: Tracks, für die ein Datensatz geschrieben wird
+	 * - recordSids: String-ID des Pfads pro Datensatz (parallel zu recordIds)
+	 */
+	private void writeSegment(DataOutputStream out, TagManager tags, int[] stringIds, int[] recordIds, int[] recordSids)
+			throws IOException {
+		TrackStore store = tags.getStore();
+
+		byte[][] encoded = new byte[stringIds.length][];
+		int stringBytes = 0;
+		for (int i = 0; i < stringIds.length; i++) {
+			encoded[i] = store.filename(stringIds[i]).getBytes(StandardCharsets.UTF_8);
+			stringBytes += encoded[i].length;
+		}
+
+		out.writeInt(SEGMENT_MAGIC);
+		out.writeInt(stringIds.length);
+		out.writeInt(stringBytes);
+		out.writeInt(recordIds.length);
+
+		int end = 0;
+		for (byte[] b : encoded) {
+			end += b.length;
+			out.writeInt(end);
+		}
+		for (byte[] b : encoded) out.write(b);
+
+		for (int i = 0; i < recordIds.length; i++) {
+			int id = recordIds[i];
+			out.writeInt(recordSids[i]);
+			out.writeLong(tags.getFingerprint(id));
+			out.writeInt(tags.maskOf(id));
+			out.writeFloat(store.valence(id));
+			out.writeFloat(store.energy(id));
+			out.writeFloat(store.tempo(id));
+		}
+	}
+
+	private int stringIdOf(int trackId) {
+		return trackId < stringIdOfTrack.length ? stringIdOfTrack[trackId] - 1 : -1;
+	}
+
+	private void rememberString(int trackId, int sid) {
+		if (trackId >= stringIdOfTrack.length) {
+			stringIdOfTrack = Arrays.copyOf(stringIdOfTrack, Math.max(trackId + 1, stringIdOfTrack.length * 2));
+		}
+		stringIdOfTrack[trackId] = sid + 1;
+	}
+}
@@ -1,7 +1,323 @@
 package de.hsrm.mi.enia.moodplayer.business;
 
-//lädt/verwaltet Zuordnung Track -> Mood (z.B. JSON/CSV später)
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * lädt/verwaltet Zuordnung Track -> Mood
+ * - invertierter Index: pro Mood eine komprimierte Menge von Track-IDs (TrackStore-IDs)
+ * - Abfragen mehrerer Moods laufen damit als Bitmengen-Operationen (MoodFilter)
+ * - pro Track zusätzlich ein Fingerabdruck der Datei (Größe/Änderungszeit), damit die
+ *   Feature-Analyse unveränderte Dateien überspringt
+ * - "manuell" markierte Tracks (tag/untag, Import) behalten ihre Moods bei der Auto-Analyse
+ * - Speichern im Binärformat (TagFile): save = kompakt neu schreiben, append = nur Änderungen
+ *   anhängen, Import/Export als CSV/JSON über TagTextFormat
+ * - threadsicher über den Monitor dieses Objekts
+ */
 
 public class TagManager {
+	private static final Log LOG = Log.get("TagManager");
+
+	// Bit in der Mood-Maske für "manuell getaggt"
+	static final int MANUAL_BIT = 1 << 31;
+
+	private final TrackStore store;
+	private final Map<Mood, CompressedBitSet> index = new EnumMap<>(Mood.class);
+	private CompressedBitSet manual = new CompressedBitSet();
+	// Fingerabdruck der analysierten Datei pro Track-ID, 0 = nie analysiert
+	private long[] fingerprints = new long[0];
+
+	// seit dem letzten Speichern geänderte Tracks (für append)
+	private CompressedBitSet dirty = new CompressedBitSet();
+	// zuletzt gelesene/geschriebene Datei
+	private TagFile file;
+
+	public TagManager() {
+		this(TrackStore.getDefault());
+	}
+
+	public TagManager(TrackStore store) {
+		this.store = store;
+		for (Mood m : Mood.values()) {
+			index.put(m, new CompressedBitSet());
+		}
+	}
+
+	/** Standard-Datei für gespeicherte Moods */
+	public static Path defaultFile() {
+		return Paths.get(System.getProperty("user.home"), ".moodplayer", "moodtags.bin");
+	}
+
+	public TrackStore getStore() {
+		return store;
+	}
+
+	/** ordnet einem Track von Hand eine Mood zu */
+	public synchronized void tag(int trackId, Mood mood) {
+		if (trackId < 0 || mood == null) return;
+		index.get(mood).add(trackId);
+		manual.add(trackId);
+		dirty.add(trackId);
+	}
+
+	public void tag(Track track, Mood mood) {
+		if (track != null) tag(track.getId(), mood);
+	}
+
+	/** entfernt eine Mood-Zuordnung von Hand */
+	public synchronized void untag(int trackId, Mood mood) {
+		if (trackId < 0 || mood == null) return;
+		index.get(mood).remove(trackId);
+		manual.add(trackId);
+		dirty.add(trackId);
+	}
+
+	/** ersetzt alle Moods eines Tracks (automatisch erkannt, nicht manuell) */
+	public synchronized void setMoods(int trackId, Set<Mood> moods) {
+		if (trackId < 0) return;
+		for (Map.Entry<Mood, CompressedBitSet> e : index.entrySet()) {
+			if (moods.contains(e.getKey())) e.getValue().add(trackId);
+			else e.getValue().remove(trackId);
+		}
+		dirty.add(trackId);
+	}
+
+	/** true, wenn die Moods von Hand gesetzt oder importiert wurden */
+	public synchronized boolean isManual(int trackId) {
+		return manual.contains(trackId);
+	}
+
+	/** setzt den Mood-Vektor eines Tracks im Store */
+	public synchronized void setVector(int trackId, float valence, float energy, float tempo) {
+		if (trackId < 0) return;
+		store.setVector(trackId, valence, energy, tempo);
+		dirty.add(trackId);
+	}
+
+	/** Fingerabdruck der Datei bei der letzten Analyse, 0 = nie analysiert */
+	public synchronized long getFingerprint(int trackId) {
+		return trackId >= 0 && trackId < fingerprints.length ? fingerprints[trackId] : 0;
+	}
+
+	public synchronized void setFingerprint(int trackId, long fingerprint) {
+		if (trackId < 0) return;
+		if (trackId >= fingerprints.length) {
+			fingerprints = Arrays.copyOf(fingerprints, Math.max(trackId + 1, fingerprints.length * 2));
+		}
+		fingerprints[trackId] = fingerprint;
+		dirty.add(trackId);
+	}
+
+	/** entfernt alle Moods eines Tracks (z.B. Datei gelöscht) */
+	public synchronized void clearTrack(int trackId) {
+		for (CompressedBitSet ids : index.values()) {
+			ids.remove(trackId);
+		}
+		manual.remove(trackId);
+		if (trackId < fingerprints.length) fingerprints[trackId] = 0;
+		store.setVector(trackId, Float.NaN, Float.NaN, Float.NaN);
+		dirty.add(trackId);
+	}
+
+	public synchronized boolean hasMood(int trackId, Mood mood) {
+		return mood != null && index.get(mood).contains(trackId);
+	}
+
+	/** alle Moods eines Tracks */
+	public synchronized Set<Mood> getMoods(int trackId) {
+		Set<Mood> moods = EnumSet.noneOf(Mood.class);
+		for (Map.Entry<Mood, CompressedBitSet> e : index.entrySet()) {
+			if (e.getValue().contains(trackId)) moods.add(e.getKey());
+		}
+		return moods;
+	}
+
+	/** Kopie der Track-IDs einer Mood */
+	public synchronized CompressedBitSet tracksWith(Mood mood) {
+		return index.get(mood).copy();
+	}
+
+	/** Anzahl Tracks mit dieser Mood */
+	public synchronized int count(Mood mood) {
+		return index.get(mood).cardinality();
+	}
+
+	/** ungefährer Speicherbedarf des Index in Bytes */
+	public synchronized long sizeInBytes() {
+		long b = manual.sizeInBytes() + fingerprints.length * 8L;
+		for (CompressedBitSet ids : index.values()) b += ids.sizeInBytes();
+		return b;
+	}
+
+	/** schreibt alle Tags kompakt neu (Temp-Datei + atomares Ersetzen) */
+	public synchronized void save(Path path) {
+		try {
+			TagFile f = new TagFile(path);
+			f.writeAll(this);
+			file = f;
+			dirty = new CompressedBitSet();
+		} catch (IOException e) {
+			LOG.warn("Fehler beim Speichern: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * hängt nur die seit dem letzten Speichern geänderten Tracks an die Datei an
+	 * - andere/neue Datei > komplett schreiben
+	 * - überwiegen ersetzte Datensätze, wird die Datei kompaktiert
+	 */
+	public synchronized void append(Path path) {
+		if (file == null || !file.getPath().equals(path) || !Files.isRegularFile(path)) {
+			save(path);
+			return;
+		}
+		if (dirty.isEmpty()) return;
+
+		try {
+			file.append(this, dirty);
+			dirty = new CompressedBitSet();
+			if (file.needsCompaction()) compact(path);
+		} catch (IOException e) {
+			LOG.warn("Fehler beim Anhängen: {}", e.getMessage());
+		}
+	}
+
+	/** entfernt ersetzte und leere Datensätze aus der Datei */
+	public synchronized void compact(Path path) {
+		int before = file != null && file.getPath().equals(path) ? file.getSuperseded() : 0;
+		save(path);
+		LOG.info("Datei kompaktiert, {} ersetzte Datensätze entfernt", before);
+	}
+
+	/** lädt gespeicherte Tags, unbekannte Pfade bekommen eine (leere) Zeile im Store */
+	public synchronized void load(Path path) {
+		if (!Files.isRegularFile(path)) return;
+
+		long start = System.nanoTime();
+		try {
+			if (TagFile.isTagFile(path)) {
+				TagFile f = new TagFile(path);
+				int count = f.read(this);
+				file = f;
+				dirty = new CompressedBitSet();
+				long ms = (System.nanoTime() - start) / 1_000_000;
+				LOG.info("{} Tracks mit Moods geladen ({} ms)", count, ms);
+			} else {
+				// kein TagFile > wie eine leere Datei, beim nächsten append komplett neu schreiben
+				LOG.warn("Unbekanntes Format, keine Moods geladen: {}", path);
+				file = null;
+			}
+		} catch (IOException e) {
+			LOG.warn("Datei nicht lesbar: {}", e.getMessage());
+		}
+	}
+
+	/** CSV: path,moods,valence,energy,tempo (Moods mit | getrennt) */
+	public void exportCsv(Path path) throws IOException {
+		TagTextFormat.writeCsv(this, path);
+	}
+
+	/** importiert CSV, importierte Moods gelten als manuell, gibt Anzahl Zeilen zurück */
+	public int importCsv(Path path) throws IOException {
+		return TagTextFormat.readCsv(this, path);
+	}
+
+	/** JSON: Array von Objekten {path, moods, valence, energy, tempo} */
+	public void exportJson(Path path) throws IOException {
+		TagTextFormat.writeJson(this, path);
+	}
+
+	public int importJson(Path path) throws IOException {
+		return TagTextFormat.readJson(this, path);
+	}
+
+	// Zugriff für TagFile/TagTextFormat (Aufrufer hält den Monitor bzw. ruft synchronisierte Methoden)
+	/** Mood-Bitmaske (Bit = Mood.ordinal, MANUAL_BIT = manuell) */
+	synchronized int maskOf(int trackId) {
+		int mask = 0;
+		for (Map.Entry<Mood, CompressedBitSet> e : index.entrySet()) {
+			if (e.getValue().contains(trackId)) mask |= 1 << e.getKey().ordinal();
+		}
+		if (manual.contains(trackId)) mask |= MANUAL_BIT;
+		return mask;
+	}
+
+	/** IDs aller Tracks mit Mood, Vektor oder Fingerabdruck, aufsteigend */
+	synchronized int[] taggedIds() {
+		int rows = store.size();
+		CompressedBitSet all = manual.copy();
+		for (CompressedBitSet ids : index.values()) all = all.or(ids);
+		for (int id = 0; id < rows; id++) {
+			if (getFingerprint(id) != 0 || !Float.isNaN(store.valence(id))) all.add(id);
+		}
+		return all.toArray();
+	}
+
+	/** übernimmt einen gelesenen Datensatz (ersetzt den bisherigen Stand des Tracks) */
+	synchronized void applyRecord(int trackId, int mask, long fingerprint, float valence, float energy, float tempo) {
+		for (Map.Entry<Mood, CompressedBitSet> e : index.entrySet()) {
+			if ((mask & (1 << e.getKey().ordinal())) != 0) e.getValue().add(trackId);
+			else e.getValue().remove(trackId);
+		}
+		if ((mask & MANUAL_BIT) != 0) manual.add(trackId);
+		else manual.remove(trackId);
+
+		setFingerprint(trackId, fingerprint);
+		store.setVector(trackId, valence, energy, tempo);
+	}
+
+	/**
+	 * übernimmt viele gelesene Datensätze auf einmal (Laden)
+	 * - die Mood-Mengen werden sortiert in einem Durchgang aufgebaut statt ID für ID
+	 * - gilt nicht als Änderung (dirty bleibt unverändert)
+	 */
+	synchronized void applyRecords(int n, int[] trackIds, int[] masks, long[] fps,
+			float[] valences, float[] energies, float[] tempos) {
+		if (n == 0) return;
+
+		// Reihenfolge nach Track-ID (obere 32 Bit), Position im Array (untere 32 Bit)
+		long[] order = new long[n];
+		for (int i = 0; i < n; i++) order[i] = (long) trackIds[i] << 32 | i;
+		Arrays.sort(order);
+
+		int[] sorted = new int[n];
+		for (int i = 0; i < n; i++) sorted[i] = (int) (order[i] >>> 32);
+		CompressedBitSet touched = CompressedBitSet.ofSorted(sorted, n);
+
+		int[] buf = new int[n];
+		for (Mood m : Mood.values()) {
+			index.put(m, index.get(m).andNot(touched).or(CompressedBitSet.ofSorted(buf, select(order, masks, 1 << m.ordinal(), buf))));
+		}
+		manual = manual.andNot(touched).or(CompressedBitSet.ofSorted(buf, select(order, masks, MANUAL_BIT, buf)));
+
+		int maxId = sorted[n - 1];
+		if (maxId >= fingerprints.length) {
+			fingerprints = Arrays.copyOf(fingerprints, Math.max(maxId + 1, fingerprints.length * 2));
+		}
+		for (int i = 0; i < n; i++) {
+			fingerprints[trackIds[i]] = fps[i];
+			store.setVector(trackIds[i], valences[i], energies[i], tempos[i]);
+		}
+	}
+
+	/** schreibt die Track-IDs (aufsteigend) aller Datensätze mit gesetztem Bit nach out */
+	private static int select(long[] order, int[] masks, int bit, int[] out) {
+		int k = 0;
+		for (long o : order) {
+			if ((masks[(int) o] & bit) != 0) out[k++] = (int) (o >>> 32);
+		}
+		return k;
+	}
 
+	/** direkter Zugriff für MoodFilter, nur mit synchronized (this) benutzen */
+	CompressedBitSet indexFor(Mood mood) {
+		return index.get(mood);
+	}
 }
@@ -0,0 +1,397 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Import/Export der Tags als Text (zum Bearbeiten von Hand oder Austausch)
+ * - CSV: Kopfzeile path,moods,valence,energy,tempo, Moods mit | getrennt, Felder bei Bedarf in "..."
+ * - JSON: [{"path": "...", "moods": ["CALM"], "valence": 0.3, "energy": -0.6, "tempo": 90}, ...]
+ * - beides wird zeilen- bzw. zeichenweise gestreamt, es entsteht kein Dokument im Speicher
+ * - importierte Moods gelten als manuell (die Auto-Analyse überschreibt sie nicht)
+ */
+
+final class TagTextFormat {
+	private static final Log LOG = Log.get("TagManager");
+
+	private static final String CSV_HEADER = "path,moods,valence,energy,tempo";
+
+	private TagTextFormat() {}
+
+	// CSV
+	static void writeCsv(TagManager tags, Path file) throws IOException {
+		TrackStore store = tags.getStore();
+		try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			out.write(CSV_HEADER);
+			out.newLine();
+			for (int id : tags.taggedIds()) {
+				out.write(csvField(store.filename(id)));
+				out.write(',');
+				out.write(moodList(tags.maskOf(id), "|"));
+				out.write(',');
+				out.write(number(store.valence(id)));
+				out.write(',');
+				out.write(number(store.energy(id)));
+				out.write(',');
+				out.write(number(store.tempo(id)));
+				out.newLine();
+			}
+		}
+	}
+
+	static int readCsv(TagManager tags, Path file) throws IOException {
+		int count = 0;
+		try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			boolean first = true;
+			while ((line = in.readLine()) != null) {
+				if (first) {
+					first = false;
+					if (line.startsWith("path,")) continue; // Kopfzeile
+				}
+				if (line.isBlank()) continue;
+
+				// Felder in Anführungszeichen dürfen Zeilenumbrüche enthalten
+				while (quoteCount(line) % 2 != 0) {
+					String next = in.readLine();
+					if (next == null) break;
+					line += "\n" + next;
+				}
+
+				List<String> f = splitCsv(line);
+				if (f.isEmpty() || f.get(0).isEmpty()) continue;
+				apply(tags, f.get(0), parseMoods(field(f, 1), "\\|"),
+						parseFloat(field(f, 2)), parseFloat(field(f, 3)), parseFloat(field(f, 4)));
+				count++;
+			}
+		}
+		LOG.info("{} Zeilen aus CSV importiert", count);
+		return count;
+	}
+
+	// JSON
+	static void writeJson(TagManager tags, Path file) throws IOException {
+		TrackStore store = tags.getStore();
+		try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			out.write('[');
+			boolean first = true;
+			for (int id : tags.taggedIds()) {
+				out.write(first ? "\n  " : ",\n  ");
+				first = false;
+
+				out.write("{\"path\": ");
+				jsonString(out, store.filename(id));
+				out.write(", \"moods\": [");
+				String moods = moodList(tags.maskOf(id), "\", \"");
+				if (!moods.isEmpty()) out.write("\"" + moods + "\"");
+				out.write("], \"valence\": ");
+				out.write(jsonNumber(store.valence(id)));
+				out.write(", \"energy\": ");
+				out.write(jsonNumber(store.energy(id)));
+				out.write(", \"tempo\": ");
+				out.write(jsonNumber(store.tempo(id)));
+				out.write('}');
+			}
+			out.write("\n]\n");
+		}
+	}
+
+	static int readJson(TagManager tags, Path file) throws IOException {
+		int count = 0;
+		try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			JsonTokens in = new JsonTokens(r);
+			in.expect('[');
+			if (in.peek() == ']') {
+				in.next();
+				return 0;
+			}
+
+			do {
+				String path = null;
+				Set<Mood> moods = EnumSet.noneOf(Mood.class);
+				float valence = Float.NaN, energy = Float.NaN, tempo = Float.NaN;
+
+				in.expect('{');
+				if (in.peek() != '}') {
+					do {
+						String key = in.string();
+						in.expect(':');
+						switch (key) {
+							case "path": path = in.string(); break;
+							case "moods":
+								in.expect('[');
+								if (in.peek() != ']') {
+									do {
+										Mood m = moodOrNull(in.string());
+										if (m != null) moods.add(m);
+									} while (in.comma());
+								}
+								in.expect(']');
+								break;
+							case "valence": valence = in.number(); break;
+							case "energy": energy = in.number(); break;
+							case "tempo": tempo = in.number(); break;
+							default: in.skipValue();
+						}
+					} while (in.comma());
+				}
+				in.expect('}');
+
+				if (path != null && !path.isEmpty()) {
+					apply(tags, path, moods, valence, energy, tempo);
+					count++;
+				}
+			} while (in.comma());
+			in.expect(']');
+		}
+		LOG.info("{} Einträge aus JSON importiert", count);
+		return count;
+	}
+
+	/** übernimmt einen importierten Eintrag als manuellen Stand */
+	private static void apply(TagManager tags, String path, Set<Mood> moods, float valence, float energy, float tempo) {
+		int id = tags.getStore().intern(path);
+		int mask = TagManager.MANUAL_BIT;
+		for (Mood m : moods) mask |= 1 << m.ordinal();
+		synchronized (tags) {
+			// markiert den Track über setFingerprint als geändert > wird beim nächsten append geschrieben
+			tags.applyRecord(id, mask, tags.getFingerprint(id), valence, energy, tempo);
+		}
+	}
+
+	// Hilfen
+	private static String moodList(int mask, String sep) {
+		StringBuilder sb = new StringBuilder();
+		for (Mood m : Mood.values()) {
+			if ((mask & (1 << m.ordinal())) == 0) continue;
+			if (sb.length() > 0) sb.append(sep);
+			sb.append(m.name());
+		}
+		return sb.toString();
+	}
+
+	private static Set<Mood> parseMoods(String s, String sepRegex) {
+		Set<Mood> moods = EnumSet.noneOf(Mood.class);
+		if (s == null || s.isBlank()) return moods;
+		for (String part : s.split(sepRegex)) {
+			Mood m = moodOrNull(part.trim());
+			if (m != null) moods.add(m);
+		}
+		return moods;
+	}
+
+	private static Mood moodOrNull(String name) {
+		try {
+			return Mood.valueOf(name.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			LOG.warn("Unbekannte Mood ignoriert: {}", name);
+			return null;
+		}
+	}
+
+	private static String number(float f) {
+		return Float.isNaN(f) ? "" : Float.toString(f);
+	}
+
+	private static String jsonNumber(float f) {
+		return Float.isNaN(f) ? "null" : Float.toString(f);
+	}
+
+	private static float parseFloat(String s) {
+		if (s == null || s.isBlank()) return Float.NaN;
+		try {
+			return Float.parseFloat(s.trim());
+		} catch (NumberFormatException e) {
+			return Float.NaN;
+		}
+	}
+
+	private static String field(List<String> fields, int i) {
+		return i < fields.size() ? fields.get(i) : null;
+	}
+
+	private static String csvField(String s) {
+		if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) return s;
+		return "\"" + s.replace("\"", "\"\"") + "\"";
+	}
+
+	private static int quoteCount(String s) {
+		int n = 0;
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) == '"') n++;
+		}
+		return n;
+	}
+
+	private static List<String> splitCsv(String line) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder cur = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					cur.append('"');
+					i++;
+				} else if (c == '"') {
+					quoted = false;
+				} else {
+					cur.append(c);
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(cur.toString());
+				cur.setLength(0);
+			} else {
+				cur.append(c);
+			}
+		}
+		fields.add(cur.toString());
+		return fields;
+	}
+
+	private static void jsonString(Writer out, String s) throws IOException {
+		out.write('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+				case '"': out.write("\\\""); break;
+				case '\\': out.write("\\\\"); break;
+				case '\n': out.write("\\n"); break;
+				case '\r': out.write("\\r"); break;
+				case '\t': out.write("\\t"); break;
+				default:
+					if (c < 0x20) out.write(String.format("\\u%04x", (int) c));
+					else out.write(c);
+			}
+		}
+		out.write('"');
+	}
+
+	/** minimaler JSON-Tokenizer für das Tag-Format (liest zeichenweise vom Reader) */
+	private static final class JsonTokens {
+		private final Reader in;
+		private int peeked = -2;
+
+		JsonTokens(Reader in) {
+			this.in = in;
+		}
+
+		/** nächstes Nicht-Leerzeichen, ohne es zu verbrauchen (-1 = Ende) */
+		int peek() throws IOException {
+			if (peeked == -2) {
+				int c;
+				do {
+					c = in.read();
+				} while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+				peeked = c;
+			}
+			return peeked;
+		}
+
+		int next() throws IOException {
+			int c = peek();
+			peeked = -2;
+			return c;
+		}
+
+		void expect(char c) throws IOException {
+			int got = next();
+			if (got != c) throw new IOException("JSON: '" + c + "' erwartet, gefunden: " + (got < 0 ? "Ende" : "'" + (char) got + "'"));
+		}
+
+		/** verbraucht ein Komma, falls eins folgt */
+		boolean comma() throws IOException {
+			if (peek() != ',') return false;
+			next();
+			return true;
+		}
+
+		String string() throws IOException {
+			expect('"');
+			StringBuilder sb = new StringBuilder();
+			while (true) {
+				int c = in.read();
+				if (c < 0) throw new IOException("JSON: String nicht beendet");
+				if (c == '"') return sb.toString();
+				if (c != '\\') {
+					sb.append((char) c);
+					continue;
+				}
+				int e = in.read();
+				switch (e) {
+					case 'n': sb.append('\n'); break;
+					case 'r': sb.append('\r'); break;
+					case 't': sb.append('\t'); break;
+					case 'b': sb.append('\b'); break;
+					case 'f': sb.append('\f'); break;
+					case 'u':
+						char[] hex = new char[4];
+						if (in.read(hex) != 4) throw new IOException("JSON: ungültiges \\u");
+						sb.append((char) Integer.parseInt(new String(hex), 16));
+						break;
+					default: sb.append((char) e); // " \ /
+				}
+			}
+		}
+
+		/** Zahl oder null (> NaN) */
+		float number() throws IOException {
+			String literal = literal();
+			if (literal.equals("null")) return Float.NaN;
+			try {
+				return Float.parseFloat(literal);
+			} catch (NumberFormatException e) {
+				throw new IOException("JSON: Zahl erwartet, gefunden: " + literal);
+			}
+		}
+
+		/** überspringt einen beliebigen Wert (auch verschachtelt) */
+		void skipValue() throws IOException {
+			int c = peek();
+			if (c == '"') {
+				string();
+			} else if (c == '[' || c == '{') {
+				char close = c == '[' ? ']' : '}';
+				next();
+				if (peek() != close) {
+					do {
+						if (close == '}') {
+							string();
+							expect(':');
+						}
+						skipValue();
+					} while (comma());
+				}
+				expect(close);
+			} else {
+				literal();
+			}
+		}
+
+		/** Zahl / true / false / null */
+		private String literal() throws IOException {
+			StringBuilder sb = new StringBuilder();
+			int c = peek();
+			while (c >= 0 && c != ',' && c != '}' && c != ']' && c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+				sb.append((char) c);
+				peeked = -2;
+				c = in.read();
+				peeked = c;
+			}
+			if (c == ' ' || c == '\n' || c == '\r' || c == '\t') peeked = -2;
+			return sb.toString();
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package de.hsrm.mi.enia.moodplayer.presentation.views;
+
+import de.hsrm.mi.enia.moodplayer.business.CoverArtReader;
+import de.hsrm.mi.enia.moodplayer.business.Log;
+import de.hsrm.mi.enia.moodplayer.business.ThumbnailPack;
+import de.hsrm.mi.enia.moodplayer.business.Track;
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * lädt Cover-Vorschaubilder für die Playlist-Zellen
+ * - Quelle ist die ThumbnailPack-Datei, fehlende Vorschaubilder werden einmal aus dem Cover
+ *   (CoverArtReader) verkleinert und angehängt
+ * - im Speicher nur ein kleiner LRU-Cache (MAX_IMAGES Bilder, geteilt pro Cover-Hash)
+ * - Anfragen laufen auf zwei Hintergrund-Threads, neueste zuerst (beim Scrollen sind das die
+ *   gerade sichtbaren Zellen)
+ * - abgebrochene Anfragen (Zelle zeigt inzwischen einen anderen Track) werden übersprungen
+ *   bzw. ihr Ergebnis verworfen
+ * - Ergebnisse kommen im FX-Thread an
+ */
+
+public class ThumbnailLoader {
+	private static final Log LOG = Log.get("Thumbs");
+
+	/** Kantenlänge im Pack in Pixeln (für 2x-Bildschirme bei 36 px Anzeige) */
+	public static final int THUMB_PIXELS = 72;
+
+	// so viele Bilder bleiben im Speicher (72x72 ARGB > gut 20 KB je Bild)
+	private static final int MAX_IMAGES = 400;
+	// mehr wartende Anfragen werden nicht gebraucht, die ältesten fallen weg
+	private static final int MAX_PENDING = 256;
+
+	/** laufende Anfrage einer Zelle */
+	public final class Request implements Runnable {
+		private final Track track;
+		private final Consumer<Image> onLoaded;
+		// nur im FX-Thread gesetzt, Hintergrund-Threads lesen nur
+		private volatile boolean cancelled = false;
+
+		private Request(Track track, Consumer<Image> onLoaded) {
+			this.track = track;
+			this.onLoaded = onLoaded;
+		}
+
+		/** Ergebnis wird nicht mehr gebraucht (nur FX-Thread) */
+		public void cancel() {
+			cancelled = true;
+			executor.remove(this);
+		}
+
+		@Override
+		public void run() {
+			if (cancelled) return;
+			Image img = load(track);
+			if (cancelled || img == null) return;
+			// endgültige Prüfung im FX-Thread, dort läuft auch cancel()
+			Platform.runLater(() -> {
+				if (!cancelled) onLoaded.accept(img);
+			});
+		}
+	}
+
+	private final ThumbnailPack pack;
+
+	// Cover-Hash > Bild, Zugriffsreihenfolge > ältester Eintrag zuerst
+	private final Map<Long, Image> images = new LinkedHashMap<Long, Image>(MAX_IMAGES, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Image> eldest) {
+			return size() > MAX_IMAGES;
+		}
+	};
+
+	private final ThreadPoolExecutor executor;
+
+	public ThumbnailLoader(ThumbnailPack pack) {
+		this.pack = pack;
+
+		// LIFO: neue Anfragen vorne einreihen
+		LinkedBlockingDeque<Runnable> queue = new LinkedBlockingDeque<>() {
+			@Override
+			public boolean offer(Runnable r) {
+				if (size() >= MAX_PENDING) {
+					Runnable oldest = pollLast();
+					if (oldest instanceof Request) ((Request) oldest).cancelled = true;
+				}
+				return offerFirst(r);
+			}
+		};
+		executor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, queue, r -> {
+			Thread t = new Thread(r, "thumbnail-loader");
+			t.setDaemon(true);
+			t.setPriority(Thread.NORM_PRIORITY - 1);
+			return t;
+		});
+	}
+
+	/** Vorschaubild aus dem Speicher, null wenn (noch) nicht geladen oder keins vorhanden (ohne Dateizugriff) */
+	public Image getIfCached(Track track) {
+		Long hash = pack.peekHash(track.getFilename());
+		if (hash == null || hash == ThumbnailPack.NO_COVER) return null;
+		synchronized (images) {
+			return images.get(hash);
+		}
+	}
+
+	/** true, wenn der Track bekanntermaßen kein Cover hat > keine Anfrage nötig */
+	public boolean isKnownWithoutCover(Track track) {
+		Long hash = pack.peekHash(track.getFilename());
+		return hash != null && hash == ThumbnailPack.NO_COVER;
+	}
+
+	/** lädt das Vorschaubild im Hintergrund, onLoaded wird nur mit einem Bild aufgerufen (FX-Thread) */
+	public Request request(Track track, Consumer<Image> onLoaded) {
+		Request r = new Request(track, onLoaded);
+		executor.execute(r);
+		return r;
+	}
+
+	/** Anzahl wartender Anfragen (für Messungen) */
+	public int getPending() {
+		return executor.getQueue().size();
+	}
+
+	private Image load(Track track) {
+		File file = new File(track.getFilename());
+		try {
+			Long hash = pack.lookupHash(file);
+			if (hash == null) hash = createThumb(file);
+			if (hash == ThumbnailPack.NO_COVER) return null;
+
+			synchronized (images) {
+				Image img = images.get(hash);
+				if (img != null) return img;
+			}
+
+			int[] thumb = pack.readThumb(hash);
+			if (thumb == null) return null;
+			Image img = toImage(thumb);
+			synchronized (images) {
+				images.put(hash, img);
+			}
+			return img;
+
+		} catch (IOException e) {
+			LOG.warn("Fehler bei {}: {}", file, e.getMessage());
+			return null;
+		}
+	}
+
+	/** liest das Cover, verkleinert es und legt es (einmal pro Cover) im Pack ab */
+	private long createThumb(File file) throws IOException {
+		CoverArtReader.Cover cover = CoverArtReader.read(file);
+		long hash = ThumbnailPack.NO_COVER;
+
+		if (cover != null) {
+			hash = ThumbnailPack.hashOf(cover.data);
+			if (!pack.hasThumb(hash)) {
+				Image img = new Image(new ByteArrayInputStream(cover.data), THUMB_PIXELS, THUMB_PIXELS, true, true);
+				int w = (int) img.getWidth();
+				int h = (int) img.getHeight();
+				if (img.isError() || img.getPixelReader() == null || w <= 0 || h <= 0) {
+					hash = ThumbnailPack.NO_COVER;
+				} else {
+					int[] argb = new int[w * h];
+					img.getPixelReader().getPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), argb, 0, w);
+					pack.putThumb(hash, w, h, argb);
+				}
+			}
+		}
+
+		pack.putTrack(file, hash);
+		return hash;
+	}
+
+	private static Image toImage(int[] thumb) {
+		int w = thumb[0];
+		int h = thumb[1];
+		WritableImage img = new WritableImage(w, h);
+		img.getPixelWriter().setPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), thumb, 2, w);
+		return img;
+	}
+}
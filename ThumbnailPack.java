@@ -0,0 +1,282 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pack-Datei für kleine Cover-Vorschaubilder (rohe ARGB-Pixel, einmal verkleinert)
+ * - Dateikopf: MAGIC, VERSION, Kantenlänge der Vorschaubilder (je 4 Byte)
+ * - danach nur angehängte Datensätze, zwei Arten:
+ *   > THUMB: Hash der Cover-Daten, Breite, Höhe, Breite*Höhe ARGB-Pixel (int)
+ *   > TRACK: Pfad, Dateigröße, Änderungszeit, Hash des Covers (NO_COVER = keins)
+ * - gleiche Cover (Album-Cover in jedem Track oder folder.jpg) liegen nur einmal in der Datei
+ * - ein späterer TRACK-Datensatz zum selben Pfad ersetzt frühere
+ * - beim Öffnen wird nur der Index gelesen (Pixel werden übersprungen), Pixel werden
+ *   einzeln per positionalem Lesen geholt > beliebig viele Threads gleichzeitig
+ * - unvollständiger letzter Datensatz (Absturz beim Anhängen) wird abgeschnitten
+ */
+
+public class ThumbnailPack {
+	private static final Log LOG = Log.get("Thumbs");
+
+	private static final int MAGIC = 0x4D50_5448; // "MPTH"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 12;
+	private static final byte THUMB = 1;
+	private static final byte TRACK = 2;
+
+	/** Hash für "Track hat kein Cover" */
+	public static final long NO_COVER = 0;
+
+	/** Eintrag eines Tracks: Stat-Infos beim Erzeugen + Hash seines Covers */
+	private static final class TrackRef {
+		final long size;
+		final long mtime;
+		final long hash;
+
+		TrackRef(long size, long mtime, long hash) {
+			this.size = size;
+			this.mtime = mtime;
+			this.hash = hash;
+		}
+	}
+
+	/** Lage eines Vorschaubilds in der Datei */
+	private static final class ThumbRef {
+		final long offset;
+		final int width;
+		final int height;
+
+		ThumbRef(long offset, int width, int height) {
+			this.offset = offset;
+			this.width = width;
+			this.height = height;
+		}
+	}
+
+	private final Path path;
+	private final int thumbSize;
+	private final Map<String, TrackRef> tracks = new ConcurrentHashMap<>();
+	private final Map<Long, ThumbRef> thumbs = new ConcurrentHashMap<>();
+	private volatile FileChannel channel;
+	// Ende des letzten vollständigen Datensatzes, nur unter dem Monitor ändern
+	private long end;
+
+	public ThumbnailPack(Path path, int thumbSize) {
+		this.path = path;
+		this.thumbSize = thumbSize;
+	}
+
+	public static Path defaultFile() {
+		return Paths.get(System.getProperty("user.home"), ".moodplayer", "thumbnails.pack");
+	}
+
+	public int getThumbSize() {
+		return thumbSize;
+	}
+
+	/**
+	 * öffnet die Datei und liest den Index
+	 * - fehlende Datei, anderes Format oder andere Kantenlänge > neue, leere Datei
+	 */
+	public synchronized void open() throws IOException {
+		Path dir = path.toAbsolutePath().getParent();
+		if (dir != null) Files.createDirectories(dir);
+
+		tracks.clear();
+		thumbs.clear();
+		end = readIndex();
+
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (end < HEADER_SIZE) {
+			channel.truncate(0);
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putInt(thumbSize);
+			header.flip();
+			writeFully(header, 0);
+			end = HEADER_SIZE;
+		} else if (channel.size() > end) {
+			LOG.warn("unvollständigen Datensatz am Ende verworfen");
+			channel.truncate(end);
+		}
+		LOG.info("{} Tracks, {} Vorschaubilder in {}", tracks.size(), thumbs.size(), path);
+	}
+
+	public synchronized void close() {
+		if (channel == null) return;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			LOG.warn("Fehler beim Schließen: {}", e.getMessage());
+		}
+		channel = null;
+	}
+
+	/** Ende des letzten vollständigen Datensatzes, 0 = Datei muss neu angelegt werden */
+	private long readIndex() {
+		if (!Files.isRegularFile(path)) return 0;
+
+		// Ende des letzten vollständig gelesenen Datensatzes
+		long good = 0;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != thumbSize) {
+				LOG.info("anderes Format, Pack-Datei wird neu aufgebaut");
+				return 0;
+			}
+			good = HEADER_SIZE;
+
+			while (true) {
+				int type = in.read();
+				if (type < 0) break;
+
+				if (type == THUMB) {
+					long hash = in.readLong();
+					int w = in.readInt();
+					int h = in.readInt();
+					if (w <= 0 || h <= 0 || w > thumbSize || h > thumbSize) break;
+					long pixelBytes = (long) w * h * 4;
+					in.skipNBytes(pixelBytes);
+					thumbs.put(hash, new ThumbRef(good + 17, w, h));
+					good += 17 + pixelBytes;
+
+				} else if (type == TRACK) {
+					int len = in.readUnsignedShort();
+					byte[] utf = in.readNBytes(len);
+					if (utf.length < len) break;
+					long size = in.readLong();
+					long mtime = in.readLong();
+					long hash = in.readLong();
+					tracks.put(new String(utf, StandardCharsets.UTF_8), new TrackRef(size, mtime, hash));
+					good += 3 + len + 24;
+
+				} else {
+					break;
+				}
+			}
+		} catch (EOFException e) {
+			// abgeschnittener letzter Datensatz, wird beim Öffnen entfernt
+		} catch (IOException e) {
+			LOG.warn("Pack-Datei nicht lesbar, wird neu aufgebaut: {}", e.getMessage());
+			return 0;
+		}
+		return good;
+	}
+
+	/**
+	 * Cover-Hash eines Tracks ohne Dateizugriff
+	 * - null = Track noch nicht im Pack, NO_COVER = bekannt ohne Cover
+	 */
+	public Long peekHash(String trackPath) {
+		TrackRef ref = tracks.get(trackPath);
+		return ref != null ? ref.hash : null;
+	}
+
+	/**
+	 * Cover-Hash eines Tracks, wenn Dateigröße und Änderungszeit noch passen
+	 * - null = unbekannt oder veraltet > Cover muss neu gelesen werden
+	 */
+	public Long lookupHash(File mp3File) {
+		TrackRef ref = tracks.get(mp3File.getPath());
+		if (ref == null) return null;
+		BasicFileAttributes attrs = stat(mp3File);
+		if (attrs == null || attrs.size() != ref.size || attrs.lastModifiedTime().toMillis() != ref.mtime) return null;
+		if (ref.hash != NO_COVER && !thumbs.containsKey(ref.hash)) return null;
+		return ref.hash;
+	}
+
+	public boolean hasThumb(long hash) {
+		return thumbs.containsKey(hash);
+	}
+
+	/** Pixel eines Vorschaubilds als {Breite, Höhe, ARGB...}, null wenn nicht vorhanden */
+	public int[] readThumb(long hash) throws IOException {
+		ThumbRef ref = thumbs.get(hash);
+		FileChannel ch = channel;
+		if (ref == null || ch == null) return null;
+
+		ByteBuffer buf = ByteBuffer.allocate(ref.width * ref.height * 4);
+		while (buf.hasRemaining()) {
+			if (ch.read(buf, ref.offset + buf.position()) < 0) return null;
+		}
+		buf.flip();
+
+		int[] result = new int[2 + ref.width * ref.height];
+		result[0] = ref.width;
+		result[1] = ref.height;
+		buf.asIntBuffer().get(result, 2, ref.width * ref.height);
+		return result;
+	}
+
+	/** hängt ein Vorschaubild an (nichts, wenn der Hash schon im Pack liegt) */
+	public synchronized void putThumb(long hash, int width, int height, int[] argb) throws IOException {
+		if (channel == null || thumbs.containsKey(hash)) return;
+
+		ByteBuffer buf = ByteBuffer.allocate(1 + 16 + width * height * 4);
+		buf.put(THUMB).putLong(hash).putInt(width).putInt(height);
+		buf.asIntBuffer().put(argb, 0, width * height);
+		buf.position(buf.capacity()).flip();
+		writeFully(buf, end);
+
+		thumbs.put(hash, new ThumbRef(end + 17, width, height));
+		end += buf.capacity();
+	}
+
+	/** ordnet einem Track (mit aktuellen Stat-Infos) ein Cover zu, NO_COVER = keins */
+	public synchronized void putTrack(File mp3File, long hash) throws IOException {
+		BasicFileAttributes attrs = stat(mp3File);
+		if (channel == null || attrs == null) return;
+
+		String key = mp3File.getPath();
+		byte[] utf = key.getBytes(StandardCharsets.UTF_8);
+		if (utf.length > 0xFFFF) return;
+		long mtime = attrs.lastModifiedTime().toMillis();
+
+		ByteBuffer buf = ByteBuffer.allocate(1 + 2 + utf.length + 24);
+		buf.put(TRACK).putShort((short) utf.length).put(utf).putLong(attrs.size()).putLong(mtime).putLong(hash);
+		buf.flip();
+		writeFully(buf, end);
+
+		tracks.put(key, new TrackRef(attrs.size(), mtime, hash));
+		end += buf.capacity();
+	}
+
+	/** Hash der (noch kodierten) Cover-Daten, nie NO_COVER */
+	public static long hashOf(byte[] data) {
+		try {
+			byte[] d = MessageDigest.getInstance("SHA-1").digest(data);
+			long h = ByteBuffer.wrap(d).getLong();
+			return h != NO_COVER ? h : 1;
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void writeFully(ByteBuffer buf, long position) throws IOException {
+		long pos = position;
+		while (buf.hasRemaining()) {
+			pos += channel.write(buf, pos);
+		}
+	}
+
+	private static BasicFileAttributes stat(File f) {
+		try {
+			return Files.readAttributes(f.toPath(), BasicFileAttributes.class);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
@@ -3,8 +3,10 @@ package de.hsrm.mi.enia.moodplayer.business;
 /**
  * Datenklasse für einen Track/Song
  * - enthält Pfad/Dateiname sowie Metadaten (Titel, Artist, Album) und Länge in Sekunden
+ * - entweder eigenständig (frisch eingelesen) oder als leichte Sicht auf eine Zeile im TrackStore
+ * - optional: Mood-Vektor aus Valence (-1 traurig .. 1 fröhlich), Energy (-1 ruhig .. 1 energisch)
+ *   und Tempo in BPM, NaN = unbekannt
  */
-//wie bisher, aber + moodTags / valence/energy optional
 
 public class Track {
 	
@@ -13,42 +15,116 @@ public class Track {
     private final String artist;
     private final String album;
     private int lengthSec;    
+    private float valence = Float.NaN;
+    private float energy = Float.NaN;
+    private float tempo = Float.NaN;
+
+    // gesetzt, wenn der Track eine Sicht auf den TrackStore ist
+    private final TrackStore store;
+    private final int id;
 
     public Track(String filename, String title, String artist, String album, int lengthSec) {
         this.filename = filename;
         this.title = title;
         this.artist = artist;
         this.album = album;
-        this.lengthSec = 0;
+        this.lengthSec = lengthSec;
+        this.store = null;
+        this.id = -1;
+    }
+
+    /** Sicht auf Zeile id im Store (nur über TrackStore.get) */
+    Track(TrackStore store, int id) {
+        this.filename = null;
+        this.title = null;
+        this.artist = null;
+        this.album = null;
+        this.store = store;
+        this.id = id;
     }
 
     // Getter & Setter
     public String getFilename() { 
-    	return filename; 
+    	return store != null ? store.filename(id) : filename; 
     }
     
     public String getTitle()    { 
-    	return title; 
+    	return store != null ? store.title(id) : title; 
     }
     
     public String getArtist()   { 
-    	return artist; 
+    	return store != null ? store.artist(id) : artist; 
     }
     
     public String getAlbum()    { 
-    	return album; 
+    	return store != null ? store.album(id) : album; 
     }
     
     public int getLengthSec()   { 
-    	return lengthSec; 
+    	return store != null ? store.length(id) : lengthSec; 
     }
     
     public void setLengthSec(int lengthSec) {
-    	this.lengthSec = lengthSec;
+    	if (store != null) store.setLength(id, lengthSec);
+    	else this.lengthSec = lengthSec;
+    }
+
+    public float getValence() {
+    	return store != null ? store.valence(id) : valence;
+    }
+
+    public float getEnergy() {
+    	return store != null ? store.energy(id) : energy;
+    }
+
+    public float getTempo() {
+    	return store != null ? store.tempo(id) : tempo;
+    }
+
+    /** true, wenn Valence und Energy bekannt sind */
+    public boolean hasMoodVector() {
+    	return !Float.isNaN(getValence()) && !Float.isNaN(getEnergy());
+    }
+
+    /** setzt den Mood-Vektor (Werte werden auf -1..1 begrenzt, tempo NaN = unbekannt) */
+    public void setMoodVector(float valence, float energy, float tempo) {
+    	valence = Math.max(-1f, Math.min(1f, valence));
+    	energy = Math.max(-1f, Math.min(1f, energy));
+    	if (store != null) {
+    		store.setVector(id, valence, energy, tempo);
+    	} else {
+    		this.valence = valence;
+    		this.energy = energy;
+    		this.tempo = tempo;
+    	}
+    }
+
+    /** Store, in dem der Track liegt (null = eigenständig) */
+    public TrackStore getStore() {
+    	return store;
+    }
+
+    /** Zeilen-ID im Store, -1 wenn eigenständig */
+    public int getId() {
+    	return id;
+    }
+
+    // Sichten auf dieselbe Zeile sind gleich, eigenständige Tracks nur mit sich selbst
+    @Override public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Track)) return false;
+        Track other = (Track) o;
+        return store != null && store == other.store && id == other.id;
+    }
+
+    @Override public int hashCode() {
+        return store != null ? id : System.identityHashCode(this);
     }
 
     @Override public String toString() {
-        return (title != null && !title.isBlank() ? title : filename) +
+        String title = getTitle();
+        String artist = getArtist();
+        return (title != null && !title.isBlank() ? title : getFilename()) +
                (artist != null && !artist.isBlank() ? " – " + artist : "");
     }
 
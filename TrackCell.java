@@ -1,78 +1,206 @@
 package de.hsrm.mi.enia.moodplayer.presentation.views;
 
 import de.hsrm.mi.enia.moodplayer.business.Track;
-import javafx.geometry.Insets;
-import javafx.geometry.Pos;
-import javafx.scene.control.Label;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ContentDisplay;
 import javafx.scene.control.ListCell;
-import javafx.scene.layout.HBox;
-import javafx.scene.layout.VBox;
+import javafx.scene.image.Image;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
 
 /**
  * eigene ListCell für die Playlist.
  *
- * eeigt:
- * - Titel
- * - Artist
- * - Album
+ * zeigt:
+ * - Cover-Vorschaubild (nur mit ThumbnailLoader)
+ * - Titel (fett) + Länge
+ * - Artist – Album
  *
- * wird von der ListView gecached.
+ * - beide Zeilen werden auf ein einziges Canvas gezeichnet statt in Labels
+ *   > pro Zelle nur ein Node, kein Text-Layout beim Scrollen
+ * - Texte kommen fertig aus dem TrackDisplayCache
+ * - feste Höhe (HEIGHT), die ListView setzt dazu setFixedCellSize > Zellen werden nie vermessen
+ * - wird von der ListView gecached, beim Scrollen werden nur Inhalte getauscht
+ * - Vorschaubilder kommen asynchron, bekommt die Zelle vorher einen anderen Track,
+ *   wird die alte Anfrage abgebrochen
  */
 
 public class TrackCell extends ListCell<Track> {
-	HBox content;
-	
-	// number ist nur zum Zeigen des Cachings eingeführt
-	Label number;
-	
-	Label title;
-	Label artist;
-	Label album;
-	
+	/** Zeilenhöhe inkl. Innenabstand */
+	public static final double HEIGHT = 44;
+
+	private static final Font TITLE_FONT = Font.font("Helvetica", FontWeight.BOLD, 12);
+	private static final Font SUBTITLE_FONT = Font.font("Helvetica", 12);
+	private static final double PADDING_X = 5;
+	// Kantenlänge des Vorschaubilds + Abstand zum Text
+	private static final double THUMB_SIZE = 36;
+	private static final double THUMB_GAP = 8;
+	// rechts reservierter Platz für die Länge
+	private static final double LENGTH_WIDTH = 48;
+
+	// Messwerte (nur FX-Thread) für den Scroll-Benchmark
+	private static int createdCount = 0;
+	private static int updateCount = 0;
+	private static int drawCount = 0;
+	private static int layoutCount = 0;
+
+	private final Canvas canvas = new Canvas();
+	private final ThumbnailLoader thumbnails;
+	private TrackDisplayCache.Entry entry;
+
+	// Track, zu dem thumb/thumbRequest gehören
+	private Track thumbTrack;
+	private Image thumb;
+	private ThumbnailLoader.Request thumbRequest;
+
+	/** Zelle ohne Vorschaubilder */
 	public TrackCell() {
-		content = new HBox();
-		
-		VBox trackInfo = new VBox();
-		
-		number = new Label();
-		title = new Label();
-		artist = new Label();
-		album = new Label();
-		
-		number.getStyleClass().add("main-text");
-		title.getStyleClass().add("text-1");
-		artist.getStyleClass().add("text-2");
-		album.getStyleClass().add("text-2");
-		
-		trackInfo.getChildren().addAll(title, artist, album);
-		trackInfo.setSpacing(5);
-		
-		content.getChildren().addAll(number, trackInfo);
-		content.setAlignment(Pos.CENTER_LEFT);
-		content.setSpacing(20);
-		content.setPadding(new Insets(5, 10, 5, 5));
-		
-		this.setGraphic(content);
+		this(null);
 	}
-	
-	public TrackCell(int nr) {
-		this();
-		number.setText("" + nr);
+
+	public TrackCell(ThumbnailLoader thumbnails) {
+		this.thumbnails = thumbnails;
+		createdCount++;
+		setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+		setGraphic(canvas);
+
+		// Textfarbe kommt weiter aus dem CSS (.list-cell, :selected)
+		textFillProperty().addListener((obs, oldFill, newFill) -> draw());
 	}
-	
+
 	@Override
 	public void updateItem(Track item, boolean empty) {
 		super.updateItem(item, empty);
-		
-		if (!empty) {
-			title.setText(item.getTitle());
-			artist.setText(item.getArtist());
-			album.setText(item.getAlbum());
-			setGraphic(content);
-		} else {
-			setGraphic(null);
+		updateCount++;
+
+		Track track = empty ? null : item;
+		boolean thumbChanged = updateThumb(track);
+
+		TrackDisplayCache.Entry e = track == null ? null : TrackDisplayCache.getDefault().get(track);
+		if (e == entry && !thumbChanged) return; // gleicher Inhalt > nichts neu zeichnen
+		entry = e;
+		draw();
+	}
+
+	/** stellt das Vorschaubild auf einen neuen Track um, true wenn sich etwas geändert hat */
+	private boolean updateThumb(Track track) {
+		if (thumbnails == null || track == thumbTrack) return false;
+
+		// Zelle wurde wiederverwendet > Ergebnis der alten Anfrage wird nicht mehr gebraucht
+		if (thumbRequest != null) {
+			thumbRequest.cancel();
+			thumbRequest = null;
+		}
+		thumbTrack = track;
+		thumb = track != null ? thumbnails.getIfCached(track) : null;
+
+		if (track != null && thumb == null && !thumbnails.isKnownWithoutCover(track)) {
+			thumbRequest = thumbnails.request(track, img -> {
+				thumbRequest = null;
+				thumb = img;
+				draw();
+			});
 		}
+		return true;
 	}
 
-}
+	@Override
+	protected void layoutChildren() {
+		super.layoutChildren();
+		layoutCount++;
+
+		double w = Math.max(0, snapSizeX(getWidth() - snappedLeftInset() - snappedRightInset()));
+		double h = Math.max(0, snapSizeY(getHeight() - snappedTopInset() - snappedBottomInset()));
+		if (w != canvas.getWidth() || h != canvas.getHeight()) {
+			canvas.setWidth(w);
+			canvas.setHeight(h);
+			draw();
+		}
+	}
+
+	// Breite kommt von der ListView, das Canvas soll keinen horizontalen Scrollbalken erzwingen
+	@Override
+	protected double computePrefWidth(double height) {
+		return 0;
+	}
 
+	@Override
+	protected double computePrefHeight(double width) {
+		return HEIGHT;
+	}
+
+	private void draw() {
+		GraphicsContext g = canvas.getGraphicsContext2D();
+		double w = canvas.getWidth();
+		double h = canvas.getHeight();
+		g.clearRect(0, 0, w, h);
+		if (entry == null || w <= 0) return;
+		drawCount++;
+
+		double lineY = h / 2;
+		g.setFill(getTextFill());
+
+		double textX = PADDING_X;
+		if (thumbnails != null) {
+			drawThumb(g, PADDING_X, (h - THUMB_SIZE) / 2);
+			textX += THUMB_SIZE + THUMB_GAP;
+		}
+		double textWidth = Math.max(0, w - textX - PADDING_X - LENGTH_WIDTH);
+
+		g.setTextBaseline(VPos.BOTTOM);
+
+		// Texte am rechten Rand abschneiden statt zu stauchen
+		g.save();
+		g.beginPath();
+		g.rect(textX, 0, textWidth, h);
+		g.clip();
+		g.setTextAlign(TextAlignment.LEFT);
+		g.setFont(TITLE_FONT);
+		g.fillText(entry.title, textX, lineY);
+		g.setFont(SUBTITLE_FONT);
+		g.setTextBaseline(VPos.TOP);
+		g.fillText(entry.subtitle, textX, lineY + 2);
+		g.restore();
+
+		g.setFont(SUBTITLE_FONT);
+		g.setTextBaseline(VPos.BOTTOM);
+		g.setTextAlign(TextAlignment.RIGHT);
+		g.fillText(entry.length, w - PADDING_X, lineY);
+	}
+
+	/** Vorschaubild zentriert im Quadrat, solange keins da ist ein blasser Platzhalter */
+	private void drawThumb(GraphicsContext g, double x, double y) {
+		if (thumb == null) {
+			g.save();
+			g.setGlobalAlpha(0.12);
+			g.fillRoundRect(x, y, THUMB_SIZE, THUMB_SIZE, 6, 6);
+			g.restore();
+			return;
+		}
+
+		double scale = THUMB_SIZE / Math.max(thumb.getWidth(), thumb.getHeight());
+		double tw = thumb.getWidth() * scale;
+		double th = thumb.getHeight() * scale;
+		g.drawImage(thumb, x + (THUMB_SIZE - tw) / 2, y + (THUMB_SIZE - th) / 2, tw, th);
+	}
+
+	// Messwerte
+	static int getCreatedCount() {
+		return createdCount;
+	}
+
+	static int getUpdateCount() {
+		return updateCount;
+	}
+
+	static int getDrawCount() {
+		return drawCount;
+	}
+
+	static int getLayoutCount() {
+		return layoutCount;
+	}
+}
@@ -0,0 +1,93 @@
+package de.hsrm.mi.enia.moodplayer.presentation.views;
+
+import de.hsrm.mi.enia.moodplayer.business.Track;
+import de.hsrm.mi.enia.moodplayer.business.TrackStore;
+import de.hsrm.mi.enia.moodplayer.presentation.uicomponents.TimeConverter;
+
+import java.util.Arrays;
+
+/**
+ * fertige Anzeige-Texte pro Track (für TrackCell und Mini-Info)
+ * - Titel/Artist mit Ersatztext, zweite Zeile "Artist – Album", Länge als m:ss
+ * - ein Eintrag pro Store-ID in einem Array, wird beim ersten Zeichnen erzeugt
+ * - gültig, solange Titel/Artist/Album im Store dieselben Objekte sind und die Länge gleich bleibt
+ *   (geänderte Tags oder nachgetragene Länge > Eintrag wird neu berechnet)
+ * - nur im FX-Thread benutzen
+ */
+
+final class TrackDisplayCache {
+	static final String UNKNOWN_TITLE = "Unbekannter Titel";
+	static final String UNKNOWN_ARTIST = "Unbekannter Artist";
+
+	private static final TrackDisplayCache DEFAULT = new TrackDisplayCache(TrackStore.getDefault());
+
+	/** Anzeige-Texte eines Tracks */
+	static final class Entry {
+		final String title;
+		final String artist;
+		final String subtitle;
+		final String length;
+
+		// Werte aus dem Store, aus denen die Texte entstanden sind
+		private final String rawTitle;
+		private final String rawArtist;
+		private final String rawAlbum;
+		private final int rawLength;
+
+		private Entry(String rawTitle, String rawArtist, String rawAlbum, int rawLength) {
+			this.rawTitle = rawTitle;
+			this.rawArtist = rawArtist;
+			this.rawAlbum = rawAlbum;
+			this.rawLength = rawLength;
+
+			this.title = rawTitle != null && !rawTitle.isBlank() ? rawTitle : UNKNOWN_TITLE;
+			this.artist = rawArtist != null && !rawArtist.isBlank() ? rawArtist : UNKNOWN_ARTIST;
+			this.subtitle = rawAlbum != null && !rawAlbum.isBlank() ? artist + " – " + rawAlbum : artist;
+			this.length = rawLength > 0 ? TimeConverter.numberToTimeString(rawLength) : "";
+		}
+
+		private boolean matches(String t, String ar, String al, int len) {
+			return t == rawTitle && ar == rawArtist && al == rawAlbum && len == rawLength;
+		}
+	}
+
+	private final TrackStore store;
+	private Entry[] entries = new Entry[1024];
+	private int computed = 0;
+
+	TrackDisplayCache(TrackStore store) {
+		this.store = store;
+	}
+
+	static TrackDisplayCache getDefault() {
+		return DEFAULT;
+	}
+
+	/** Anzeige-Texte eines Tracks, Tracks anderer Stores werden nicht gecacht */
+	Entry get(Track track) {
+		String t = track.getTitle();
+		String ar = track.getArtist();
+		String al = track.getAlbum();
+		int len = track.getLengthSec();
+
+		int id = track.getStore() == store ? track.getId() : -1;
+		if (id < 0) {
+			computed++;
+			return new Entry(t, ar, al, len);
+		}
+
+		if (id >= entries.length) entries = Arrays.copyOf(entries, Math.max(id + 1, entries.length * 2));
+		Entry e = entries[id];
+		if (e == null || !e.matches(t, ar, al, len)) {
+			e = new Entry(t, ar, al, len);
+			entries[id] = e;
+			computed++;
+		}
+		return e;
+	}
+
+	/** Anzahl berechneter Einträge seit dem Start (für Messungen) */
+	int getComputedCount() {
+		return computed;
+	}
+}
@@ -0,0 +1,174 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * persistenter Cache für Track-Metadaten (Titel, Artist, Album, Länge)
+ * - Schlüssel: absoluter Pfad, gültig nur solange Dateigröße + Änderungszeit gleich bleiben
+ * - wird beim Start mit einem einzigen Lesevorgang geladen
+ * - veraltete Einträge werden beim Nachschlagen einzeln verworfen
+ * - threadsicher, da der Bibliotheks-Scan parallel nachschlägt
+ */
+
+public class TrackMetadataCache {
+	private static final Log LOG = Log.get("TrackCache");
+
+	private static final int MAGIC = 0x4D50_4D43; // "MPMC"
+	private static final int VERSION = 1;
+
+	private final Path cacheFile;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private volatile boolean dirty = false;
+
+	/** ein gespeicherter Datensatz: Stat-Infos + Metadaten */
+	private static final class Entry {
+		final long size;
+		final long mtime;
+		final String title;
+		final String artist;
+		final String album;
+		final int lengthSec;
+
+		Entry(long size, long mtime, String title, String artist, String album, int lengthSec) {
+			this.size = size;
+			this.mtime = mtime;
+			this.title = title;
+			this.artist = artist;
+			this.album = album;
+			this.lengthSec = lengthSec;
+		}
+	}
+
+	public TrackMetadataCache(Path cacheFile) {
+		this.cacheFile = cacheFile;
+	}
+
+	/** lädt die Cache-Datei komplett in den Speicher (fehlende/kaputte Datei = leerer Cache) */
+	public void load() {
+		entries.clear();
+
+		try {
+			DataInputStream in = CacheFiles.read(cacheFile, MAGIC, VERSION, LOG);
+			if (in == null) return;
+
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String path = in.readUTF();
+				long size = in.readLong();
+				long mtime = in.readLong();
+				String title = in.readUTF();
+				String artist = in.readUTF();
+				String album = in.readUTF();
+				int lengthSec = in.readInt();
+				entries.put(path, new Entry(size, mtime, title, artist, album, lengthSec));
+			}
+			LOG.info("{} Einträge geladen", entries.size());
+
+		} catch (IOException e) {
+			LOG.warn("Cache nicht lesbar, wird neu aufgebaut: {}", e.getMessage());
+			entries.clear();
+		}
+	}
+
+	/** schreibt den Cache, falls sich seit dem Laden etwas geändert hat */
+	public void save() {
+		if (!dirty) return;
+		dirty = false;
+
+		try {
+			Map<String, Entry> snapshot = Map.copyOf(entries);
+			CacheFiles.write(cacheFile, MAGIC, VERSION, out -> {
+				out.writeInt(snapshot.size());
+				for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+					Entry en = e.getValue();
+					out.writeUTF(e.getKey());
+					out.writeLong(en.size);
+					out.writeLong(en.mtime);
+					out.writeUTF(en.title);
+					out.writeUTF(en.artist);
+					out.writeUTF(en.album);
+					out.writeInt(en.lengthSec);
+				}
+			});
+
+		} catch (IOException e) {
+			dirty = true;
+			LOG.warn("Fehler beim Speichern: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * liefert einen Track aus dem Cache, wenn Größe und Änderungszeit noch passen
+	 * - veraltete Einträge werden dabei entfernt
+	 * - null = nicht (mehr) im Cache > Datei muss geparst werden
+	 */
+	public Track lookup(File mp3File) {
+		String key = mp3File.getAbsolutePath();
+		Entry en = entries.get(key);
+		if (en == null) return null;
+
+		BasicFileAttributes attrs = stat(mp3File);
+		if (attrs == null || attrs.size() != en.size || attrs.lastModifiedTime().toMillis() != en.mtime) {
+			entries.remove(key);
+			dirty = true;
+			return null;
+		}
+
+		return new Track(mp3File.getPath(), en.title, en.artist, en.album, en.lengthSec);
+	}
+
+	/** speichert (oder ersetzt) die Metadaten eines Tracks zusammen mit den aktuellen Stat-Infos */
+	public void put(File mp3File, Track track) {
+		BasicFileAttributes attrs = stat(mp3File);
+		if (attrs == null || track == null) return;
+
+		entries.put(mp3File.getAbsolutePath(), new Entry(
+				attrs.size(),
+				attrs.lastModifiedTime().toMillis(),
+				nonNull(track.getTitle()),
+				nonNull(track.getArtist()),
+				nonNull(track.getAlbum()),
+				track.getLengthSec()));
+		dirty = true;
+	}
+
+	/** aktualisiert nur die Länge eines vorhandenen Eintrags */
+	public void updateLength(File mp3File, int lengthSec) {
+		String key = mp3File.getAbsolutePath();
+		Entry en = entries.get(key);
+		if (en == null || en.lengthSec == lengthSec) return;
+
+		entries.put(key, new Entry(en.size, en.mtime, en.title, en.artist, en.album, lengthSec));
+		dirty = true;
+	}
+
+	/** entfernt einen Eintrag, z.B. wenn die Datei gelöscht wurde */
+	public void remove(File mp3File) {
+		if (entries.remove(mp3File.getAbsolutePath()) != null) {
+			dirty = true;
+		}
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	private static BasicFileAttributes stat(File f) {
+		try {
+			return Files.readAttributes(f.toPath(), BasicFileAttributes.class);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private static String nonNull(String s) {
+		return s != null ? s : "";
+	}
+}
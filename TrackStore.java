@@ -0,0 +1,314 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * spaltenorientierter Speicher für alle Tracks der Bibliothek
+ * - jeder Track ist eine Zeile mit fester ID (0, 1, 2, ...)
+ * - Ordner, Artist und Album werden als Wörterbuch-IDs gespeichert (jeder String nur einmal)
+ * - Längen etc. liegen in primitiven int-Arrays, es gibt keine Objekte pro Track
+ * - Track-Objekte sind nur leichte Sichten (Store + ID), Playlists speichern nur IDs
+ * - gleicher Pfad = gleiche ID: erneutes Hinzufügen aktualisiert die Zeile
+ * - Mood-Vektor (Valence/Energy/Tempo) als float-Spalten, NaN = unbekannt
+ */
+
+public class TrackStore {
+	private static final TrackStore DEFAULT = new TrackStore();
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private int size = 0;
+
+	// Spalten
+	private int[] dirIds = new int[INITIAL_CAPACITY];
+	private String[] fileNames = new String[INITIAL_CAPACITY];
+	private String[] titles = new String[INITIAL_CAPACITY];
+	private int[] artistIds = new int[INITIAL_CAPACITY];
+	private int[] albumIds = new int[INITIAL_CAPACITY];
+	private int[] lengths = new int[INITIAL_CAPACITY];
+	private int[] pathHashes = new int[INITIAL_CAPACITY];
+	private float[] valences = newNaNColumn(INITIAL_CAPACITY);
+	private float[] energies = newNaNColumn(INITIAL_CAPACITY);
+	private float[] tempos = newNaNColumn(INITIAL_CAPACITY);
+
+	// wird bei jeder Vektor-Änderung erhöht (MoodSpaceIndex baut dann neu)
+	private int vectorVersion = 0;
+
+	// Wörterbücher
+	private final Dictionary dirs = new Dictionary();
+	private final Dictionary artists = new Dictionary();
+	private final Dictionary albums = new Dictionary();
+
+	// Pfad -> ID (offene Adressierung, Eintrag = ID + 1, 0 = leer)
+	private int[] pathTable = new int[INITIAL_CAPACITY * 2];
+
+	/** gemeinsamer Store der Anwendung (alle Playlists teilen sich die Zeilen) */
+	public static TrackStore getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * übernimmt einen Track und liefert seine ID
+	 * - schon gespeicherte Sichten dieses Stores behalten ihre ID
+	 * - existiert der Pfad schon, werden die Metadaten der Zeile aktualisiert
+	 */
+	public synchronized int add(Track t) {
+		if (t.getStore() == this) return t.getId();
+
+		String path = t.getFilename();
+		int hash = mix(path.hashCode());
+		int id = find(path, hash);
+
+		if (id < 0) id = newRow(path, hash);
+
+		titles[id] = t.getTitle();
+		artistIds[id] = artists.encode(t.getArtist());
+		albumIds[id] = albums.encode(t.getAlbum());
+		lengths[id] = t.getLengthSec();
+		// neu eingelesene Tags ohne Vektor überschreiben keinen vorhandenen Vektor
+		if (t.hasMoodVector()) {
+			valences[id] = t.getValence();
+			energies[id] = t.getEnergy();
+			tempos[id] = t.getTempo();
+			vectorVersion++;
+		}
+		return id;
+	}
+
+	/**
+	 * ID zu einem Pfad, legt bei Bedarf eine leere Zeile an
+	 * (z.B. für gespeicherte Moods, bevor die Bibliothek eingelesen ist)
+	 */
+	public synchronized int intern(String path) {
+		int hash = mix(path.hashCode());
+		int id = find(path, hash);
+		if (id >= 0) return id;
+
+		id = newRow(path, hash);
+		titles[id] = "";
+		artistIds[id] = artists.encode("");
+		albumIds[id] = albums.encode("");
+		lengths[id] = 0;
+		return id;
+	}
+
+	/** liefert die Sicht auf Zeile id */
+	public Track get(int id) {
+		return new Track(this, id);
+	}
+
+	/** ID zu einem Pfad, -1 wenn unbekannt */
+	public synchronized int idOf(String path) {
+		return find(path, mix(path.hashCode()));
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	// Spaltenzugriff (wird von Track-Sichten benutzt)
+	synchronized String filename(int id) {
+		return dirs.decode(dirIds[id]) + fileNames[id];
+	}
+
+	synchronized String title(int id) {
+		return titles[id];
+	}
+
+	synchronized String artist(int id) {
+		return artists.decode(artistIds[id]);
+	}
+
+	synchronized String album(int id) {
+		return albums.decode(albumIds[id]);
+	}
+
+	synchronized int length(int id) {
+		return lengths[id];
+	}
+
+	synchronized void setLength(int id, int lengthSec) {
+		lengths[id] = lengthSec;
+	}
+
+	synchronized float valence(int id) {
+		return valences[id];
+	}
+
+	synchronized float energy(int id) {
+		return energies[id];
+	}
+
+	synchronized float tempo(int id) {
+		return tempos[id];
+	}
+
+	synchronized void setVector(int id, float valence, float energy, float tempo) {
+		valences[id] = valence;
+		energies[id] = energy;
+		tempos[id] = tempo;
+		vectorVersion++;
+	}
+
+	/** Version der Vektor-Spalten (ändert sich bei jedem gesetzten Vektor) */
+	public synchronized int getVectorVersion() {
+		return vectorVersion;
+	}
+
+	/** Kopie der Spalten {Valence, Energy} für alle Zeilen (für den Aufbau räumlicher Indizes) */
+	public synchronized float[][] copyVectors() {
+		return new float[][] { Arrays.copyOf(valences, size), Arrays.copyOf(energies, size) };
+	}
+
+	/** Artist-Wörterbuch-ID (für schnelle Gruppierung/Filter ohne String-Vergleich) */
+	public synchronized int artistId(int id) {
+		return artistIds[id];
+	}
+
+	public synchronized int albumId(int id) {
+		return albumIds[id];
+	}
+
+	/**
+	 * grobe Speicherabschätzung in Bytes pro Track (Spalten + Strings, 64-Bit JVM mit
+	 * komprimierten Referenzen), für Vergleiche mit dem alten Track-Objekt-Modell
+	 */
+	public synchronized String memoryReport() {
+		if (size == 0) return "[TrackStore] leer";
+
+		long bytes = 0;
+		// primitive Spalten + Referenz-Spalten (4 Byte pro Eintrag)
+		bytes += (long) dirIds.length * 4 * 8;        // dirIds, artistIds, albumIds, lengths, pathHashes, 3 Vektor-Spalten
+		bytes += (long) fileNames.length * 4 * 2;     // fileNames, titles
+		bytes += (long) pathTable.length * 4;
+		for (int i = 0; i < size; i++) {
+			bytes += stringBytes(fileNames[i]) + stringBytes(titles[i]);
+		}
+		bytes += dirs.bytes() + artists.bytes() + albums.bytes();
+
+		return String.format("[TrackStore] %d Tracks, %d Ordner, %d Artists, %d Alben, ~%d Bytes/Track",
+				size, dirs.size(), artists.size(), albums.size(), bytes / size);
+	}
+
+	private static long stringBytes(String s) {
+		// Objekt-Header + Felder (24) + byte[] (16 + Länge, Latin-1 kompakt)
+		return s == null ? 0 : 24 + 16 + s.length();
+	}
+
+	private int newRow(String path, int hash) {
+		int id = size;
+		ensureCapacity(size + 1);
+		size++;
+
+		int sep = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+		dirIds[id] = dirs.encode(path.substring(0, sep + 1));
+		fileNames[id] = path.substring(sep + 1);
+		pathHashes[id] = hash;
+		insertPath(id, hash);
+		return id;
+	}
+
+	// Hash-Tabelle Pfad -> ID
+	private int find(String path, int hash) {
+		int mask = pathTable.length - 1;
+		for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+			int entry = pathTable[slot];
+			if (entry == 0) return -1;
+			int id = entry - 1;
+			if (pathHashes[id] == hash && pathEquals(id, path)) return id;
+		}
+	}
+
+	private boolean pathEquals(int id, String path) {
+		String dir = dirs.decode(dirIds[id]);
+		String name = fileNames[id];
+		return path.length() == dir.length() + name.length()
+				&& path.startsWith(dir) && path.endsWith(name);
+	}
+
+	private void insertPath(int id, int hash) {
+		// Füllgrad max. 50 %
+		if (size * 2 > pathTable.length) {
+			pathTable = new int[pathTable.length * 2];
+			for (int i = 0; i < size; i++) {
+				if (i != id) place(i, pathHashes[i]);
+			}
+		}
+		place(id, hash);
+	}
+
+	private void place(int id, int hash) {
+		int mask = pathTable.length - 1;
+		int slot = hash & mask;
+		while (pathTable[slot] != 0) slot = (slot + 1) & mask;
+		pathTable[slot] = id + 1;
+	}
+
+	private static int mix(int h) {
+		h ^= (h >>> 16);
+		h *= 0x85EBCA6B;
+		return h ^ (h >>> 13);
+	}
+
+	private void ensureCapacity(int needed) {
+		if (needed <= lengths.length) return;
+		int cap = Math.max(needed, lengths.length * 2);
+		dirIds = Arrays.copyOf(dirIds, cap);
+		fileNames = Arrays.copyOf(fileNames, cap);
+		titles = Arrays.copyOf(titles, cap);
+		artistIds = Arrays.copyOf(artistIds, cap);
+		albumIds = Arrays.copyOf(albumIds, cap);
+		lengths = Arrays.copyOf(lengths, cap);
+		pathHashes = Arrays.copyOf(pathHashes, cap);
+		valences = growNaNColumn(valences, cap);
+		energies = growNaNColumn(energies, cap);
+		tempos = growNaNColumn(tempos, cap);
+	}
+
+	private static float[] newNaNColumn(int cap) {
+		float[] col = new float[cap];
+		Arrays.fill(col, Float.NaN);
+		return col;
+	}
+
+	private static float[] growNaNColumn(float[] col, int cap) {
+		float[] grown = Arrays.copyOf(col, cap);
+		Arrays.fill(grown, col.length, cap, Float.NaN);
+		return grown;
+	}
+
+	/** einfaches String-Wörterbuch: jeder Wert bekommt eine fortlaufende ID */
+	private static final class Dictionary {
+		private final Map<String, Integer> ids = new HashMap<>();
+		private final List<String> values = new ArrayList<>();
+
+		int encode(String s) {
+			if (s == null) s = "";
+			Integer id = ids.get(s);
+			if (id == null) {
+				id = values.size();
+				values.add(s);
+				ids.put(s, id);
+			}
+			return id;
+		}
+
+		String decode(int id) {
+			return values.get(id);
+		}
+
+		int size() {
+			return values.size();
+		}
+
+		long bytes() {
+			long b = 0;
+			for (String s : values) b += stringBytes(s) + 48; // + HashMap-Eintrag + Integer
+			return b;
+		}
+	}
+}
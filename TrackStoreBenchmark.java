@@ -0,0 +1,141 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * vergleicht den TrackStore mit dem alten Modell (List<Track>, ein Objekt mit eigenen Strings
+ * pro Track, wie vom Tag-Parser geliefert)
+ * - N Tracks mit realistischen Pfaden (Artist/Album/Nr Titel.mp3), ~10 Titel pro Album,
+ *   ~10 Alben pro Artist; jeder Track bekommt eigene String-Instanzen wie nach dem Einlesen
+ * - Heap pro Track: belegter Heap nach GC mit und ohne die jeweilige Struktur, daneben die
+ *   Schätzung aus TrackStore.memoryReport()
+ * - Suche eines Tracks:
+ *   > alt: List.indexOf (linearer Durchlauf)
+ *   > neu: Playlist.indexOf (ID -> Position) und Pfad -> ID über die Hash-Tabelle des Stores
+ * - Ergebnis schwankt je nach GC etwas, mehrere Läufe vergleichen
+ *
+ * starten: java ...TrackStoreBenchmark [Tracks] [Suchen]
+ */
+
+public class TrackStoreBenchmark {
+
+	/** Track-Objekt wie vor dem TrackStore (nur die damaligen Felder) */
+	private static final class LegacyTrack {
+		final String filename;
+		final String title;
+		final String artist;
+		final String album;
+		int lengthSec;
+
+		LegacyTrack(String filename, String title, String artist, String album, int lengthSec) {
+			this.filename = filename;
+			this.title = title;
+			this.artist = artist;
+			this.album = album;
+			this.lengthSec = lengthSec;
+		}
+	}
+
+	public static void main(String[] args) {
+		int tracks = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+
+		// alt
+		long base = usedHeap();
+		List<LegacyTrack> legacy = new ArrayList<>();
+		for (int i = 0; i < tracks; i++) {
+			legacy.add(new LegacyTrack(path(i), title(i), artist(i), album(i), 180 + i % 240));
+		}
+		long legacyBytes = usedHeap() - base;
+
+		Random random = new Random(42);
+		LegacyTrack[] legacyTargets = new LegacyTrack[lookups];
+		for (int i = 0; i < lookups; i++) legacyTargets[i] = legacy.get(random.nextInt(tracks));
+		long legacyHits = 0;
+		for (LegacyTrack t : legacyTargets) legacyHits += legacy.indexOf(t); // JIT
+		long t0 = System.nanoTime();
+		for (LegacyTrack t : legacyTargets) legacyHits += legacy.indexOf(t);
+		double legacyNs = (System.nanoTime() - t0) / (double) lookups;
+
+		legacyTargets = null;
+		legacy = null;
+
+		// neu: eigener Store, Tracks kommen wie beim Scan als eigenständige Objekte an
+		base = usedHeap();
+		TrackStore store = new TrackStore();
+		Playlist playlist = new Playlist("Benchmark", store);
+		for (int i = 0; i < tracks; i++) {
+			playlist.addTrack(new Track(path(i), title(i), artist(i), album(i), 180 + i % 240));
+		}
+		long storeBytes = usedHeap() - base;
+
+		random = new Random(42);
+		Track[] targets = new Track[lookups];
+		String[] paths = new String[lookups];
+		for (int i = 0; i < lookups; i++) {
+			int k = random.nextInt(tracks);
+			targets[i] = playlist.getTracks().get(k);
+			paths[i] = path(k);
+		}
+		long storeHits = 0;
+		for (int r = 0; r < 20; r++) {
+			for (Track t : targets) storeHits += playlist.indexOf(t); // JIT
+		}
+		long t1 = System.nanoTime();
+		for (Track t : targets) storeHits += playlist.indexOf(t);
+		double indexOfNs = (System.nanoTime() - t1) / (double) lookups;
+
+		for (int r = 0; r < 20; r++) {
+			for (String p : paths) storeHits += store.idOf(p);
+		}
+		long t2 = System.nanoTime();
+		for (String p : paths) storeHits += playlist.indexOfId(store.idOf(p));
+		double byPathNs = (System.nanoTime() - t2) / (double) lookups;
+
+		System.out.println(String.format("[Benchmark] %d Tracks, %d Suchen", tracks, lookups));
+		System.out.println(String.format("[Benchmark] List<Track>:  ~%d Bytes/Track (Heap), indexOf %.1f µs",
+				legacyBytes / tracks, legacyNs / 1e3));
+		System.out.println(String.format("[Benchmark] TrackStore:   ~%d Bytes/Track (Heap), indexOf %.3f µs, Pfad > Position %.3f µs",
+				storeBytes / tracks, indexOfNs / 1e3, byPathNs / 1e3));
+		System.out.println("[Benchmark] " + store.memoryReport());
+
+		// Ergebnisse benutzen, damit nichts wegoptimiert wird
+		System.exit(legacyHits >= 0 && storeHits >= 0 ? 0 : 1);
+	}
+
+	/** belegter Heap nach mehreren GC-Läufen */
+	private static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+		}
+		return used;
+	}
+
+	// neue String-Instanzen bei jedem Aufruf (wie vom Parser)
+	private static String artist(int i) {
+		return "Artist " + (i / 100);
+	}
+
+	private static String album(int i) {
+		return "Album " + (i / 10) + " – " + artist(i);
+	}
+
+	private static String title(int i) {
+		return "Titel Nummer " + i;
+	}
+
+	private static String path(int i) {
+		return "/home/user/Musik/" + artist(i) + "/Album " + (i / 10) + "/" + String.format("%02d", i % 10 + 1)
+				+ " " + title(i) + ".mp3";
+	}
+}
@@ -0,0 +1,68 @@
+package de.hsrm.mi.enia.moodplayer.business;
+
+import java.util.function.IntConsumer;
+
+/**
+ * misst die Logging-Kosten beim Ziehen des Lautstärke-Sliders
+ * - jedes Slider-Ereignis führt in der Engine zu applyVolume(), früher mit drei
+ *   System.out.println-Zeilen, jetzt mit einer Debug-Meldung über Log
+ * - gemessen wird die Zeit im aufrufenden Thread pro Ereignis für
+ *   > vorher: drei synchrone Konsolenzeilen (wie das alte applyVolume)
+ *   > Log mit DEBUG an (Ringpuffer, Schreib-Thread schreibt)
+ *   > Log mit INFO (Debug aus, Standard)
+ * - Messwerte kommen über System.err, die Log-Zeilen über System.out
+ *   > z.B. mit > /dev/null oder in eine Datei umleiten, um die Konsole selbst herauszurechnen
+ *
+ * starten: java ...VolumeLogBenchmark [Ereignisse]
+ */
+
+public class VolumeLogBenchmark {
+	private static final Log VOLUME_LOG = Log.get("Volume");
+
+	public static void main(String[] args) {
+		int events = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+
+		IntConsumer before = i -> {
+			double v = i % 101;
+			double gainDb = -60.0 + (v * 0.60);
+			float lin = (float) (v / 100.0);
+			System.out.println("[VOLUME] Slider=" + v + " -> gainDb=" + gainDb);
+			System.out.println("[VOLUME] setGain OK");
+			System.out.println("[VOLUME] setVolume OK (Fallback), lin=" + lin);
+		};
+		IntConsumer after = i -> {
+			double v = i % 101;
+			double gainDb = -60.0 + (v * 0.60);
+			VOLUME_LOG.debug("Slider={} -> gainDb={}", v, gainDb);
+		};
+
+		run("System.out (vorher)", events, 2_000, before);
+
+		VOLUME_LOG.setLevel(Log.Level.DEBUG);
+		long droppedBefore = Log.getDropped();
+		run("Log DEBUG, async", events, events, after);
+		Log.flush();
+		System.err.println("[Benchmark]   verworfen (Puffer voll): " + (Log.getDropped() - droppedBefore));
+
+		VOLUME_LOG.setLevel(Log.Level.INFO);
+		run("Log INFO (Debug aus)", events, events, after);
+	}
+
+	/** warmup Ereignisse zum Aufwärmen (JIT), dann events Ereignisse messen */
+	private static void run(String name, int events, int warmup, IntConsumer event) {
+		for (int i = 0; i < warmup; i++) event.accept(i);
+		Log.flush();
+
+		long max = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < events; i++) {
+			long t = System.nanoTime();
+			event.accept(i);
+			max = Math.max(max, System.nanoTime() - t);
+		}
+		long total = System.nanoTime() - start;
+
+		System.err.println(String.format("[Benchmark] %-22s %8.1f ns/Ereignis, max %8.1f µs, gesamt %6.1f ms",
+				name, total / (double) events, max / 1e3, total / 1e6));
+	}
+}